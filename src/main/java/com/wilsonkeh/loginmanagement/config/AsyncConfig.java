@@ -1,13 +1,19 @@
 package com.wilsonkeh.loginmanagement.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.retry.annotation.EnableRetry;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 @EnableAsync
@@ -15,8 +21,20 @@ import java.util.concurrent.Executor;
 @EnableRetry
 public class AsyncConfig {
 
+    /**
+     * 虚拟线程模式开关，与Spring Boot的Tomcat虚拟线程配置共用同一属性
+     */
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreadsEnabled;
+
+    @Value("${app.queue.parallel.parallelism:8}")
+    private int parallelBatchParallelism;
+
     @Bean(name = "loginRecordTaskExecutor")
     public Executor loginRecordTaskExecutor() {
+        if (virtualThreadsEnabled) {
+            return virtualThreadExecutor("LoginRecord-", SimpleAsyncTaskExecutor.UNBOUNDED_CONCURRENCY);
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(20);
@@ -29,6 +47,9 @@ public class AsyncConfig {
 
     @Bean(name = "batchProcessorExecutor")
     public Executor batchProcessorExecutor() {
+        if (virtualThreadsEnabled) {
+            return virtualThreadExecutor("BatchProcessor-", 5);
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(2);
         executor.setMaxPoolSize(5);
@@ -39,15 +60,30 @@ public class AsyncConfig {
         return executor;
     }
 
+    /**
+     * 批处理并行执行共享线程池，由 BatchExecutionEngine 按队列配额使用，随应用上下文关闭
+     * 子任务执行阻塞的 JDBC 写入，使用固定线程数的线程池而不是工作窃取线程池：
+     * 工作窃取线程池的线程阻塞时不会补偿，阻塞期间其他子任务只能排队。
+     * 虚拟线程模式下线程池的线程为虚拟线程，线程数同样固定，避免耗尽数据库连接池。
+     * 提交不会阻塞，各队列的 lane 最多各占一个排队位置，任务队列的长度不超过 lane 总数
+     */
     @Bean(name = "parallelBatchProcessorExecutor")
     public Executor parallelBatchProcessorExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(4);
-        executor.setMaxPoolSize(8);
-        executor.setQueueCapacity(200);
-        executor.setThreadNamePrefix("ParallelBatch-");
-        executor.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy());
-        executor.initialize();
+        ThreadFactory threadFactory = virtualThreadsEnabled
+                ? Thread.ofVirtual().name("ParallelBatch-", 0).factory()
+                : Thread.ofPlatform().name("ParallelBatch-", 0).factory();
+        return new ThreadPoolExecutor(parallelBatchParallelism, parallelBatchParallelism,
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+    }
+
+    /**
+     * 创建虚拟线程执行器，每个任务一个虚拟线程
+     * 批处理执行器保留与平台线程池最大线程数一致的并发上限，避免耗尽数据库连接池
+     */
+    private Executor virtualThreadExecutor(String threadNamePrefix, int concurrencyLimit) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(concurrencyLimit);
         return executor;
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
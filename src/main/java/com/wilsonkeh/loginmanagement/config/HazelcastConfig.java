@@ -8,6 +8,8 @@ import com.hazelcast.cluster.MembershipEvent;
 import com.hazelcast.instance.impl.Node;
 import com.hazelcast.internal.cluster.impl.ClusterServiceImpl;
 import com.hazelcast.spi.properties.ClusterProperty;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+import com.wilsonkeh.loginmanagement.queue.store.AppendLogQueueStoreFactory;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -18,6 +20,7 @@ import org.springframework.scheduling.annotation.Scheduled;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -31,9 +34,17 @@ public class HazelcastConfig {
 
     public static final String DEDUPLICATION_MAP_NAME = "login-record-deduplication";
     public static final String TASK_QUEUE_NAME = "login-record-task-queue";
+    public static final String TASK_STORE_MAP_NAME = "login-record-task-store";
+    public static final String TASK_IN_FLIGHT_MAP_NAME = "login-record-task-in-flight";
+    public static final String DEAD_LETTER_MAP_NAME = "login-record-dead-letters";
+    public static final String USER_SECURITY_AGGREGATE_MAP_NAME = "user-security-aggregates";
+    public static final String TASK_QUEUE_CAPACITY_NAME = "login-record-task-queue-capacity";
+    public static final String TASK_QUEUE_CAPACITY_POOL_MAP_NAME = "login-record-task-queue-capacity-pools";
     public static final String CLUSTER_NAME = "login-management-cluster";
     public static final String SERVICE_NAME = "login-management-app";
 
+    private static final int TASK_QUEUE_MAX_SIZE = 10000;
+
     @Value("${app.hazelcast.cluster.name:login-management-cluster}")
     private String clusterName;
 
@@ -97,9 +108,24 @@ public class HazelcastConfig {
     @Value("${app.hazelcast.consul.refresh-interval-seconds:30}")
     private int consulRefreshIntervalSeconds;
 
+    @Value("${app.queue.distributed.store.enabled:false}")
+    private boolean queueStoreEnabled;
+
+    @Value("${app.queue.distributed.store.directory:./data/queue-store}")
+    private String queueStoreDirectory;
+
+    @Value("${app.queue.distributed.store.segment-size-mb:64}")
+    private int queueStoreSegmentSizeMb;
+
+    @Value("${app.queue.distributed.store.fsync-interval-ms:10}")
+    private long queueStoreFsyncIntervalMs;
+
     @Autowired
     private DiscoveryClient discoveryClient;
 
+    // 队列持久化存储，未启用时为null
+    private AppendLogQueueStoreFactory queueStoreFactory;
+
     private HazelcastInstance hazelcastInstance;
     private final AtomicBoolean isRejoining = new AtomicBoolean(false);
 
@@ -107,6 +133,10 @@ public class HazelcastConfig {
     public HazelcastInstance hazelcastInstance() {
         Config config = createHazelcastConfig();
         hazelcastInstance = Hazelcast.newHazelcastInstance(config);
+        if (queueStoreFactory != null) {
+            // 队列持久化存储跟随主副本迁移
+            queueStoreFactory.start(hazelcastInstance);
+        }
         
         // 添加成员监听器
         hazelcastInstance.getCluster().addMembershipListener(new CustomMembershipListener());
@@ -136,11 +166,18 @@ public class HazelcastConfig {
         // 分布式Map配置
         MapConfig deduplicationMapConfig = createDeduplicationMapConfig();
         config.addMapConfig(deduplicationMapConfig);
+        config.addMapConfig(createTaskStoreMapConfig());
+        config.addMapConfig(createInFlightMapConfig());
+        config.addMapConfig(createDeadLetterMapConfig());
+        config.addMapConfig(createUserSecurityAggregateMapConfig());
         
         // 分布式队列配置
-        QueueConfig queueConfig = createQueueConfig();
+        com.hazelcast.config.QueueConfig queueConfig = createQueueConfig();
         config.addQueueConfig(queueConfig);
         
+        // 序列化配置：登录记录任务与去重键预留处理器通过工厂反序列化，登录记录请求使用二进制序列化器
+        LoginRecordDataSerializableFactory.register(config.getSerializationConfig());
+        
         // 系统属性配置
         configureSystemProperties(config);
         
@@ -241,15 +278,79 @@ public class HazelcastConfig {
         return mapConfig;
     }
 
-    private QueueConfig createQueueConfig() {
-        QueueConfig queueConfig = new QueueConfig(TASK_QUEUE_NAME);
-        queueConfig.setMaxSize(10000);
+    private MapConfig createTaskStoreMapConfig() {
+        // 分区本地任务存储：条目即待处理任务，不能设置TTL或驱逐，否则会丢失任务
+        MapConfig mapConfig = new MapConfig(TASK_STORE_MAP_NAME);
+        mapConfig.setBackupCount(backupCount);
+        mapConfig.setAsyncBackupCount(asyncBackupCount);
+        // 以对象形式存储，Entry处理器和按状态查询时无需反序列化
+        mapConfig.setInMemoryFormat(InMemoryFormat.OBJECT);
+        mapConfig.addIndexConfig(new IndexConfig(IndexType.HASH, "state"));
+        mapConfig.setStatisticsEnabled(true);
+        return mapConfig;
+    }
+
+    private MapConfig createInFlightMapConfig() {
+        // 处理中任务租约：条目在确认前是任务的唯一副本，同样不能设置TTL或驱逐
+        MapConfig mapConfig = new MapConfig(TASK_IN_FLIGHT_MAP_NAME);
+        mapConfig.setBackupCount(backupCount);
+        mapConfig.setAsyncBackupCount(asyncBackupCount);
+        mapConfig.setInMemoryFormat(InMemoryFormat.OBJECT);
+        mapConfig.setStatisticsEnabled(true);
+        return mapConfig;
+    }
+
+    private MapConfig createDeadLetterMapConfig() {
+        // 死信：条目是失败任务唯一的副本，由 DeadLetterQueue 限制数量，不能设置TTL或驱逐
+        MapConfig mapConfig = new MapConfig(DEAD_LETTER_MAP_NAME);
+        mapConfig.setBackupCount(backupCount);
+        mapConfig.setAsyncBackupCount(asyncBackupCount);
+        // 以对象形式存储，分页查询按死信排序时无需反序列化
+        mapConfig.setInMemoryFormat(InMemoryFormat.OBJECT);
+        mapConfig.addIndexConfig(new IndexConfig(IndexType.HASH, "source"));
+        mapConfig.setStatisticsEnabled(true);
+        return mapConfig;
+    }
+
+    private MapConfig createUserSecurityAggregateMapConfig() {
+        // 用户安全聚合：对账时删除窗口内没有登录的用户，丢失的条目按需从数据库重建
+        MapConfig mapConfig = new MapConfig(USER_SECURITY_AGGREGATE_MAP_NAME);
+        mapConfig.setBackupCount(backupCount);
+        mapConfig.setAsyncBackupCount(asyncBackupCount);
+        // 以对象形式存储，增量更新时无需反序列化整个聚合
+        mapConfig.setInMemoryFormat(InMemoryFormat.OBJECT);
+        mapConfig.setStatisticsEnabled(true);
+        return mapConfig;
+    }
+
+    private com.hazelcast.config.QueueConfig createQueueConfig() {
+        // 通配符同时匹配单一队列和分片模式下的各分片队列
+        com.hazelcast.config.QueueConfig queueConfig = new com.hazelcast.config.QueueConfig(TASK_QUEUE_NAME + "*");
+        queueConfig.setMaxSize(TASK_QUEUE_MAX_SIZE);
         queueConfig.setBackupCount(backupCount);
         queueConfig.setAsyncBackupCount(asyncBackupCount);
         queueConfig.setStatisticsEnabled(true);
+        if (queueStoreEnabled) {
+            queueConfig.setQueueStoreConfig(createQueueStoreConfig(TASK_QUEUE_MAX_SIZE));
+        }
         return queueConfig;
     }
 
+    private QueueStoreConfig createQueueStoreConfig(int memoryLimit) {
+        // 本地追加日志持久化队列元素，整个集群重启后由各分片主副本所在成员恢复
+        queueStoreFactory = new AppendLogQueueStoreFactory(Paths.get(queueStoreDirectory),
+                queueStoreSegmentSizeMb * 1024 * 1024, queueStoreFsyncIntervalMs);
+        QueueStoreConfig queueStoreConfig = new QueueStoreConfig();
+        queueStoreConfig.setEnabled(true);
+        queueStoreConfig.setFactoryImplementation(queueStoreFactory);
+        // 直接保存序列化后的字节；元素全部保留在内存中，存储只用于恢复
+        queueStoreConfig.setProperty(QueueStoreConfig.STORE_BINARY, "true");
+        queueStoreConfig.setProperty(QueueStoreConfig.STORE_MEMORY_LIMIT, String.valueOf(memoryLimit));
+        log.info("队列持久化存储已启用 - 目录: {}, 段大小: {}MB, 刷盘间隔: {}ms",
+                queueStoreDirectory, queueStoreSegmentSizeMb, queueStoreFsyncIntervalMs);
+        return queueStoreConfig;
+    }
+
     private void configureSystemProperties(Config config) {
         // 心跳配置
         config.setProperty(ClusterProperty.HEARTBEAT_INTERVAL_SECONDS.getName(), 
@@ -407,5 +508,8 @@ public class HazelcastConfig {
             log.info("正在关闭Hazelcast实例");
             hazelcastInstance.shutdown();
         }
+        if (queueStoreFactory != null) {
+            queueStoreFactory.close();
+        }
     }
 } 
\ No newline at end of file
@@ -22,16 +22,26 @@ public class QueueConfig {
         private String threadNamePrefix;
         private int batchSize = 20;
         private int maxBatchSize = 50;
-        private long processIntervalMs = 5000;
+        private boolean adaptiveBatchSizing = true; // 根据批处理耗时自动调整批大小
+        private int minBatchSize = 5; // 自适应批大小下限
+        private long targetBatchLatencyMs = 200; // 单批处理耗时 p95 的目标值
+        private long lingerMs = 50; // 未凑满 batchSize 时最多等待的时长，到期后处理已收集的任务
+        private int consumerThreads = 1; // 消费线程数
         private int maxRetryAttempts = 3;
         private long retryDelayMs = 1000;
         private double retryMultiplier = 2.0;
         private boolean enableDeduplication = true;
         private String deduplicationKeyStrategy = "DEFAULT"; // DEFAULT, CUSTOM, NONE
+        private boolean verifyDeduplicationKeys = false; // 去重索引是否校验完整键，关闭时仅比较64位哈希
+        private long deduplicationWindowMs = 0; // 任务出队后继续抑制重复提交的时长，0表示出队即释放
         private int maxQueueSize = 10000;
+        private long offerTimeoutMs = 200; // 队列已满时不可丢弃任务最多等待的时长，0表示立即拒绝
+        private String storageBackend = "PRIORITY"; // LINKED, RING_BUFFER, PRIORITY
+        private int priorityLevels = 8; // 优先级级数（PRIORITY 后端）
+        private long priorityAgingMs = 1000; // 低优先级任务每等待该时长提升一级，0表示不老化
         private boolean enableMetrics = true;
         private boolean enableParallelProcessing = false; // 是否启用并行处理
-        private int parallelThreadPoolSize = 4; // 并行处理线程池大小
+        private int parallelThreadPoolSize = 4; // 并行处理的lane数，同一uid的任务固定在同一lane内按序处理
     }
     
     /**
@@ -0,0 +1,86 @@
+package com.wilsonkeh.loginmanagement.controller;
+
+import com.wilsonkeh.loginmanagement.dto.ApiResponse;
+import com.wilsonkeh.loginmanagement.dto.DeadLetterPageResponse;
+import com.wilsonkeh.loginmanagement.dto.DeadLetterReplayRequest;
+import com.wilsonkeh.loginmanagement.dto.DeadLetterReplayResponse;
+import com.wilsonkeh.loginmanagement.service.DeadLetterService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 死信队列控制器
+ * 查看处理失败的任务，故障修复后批量重放
+ * 注意：生产环境建议添加权限控制
+ */
+@RestController
+@RequestMapping("/api/dead-letters")
+public class DeadLetterController {
+
+    @Autowired
+    private DeadLetterService deadLetterService;
+
+    /**
+     * 分页查询死信，按首次失败时间从早到晚排序
+     */
+    @GetMapping
+    public ResponseEntity<ApiResponse<DeadLetterPageResponse>> getDeadLetters(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String source) {
+        try {
+            DeadLetterPageResponse response = deadLetterService.getDeadLetters(page, size, source);
+            return ResponseEntity.ok(ApiResponse.success("获取死信列表成功", response));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * 获取死信数量
+     */
+    @GetMapping("/count")
+    public ResponseEntity<ApiResponse<Integer>> getDeadLetterCount(@RequestParam(required = false) String source) {
+        try {
+            int count = deadLetterService.getDeadLetterCount(source);
+            return ResponseEntity.ok(ApiResponse.success("获取死信数量成功", count));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * 批量重放死信
+     * 请求体为空时重放全部死信
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<ApiResponse<DeadLetterReplayResponse>> replay(
+            @RequestBody(required = false) DeadLetterReplayRequest request) {
+        try {
+            DeadLetterReplayResponse response = deadLetterService.replay(request);
+            return ResponseEntity.ok(ApiResponse.success("死信重放完成", response));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * 删除指定任务的死信
+     */
+    @DeleteMapping
+    public ResponseEntity<ApiResponse<Integer>> purge(@RequestParam List<String> taskIds) {
+        try {
+            int removed = deadLetterService.purge(taskIds);
+            return ResponseEntity.ok(ApiResponse.success("删除死信成功", removed));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        }
+    }
+}
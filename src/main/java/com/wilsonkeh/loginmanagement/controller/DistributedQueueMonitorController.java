@@ -147,7 +147,7 @@ public class DistributedQueueMonitorController {
     @DeleteMapping("/clear")
     public ResponseEntity<ApiResponse<String>> clearQueue() {
         try {
-            distributedTaskQueueManager.getDistributedQueue().clear();
+            distributedTaskQueueManager.clearQueue();
             return ResponseEntity.ok(new ApiResponse<>("SUCCESS", "Distributed queue cleared successfully", "Queue cleared"));
         } catch (Exception e) {
             log.error("Failed to clear distributed queue: {}", e.getMessage(), e);
@@ -1,21 +1,40 @@
 package com.wilsonkeh.loginmanagement.controller;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.wilsonkeh.loginmanagement.dto.ApiResponse;
+import com.wilsonkeh.loginmanagement.dto.BatchIngestResponse;
 import com.wilsonkeh.loginmanagement.dto.LoginRecordRequest;
 import com.wilsonkeh.loginmanagement.dto.LoginRecordResponse;
 import com.wilsonkeh.loginmanagement.dto.UserSecurityAnalysisResponse;
+import com.wilsonkeh.loginmanagement.queue.LoginRecordTask;
+import com.wilsonkeh.loginmanagement.queue.OfferResult;
 import com.wilsonkeh.loginmanagement.service.LoginRecordService;
 import com.wilsonkeh.loginmanagement.service.LoginRecordQueueService;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 
 @RestController
 @RequestMapping("/api/login-records")
@@ -27,24 +46,200 @@ public class LoginRecordController {
     @Autowired
     private LoginRecordQueueService loginRecordQueueService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private static final String QUEUE_FULL_REASON = "队列已满";
+    private static final String DUPLICATE_REASON = "重复任务";
+    private static final String ENQUEUE_FAILED_REASON = "入队失败";
+    private static final String INVALID_REASON = "记录无效";
+
+    @Value("${app.queue.ingest.chunk-size:500}")
+    private int ingestChunkSize;
+
+    @Value("${app.queue.ingest.max-listed-rejections:100}")
+    private int maxListedRejections;
+
+    /**
+     * 接收单条登录记录
+     * 可选的priority参数只能在默认和最低优先级之间取值，用于回填等可以延后处理的记录；
+     * 高于默认的优先级保留给服务端分配，调用方不能借此插队
+     */
     @PostMapping
-    public ResponseEntity<ApiResponse<Void>> createLoginRecord(@Valid @RequestBody LoginRecordRequest request) {
+    public ResponseEntity<ApiResponse<Void>> createLoginRecord(
+            @Valid @RequestBody LoginRecordRequest request,
+            @RequestParam(required = false)
+            @Min(value = LoginRecordTask.DEFAULT_PRIORITY, message = "priority不能高于默认优先级" + LoginRecordTask.DEFAULT_PRIORITY)
+            @Max(value = LoginRecordTask.LOWEST_PRIORITY, message = "priority不能低于最低优先级" + LoginRecordTask.LOWEST_PRIORITY)
+            Integer priority) {
         try {
-            // 将请求加入队列，立即返回成功响应
-            boolean success = loginRecordQueueService.enqueueLoginRecord(request);
+            // 将请求加入队列，立即返回成功响应；可选的priority参数数字越小越优先处理
+            boolean success = priority == null
+                    ? loginRecordQueueService.enqueueLoginRecord(request)
+                    : loginRecordQueueService.enqueueLoginRecord(request, priority);
             if (success) {
                 return ResponseEntity.status(HttpStatus.ACCEPTED)
                         .body(ApiResponse.success("登录记录请求已接受，正在处理中", null));
             } else {
+                long retryAfterSeconds = loginRecordQueueService.getRetryAfterSeconds();
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                        .body(ApiResponse.error("队列已满，请在" + retryAfterSeconds + "秒后重试"));
+            }
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * 批量接收登录记录，请求体为NDJSON或JSON数组
+     * 记录逐条流式解析并按块入队，不在内存中保留完整请求体；成功入队的记录只计数，
+     * 响应中只逐条列出序号最小的若干条被拒绝记录，其余按原因计数，内存占用与批次大小无关
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ApiResponse<BatchIngestResponse>> createLoginRecordsBatch(InputStream body) {
+        try {
+            IngestTally tally = new IngestTally(maxListedRejections);
+            List<LoginRecordRequest> chunk = new ArrayList<>(ingestChunkSize);
+            List<Integer> chunkIndexes = new ArrayList<>(ingestChunkSize);
+            String parseError = null;
+            int index = 0;
+
+            try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_ARRAY) {
+                    token = parser.nextToken();
+                }
+                while (token != null && token != JsonToken.END_ARRAY) {
+                    if (token != JsonToken.START_OBJECT) {
+                        parseError = "第" + index + "条记录不是JSON对象";
+                        break;
+                    }
+                    JsonNode node = objectMapper.readTree(parser);
+                    try {
+                        chunk.add(objectMapper.treeToValue(node, LoginRecordRequest.class));
+                        chunkIndexes.add(index);
+                    } catch (Exception e) {
+                        tally.reject(index, node.path("traceId").asText(null), INVALID_REASON, rootCauseMessage(e));
+                    }
+                    index++;
+
+                    if (chunk.size() >= ingestChunkSize) {
+                        enqueueChunk(chunk, chunkIndexes, tally);
+                    }
+                    token = parser.nextToken();
+                }
+            } catch (IOException e) {
+                parseError = "请求体在第" + index + "条记录处解析失败: " + e.getMessage();
+            }
+            enqueueChunk(chunk, chunkIndexes, tally);
+
+            BatchIngestResponse response = tally.toResponse();
+            int accepted = response.acceptedRecords();
+
+            if (parseError != null) {
+                return ResponseEntity.status(accepted > 0 ? HttpStatus.ACCEPTED : HttpStatus.BAD_REQUEST)
+                        .body(new ApiResponse<>("ERROR", parseError, response));
+            }
+            if (response.totalRecords() == 0) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(ApiResponse.error("请求体中没有登录记录"));
+            }
+            // 只有容量不足时才提示稍后重试，重复任务（如网关重发已投递的批次）重试也不会被接受
+            if (accepted == 0 && tally.queueFull > 0) {
+                long retryAfterSeconds = loginRecordQueueService.getRetryAfterSeconds();
                 return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
-                        .body(ApiResponse.error("队列已满，请稍后重试"));
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                        .body(new ApiResponse<>("ERROR", "队列已满，请在" + retryAfterSeconds + "秒后重试", response));
             }
+            return ResponseEntity.status(accepted > 0 ? HttpStatus.ACCEPTED : HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.success("批量登录记录请求已处理，接受: " + accepted + ", 拒绝: " + response.rejectedRecords(), response));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(ApiResponse.error(e.getMessage()));
         }
     }
 
+    /**
+     * 将已解析的记录块批量入队并计入结果，随后清空块
+     */
+    private void enqueueChunk(List<LoginRecordRequest> chunk, List<Integer> chunkIndexes, IngestTally tally) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<OfferResult> results = loginRecordQueueService.enqueueLoginRecords(chunk);
+        for (int i = 0; i < chunk.size(); i++) {
+            OfferResult result = results.get(i);
+            if (result.isAccepted()) {
+                tally.accepted++;
+            } else {
+                if (result == OfferResult.QUEUE_FULL) {
+                    tally.queueFull++;
+                }
+                String reason = rejectReason(result);
+                tally.reject(chunkIndexes.get(i), chunk.get(i).traceId(), reason, reason);
+            }
+        }
+        chunk.clear();
+        chunkIndexes.clear();
+    }
+
+    private static String rejectReason(OfferResult result) {
+        return switch (result) {
+            case DUPLICATE -> DUPLICATE_REASON;
+            case QUEUE_FULL -> QUEUE_FULL_REASON;
+            default -> ENQUEUE_FAILED_REASON;
+        };
+    }
+
+    private String rootCauseMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+
+    /**
+     * 批量入队的计数和被拒绝记录
+     * 被拒绝记录只保留序号最小的 maxListed 条，其余只计数，整批被拒绝时内存占用也有上限
+     */
+    private static final class IngestTally {
+        private final int maxListed;
+        private int accepted;
+        private int queueFull;
+        private int rejected;
+        private final Map<String, Integer> rejectionCounts = new LinkedHashMap<>();
+        // 解析失败的记录立即计入，而所在块的其他记录入队后才计入，到达顺序不是序号顺序；
+        // 按序号倒序的堆，超过上限时淘汰序号最大的一条
+        private final PriorityQueue<BatchIngestResponse.ItemResult> listed = new PriorityQueue<>(
+                Comparator.comparingInt(BatchIngestResponse.ItemResult::index).reversed());
+
+        IngestTally(int maxListed) {
+            this.maxListed = Math.max(0, maxListed);
+        }
+
+        /**
+         * @param category 计数使用的原因分类
+         * @param reason 逐条列出时的具体原因
+         */
+        void reject(int index, String traceId, String category, String reason) {
+            rejected++;
+            rejectionCounts.merge(category, 1, Integer::sum);
+            listed.offer(new BatchIngestResponse.ItemResult(index, traceId, reason));
+            if (listed.size() > maxListed) {
+                listed.poll();
+            }
+        }
+
+        BatchIngestResponse toResponse() {
+            List<BatchIngestResponse.ItemResult> rejections = new ArrayList<>(listed);
+            rejections.sort(Comparator.comparingInt(BatchIngestResponse.ItemResult::index));
+            return new BatchIngestResponse(accepted + rejected, accepted, rejected, rejectionCounts, rejections);
+        }
+    }
+
     @GetMapping("/user/{uid}")
     public ResponseEntity<ApiResponse<Page<LoginRecordResponse>>> getUserRecentLoginRecords(
             @PathVariable String uid,
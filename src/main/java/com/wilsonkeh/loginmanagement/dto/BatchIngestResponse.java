@@ -0,0 +1,27 @@
+package com.wilsonkeh.loginmanagement.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量登录记录入队结果
+ * 成功入队的记录只计数，被拒绝的记录只逐条列出序号最小的若干条，其余只按原因计数，
+ * 响应大小与批次大小和被拒绝的记录数都无关
+ */
+public record BatchIngestResponse(
+    int totalRecords,          // 解析到的记录总数
+    int acceptedRecords,       // 成功入队的记录数
+    int rejectedRecords,       // 被拒绝的记录数
+    Map<String, Integer> rejectionCounts, // 被拒绝记录按原因分类的计数，包括未逐条列出的记录
+    List<ItemResult> rejections // 序号最小的若干条被拒绝记录的结果，按记录在请求中的顺序排列
+) {
+    /**
+     * 单条被拒绝记录的结果
+     */
+    public record ItemResult(
+        int index,             // 记录在请求体中的序号（从0开始）
+        String traceId,        // 记录的Trace ID（解析失败时可能为空）
+        String reason          // 拒绝原因
+    ) {
+    }
+}
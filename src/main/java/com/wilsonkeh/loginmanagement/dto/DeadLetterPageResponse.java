@@ -0,0 +1,49 @@
+package com.wilsonkeh.loginmanagement.dto;
+
+import com.wilsonkeh.loginmanagement.queue.deadletter.DeadLetter;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * 死信分页查询结果
+ */
+public record DeadLetterPageResponse(
+    int page,                  // 页码（从0开始）
+    int size,                  // 每页数量
+    int totalLetters,          // 符合条件的死信总数
+    List<Item> items           // 本页死信，按首次失败时间从早到晚排序
+) {
+    /**
+     * 单条死信
+     */
+    public record Item(
+        String taskId,
+        String taskType,
+        String source,         // 本地队列名或 distributed
+        String reason,         // 最后一次失败原因
+        int attempts,          // 累计失败次数
+        LocalDateTime firstFailedAt,
+        LocalDateTime lastFailedAt,
+        Object data            // 任务数据
+    ) {
+        public static Item fromDeadLetter(DeadLetter letter) {
+            return new Item(
+                letter.getTaskId(),
+                letter.getTask().getTaskType(),
+                letter.getSource(),
+                letter.getReason(),
+                letter.getAttempts(),
+                toLocalDateTime(letter.getFirstFailedAt()),
+                toLocalDateTime(letter.getLastFailedAt()),
+                letter.getTask().getData()
+            );
+        }
+
+        private static LocalDateTime toLocalDateTime(long epochMillis) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.wilsonkeh.loginmanagement.dto;
+
+import java.util.List;
+
+/**
+ * 死信重放请求
+ * 指定 taskIds 时重放这些任务，否则按首次失败时间从早到晚重放至多 limit 条（可按来源过滤）
+ */
+public record DeadLetterReplayRequest(
+    List<String> taskIds,      // 要重放的任务ID，为空时按条件选择
+    String source,             // 只重放该来源的死信，为空时不限来源
+    Integer limit              // 按条件选择时最多重放的数量，为空时重放全部
+) {
+}
@@ -0,0 +1,12 @@
+package com.wilsonkeh.loginmanagement.dto;
+
+/**
+ * 死信重放结果
+ */
+public record DeadLetterReplayResponse(
+    int selectedLetters,       // 选中的死信数
+    int replayedLetters,       // 重新入队并已从死信队列删除的数量
+    int rejectedLetters,       // 队列已满或重复而未能入队的数量，仍保留在死信队列
+    int remainingLetters       // 重放后剩余的死信数（按来源过滤时只统计该来源）
+) {
+}
@@ -0,0 +1,18 @@
+package com.wilsonkeh.loginmanagement.dto;
+
+/**
+ * 单条登录记录的写入结果
+ */
+public record LoginRecordWriteResult(
+    String traceId,               // 记录的Trace ID
+    boolean inserted,             // true表示本次写入，false表示traceId已存在而跳过
+    LoginRecordResponse record    // 写入的记录，跳过时为空
+) {
+    public static LoginRecordWriteResult inserted(String traceId, LoginRecordResponse record) {
+        return new LoginRecordWriteResult(traceId, true, record);
+    }
+
+    public static LoginRecordWriteResult duplicate(String traceId) {
+        return new LoginRecordWriteResult(traceId, false, null);
+    }
+}
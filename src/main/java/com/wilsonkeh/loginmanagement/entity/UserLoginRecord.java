@@ -23,9 +23,15 @@ import java.util.UUID;
 @Data
 public class UserLoginRecord {
 
+    // 主键序列名和每次取号预留的主键数，COPY 批量写入按同样的规则自行分配主键
+    public static final String ID_SEQUENCE_NAME = "user_login_record_id_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // 池化序列：每次取号预留50个主键，与 hibernate.jdbc.batch_size 一致，一个插入批次最多一次取号；
+    // 数据库序列的步长必须同为50（ALTER SEQUENCE user_login_record_id_seq INCREMENT BY 50）
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_login_record_seq")
-    @SequenceGenerator(name = "user_login_record_seq", sequenceName = "user_login_record_id_seq", allocationSize = 1)
+    @SequenceGenerator(name = "user_login_record_seq", sequenceName = ID_SEQUENCE_NAME, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     // 替代方案：使用UUID作为主键（取消注释下面的代码并注释上面的ID字段）
@@ -96,6 +96,20 @@ public class UserSecurityAnalysis {
     private LocalDateTime updatedAt;
 
     public enum RiskLevel {
-        LOW, MEDIUM, HIGH, CRITICAL
+        LOW, MEDIUM, HIGH, CRITICAL;
+
+        /**
+         * 按最高风险评分确定风险等级
+         */
+        public static RiskLevel fromMaxRiskScore(Integer maxRiskScore) {
+            if (maxRiskScore != null && maxRiskScore > 80) {
+                return CRITICAL;
+            } else if (maxRiskScore != null && maxRiskScore > 60) {
+                return HIGH;
+            } else if (maxRiskScore != null && maxRiskScore > 30) {
+                return MEDIUM;
+            }
+            return LOW;
+        }
     }
 } 
\ No newline at end of file
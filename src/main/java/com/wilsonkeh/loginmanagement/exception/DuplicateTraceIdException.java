@@ -0,0 +1,14 @@
+package com.wilsonkeh.loginmanagement.exception;
+
+/**
+ * Trace ID已存在
+ * 队列任务重新投递或从死信重放时，之前的一次投递可能已经写入，遇到该异常说明记录已存在，可视为处理完成
+ */
+public class DuplicateTraceIdException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DuplicateTraceIdException(String message) {
+        super(message);
+    }
+}
@@ -69,6 +69,7 @@ public class QueueMetrics {
         // 仪表指标
         private final Gauge queueSizeGauge;
         private final Gauge queueCapacityGauge;
+        private final Gauge currentBatchSizeGauge;
 
         public QueueMetricSet(String queueName, MeterRegistry meterRegistry) {
             this.queueName = queueName;
@@ -120,11 +121,17 @@ public class QueueMetrics {
                     .tag("queue", queueName)
                     .description("Queue capacity")
                     .register(meterRegistry);
+
+            this.currentBatchSizeGauge = Gauge.builder("queue.batch.size.current", this::getCurrentBatchSize)
+                    .tag("queue", queueName)
+                    .description("Current batch size chosen by the adaptive batch sizer")
+                    .register(meterRegistry);
         }
 
         // 更新队列大小的方法
         private int currentQueueSize = 0;
         private int currentQueueCapacity = 10000;
+        private volatile int currentBatchSize = 0;
 
         public void setQueueSize(int size) {
             this.currentQueueSize = size;
@@ -142,6 +149,14 @@ public class QueueMetrics {
             return currentQueueCapacity;
         }
 
+        public void setCurrentBatchSize(int batchSize) {
+            this.currentBatchSize = batchSize;
+        }
+
+        private double getCurrentBatchSize() {
+            return currentBatchSize;
+        }
+
         // 记录任务入队
         public void recordTaskEnqueued() {
             tasksEnqueuedCounter.increment();
@@ -181,8 +196,11 @@ public class QueueMetrics {
             return Timer.start(meterRegistry);
         }
 
-        public void stopBatchProcessingTimer(Timer.Sample sample) {
-            sample.stop(batchProcessingTimer);
+        /**
+         * @return 本批处理耗时（纳秒）
+         */
+        public long stopBatchProcessingTimer(Timer.Sample sample) {
+            return sample.stop(batchProcessingTimer);
         }
 
         // 移除所有指标
@@ -196,6 +214,7 @@ public class QueueMetrics {
             meterRegistry.remove(batchProcessingTimer);
             meterRegistry.remove(queueSizeGauge);
             meterRegistry.remove(queueCapacityGauge);
+            meterRegistry.remove(currentBatchSizeGauge);
         }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,96 @@
+package com.wilsonkeh.loginmanagement.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 用户安全分析重新计算指标
+ * 合并比（计入的登录数 / 重新计算次数）反映防抖合并的效果，滞后时间为用户第一次被标记到安全分析重新计算完成的时长
+ */
+@Component
+public class SecurityAnalysisMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    private final Counter loginsMarkedCounter;
+    private final Counter recomputationsCounter;
+    private final Counter recomputeFailuresCounter;
+    private final Timer stalenessTimer;
+    private final Timer recomputeTimer;
+
+    public SecurityAnalysisMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+
+        this.loginsMarkedCounter = Counter.builder("security.analysis.logins.marked")
+                .description("Number of logins that marked a user for security analysis recomputation")
+                .register(meterRegistry);
+
+        this.recomputationsCounter = Counter.builder("security.analysis.recomputations")
+                .description("Number of security analysis recomputations")
+                .register(meterRegistry);
+
+        this.recomputeFailuresCounter = Counter.builder("security.analysis.recompute.failures")
+                .description("Number of failed security analysis recomputations")
+                .register(meterRegistry);
+
+        this.stalenessTimer = Timer.builder("security.analysis.staleness")
+                .description("Time from the first login of a burst until the security analysis is recomputed")
+                .register(meterRegistry);
+
+        this.recomputeTimer = Timer.builder("security.analysis.recompute.time")
+                .description("Time taken to recompute the security analysis of one user")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 注册合并比仪表；仪表持有本实例，放在构造完成之后注册，避免指标采集线程看到未构造完成的实例
+     */
+    @PostConstruct
+    public void registerGauges() {
+        Gauge.builder("security.analysis.coalescing.ratio", this::getCoalescingRatio)
+                .description("Logins per security analysis recomputation")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 注册待重新计算用户数的仪表
+     */
+    public void registerDirtyUidsGauge(Supplier<Number> dirtyUids) {
+        Gauge.builder("security.analysis.dirty.uids", dirtyUids)
+                .description("Number of users waiting for security analysis recomputation")
+                .register(meterRegistry);
+    }
+
+    // 记录用户被标记
+    public void recordLoginsMarked(int logins) {
+        loginsMarkedCounter.increment(logins);
+    }
+
+    /**
+     * 记录一次重新计算
+     * @param stalenessNanos 第一次标记到重新计算完成的时长
+     * @param recomputeNanos 重新计算本身的耗时
+     */
+    public void recordRecomputation(long stalenessNanos, long recomputeNanos) {
+        recomputationsCounter.increment();
+        stalenessTimer.record(stalenessNanos, TimeUnit.NANOSECONDS);
+        recomputeTimer.record(recomputeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // 记录重新计算失败
+    public void recordRecomputeFailure() {
+        recomputeFailuresCounter.increment();
+    }
+
+    public double getCoalescingRatio() {
+        double recomputations = recomputationsCounter.count();
+        return recomputations > 0 ? loginsMarkedCounter.count() / recomputations : 0;
+    }
+}
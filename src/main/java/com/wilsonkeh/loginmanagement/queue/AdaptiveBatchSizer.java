@@ -0,0 +1,89 @@
+package com.wilsonkeh.loginmanagement.queue;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自适应批大小控制器（AIMD）
+ * 每收集 windowSize 个批次的处理耗时计算一次 p95：
+ * p95 低于目标且批次大多已填满时加性增大批大小，p95 超过目标时乘性减小，
+ * 使批大小随数据库延迟变化自动调整，并限制在 [minBatchSize, maxBatchSize] 之间
+ */
+public class AdaptiveBatchSizer {
+
+    public static final int DEFAULT_WINDOW_SIZE = 20;
+    private static final double DECREASE_FACTOR = 0.5;
+
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long targetLatencyNanos;
+    private final int additiveIncrease;
+
+    // 当前窗口内的批次耗时与填满的批次数
+    private final long[] latencyWindow;
+    private int windowCount;
+    private int fullBatches;
+
+    private volatile int currentBatchSize;
+
+    /**
+     * @param initialBatchSize 初始批大小
+     * @param minBatchSize 批大小下限
+     * @param maxBatchSize 批大小上限
+     * @param targetLatencyMs 单批处理耗时 p95 的目标值（毫秒）
+     * @param windowSize 每次调整所依据的批次数
+     */
+    public AdaptiveBatchSizer(int initialBatchSize, int minBatchSize, int maxBatchSize,
+                              long targetLatencyMs, int windowSize) {
+        this.minBatchSize = Math.max(1, minBatchSize);
+        this.maxBatchSize = Math.max(this.minBatchSize, maxBatchSize);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+        this.additiveIncrease = Math.max(1, (this.maxBatchSize - this.minBatchSize) / 20);
+        this.latencyWindow = new long[Math.max(1, windowSize)];
+        this.currentBatchSize = clamp(initialBatchSize);
+    }
+
+    /**
+     * 获取当前批大小
+     */
+    public int getCurrentBatchSize() {
+        return currentBatchSize;
+    }
+
+    /**
+     * 记录一个批次的处理结果，窗口满时调整批大小
+     * @param batchSize 本批任务数
+     * @param latencyNanos 本批处理耗时（纳秒）
+     */
+    public synchronized void record(int batchSize, long latencyNanos) {
+        latencyWindow[windowCount++] = latencyNanos;
+        if (batchSize >= currentBatchSize) {
+            fullBatches++;
+        }
+        if (windowCount < latencyWindow.length) {
+            return;
+        }
+
+        long p95 = percentile(0.95);
+        if (p95 > targetLatencyNanos) {
+            // 数据库变慢，乘性减小
+            currentBatchSize = clamp((int) (currentBatchSize * DECREASE_FACTOR));
+        } else if (fullBatches * 2 >= windowCount) {
+            // 延迟有余量且批次确实受限于批大小时才加性增大，避免低负载时无依据地增长
+            currentBatchSize = clamp(currentBatchSize + additiveIncrease);
+        }
+        windowCount = 0;
+        fullBatches = 0;
+    }
+
+    private long percentile(double quantile) {
+        long[] sorted = Arrays.copyOf(latencyWindow, windowCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    private int clamp(int batchSize) {
+        return Math.max(minBatchSize, Math.min(maxBatchSize, batchSize));
+    }
+}
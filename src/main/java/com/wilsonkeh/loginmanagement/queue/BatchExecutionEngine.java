@@ -0,0 +1,213 @@
+package com.wilsonkeh.loginmanagement.queue;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批处理并行执行引擎
+ * 所有队列共享同一个长期存在的固定线程数线程池（parallelBatchProcessorExecutor），
+ * 每个队列拥有固定数量的串行 lane，每个 lane 是并发配额为1的配额执行器：
+ * 同一 lane 的子任务按提交顺序逐个执行，队列占用共享线程池的并发数不超过 lane 数，
+ * 也不再为每个批次创建和销毁线程池。
+ * 一个批次按分区键拆分到各 lane 后，每个 lane 的处理结果单独返回，失败的 lane 不影响已经成功提交的 lane
+ */
+@Slf4j
+@Component
+public class BatchExecutionEngine {
+
+    @Autowired
+    @Qualifier("parallelBatchProcessorExecutor")
+    private Executor sharedExecutor;
+
+    private final Map<String, QuotaExecutor[]> queueLanes = new ConcurrentHashMap<>();
+
+    /**
+     * 获取指定队列的串行 lane 执行器，同一队列多次调用返回同一组实例
+     * @param queueName 队列名称
+     * @param laneCount lane 数，即该队列在共享线程池中同时运行的子任务上限
+     */
+    public Executor[] getLaneExecutors(String queueName, int laneCount) {
+        return queueLanes.computeIfAbsent(queueName, name -> {
+            int lanes = Math.max(1, laneCount);
+            log.info("创建队列并行处理lane，queueName: {}, lane数: {}", name, lanes);
+            QuotaExecutor[] executors = new QuotaExecutor[lanes];
+            for (int i = 0; i < lanes; i++) {
+                executors[i] = new QuotaExecutor(sharedExecutor, 1);
+            }
+            return executors;
+        });
+    }
+
+    /**
+     * 按分区键把任务拆分到各 lane 并行处理，等待全部 lane 结束后返回每个 lane 的结果
+     * 同一分区键的任务总是路由到同一个 lane，lane 内保持入队顺序；只有一个 lane 或一个任务时在当前线程处理
+     * @param tasks 任务列表
+     * @param lanes 串行 lane 执行器
+     * @param handler 单个 lane 的处理逻辑
+     * @return 每个非空 lane 的处理结果，顺序与 lane 序号一致
+     */
+    public static <T> List<LaneOutcome<T>> processInLanes(List<Task<T>> tasks, Executor[] lanes, LaneHandler<T> handler) {
+        if (tasks == null || tasks.isEmpty()) {
+            return List.of();
+        }
+        if (lanes.length <= 1 || tasks.size() == 1) {
+            return List.of(runLane(tasks, handler));
+        }
+
+        List<List<Task<T>>> laneTasks = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            laneTasks.add(new ArrayList<>());
+        }
+        for (Task<T> task : tasks) {
+            laneTasks.get(TaskProcessor.laneOf(task, lanes.length)).add(task);
+        }
+
+        List<CompletableFuture<LaneOutcome<T>>> futures = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            List<Task<T>> lane = laneTasks.get(i);
+            if (!lane.isEmpty()) {
+                futures.add(CompletableFuture.supplyAsync(() -> runLane(lane, handler), lanes[i]));
+            }
+        }
+
+        List<LaneOutcome<T>> outcomes = new ArrayList<>(futures.size());
+        for (CompletableFuture<LaneOutcome<T>> future : futures) {
+            // runLane 不会抛出异常，join 只等待 lane 结束
+            outcomes.add(future.join());
+        }
+        return outcomes;
+    }
+
+    private static <T> LaneOutcome<T> runLane(List<Task<T>> tasks, LaneHandler<T> handler) {
+        try {
+            handler.process(tasks);
+            return new LaneOutcome<>(tasks, null);
+        } catch (Exception e) {
+            return new LaneOutcome<>(tasks, e);
+        }
+    }
+
+    /**
+     * 单个 lane 的处理逻辑
+     */
+    @FunctionalInterface
+    public interface LaneHandler<T> {
+        void process(List<Task<T>> tasks) throws Exception;
+    }
+
+    /**
+     * 单个 lane 的处理结果
+     * @param tasks 该 lane 的任务，保持入队顺序
+     * @param failure 处理失败时的异常，成功时为null
+     */
+    public record LaneOutcome<T>(List<Task<T>> tasks, Exception failure) {
+
+        public boolean succeeded() {
+            return failure == null;
+        }
+    }
+
+    /**
+     * 获取指定队列当前运行中的子任务数
+     */
+    public int getActiveCount(String queueName) {
+        QuotaExecutor[] lanes = queueLanes.get(queueName);
+        if (lanes == null) {
+            return 0;
+        }
+        int active = 0;
+        for (QuotaExecutor lane : lanes) {
+            active += lane.getActiveCount();
+        }
+        return active;
+    }
+
+    /**
+     * 并发配额执行器
+     * 最多向共享线程池提交 maxConcurrency 个工作任务，每个工作任务在同一线程中依次执行本地队列中的子任务，
+     * 队列为空时归还配额后退出。子任务结束后不会在共享线程池的线程内再次提交，
+     * 因此共享线程池的 execute 即使在并发达到上限时阻塞，也不会阻塞持有该并发名额的线程自身
+     */
+    static class QuotaExecutor implements Executor {
+        private final Executor delegate;
+        private final int maxConcurrency;
+        private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger active = new AtomicInteger(0);
+
+        QuotaExecutor(Executor delegate, int maxConcurrency) {
+            this.delegate = delegate;
+            this.maxConcurrency = Math.max(1, maxConcurrency);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            pending.offer(command);
+            dispatch();
+        }
+
+        int getActiveCount() {
+            return active.get();
+        }
+
+        /**
+         * 有待执行的子任务且配额未用完时启动工作任务，只由提交子任务的线程调用
+         */
+        private void dispatch() {
+            while (!pending.isEmpty() && tryAcquire()) {
+                try {
+                    delegate.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // 共享线程池拒绝时由当前线程执行，保证子任务不会丢失
+                    drain();
+                }
+            }
+        }
+
+        /**
+         * 工作任务：依次执行待执行的子任务，队列为空时归还配额；
+         * 归还后重新检查，避免与刚入队但因配额已满未启动工作任务的子任务错过
+         */
+        private void drain() {
+            while (true) {
+                Runnable next = pending.poll();
+                if (next == null) {
+                    active.decrementAndGet();
+                    if (pending.isEmpty() || !tryAcquire()) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    next.run();
+                } catch (RuntimeException e) {
+                    log.error("并行处理子任务执行失败: {}", e.getMessage(), e);
+                }
+            }
+        }
+
+        private boolean tryAcquire() {
+            while (true) {
+                int current = active.get();
+                if (current >= maxConcurrency) {
+                    return false;
+                }
+                if (active.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
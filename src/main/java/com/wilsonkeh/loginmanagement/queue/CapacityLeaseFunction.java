@@ -0,0 +1,69 @@
+package com.wilsonkeh.loginmanagement.queue;
+
+import com.hazelcast.core.IFunction;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+
+import java.io.IOException;
+
+/**
+ * 容量许可租借函数
+ * 在集群计数器上原子调整已租出的许可数：delta 为正时租借，结果不超过总容量，
+ * 配合 IAtomicLong.getAndAlter 一次调用即可完成租借，调用方根据返回的旧值计算实际租到的许可数；
+ * delta 为负时归还，结果不低于0（计数器被重置后，旧许可的归还会被截断）
+ */
+public class CapacityLeaseFunction implements IFunction<Long, Long>, IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long delta;
+    private long capacity;
+
+    // 默认构造函数，用于Hazelcast序列化
+    public CapacityLeaseFunction() {
+    }
+
+    public CapacityLeaseFunction(long delta, long capacity) {
+        this.delta = delta;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public Long apply(Long leased) {
+        if (delta < 0) {
+            return Math.max(0, leased + delta);
+        }
+        return Math.max(leased, Math.min(leased + delta, capacity));
+    }
+
+    /**
+     * 根据租借前的计数计算实际租到的许可数
+     */
+    public long granted(long leasedBefore) {
+        return apply(leasedBefore) - leasedBefore;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return LoginRecordDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return LoginRecordDataSerializableFactory.CAPACITY_LEASE_FUNCTION_TYPE;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeLong(delta);
+        out.writeLong(capacity);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        delta = in.readLong();
+        capacity = in.readLong();
+    }
+}
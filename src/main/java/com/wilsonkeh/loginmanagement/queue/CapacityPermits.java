@@ -0,0 +1,319 @@
+package com.wilsonkeh.loginmanagement.queue;
+
+import com.hazelcast.cluster.MembershipEvent;
+import com.hazelcast.cluster.MembershipListener;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.cp.IAtomicLong;
+import com.hazelcast.map.IMap;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 集群容量许可
+ * 集群计数器记录已租给各成员的许可总数，上限为队列总容量；
+ * 每个成员按块租借许可放入本地许可池，入队时从本地池扣减，出队时归还本地池，
+ * 本地池超过高水位时才把多余的许可还给集群，常见路径上的准入控制不需要网络调用。
+ *
+ * 队列中的任务数不会超过总容量：每个任务都占用一个已从集群租出的许可。
+ * 代价是空闲许可可能滞留在其他成员的本地池中，每个成员至多 2 * leaseSize 个，
+ * 因此队列在达到总容量前最多提前 成员数 * 2 * leaseSize 个任务开始拒绝。
+ *
+ * {@link #start} 之后各成员定期把本地池大小发布到集群Map；成员崩溃时本地池中的许可无法归还，
+ * 由最老的成员按其最后发布的值还给集群，否则每次崩溃都会永久减少队列的总容量
+ */
+@Slf4j
+public class CapacityPermits {
+
+    // 集群容量已租满后暂停租借的时长，避免队列满时每次被拒绝的入队仍发起一次网络调用
+    private static final long EXHAUSTED_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    // 本地池发布间隔，崩溃成员的本地池按最后发布的值归还，误差为一个间隔内本地池的变化
+    private static final long PUBLISH_INTERVAL_MS = 1000;
+
+    private final IAtomicLong clusterLeased;
+    private final int capacity;
+    private final int leaseSize;
+    private final AtomicInteger localPermits = new AtomicInteger(0);
+    // 等待许可的线程数，归还许可时只有存在等待者才发出通知
+    private final AtomicInteger waiters = new AtomicInteger(0);
+    private final Object releaseMonitor = new Object();
+    private volatile long exhaustedAt = System.nanoTime() - EXHAUSTED_BACKOFF_NANOS;
+
+    // start 之后才有：各成员本地池的集群视图
+    private HazelcastInstance hazelcastInstance;
+    private IMap<String, Integer> localPools;
+    private String localMemberId;
+    private ScheduledExecutorService publisher;
+    private UUID membershipListenerId;
+    private volatile int publishedPermits = -1;
+
+    /**
+     * @param clusterLeased 记录已租出许可数的集群计数器
+     * @param capacity 总容量
+     * @param leaseSize 单次向集群租借的许可数
+     */
+    public CapacityPermits(IAtomicLong clusterLeased, int capacity, int leaseSize) {
+        this.clusterLeased = clusterLeased;
+        this.capacity = capacity;
+        this.leaseSize = Math.max(1, Math.min(leaseSize, capacity));
+    }
+
+    /**
+     * 开始定期发布本地池大小，并在成员离开集群时归还其本地池
+     * @param localPools 成员ID到本地池大小的集群Map
+     */
+    public void start(HazelcastInstance hazelcastInstance, IMap<String, Integer> localPools) {
+        this.hazelcastInstance = hazelcastInstance;
+        this.localPools = localPools;
+        this.localMemberId = hazelcastInstance.getCluster().getLocalMember().getUuid().toString();
+        this.publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CapacityPermitsPublisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        publisher.scheduleWithFixedDelay(this::publishLocalPermits, PUBLISH_INTERVAL_MS, PUBLISH_INTERVAL_MS,
+            TimeUnit.MILLISECONDS);
+        this.membershipListenerId = hazelcastInstance.getCluster().addMembershipListener(new MembershipListener() {
+            @Override
+            public void memberAdded(MembershipEvent event) {
+                // 新成员从空的本地池开始
+            }
+
+            @Override
+            public void memberRemoved(MembershipEvent event) {
+                if (event.getMembers().iterator().next().localMember()) {
+                    String member = event.getMember().getUuid().toString();
+                    publisher.execute(() -> reclaim(member));
+                }
+            }
+        });
+    }
+
+    /**
+     * 尝试获取 permits 个许可，本地池不足时向集群租借一块
+     * @return 实际获取的许可数，容量已满时小于 permits
+     */
+    public int tryAcquire(int permits) {
+        if (permits <= 0) {
+            return 0;
+        }
+        int acquired = takeLocal(permits);
+        if (acquired < permits) {
+            int missing = permits - acquired;
+            int leased = lease(Math.max(leaseSize, missing));
+            int used = Math.min(missing, leased);
+            acquired += used;
+            if (leased > used) {
+                localPermits.addAndGet(leased - used);
+            }
+        }
+        return acquired;
+    }
+
+    /**
+     * 最多等待 timeout 获取 permits 个许可
+     * 本成员归还许可时立即唤醒等待者，其他成员归还给集群的许可按租借退避间隔重新尝试租借；
+     * 等待期间被中断时恢复中断标记并返回已获取的许可数
+     * @return 实际获取的许可数，超时仍不足时小于 permits
+     */
+    public int tryAcquire(int permits, long timeout, TimeUnit unit) {
+        int acquired = tryAcquire(permits);
+        if (acquired >= permits || timeout <= 0) {
+            return acquired;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        waiters.incrementAndGet();
+        try {
+            while (acquired < permits) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                synchronized (releaseMonitor) {
+                    if (localPermits.get() == 0) {
+                        TimeUnit.NANOSECONDS.timedWait(releaseMonitor, Math.min(remaining, EXHAUSTED_BACKOFF_NANOS));
+                    }
+                }
+                acquired += tryAcquire(permits - acquired);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waiters.decrementAndGet();
+        }
+        return acquired;
+    }
+
+    /**
+     * 归还许可到本地池，超过高水位的部分还给集群
+     */
+    public void release(int permits) {
+        if (permits <= 0) {
+            return;
+        }
+        int available = localPermits.addAndGet(permits);
+        if (waiters.get() > 0) {
+            // 等待者优先使用归还的许可，暂不还给集群
+            synchronized (releaseMonitor) {
+                releaseMonitor.notifyAll();
+            }
+            return;
+        }
+        if (available > 2 * leaseSize) {
+            int excess = takeLocal(available - leaseSize);
+            returnToCluster(excess);
+        }
+    }
+
+    /**
+     * 清空队列后重置：丢弃本地池，集群计数器清零
+     * 其他成员本地池中的许可随之失效，它们在归还时会被截断为0
+     */
+    public void reset() {
+        localPermits.set(0);
+        publishedPermits = -1;
+        exhaustedAt = System.nanoTime() - EXHAUSTED_BACKOFF_NANOS;
+        try {
+            clusterLeased.set(0);
+        } catch (Exception e) {
+            log.error("重置集群容量许可失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 集群计数器为0而队列中已有任务时（整个集群重启后从队列存储恢复），以任务数初始化计数器
+     */
+    public void reconcile(int queuedTasks) {
+        if (queuedTasks <= 0) {
+            return;
+        }
+        try {
+            if (clusterLeased.compareAndSet(0, queuedTasks)) {
+                log.info("已按恢复的任务数初始化集群容量许可: {}", queuedTasks);
+            }
+        } catch (Exception e) {
+            log.error("初始化集群容量许可失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 关闭时把本地池中的许可还给集群
+     */
+    public void close() {
+        if (publisher != null) {
+            try {
+                hazelcastInstance.getCluster().removeMembershipListener(membershipListenerId);
+            } catch (Exception e) {
+                log.error("移除成员监听器失败: {}", e.getMessage(), e);
+            }
+            publisher.shutdown();
+        }
+        returnToCluster(localPermits.getAndSet(0));
+        if (localPools != null) {
+            try {
+                localPools.delete(localMemberId);
+            } catch (Exception e) {
+                log.error("删除本地容量许可池记录失败: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    public int getLocalPermits() {
+        return localPermits.get();
+    }
+
+    /**
+     * 获取正在等待许可的线程数
+     */
+    public int getWaiters() {
+        return waiters.get();
+    }
+
+    /**
+     * 获取集群已租出的许可数（含各成员本地池中的空闲许可）
+     */
+    public long getClusterLeased() {
+        try {
+            return clusterLeased.get();
+        } catch (Exception e) {
+            log.error("获取集群容量许可失败: {}", e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * 本地池有变化时发布到集群Map
+     */
+    private void publishLocalPermits() {
+        int permits = localPermits.get();
+        if (permits == publishedPermits) {
+            return;
+        }
+        try {
+            localPools.set(localMemberId, permits);
+            publishedPermits = permits;
+        } catch (Exception e) {
+            log.error("发布本地容量许可池失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 把离开集群的成员最后发布的本地池还给集群
+     */
+    private void reclaim(String member) {
+        try {
+            Integer pooled = localPools.remove(member);
+            if (pooled != null && pooled > 0) {
+                returnToCluster(pooled);
+                log.warn("成员 {} 已离开集群，归还其本地池中的容量许可: {}", member, pooled);
+            }
+        } catch (Exception e) {
+            log.error("归还成员 {} 的容量许可失败: {}", member, e.getMessage(), e);
+        }
+    }
+
+    private int takeLocal(int permits) {
+        while (true) {
+            int available = localPermits.get();
+            int taken = Math.min(available, permits);
+            if (taken <= 0 || localPermits.compareAndSet(available, available - taken)) {
+                return Math.max(0, taken);
+            }
+        }
+    }
+
+    private int lease(int permits) {
+        if (System.nanoTime() - exhaustedAt < EXHAUSTED_BACKOFF_NANOS) {
+            return 0;
+        }
+        try {
+            CapacityLeaseFunction function = new CapacityLeaseFunction(permits, capacity);
+            long before = clusterLeased.getAndAlter(function);
+            int granted = (int) function.granted(before);
+            if (granted == 0) {
+                exhaustedAt = System.nanoTime();
+            }
+            log.debug("向集群租借容量许可 - 申请: {}, 获得: {}", permits, granted);
+            return granted;
+        } catch (Exception e) {
+            log.error("租借集群容量许可失败: {}", e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    private void returnToCluster(int permits) {
+        if (permits <= 0) {
+            return;
+        }
+        try {
+            clusterLeased.alter(new CapacityLeaseFunction(-permits, capacity));
+            log.debug("归还容量许可给集群: {}", permits);
+        } catch (Exception e) {
+            log.error("归还集群容量许可失败: {}", e.getMessage(), e);
+        }
+    }
+}
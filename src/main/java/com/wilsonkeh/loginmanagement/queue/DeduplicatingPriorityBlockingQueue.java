@@ -1,19 +1,23 @@
 package com.wilsonkeh.loginmanagement.queue;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.PriorityBlockingQueue;
+import com.wilsonkeh.loginmanagement.queue.dedup.DeduplicationIndex;
+import com.wilsonkeh.loginmanagement.queue.storage.LinkedTaskStorage;
+import com.wilsonkeh.loginmanagement.queue.storage.TaskStorage;
+
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 /**
  * 支持去重的优先级阻塞队列
- * 使用 ConcurrentHashMap 进行高效的 O(1) 去重检查
+ * 使用基于64位哈希的分段开放寻址集合进行 O(1) 去重检查，任务存储后端可插拔（见 TaskStorage）
+ * 去重键按预留/提交/回滚协议维护，可选在出队后保留一段时间窗口（见 DeduplicationIndex）
  */
 public class DeduplicatingPriorityBlockingQueue<T> {
     
-    private final PriorityBlockingQueue<Task<T>> queue;
-    private final ConcurrentHashMap<String, Boolean> deduplicationMap;
+    private final TaskStorage<Task<T>> queue;
+    private final DeduplicationIndex deduplicationIndex;
     private final Function<Task<T>, String> deduplicationKeyExtractor;
     private final boolean enableDeduplication;
     private final int maxSize;
@@ -23,52 +27,121 @@ public class DeduplicatingPriorityBlockingQueue<T> {
     private final AtomicInteger totalDeduplicated = new AtomicInteger(0);
     private final AtomicInteger totalPolled = new AtomicInteger(0);
 
+    // 等待队列空间的入队线程，出队时只在有等待者时才唤醒
+    private final Object spaceMonitor = new Object();
+    private final AtomicInteger spaceWaiters = new AtomicInteger(0);
+
     public DeduplicatingPriorityBlockingQueue(int maxSize, boolean enableDeduplication, 
                                             Function<Task<T>, String> deduplicationKeyExtractor) {
-        // Use LinkedBlockingQueue instead of PriorityBlockingQueue since task ordering/prioritization is not required.
-        // If you do not need to sort tasks by priority, LinkedBlockingQueue is more appropriate and efficient.
-        // If you need FIFO (first-in, first-out) order, LinkedBlockingQueue guarantees this.
-        // If you want to support prioritization in the future, you can switch back to PriorityBlockingQueue.
-        this.queue = new java.util.concurrent.LinkedBlockingQueue<>(maxSize);
-        this.deduplicationMap = new ConcurrentHashMap<>();
+        this(maxSize, enableDeduplication, deduplicationKeyExtractor, new LinkedTaskStorage<>(maxSize));
+    }
+
+    public DeduplicatingPriorityBlockingQueue(int maxSize, boolean enableDeduplication,
+                                            Function<Task<T>, String> deduplicationKeyExtractor,
+                                            TaskStorage<Task<T>> storage) {
+        this(maxSize, enableDeduplication, deduplicationKeyExtractor, storage, false, 0);
+    }
+
+    /**
+     * @param verifyDeduplicationKeys 去重索引是否保存并校验完整键，关闭时仅比较64位哈希
+     * @param deduplicationWindowMs 任务出队后继续保留去重键的时长（毫秒），0表示出队即释放
+     */
+    public DeduplicatingPriorityBlockingQueue(int maxSize, boolean enableDeduplication,
+                                            Function<Task<T>, String> deduplicationKeyExtractor,
+                                            TaskStorage<Task<T>> storage, boolean verifyDeduplicationKeys,
+                                            long deduplicationWindowMs) {
+        this.queue = storage;
+        this.deduplicationIndex = new DeduplicationIndex(
+            enableDeduplication ? maxSize : 0, verifyDeduplicationKeys, deduplicationWindowMs);
         this.maxSize = maxSize;
         this.enableDeduplication = enableDeduplication;
         this.deduplicationKeyExtractor = deduplicationKeyExtractor;
     }
 
     /**
-     * 添加任务到队列，支持去重
+     * 添加任务到队列，支持去重，队列已满时立即拒绝
      */
     public boolean offer(Task<T> task) {
+        return offer(task, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 添加任务到队列，支持去重
+     * 队列已满时可丢弃任务立即拒绝，不可丢弃任务最多等待 timeout 直到有任务出队；
+     * 等待期间保持去重键预留，重复任务不等待。等待被中断时恢复中断标记并返回 false
+     */
+    public boolean offer(Task<T> task, long timeout, TimeUnit unit) {
+        return offerWithResult(task, timeout, unit).isAccepted();
+    }
+
+    /**
+     * 添加任务到队列，与 {@link #offer(Task, long, TimeUnit)} 相同，但区分重复任务和队列已满
+     */
+    public OfferResult offerWithResult(Task<T> task, long timeout, TimeUnit unit) {
         if (task == null) {
-            return false;
+            return OfferResult.FAILED;
         }
 
         totalOffered.incrementAndGet();
 
+        String deduplicationKey = null;
         if (enableDeduplication) {
-            String deduplicationKey = deduplicationKeyExtractor.apply(task);
+            deduplicationKey = deduplicationKeyExtractor.apply(task);
             
-            // 使用 ConcurrentHashMap 进行 O(1) 去重检查
-            Boolean existing = deduplicationMap.putIfAbsent(deduplicationKey, Boolean.TRUE);
-            if (existing != null) {
+            // 原子预留去重键，O(1) 去重检查
+            if (!deduplicationIndex.reserve(deduplicationKey)) {
                 totalDeduplicated.incrementAndGet();
-                return false; // 重复任务，拒绝添加
+                return OfferResult.DUPLICATE; // 重复任务，拒绝添加
             }
         }
 
-        // 检查队列大小
-        if (queue.size() >= maxSize) {
-            if (task.isDiscardable()) {
-                return false; // 可丢弃任务，直接拒绝
+        // 检查队列大小后添加新任务，队列已满时可丢弃任务直接拒绝，不可丢弃任务在超时内等待空间
+        boolean added = queue.size() < maxSize && queue.offer(task);
+        if (!added && !task.isDiscardable() && timeout > 0) {
+            added = awaitSpaceAndOffer(task, unit.toNanos(timeout));
+        }
+
+        if (deduplicationKey != null) {
+            if (added) {
+                deduplicationIndex.commit(deduplicationKey);
             } else {
-                // 不可丢弃任务，需要等待空间
-                return false;
+                // 未能入队时撤销预留，避免残留的键阻塞后续提交
+                deduplicationIndex.rollback(deduplicationKey);
+            }
+        }
+        return added ? OfferResult.ACCEPTED : OfferResult.QUEUE_FULL;
+    }
+
+    private boolean awaitSpaceAndOffer(Task<T> task, long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        spaceWaiters.incrementAndGet();
+        try {
+            while (true) {
+                synchronized (spaceMonitor) {
+                    if (queue.size() < maxSize && queue.offer(task)) {
+                        return true;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(spaceMonitor, remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            spaceWaiters.decrementAndGet();
+        }
+    }
+
+    private void signalSpace() {
+        if (spaceWaiters.get() > 0) {
+            synchronized (spaceMonitor) {
+                spaceMonitor.notifyAll();
             }
         }
-        
-        // 添加新任务
-        return queue.offer(task);
     }
 
     /**
@@ -78,10 +151,11 @@ public class DeduplicatingPriorityBlockingQueue<T> {
         Task<T> task = queue.take();
         if (task != null) {
             totalPolled.incrementAndGet();
-            // 从去重映射中移除已处理的任务
+            signalSpace();
+            // 释放已出队任务的去重键
             if (enableDeduplication) {
                 String deduplicationKey = deduplicationKeyExtractor.apply(task);
-                deduplicationMap.remove(deduplicationKey);
+                deduplicationIndex.release(deduplicationKey);
             }
         }
         return task;
@@ -94,10 +168,11 @@ public class DeduplicatingPriorityBlockingQueue<T> {
         Task<T> task = queue.poll();
         if (task != null) {
             totalPolled.incrementAndGet();
-            // 从去重映射中移除已处理的任务
+            signalSpace();
+            // 释放已出队任务的去重键
             if (enableDeduplication) {
                 String deduplicationKey = deduplicationKeyExtractor.apply(task);
-                deduplicationMap.remove(deduplicationKey);
+                deduplicationIndex.release(deduplicationKey);
             }
         }
         return task;
@@ -110,15 +185,36 @@ public class DeduplicatingPriorityBlockingQueue<T> {
         Task<T> task = queue.poll(timeout, unit);
         if (task != null) {
             totalPolled.incrementAndGet();
-            // 从去重映射中移除已处理的任务
+            signalSpace();
+            // 释放已出队任务的去重键
             if (enableDeduplication) {
                 String deduplicationKey = deduplicationKeyExtractor.apply(task);
-                deduplicationMap.remove(deduplicationKey);
+                deduplicationIndex.release(deduplicationKey);
             }
         }
         return task;
     }
 
+    /**
+     * 非阻塞式批量获取任务，最多取出 maxElements 个并追加到 target
+     * @return 实际取出的任务数量
+     */
+    public int drainTo(List<Task<T>> target, int maxElements) {
+        int start = target.size();
+        int drained = queue.drainTo(target, maxElements);
+        if (drained > 0) {
+            totalPolled.addAndGet(drained);
+            signalSpace();
+            // 释放已出队任务的去重键
+            if (enableDeduplication) {
+                for (int i = start; i < start + drained; i++) {
+                    deduplicationIndex.release(deduplicationKeyExtractor.apply(target.get(i)));
+                }
+            }
+        }
+        return drained;
+    }
+
     /**
      * 获取队列大小
      */
@@ -126,6 +222,13 @@ public class DeduplicatingPriorityBlockingQueue<T> {
         return queue.size();
     }
 
+    /**
+     * 获取正在等待队列空间的入队线程数
+     */
+    public int getSpaceWaiters() {
+        return spaceWaiters.get();
+    }
+
     /**
      * 检查队列是否为空
      */
@@ -139,8 +242,9 @@ public class DeduplicatingPriorityBlockingQueue<T> {
     public void clear() {
         queue.clear();
         if (enableDeduplication) {
-            deduplicationMap.clear();
+            deduplicationIndex.clear();
         }
+        signalSpace();
     }
 
     /**
@@ -149,10 +253,11 @@ public class DeduplicatingPriorityBlockingQueue<T> {
     public QueueStats getStats() {
         return new QueueStats(
             queue.size(),
-            deduplicationMap.size(),
+            deduplicationIndex.size(),
             totalOffered.get(),
             totalDeduplicated.get(),
-            totalPolled.get()
+            totalPolled.get(),
+            deduplicationIndex.estimatedMemoryBytes()
         );
     }
 
@@ -165,13 +270,20 @@ public class DeduplicatingPriorityBlockingQueue<T> {
         private final int totalOffered;
         private final int totalDeduplicated;
         private final int totalPolled;
+        private final long deduplicationMemoryBytes;
 
         public QueueStats(int currentSize, int deduplicationMapSize, int totalOffered, int totalDeduplicated, int totalPolled) {
+            this(currentSize, deduplicationMapSize, totalOffered, totalDeduplicated, totalPolled, 0);
+        }
+
+        public QueueStats(int currentSize, int deduplicationMapSize, int totalOffered, int totalDeduplicated, int totalPolled,
+                          long deduplicationMemoryBytes) {
             this.currentSize = currentSize;
             this.deduplicationMapSize = deduplicationMapSize;
             this.totalOffered = totalOffered;
             this.totalDeduplicated = totalDeduplicated;
             this.totalPolled = totalPolled;
+            this.deduplicationMemoryBytes = deduplicationMemoryBytes;
         }
 
         public int getCurrentSize() { return currentSize; }
@@ -179,5 +291,13 @@ public class DeduplicatingPriorityBlockingQueue<T> {
         public int getTotalOffered() { return totalOffered; }
         public int getTotalDeduplicated() { return totalDeduplicated; }
         public int getTotalPolled() { return totalPolled; }
+        public long getDeduplicationMemoryBytes() { return deduplicationMemoryBytes; }
+
+        /**
+         * 去重索引每个条目平均占用的内存（字节），包含空槽位的摊销
+         */
+        public double getDeduplicationBytesPerEntry() {
+            return deduplicationMapSize == 0 ? 0 : (double) deduplicationMemoryBytes / deduplicationMapSize;
+        }
     }
 } 
\ No newline at end of file
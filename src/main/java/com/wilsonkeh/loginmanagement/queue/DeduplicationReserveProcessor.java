@@ -0,0 +1,49 @@
+package com.wilsonkeh.loginmanagement.queue;
+
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+
+import java.util.Map;
+
+/**
+ * 分布式去重键预留处理器
+ * 在键所在的分区上原子执行 putIfAbsent 语义：键不存在时写入并返回true，已存在时返回false，
+ * 配合 IMap.executeOnKeys 可在一次调用内为多个键完成预留
+ */
+public class DeduplicationReserveProcessor
+        implements EntryProcessor<String, Boolean, Boolean>, IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Boolean process(Map.Entry<String, Boolean> entry) {
+        if (entry.getValue() != null) {
+            return Boolean.FALSE;
+        }
+        entry.setValue(Boolean.TRUE);
+        return Boolean.TRUE;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return LoginRecordDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return LoginRecordDataSerializableFactory.DEDUPLICATION_RESERVE_PROCESSOR_TYPE;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) {
+        // 无状态
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) {
+        // 无状态
+    }
+}
@@ -1,35 +1,72 @@
 package com.wilsonkeh.loginmanagement.queue;
 
+import com.hazelcast.cluster.Member;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.map.IMap;
 import com.hazelcast.collection.IQueue;
+import com.wilsonkeh.loginmanagement.config.HazelcastConfig;
+import com.wilsonkeh.loginmanagement.queue.lease.TaskLeaseTracker;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
  * 分布式去重优先级阻塞队列
  * 使用Hazelcast实现跨机器的去重功能
+ * 支持分片模式：任务按分区键（uid）哈希到 N 个 IQueue，各分片分布在不同分区和成员上，
+ * 消费时优先读取本成员拥有的分片，吞吐随集群规模扩展
+ * 容量由集群容量许可控制，入队时从本地许可池扣减，不需要逐次调用分片的 size
+ * 启用租约时，出队的任务进入处理中状态，消费者处理完成后调用 {@link #acknowledge(Collection)} 确认，
+ * 租约到期仍未确认的任务重新投递，达到最大投递次数后交给放弃任务处理器（通常写入死信队列）；
+ * 任务的去重键和容量许可在确认或放弃时才释放。
+ * 构造后需调用 {@link #start()} 启动容量许可发布和租约到期检查，由Spring创建时自动调用
  */
 @Slf4j
 @Component
 public class DistributedDeduplicatingPriorityBlockingQueue<T> {
     
-    private final IQueue<Task<T>> distributedQueue;
+    // 消费者在分片间等待时单次阻塞的最长时间，超时后重新扫描全部分片
+    private static final long SHARD_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // 默认单次向集群租借的容量许可数
+    public static final int DEFAULT_CAPACITY_LEASE_SIZE = 64;
+
+    private final HazelcastInstance hazelcastInstance;
+    // 任务队列分片，单分片时即原有的单一队列
+    private final List<IQueue<Task<T>>> shards;
+    private final CapacityPermits capacityPermits;
     private final IMap<String, Boolean> distributedDeduplicationMap;
     private final Function<Task<T>, String> deduplicationKeyExtractor;
     private final boolean enableDeduplication;
-    private final int maxSize;
+    // 处理中任务租约跟踪器，未启用租约时为null，出队即释放
+    private final TaskLeaseTracker<T> leaseTracker;
+    // 放弃任务处理器，为null时只记录日志
+    private final Consumer<List<Task<T>>> abandonedTaskHandler;
     
     // 统计计数器
     private final AtomicInteger totalOffered = new AtomicInteger(0);
     private final AtomicInteger totalDeduplicated = new AtomicInteger(0);
     private final AtomicInteger totalPolled = new AtomicInteger(0);
 
+    // 消费者扫描分片的起始位置，使多个消费线程分散到不同分片
+    private final AtomicInteger consumerCursor = new AtomicInteger(0);
+
+    private boolean started;
+
     @Autowired
     public DistributedDeduplicatingPriorityBlockingQueue(HazelcastInstance hazelcastInstance,
                                                         Function<Task<T>, String> deduplicationKeyExtractor) {
@@ -40,26 +77,137 @@ public class DistributedDeduplicatingPriorityBlockingQueue<T> {
                                                         int maxSize, 
                                                         boolean enableDeduplication,
                                                         Function<Task<T>, String> deduplicationKeyExtractor) {
-        this.distributedQueue = hazelcastInstance.getQueue(HazelcastConfig.TASK_QUEUE_NAME);
+        this(hazelcastInstance, maxSize, enableDeduplication, deduplicationKeyExtractor, 1);
+    }
+
+    /**
+     * @param shardCount 队列分片数，1表示使用单一队列
+     */
+    public DistributedDeduplicatingPriorityBlockingQueue(HazelcastInstance hazelcastInstance,
+                                                        int maxSize,
+                                                        boolean enableDeduplication,
+                                                        Function<Task<T>, String> deduplicationKeyExtractor,
+                                                        int shardCount) {
+        this(hazelcastInstance, maxSize, enableDeduplication, deduplicationKeyExtractor, shardCount,
+            DEFAULT_CAPACITY_LEASE_SIZE);
+    }
+
+    /**
+     * @param shardCount 队列分片数，1表示使用单一队列
+     * @param capacityLeaseSize 单次向集群租借的容量许可数，越大网络调用越少，滞留在各成员本地的空闲容量越多
+     */
+    public DistributedDeduplicatingPriorityBlockingQueue(HazelcastInstance hazelcastInstance,
+                                                        int maxSize,
+                                                        boolean enableDeduplication,
+                                                        Function<Task<T>, String> deduplicationKeyExtractor,
+                                                        int shardCount,
+                                                        int capacityLeaseSize) {
+        this(hazelcastInstance, maxSize, enableDeduplication, deduplicationKeyExtractor, shardCount,
+            capacityLeaseSize, 0, 0);
+    }
+
+    /**
+     * @param shardCount 队列分片数，1表示使用单一队列
+     * @param capacityLeaseSize 单次向集群租借的容量许可数
+     * @param visibilityTimeoutMs 处理中任务的租约时长（毫秒），0表示不启用租约，出队即释放
+     * @param maxDeliveryAttempts 最大投递次数，租约到期未确认达到该次数时放弃任务
+     */
+    public DistributedDeduplicatingPriorityBlockingQueue(HazelcastInstance hazelcastInstance,
+                                                        int maxSize,
+                                                        boolean enableDeduplication,
+                                                        Function<Task<T>, String> deduplicationKeyExtractor,
+                                                        int shardCount,
+                                                        int capacityLeaseSize,
+                                                        long visibilityTimeoutMs,
+                                                        int maxDeliveryAttempts) {
+        this(hazelcastInstance, maxSize, enableDeduplication, deduplicationKeyExtractor, shardCount,
+            capacityLeaseSize, visibilityTimeoutMs, maxDeliveryAttempts, null);
+    }
+
+    /**
+     * @param shardCount 队列分片数，1表示使用单一队列
+     * @param capacityLeaseSize 单次向集群租借的容量许可数
+     * @param visibilityTimeoutMs 处理中任务的租约时长（毫秒），0表示不启用租约，出队即释放
+     * @param maxDeliveryAttempts 最大投递次数，租约到期未确认达到该次数时放弃任务
+     * @param abandonedTaskHandler 放弃任务处理器，在释放去重键和容量之前调用，为null时只记录日志
+     */
+    public DistributedDeduplicatingPriorityBlockingQueue(HazelcastInstance hazelcastInstance,
+                                                        int maxSize,
+                                                        boolean enableDeduplication,
+                                                        Function<Task<T>, String> deduplicationKeyExtractor,
+                                                        int shardCount,
+                                                        int capacityLeaseSize,
+                                                        long visibilityTimeoutMs,
+                                                        int maxDeliveryAttempts,
+                                                        Consumer<List<Task<T>>> abandonedTaskHandler) {
+        int count = Math.max(1, shardCount);
+        this.hazelcastInstance = hazelcastInstance;
+        this.shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shards.add(hazelcastInstance.getQueue(shardQueueName(i, count)));
+        }
+        this.capacityPermits = new CapacityPermits(
+            hazelcastInstance.getCPSubsystem().getAtomicLong(HazelcastConfig.TASK_QUEUE_CAPACITY_NAME),
+            maxSize, capacityLeaseSize);
         this.distributedDeduplicationMap = hazelcastInstance.getMap(HazelcastConfig.DEDUPLICATION_MAP_NAME);
-        this.maxSize = maxSize;
         this.enableDeduplication = enableDeduplication;
         this.deduplicationKeyExtractor = deduplicationKeyExtractor;
+        this.abandonedTaskHandler = abandonedTaskHandler;
+        this.leaseTracker = visibilityTimeoutMs > 0
+            ? new TaskLeaseTracker<>(hazelcastInstance, visibilityTimeoutMs, maxDeliveryAttempts,
+                this::leaseKeyOf, this::requeue, this::abandon)
+            : null;
         
-        log.info("分布式去重队列初始化完成 - 队列名称: {}, 去重Map名称: {}", 
-                HazelcastConfig.TASK_QUEUE_NAME, HazelcastConfig.DEDUPLICATION_MAP_NAME);
+        log.info("分布式去重队列初始化完成 - 队列名称: {}, 分片数: {}, 去重Map名称: {}", 
+                HazelcastConfig.TASK_QUEUE_NAME, count, HazelcastConfig.DEDUPLICATION_MAP_NAME);
     }
 
     /**
-     * 添加任务到分布式队列，支持跨机器去重
+     * 启动容量许可发布、成员离开时的许可回收和租约到期检查
+     * 注册的监听器和定时任务持有本实例，放在构造完成之后，避免其他线程看到未构造完成的实例
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        capacityPermits.start(hazelcastInstance, hazelcastInstance.getMap(HazelcastConfig.TASK_QUEUE_CAPACITY_POOL_MAP_NAME));
+        // 队列启用持久化存储时，集群重启后队列中可能已有恢复的任务
+        capacityPermits.reconcile(size());
+        if (leaseTracker != null) {
+            leaseTracker.start();
+        }
+    }
+
+    /**
+     * 获取分片队列名称，单分片时沿用原队列名称
+     */
+    public static String shardQueueName(int shard, int shardCount) {
+        return shardCount <= 1 ? HazelcastConfig.TASK_QUEUE_NAME : HazelcastConfig.TASK_QUEUE_NAME + "-" + shard;
+    }
+
+    /**
+     * 添加任务到分布式队列，支持跨机器去重，队列已满时立即拒绝
      */
     public boolean offer(Task<T> task) {
+        return offer(task, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 添加任务到分布式队列，支持跨机器去重
+     * 队列已满时可丢弃任务立即拒绝，不可丢弃任务最多等待 timeout 直到有容量许可归还；
+     * 重复任务不等待，等待期间保持去重键预留，避免同一任务被并发提交
+     */
+    public boolean offer(Task<T> task, long timeout, TimeUnit unit) {
         if (task == null) {
             return false;
         }
 
         totalOffered.incrementAndGet();
 
+        // 成功预留的去重键，任务未能入队时需要回滚
+        String reservedKey = null;
         if (enableDeduplication) {
             String deduplicationKey = deduplicationKeyExtractor.apply(task);
             
@@ -71,26 +219,29 @@ public class DistributedDeduplicatingPriorityBlockingQueue<T> {
                     log.debug("检测到重复任务，拒绝添加: {}", deduplicationKey);
                     return false; // 重复任务，拒绝添加
                 }
+                reservedKey = deduplicationKey;
             } catch (Exception e) {
                 log.error("分布式去重检查失败: {}", e.getMessage(), e);
                 // 如果去重检查失败，仍然允许添加任务以避免阻塞
             }
         }
 
-        // 检查队列大小
-        if (distributedQueue.size() >= maxSize) {
-            if (task.isDiscardable()) {
-                log.warn("队列已满，丢弃可丢弃任务: {}", task);
-                return false; // 可丢弃任务，直接拒绝
-            } else {
-                log.warn("队列已满，拒绝不可丢弃任务: {}", task);
+        boolean result = false;
+        boolean permitAcquired = false;
+        try {
+            // 从本地许可池获取容量许可，池空时才向集群租借
+            permitAcquired = capacityPermits.tryAcquire(1, task.isDiscardable() ? 0 : timeout, unit) == 1;
+            if (!permitAcquired) {
+                if (task.isDiscardable()) {
+                    log.warn("队列已满，丢弃可丢弃任务: {}", task);
+                } else {
+                    log.warn("队列已满，等待 {}ms 后仍无法入队，拒绝不可丢弃任务: {}", unit.toMillis(timeout), task);
+                }
                 return false;
             }
-        }
-        
-        try {
+
             // 添加新任务到分布式队列
-            boolean result = distributedQueue.offer(task);
+            result = shards.get(shardOf(task)).offer(task);
             if (result) {
                 log.debug("成功添加任务到分布式队列: {}", task);
             }
@@ -98,52 +249,238 @@ public class DistributedDeduplicatingPriorityBlockingQueue<T> {
         } catch (Exception e) {
             log.error("添加任务到分布式队列失败: {}", e.getMessage(), e);
             return false;
+        } finally {
+            if (!result && permitAcquired) {
+                capacityPermits.release(1);
+            }
+            if (!result && reservedKey != null) {
+                rollbackDeduplicationKey(reservedKey);
+            }
         }
     }
 
     /**
-     * 阻塞式获取任务
+     * 批量添加任务到分布式队列
+     * 一次 executeOnKeys 预留全部去重键，一次性获取容量许可，每个分片一次 addAll 入队，
+     * 未能入队任务的去重键统一回滚，集群往返次数与任务数无关
+     * @return 与输入顺序一致的入队结果
      */
-    public Task<T> take() throws InterruptedException {
+    public List<Boolean> offerAll(Collection<? extends Task<T>> tasks) {
+        return offerAll(tasks, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 批量添加任务到分布式队列
+     * 容量不足时可丢弃任务立即拒绝，不可丢弃任务最多共同等待 timeout 获取剩余的容量许可
+     * @return 与输入顺序一致的入队结果
+     */
+    public List<Boolean> offerAll(Collection<? extends Task<T>> tasks, long timeout, TimeUnit unit) {
+        List<Boolean> accepted = new ArrayList<>(tasks.size());
+        for (OfferResult result : offerAllWithResults(tasks, timeout, unit)) {
+            accepted.add(result.isAccepted());
+        }
+        return accepted;
+    }
+
+    /**
+     * 批量添加任务到分布式队列，与 {@link #offerAll(Collection, long, TimeUnit)} 相同，
+     * 但区分重复任务和队列已满，调用方据此决定是否提示客户端稍后重试
+     * @return 与输入顺序一致的入队结果
+     */
+    public List<OfferResult> offerAllWithResults(Collection<? extends Task<T>> tasks, long timeout, TimeUnit unit) {
+        List<Task<T>> taskList = new ArrayList<>(tasks);
+        int count = taskList.size();
+        List<OfferResult> results = new ArrayList<>(Collections.nCopies(count, OfferResult.FAILED));
+        if (count == 0) {
+            return results;
+        }
+        totalOffered.addAndGet(count);
+
+        // 每个任务成功预留的去重键，未预留为null
+        String[] reservedKeys = new String[count];
+        boolean[] candidates = new boolean[count];
+        if (enableDeduplication) {
+            reserveDeduplicationKeys(taskList, reservedKeys, candidates, results);
+        } else {
+            for (int i = 0; i < count; i++) {
+                candidates[i] = taskList.get(i) != null;
+            }
+        }
+
+        int permits = 0;
         try {
-            Task<T> task = distributedQueue.take();
-            if (task != null) {
-                totalPolled.incrementAndGet();
-                // 从分布式去重映射中移除已处理的任务
-                if (enableDeduplication) {
-                    String deduplicationKey = deduplicationKeyExtractor.apply(task);
-                    distributedDeduplicationMap.remove(deduplicationKey);
-                    log.debug("从分布式去重Map中移除已处理任务: {}", deduplicationKey);
+            // 按提交顺序为候选任务获取容量许可，超出部分拒绝
+            int candidateCount = 0;
+            for (boolean candidate : candidates) {
+                if (candidate) {
+                    candidateCount++;
+                }
+            }
+            permits = capacityPermits.tryAcquire(candidateCount);
+
+            // 按分片分组，每个分片一次 addAll；立即获得的许可按提交顺序分配，
+            // 其余任务中不可丢弃的等待剩余许可，可丢弃的直接拒绝
+            List<List<Integer>> shardIndexes = new ArrayList<>(shards.size());
+            for (int i = 0; i < shards.size(); i++) {
+                shardIndexes.add(new ArrayList<>());
+            }
+            int admitted = 0;
+            List<Integer> waiting = new ArrayList<>(0);
+            for (int i = 0; i < count; i++) {
+                if (!candidates[i]) {
+                    continue;
+                }
+                if (admitted < permits) {
+                    shardIndexes.get(shardOf(taskList.get(i))).add(i);
+                    admitted++;
+                } else if (!taskList.get(i).isDiscardable()) {
+                    waiting.add(i);
+                } else {
+                    results.set(i, OfferResult.QUEUE_FULL);
+                }
+            }
+            int granted = 0;
+            if (!waiting.isEmpty() && timeout > 0) {
+                granted = capacityPermits.tryAcquire(waiting.size(), timeout, unit);
+                permits += granted;
+                for (int i = 0; i < granted; i++) {
+                    int index = waiting.get(i);
+                    shardIndexes.get(shardOf(taskList.get(index))).add(index);
+                }
+                admitted += granted;
+            }
+            for (int i = granted; i < waiting.size(); i++) {
+                results.set(waiting.get(i), OfferResult.QUEUE_FULL);
+            }
+            if (admitted < candidateCount) {
+                log.warn("队列已满，拒绝批量提交中的 {} 个任务", candidateCount - admitted);
+            }
+            for (int shardIndex = 0; shardIndex < shards.size(); shardIndex++) {
+                List<Integer> indexes = shardIndexes.get(shardIndex);
+                if (!indexes.isEmpty()) {
+                    offerAllToShard(shards.get(shardIndex), indexes, taskList, results);
                 }
-                log.debug("从分布式队列中获取任务: {}", task);
             }
-            return task;
-        } catch (InterruptedException e) {
-            log.warn("获取任务时被中断");
-            throw e;
         } catch (Exception e) {
-            log.error("从分布式队列获取任务失败: {}", e.getMessage(), e);
-            return null;
+            log.error("批量添加任务到分布式队列失败: {}", e.getMessage(), e);
+        } finally {
+            int offered = 0;
+            List<String> rollbackKeys = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                if (results.get(i).isAccepted()) {
+                    offered++;
+                } else if (reservedKeys[i] != null) {
+                    rollbackKeys.add(reservedKeys[i]);
+                }
+            }
+            capacityPermits.release(permits - offered);
+            if (!rollbackKeys.isEmpty()) {
+                removeDeduplicationKeys(rollbackKeys);
+                log.debug("批量提交中未能入队的任务已回滚去重键: {}", rollbackKeys.size());
+            }
         }
+        return results;
     }
 
     /**
-     * 非阻塞式获取任务
+     * 按提交顺序把已获得容量许可的任务加入分片
      */
-    public Task<T> poll() {
+    private void offerAllToShard(IQueue<Task<T>> shard, List<Integer> indexes,
+                                 List<Task<T>> taskList, List<OfferResult> results) {
+        List<Task<T>> admittedTasks = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            admittedTasks.add(taskList.get(index));
+        }
+        if (shard.addAll(admittedTasks)) {
+            for (int index : indexes) {
+                results.set(index, OfferResult.ACCEPTED);
+            }
+            log.debug("成功批量添加任务到分布式队列: {}, 分片: {}", admittedTasks.size(), shard.getName());
+        }
+    }
+
+    /**
+     * 一次调用预留一批任务的去重键：批内重复的任务只保留第一个，
+     * 其余键在各自分区上原子预留，已存在的键视为重复
+     */
+    private void reserveDeduplicationKeys(List<Task<T>> tasks, String[] reservedKeys, boolean[] candidates,
+                                          List<OfferResult> results) {
+        Map<String, Integer> firstIndexes = new HashMap<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            Task<T> task = tasks.get(i);
+            if (task == null) {
+                continue;
+            }
+            String deduplicationKey = deduplicationKeyExtractor.apply(task);
+            if (firstIndexes.putIfAbsent(deduplicationKey, i) != null) {
+                totalDeduplicated.incrementAndGet();
+                results.set(i, OfferResult.DUPLICATE);
+                log.debug("检测到批内重复任务，拒绝添加: {}", deduplicationKey);
+            }
+        }
+
         try {
-            Task<T> task = distributedQueue.poll();
+            Map<String, Boolean> reserved = distributedDeduplicationMap.executeOnKeys(
+                firstIndexes.keySet(), new DeduplicationReserveProcessor());
+            for (Map.Entry<String, Integer> entry : firstIndexes.entrySet()) {
+                int index = entry.getValue();
+                if (Boolean.TRUE.equals(reserved.get(entry.getKey()))) {
+                    reservedKeys[index] = entry.getKey();
+                    candidates[index] = true;
+                } else {
+                    totalDeduplicated.incrementAndGet();
+                    results.set(index, OfferResult.DUPLICATE);
+                    log.debug("检测到重复任务，拒绝添加: {}", entry.getKey());
+                }
+            }
+        } catch (Exception e) {
+            log.error("分布式批量去重检查失败: {}", e.getMessage(), e);
+            // 与单条提交一致，去重检查失败时仍然允许添加任务以避免阻塞
+            for (int index : firstIndexes.values()) {
+                candidates[index] = true;
+            }
+        }
+    }
+
+    /**
+     * 撤销未能入队任务的去重键预留，避免残留的键阻塞该任务的后续提交
+     */
+    private void rollbackDeduplicationKey(String deduplicationKey) {
+        try {
+            distributedDeduplicationMap.remove(deduplicationKey);
+            log.debug("任务未能入队，已回滚去重键: {}", deduplicationKey);
+        } catch (Exception e) {
+            log.error("回滚分布式去重键失败: {}, 错误: {}", deduplicationKey, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 阻塞式获取任务，启用租约时需要确认
+     */
+    public Task<T> take() throws InterruptedException {
+        while (true) {
+            Task<T> task = poll(SHARD_WAIT_NANOS, TimeUnit.NANOSECONDS);
             if (task != null) {
-                totalPolled.incrementAndGet();
-                // 从分布式去重映射中移除已处理的任务
-                if (enableDeduplication) {
-                    String deduplicationKey = deduplicationKeyExtractor.apply(task);
-                    distributedDeduplicationMap.remove(deduplicationKey);
-                    log.debug("从分布式去重Map中移除已处理任务: {}", deduplicationKey);
+                return task;
+            }
+        }
+    }
+
+    /**
+     * 非阻塞式获取任务，启用租约时需要确认
+     */
+    public Task<T> poll() {
+        try {
+            List<Task<T>> drained = new ArrayList<>(1);
+            for (IQueue<Task<T>> shard : consumerOrder()) {
+                Task<T> task = shard.poll();
+                if (task != null) {
+                    drained.add(task);
+                    break;
                 }
-                log.debug("从分布式队列中轮询获取任务: {}", task);
             }
-            return task;
+            onPolled(drained);
+            return drained.isEmpty() ? null : drained.get(0);
         } catch (Exception e) {
             log.error("从分布式队列轮询任务失败: {}", e.getMessage(), e);
             return null;
@@ -151,37 +488,330 @@ public class DistributedDeduplicatingPriorityBlockingQueue<T> {
     }
 
     /**
-     * 带超时的阻塞式获取任务
+     * 带超时的阻塞式获取任务，启用租约时需要确认
      */
     public Task<T> poll(long timeout, TimeUnit unit) throws InterruptedException {
+        List<Task<T>> drained = new ArrayList<>(1);
+        drainTo(drained, 1, timeout, unit);
+        return drained.isEmpty() ? null : drained.get(0);
+    }
+
+    /**
+     * 批量获取任务
+     * 最多等待 timeout 获取任务，之后一次性取出已在队列中的任务，最多 maxElements 个，
+     * 并以流水线方式释放这批任务的去重键（启用租约时改为登记租约），减少与集群之间的往返次数。
+     * 租约在取出之后登记，两者之间本成员崩溃时这批任务不会重新投递，见 {@link TaskLeaseTracker}
+     * @return 取出的任务数，超时仍无任务时返回0
+     */
+    public int drainTo(List<Task<T>> target, int maxElements, long timeout, TimeUnit unit) throws InterruptedException {
+        if (maxElements <= 0) {
+            return 0;
+        }
         try {
-            Task<T> task = distributedQueue.poll(timeout, unit);
-            if (task != null) {
-                totalPolled.incrementAndGet();
-                // 从分布式去重映射中移除已处理的任务
-                if (enableDeduplication) {
-                    String deduplicationKey = deduplicationKeyExtractor.apply(task);
-                    distributedDeduplicationMap.remove(deduplicationKey);
-                    log.debug("从分布式去重Map中移除已处理任务: {}", deduplicationKey);
-                }
-                log.debug("从分布式队列中获取任务(带超时): {}", task);
+            List<Task<T>> drained = drainShards(maxElements, unit.toNanos(timeout));
+            if (drained.isEmpty()) {
+                return 0;
             }
-            return task;
+            onPolled(drained);
+            target.addAll(drained);
+            log.debug("从分布式队列中批量获取任务: {}", drained.size());
+            return drained.size();
         } catch (InterruptedException e) {
-            log.warn("获取任务时被中断(带超时)");
+            log.warn("批量获取任务时被中断");
             throw e;
         } catch (Exception e) {
-            log.error("从分布式队列获取任务失败(带超时): {}", e.getMessage(), e);
-            return null;
+            log.error("从分布式队列批量获取任务失败: {}", e.getMessage(), e);
+            return 0;
         }
     }
 
     /**
-     * 获取队列大小
+     * 从分片中取出至多 maxElements 个任务
+     * 先取本成员拥有的分片，本地分片都为空时再取其他成员的分片；
+     * 全部为空时在首选分片上分段阻塞等待，每段超时后重新扫描，直到总超时
+     */
+    private List<Task<T>> drainShards(int maxElements, long timeoutNanos) throws InterruptedException {
+        List<Task<T>> drained = new ArrayList<>(maxElements);
+        if (shards.size() == 1) {
+            IQueue<Task<T>> queue = shards.get(0);
+            Task<T> first = queue.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+            if (first != null) {
+                drained.add(first);
+                queue.drainTo(drained, maxElements - 1);
+            }
+            return drained;
+        }
+
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (true) {
+            List<IQueue<Task<T>>> ordered = consumerOrder();
+            int localCount = localShardCount(ordered);
+            drainFrom(ordered.subList(0, localCount), drained, maxElements);
+            if (drained.isEmpty()) {
+                drainFrom(ordered.subList(localCount, ordered.size()), drained, maxElements);
+            }
+            if (!drained.isEmpty()) {
+                return drained;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return drained;
+            }
+            IQueue<Task<T>> preferred = ordered.get(0);
+            Task<T> task = preferred.poll(Math.min(remaining, SHARD_WAIT_NANOS), TimeUnit.NANOSECONDS);
+            if (task != null) {
+                drained.add(task);
+                preferred.drainTo(drained, maxElements - 1);
+                return drained;
+            }
+        }
+    }
+
+    private void drainFrom(List<IQueue<Task<T>>> candidates, List<Task<T>> drained, int maxElements) {
+        for (IQueue<Task<T>> shard : candidates) {
+            if (drained.size() >= maxElements) {
+                return;
+            }
+            shard.drainTo(drained, maxElements - drained.size());
+        }
+    }
+
+    /**
+     * 返回本次扫描的分片顺序：本成员拥有的分片在前，各自按轮转的起始位置排列
+     */
+    private List<IQueue<Task<T>>> consumerOrder() {
+        int count = shards.size();
+        if (count == 1) {
+            return shards;
+        }
+        int start = consumerCursor.getAndIncrement();
+        List<IQueue<Task<T>>> local = new ArrayList<>(count);
+        List<IQueue<Task<T>>> remote = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            IQueue<Task<T>> shard = shards.get(Math.floorMod(start + i, count));
+            if (isOwnedLocally(shard)) {
+                local.add(shard);
+            } else {
+                remote.add(shard);
+            }
+        }
+        local.addAll(remote);
+        return local;
+    }
+
+    private int localShardCount(List<IQueue<Task<T>>> ordered) {
+        int count = 0;
+        while (count < ordered.size() && isOwnedLocally(ordered.get(count))) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 分片所在分区的主副本是否在本成员上，迁移中无主副本时视为远程分片
+     */
+    private boolean isOwnedLocally(IQueue<Task<T>> shard) {
+        try {
+            Member owner = hazelcastInstance.getPartitionService().getPartition(shard.getPartitionKey()).getOwner();
+            return owner != null && owner.localMember();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 计算任务所属的分片，同一分区键（uid）的任务总是进入同一分片
+     */
+    private int shardOf(Task<T> task) {
+        if (shards.size() == 1) {
+            return 0;
+        }
+        String partitionKey = task.getPartitionKey();
+        int hash = partitionKey != null ? partitionKey.hashCode() : task.getTaskId().hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.size());
+    }
+
+    /**
+     * 记录已取出的任务：启用租约时登记租约，否则立即归还容量许可并释放其去重键
+     */
+    private void onPolled(List<Task<T>> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        totalPolled.addAndGet(tasks.size());
+        if (leaseTracker != null) {
+            leaseTracker.lease(tasks);
+        } else {
+            release(tasks);
+        }
+    }
+
+    /**
+     * 确认任务处理完成，一次调用删除全部租约，并归还容量许可、释放去重键
+     * 未启用租约时出队即已释放，无需操作
+     */
+    public void acknowledge(Collection<? extends Task<T>> tasks) {
+        if (leaseTracker == null || tasks.isEmpty()) {
+            return;
+        }
+        release(leaseTracker.acknowledge(tasks));
+    }
+
+    private void release(List<Task<T>> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        capacityPermits.release(tasks.size());
+        if (enableDeduplication) {
+            releaseDeduplicationKeys(tasks);
+        }
+    }
+
+    /**
+     * 把租约到期的任务放回各自的分片，去重键和容量许可仍由该任务持有
+     * @return 分片已满而未能放回的任务
+     */
+    private List<Task<T>> requeue(List<Task<T>> tasks) {
+        List<Task<T>> rejected = new ArrayList<>(0);
+        for (Task<T> task : tasks) {
+            try {
+                if (!shards.get(shardOf(task)).offer(task)) {
+                    rejected.add(task);
+                }
+            } catch (Exception e) {
+                log.error("重新投递任务失败: {}, 错误: {}", task.getTaskId(), e.getMessage(), e);
+                rejected.add(task);
+            }
+        }
+        return rejected;
+    }
+
+    private void abandon(List<Task<T>> tasks) {
+        if (abandonedTaskHandler != null) {
+            try {
+                abandonedTaskHandler.accept(tasks);
+            } catch (Exception e) {
+                log.error("处理放弃的任务时发生错误: {}", e.getMessage(), e);
+            }
+        } else {
+            for (Task<T> task : tasks) {
+                log.error("放弃多次投递仍未确认的任务: {}", task);
+            }
+        }
+        release(tasks);
+    }
+
+    /**
+     * 处理中Map的键：启用去重时为去重键，否则为任务ID
+     */
+    private String leaseKeyOf(Task<T> task) {
+        return enableDeduplication ? deduplicationKeyExtractor.apply(task) : task.getTaskId();
+    }
+
+    /**
+     * 异步提交全部去重键的删除请求后统一等待，避免逐个同步删除的往返延迟
+     */
+    private void releaseDeduplicationKeys(List<Task<T>> tasks) {
+        List<String> keys = new ArrayList<>(tasks.size());
+        for (Task<T> task : tasks) {
+            keys.add(deduplicationKeyExtractor.apply(task));
+        }
+        removeDeduplicationKeys(keys);
+        log.debug("从分布式去重Map中批量移除已处理任务: {}", keys.size());
+    }
+
+    private void removeDeduplicationKeys(List<String> keys) {
+        List<CompletableFuture<Boolean>> removals = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            removals.add(distributedDeduplicationMap.removeAsync(key).toCompletableFuture());
+        }
+        try {
+            CompletableFuture.allOf(removals.toArray(new CompletableFuture<?>[0])).join();
+        } catch (Exception e) {
+            log.error("批量移除分布式去重键失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 获取队列分片数
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * 获取本成员当前拥有的分片数
+     */
+    public int getLocalShardCount() {
+        int count = 0;
+        for (IQueue<Task<T>> shard : shards) {
+            if (isOwnedLocally(shard)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 获取本成员本地许可池中的空闲容量许可数
+     */
+    public int getLocalCapacityPermits() {
+        return capacityPermits.getLocalPermits();
+    }
+
+    /**
+     * 获取集群已租出的容量许可数
+     */
+    public long getLeasedCapacityPermits() {
+        return capacityPermits.getClusterLeased();
+    }
+
+    /**
+     * 获取本成员上正在等待容量许可的入队线程数
+     */
+    public int getCapacityWaiters() {
+        return capacityPermits.getWaiters();
+    }
+
+    /**
+     * 是否启用租约，启用时未确认的任务会重新投递
+     */
+    public boolean isLeaseEnabled() {
+        return leaseTracker != null;
+    }
+
+    /**
+     * 获取处理中（已出队未确认）的任务数，未启用租约时为0
+     */
+    public int getInFlightCount() {
+        return leaseTracker != null ? leaseTracker.getInFlightCount() : 0;
+    }
+
+    /**
+     * 获取本成员重新投递的任务总数
+     */
+    public long getTotalRedelivered() {
+        return leaseTracker != null ? leaseTracker.getTotalRedelivered() : 0;
+    }
+
+    /**
+     * 获取本成员因多次投递仍未确认而放弃的任务总数
+     */
+    public long getTotalAbandoned() {
+        return leaseTracker != null ? leaseTracker.getTotalAbandoned() : 0;
+    }
+
+    /**
+     * 获取队列大小，不含处理中的任务
      */
     public int size() {
         try {
-            return distributedQueue.size();
+            int size = 0;
+            for (IQueue<Task<T>> shard : shards) {
+                size += shard.size();
+            }
+            return size;
         } catch (Exception e) {
             log.error("获取分布式队列大小失败: {}", e.getMessage(), e);
             return 0;
@@ -193,7 +823,12 @@ public class DistributedDeduplicatingPriorityBlockingQueue<T> {
      */
     public boolean isEmpty() {
         try {
-            return distributedQueue.isEmpty();
+            for (IQueue<Task<T>> shard : shards) {
+                if (!shard.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
         } catch (Exception e) {
             log.error("检查分布式队列是否为空失败: {}", e.getMessage(), e);
             return true;
@@ -205,23 +840,39 @@ public class DistributedDeduplicatingPriorityBlockingQueue<T> {
      */
     public void clear() {
         try {
-            distributedQueue.clear();
+            for (IQueue<Task<T>> shard : shards) {
+                shard.clear();
+            }
             if (enableDeduplication) {
                 distributedDeduplicationMap.clear();
             }
+            if (leaseTracker != null) {
+                leaseTracker.clear();
+            }
+            capacityPermits.reset();
             log.info("分布式队列和去重Map已清空");
         } catch (Exception e) {
             log.error("清空分布式队列失败: {}", e.getMessage(), e);
         }
     }
 
+    /**
+     * 关闭队列：停止租约到期检查，把本成员空闲的容量许可还给集群，队列中和处理中的任务保留
+     */
+    public void close() {
+        if (leaseTracker != null) {
+            leaseTracker.close();
+        }
+        capacityPermits.close();
+    }
+
     /**
      * 获取统计信息
      */
     public DistributedQueueStats getStats() {
         try {
             return new DistributedQueueStats(
-                distributedQueue.size(),
+                size(),
                 distributedDeduplicationMap.size(),
                 totalOffered.get(),
                 totalDeduplicated.get(),
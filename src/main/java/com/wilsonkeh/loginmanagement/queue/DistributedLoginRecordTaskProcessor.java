@@ -1,17 +1,22 @@
 package com.wilsonkeh.loginmanagement.queue;
 
 import com.wilsonkeh.loginmanagement.dto.LoginRecordRequest;
+import com.wilsonkeh.loginmanagement.dto.LoginRecordWriteResult;
+import com.wilsonkeh.loginmanagement.exception.DuplicateTraceIdException;
+import com.wilsonkeh.loginmanagement.queue.deadletter.DeadLetterQueue;
 import com.wilsonkeh.loginmanagement.service.LoginRecordService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -20,6 +25,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 /**
  * 分布式登录记录任务处理器
  * 支持从分布式队列中获取和处理任务
+ * 只确认处理完成的任务，失败的任务在租约到期后重新投递，由此实现跨成员、跨进程崩溃的重试；
+ * 重试也不会成功的任务（业务校验失败），以及不会重新投递时（MAP 模式）失败的任务写入死信队列后确认
  */
 @Slf4j
 @Component
@@ -31,6 +38,9 @@ public class DistributedLoginRecordTaskProcessor {
     @Autowired
     private LoginRecordService loginRecordService;
 
+    @Autowired
+    private DeadLetterQueue deadLetterQueue;
+
     @Value("${app.queue.distributed.enabled:true}")
     private boolean distributedEnabled;
 
@@ -43,18 +53,30 @@ public class DistributedLoginRecordTaskProcessor {
     @Value("${app.queue.distributed.processor.poll-timeout:5}")
     private long pollTimeout;
 
-    private final ExecutorService executorService;
-    private final AtomicBoolean running = new AtomicBoolean(false);
+    @Value("${app.queue.distributed.processor.batch-size:100}")
+    private int batchSize;
 
-    public DistributedLoginRecordTaskProcessor() {
-        this.executorService = Executors.newCachedThreadPool();
-    }
+    // 一批取满说明队列有积压，继续取到该数量后一次落库，使积压以 COPY 批量写入
+    @Value("${app.queue.distributed.processor.backlog-batch-size:1000}")
+    private int backlogBatchSize;
+
+    // 取出的任务在租约时长内未确认会重新投递，一批任务的处理时间不能超过租约时长
+    @Value("${app.queue.distributed.lease.visibility-timeout-ms:30000}")
+    private long visibilityTimeoutMs;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreadsEnabled;
+
+    private ExecutorService executorService;
+    private final AtomicBoolean running = new AtomicBoolean(false);
 
     @PostConstruct
     public void init() {
+        this.executorService = createWorkerExecutor();
         if (distributedEnabled && processorEnabled) {
             log.info("分布式登录记录任务处理器初始化完成");
-            log.info("处理器配置 - 线程数: {}, 轮询超时: {}秒", processorThreads, pollTimeout);
+            log.info("处理器配置 - 线程数: {}, 轮询超时: {}秒, 批大小: {}, 虚拟线程: {}",
+                    processorThreads, pollTimeout, batchSize, virtualThreadsEnabled);
             startProcessing();
         } else {
             log.info("分布式任务处理器已禁用 - distributedEnabled: {}, processorEnabled: {}", 
@@ -78,6 +100,17 @@ public class DistributedLoginRecordTaskProcessor {
         log.info("分布式登录记录任务处理器已关闭");
     }
 
+    /**
+     * 创建工作线程执行器
+     * 工作线程大部分时间阻塞在Hazelcast poll和JDBC调用上，虚拟线程模式下阻塞不占用平台线程
+     */
+    private ExecutorService createWorkerExecutor() {
+        if (virtualThreadsEnabled) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("DistributedWorker-", 0).factory());
+        }
+        return Executors.newCachedThreadPool(Thread.ofPlatform().name("DistributedWorker-", 0).factory());
+    }
+
     /**
      * 启动任务处理
      */
@@ -152,11 +185,21 @@ public class DistributedLoginRecordTaskProcessor {
             
             while (running.get()) {
                 try {
-                    // 从分布式队列中获取任务
-                    Task<LoginRecordRequest> task = distributedTaskQueueManager.pollTask(pollTimeout, TimeUnit.SECONDS);
+                    // 租约从取出时开始计时，逐条处理最多用到租约时长的一半；未启用租约时不限时
+                    long processingDeadline = visibilityTimeoutMs > 0
+                            ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(visibilityTimeoutMs / 2)
+                            : Long.MAX_VALUE;
+                    // 从分布式队列中批量获取任务
+                    List<Task<LoginRecordRequest>> tasks =
+                            distributedTaskQueueManager.drainTo(batchSize, pollTimeout, TimeUnit.SECONDS);
+                    if (tasks.size() >= batchSize && backlogBatchSize > batchSize) {
+                        tasks.addAll(distributedTaskQueueManager.drainTo(
+                                backlogBatchSize - batchSize, 0, TimeUnit.SECONDS));
+                    }
                     
-                    if (task != null) {
-                        processTask(task);
+                    if (!tasks.isEmpty()) {
+                        // 未确认的任务在租约到期后重新投递
+                        distributedTaskQueueManager.acknowledge(processBatch(tasks, processingDeadline));
                     }
                 } catch (InterruptedException e) {
                     log.warn("工作线程被中断: {}", workerName);
@@ -164,28 +207,93 @@ public class DistributedLoginRecordTaskProcessor {
                     break;
                 } catch (Exception e) {
                     log.error("工作线程处理任务时发生错误: {}, 错误: {}", workerName, e.getMessage(), e);
-                    // 继续处理下一个任务
+                    // 继续处理下一批任务
                 }
             }
             
             log.info("分布式任务处理工作线程停止: {}", workerName);
         }
 
-        @Retryable(
-            value = {Exception.class},
-            maxAttempts = 3,
-            backoff = @Backoff(delay = 1000, multiplier = 2)
-        )
-        private void processTask(Task<LoginRecordRequest> task) throws Exception {
+        /**
+         * 批量落库，一个事务写入整批记录，已存在的traceId直接跳过，不会使整批失败；
+         * 批量失败时（如个别记录数据不合法）逐条处理，避免一条坏数据拖累整批。
+         * 积压时一批可达 backlog-batch-size 条，逐条处理（含重试退避）可能超过租约时长，
+         * 超过 deadline 后剩余任务不再处理也不确认，租约到期后重新投递，避免租约过期后仍在写入造成重复处理
+         * @param deadline 逐条处理的截止时间（System.nanoTime）
+         * @return 可以确认的任务
+         */
+        private List<Task<LoginRecordRequest>> processBatch(List<Task<LoginRecordRequest>> tasks, long deadline) {
+            if (tasks.size() > 1) {
+                try {
+                    List<LoginRecordRequest> requests = tasks.stream()
+                            .map(Task::getData)
+                            .toList();
+                    List<LoginRecordWriteResult> results = loginRecordService.createLoginRecordsBatch(requests);
+                    long inserted = results.stream().filter(LoginRecordWriteResult::inserted).count();
+                    log.debug("分布式登录记录批量处理成功 - 工作线程: {}, 数量: {}, 新增: {}, 已存在跳过: {}",
+                            workerName, tasks.size(), inserted, results.size() - inserted);
+                    return tasks;
+                } catch (Exception e) {
+                    log.warn("分布式登录记录批量处理失败，改为逐条处理 - 工作线程: {}, 数量: {}, 错误: {}",
+                            workerName, tasks.size(), e.getMessage());
+                }
+            }
+            List<Task<LoginRecordRequest>> completed = new ArrayList<>(tasks.size());
+            Map<String, List<Task<LoginRecordRequest>>> deadLetters = new LinkedHashMap<>();
+            boolean redeliveryEnabled = distributedTaskQueueManager.isRedeliveryEnabled();
+            for (int i = 0; i < tasks.size(); i++) {
+                if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+                    log.warn("逐条处理已接近租约时长，剩余任务等待租约到期后重新投递 - 工作线程: {}, 已处理: {}, 剩余: {}",
+                            workerName, i, tasks.size() - i);
+                    break;
+                }
+                Task<LoginRecordRequest> task = tasks.get(i);
+                if (processTask(task, redeliveryEnabled, deadLetters)) {
+                    completed.add(task);
+                }
+            }
+            // 同一原因的失败任务一次写入死信队列
+            deadLetters.forEach((reason, failed) ->
+                    deadLetterQueue.addAll(failed, DeadLetterQueue.SOURCE_DISTRIBUTED, reason, 1));
+            return completed;
+        }
+
+        /**
+         * 处理单个任务
+         * traceId已存在说明之前的投递已经写入，视为处理完成；其他业务校验失败（IllegalArgumentException）
+         * 重试也不会成功，写入死信后确认；其他异常（如数据库不可用）在会重新投递时返回false，任务不确认，
+         * 租约到期后重新投递，不会重新投递时写入死信后确认
+         * @param deadLetters 按失败原因收集需要写入死信队列的任务
+         * @return 是否可以确认
+         */
+        private boolean processTask(Task<LoginRecordRequest> task, boolean redeliveryEnabled,
+                                    Map<String, List<Task<LoginRecordRequest>>> deadLetters) {
             try {
                 LoginRecordRequest request = task.getData();
                 loginRecordService.createLoginRecord(request);
                 log.debug("分布式登录记录任务处理成功 - 工作线程: {}, taskId: {}, uid: {}", 
                          workerName, task.getTaskId(), request.uid());
+                return true;
+            } catch (DuplicateTraceIdException e) {
+                log.debug("分布式登录记录已存在，跳过 - 工作线程: {}, taskId: {}, traceId: {}",
+                         workerName, task.getTaskId(), task.getData().traceId());
+                return true;
+            } catch (IllegalArgumentException e) {
+                log.warn("分布式登录记录任务校验失败，写入死信队列 - 工作线程: {}, taskId: {}, 错误: {}",
+                         workerName, task.getTaskId(), e.getMessage());
+                deadLetters.computeIfAbsent(e.getMessage(), reason -> new ArrayList<>()).add(task);
+                return true;
             } catch (Exception e) {
-                log.error("处理分布式登录记录任务失败 - 工作线程: {}, taskId: {}, uid: {}, 错误: {}", 
+                if (redeliveryEnabled) {
+                    log.error("处理分布式登录记录任务失败，等待重新投递 - 工作线程: {}, taskId: {}, uid: {}, 错误: {}", 
+                             workerName, task.getTaskId(), task.getData().uid(), e.getMessage(), e);
+                    return false;
+                }
+                log.error("处理分布式登录记录任务失败，写入死信队列 - 工作线程: {}, taskId: {}, uid: {}, 错误: {}", 
                          workerName, task.getTaskId(), task.getData().uid(), e.getMessage(), e);
-                throw e; // 重新抛出异常以便重试机制处理
+                deadLetters.computeIfAbsent(e.getClass().getSimpleName() + ": " + e.getMessage(),
+                        reason -> new ArrayList<>()).add(task);
+                return true;
             }
         }
     }
@@ -3,6 +3,9 @@ package com.wilsonkeh.loginmanagement.queue;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.map.IMap;
 import com.hazelcast.collection.IQueue;
+import com.wilsonkeh.loginmanagement.config.HazelcastConfig;
+import com.wilsonkeh.loginmanagement.queue.deadletter.DeadLetterQueue;
+import com.wilsonkeh.loginmanagement.queue.store.PartitionLocalTaskStore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -10,38 +13,96 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
  * 分布式任务队列管理器
  * 管理分布式队列的生命周期和配置
+ * 支持两种存储模式：QUEUE 使用去重Map + IQueue，MAP 使用分区本地任务存储，
+ * 后者入队和确认各只需一次集群调用。
+ * 通过 {@link #drainTo(int, long, TimeUnit)} 批量获取的任务必须在处理完成后调用 {@link #acknowledge(List)}；
+ * QUEUE 模式启用租约时，超过租约时长未确认的任务会重新投递给其他消费者，达到最大投递次数后写入死信队列。
+ * 队列已满时不可丢弃任务最多等待 offer-timeout-ms，可丢弃任务立即拒绝
  */
 @Slf4j
 @Component
 public class DistributedTaskQueueManager<T> {
+
+    /**
+     * 分布式任务存储模式
+     */
+    public enum StorageMode {
+        QUEUE,
+        MAP
+    }
     
     private final HazelcastInstance hazelcastInstance;
     private final DistributedDeduplicatingPriorityBlockingQueue<T> distributedQueue;
+    // 分区本地任务存储，QUEUE 模式下为null
+    private final PartitionLocalTaskStore<T> taskStore;
     
-    @Value("${app.queue.distributed.enabled:true}")
-    private boolean distributedEnabled;
-    
-    @Value("${app.queue.distributed.max-size:10000}")
-    private int maxQueueSize;
-    
-    @Value("${app.queue.distributed.deduplication.enabled:true}")
-    private boolean deduplicationEnabled;
+    private final boolean distributedEnabled;
+    private final int maxQueueSize;
+    private final boolean deduplicationEnabled;
+    private final int shardCount;
+    private final StorageMode storageMode;
+    private final long offerTimeoutMs;
+
+    // 本成员确认的任务速率，用于估算集群排空积压的时间
+    private final DrainRateMeter drainRateMeter = new DrainRateMeter();
+
+    // 组提交批处理器，未启用时为null
+    private final GroupCommitBatcher<Task<T>> groupCommitBatcher;
 
     @Autowired
-    public DistributedTaskQueueManager(HazelcastInstance hazelcastInstance) {
+    public DistributedTaskQueueManager(HazelcastInstance hazelcastInstance,
+                                       DeadLetterQueue deadLetterQueue,
+                                       @Value("${app.queue.distributed.enabled:true}") boolean distributedEnabled,
+                                       @Value("${app.queue.distributed.max-size:10000}") int maxQueueSize,
+                                       @Value("${app.queue.distributed.deduplication.enabled:true}") boolean deduplicationEnabled,
+                                       @Value("${app.queue.distributed.shards:1}") int shardCount,
+                                       @Value("${app.queue.distributed.storage-mode:QUEUE}") StorageMode storageMode,
+                                       @Value("${app.queue.distributed.capacity-lease-size:64}") int capacityLeaseSize,
+                                       @Value("${app.queue.distributed.offer-timeout-ms:200}") long offerTimeoutMs,
+                                       @Value("${app.queue.distributed.lease.visibility-timeout-ms:30000}") long visibilityTimeoutMs,
+                                       @Value("${app.queue.distributed.lease.max-attempts:5}") int maxDeliveryAttempts,
+                                       @Value("${app.queue.distributed.group-commit.enabled:false}") boolean groupCommitEnabled,
+                                       @Value("${app.queue.distributed.group-commit.max-batch-size:256}") int groupCommitMaxBatchSize,
+                                       @Value("${app.queue.distributed.group-commit.linger-micros:200}") long groupCommitLingerMicros) {
         this.hazelcastInstance = hazelcastInstance;
+        // 配置通过构造参数注入，保证创建队列时已经可用
+        this.distributedEnabled = distributedEnabled;
+        this.maxQueueSize = maxQueueSize;
+        this.deduplicationEnabled = deduplicationEnabled;
+        this.shardCount = Math.max(1, shardCount);
+        this.storageMode = storageMode;
+        this.offerTimeoutMs = Math.max(0, offerTimeoutMs);
         
         // 创建去重键提取器 - 可以根据具体任务类型定制
         Function<Task<T>, String> deduplicationKeyExtractor = this::createDeduplicationKey;
         
         this.distributedQueue = new DistributedDeduplicatingPriorityBlockingQueue<>(
-            hazelcastInstance, maxQueueSize, deduplicationEnabled, deduplicationKeyExtractor);
+            hazelcastInstance, maxQueueSize, deduplicationEnabled, deduplicationKeyExtractor, this.shardCount,
+            capacityLeaseSize, storageMode == StorageMode.QUEUE ? visibilityTimeoutMs : 0, maxDeliveryAttempts,
+            tasks -> deadLetterQueue.addAll(tasks, DeadLetterQueue.SOURCE_DISTRIBUTED,
+                "租约到期未确认，已投递 " + maxDeliveryAttempts + " 次", maxDeliveryAttempts));
+        this.taskStore = storageMode == StorageMode.MAP
+            ? new PartitionLocalTaskStore<>(hazelcastInstance, maxQueueSize, deduplicationEnabled, deduplicationKeyExtractor,
+                visibilityTimeoutMs)
+            : null;
+
+        this.groupCommitBatcher = groupCommitEnabled
+            ? new GroupCommitBatcher<>("DistributedGroupCommit",
+                // 提交线程不等待容量，队列已满时立即返回，由调用线程等待重试
+                tasks -> taskStore != null
+                    ? taskStore.offerAllWithResults(tasks, 0, TimeUnit.MILLISECONDS)
+                    : distributedQueue.offerAllWithResults(tasks, 0, TimeUnit.MILLISECONDS),
+                groupCommitMaxBatchSize, groupCommitLingerMicros)
+            : null;
     }
 
     @PostConstruct
@@ -49,7 +110,16 @@ public class DistributedTaskQueueManager<T> {
         if (distributedEnabled) {
             log.info("分布式任务队列管理器初始化完成");
             log.info("集群信息: {}", hazelcastInstance.getCluster().getMembers());
-            log.info("分布式队列配置 - 最大大小: {}, 去重启用: {}", maxQueueSize, deduplicationEnabled);
+            log.info("分布式队列配置 - 存储模式: {}, 最大大小: {}, 分片数: {}, 去重启用: {}, 组提交启用: {}, 入队等待: {}ms",
+                    storageMode, maxQueueSize, shardCount, deduplicationEnabled, groupCommitBatcher != null, offerTimeoutMs);
+            if (taskStore != null) {
+                taskStore.start();
+            } else {
+                distributedQueue.start();
+            }
+            if (groupCommitBatcher != null) {
+                groupCommitBatcher.start();
+            }
         } else {
             log.warn("分布式队列功能已禁用");
         }
@@ -60,8 +130,14 @@ public class DistributedTaskQueueManager<T> {
         if (distributedEnabled) {
             log.info("正在关闭分布式任务队列管理器...");
             try {
-                // 清空队列和去重Map
-                distributedQueue.clear();
+                if (groupCommitBatcher != null) {
+                    groupCommitBatcher.shutdown(5000);
+                }
+                if (taskStore != null) {
+                    taskStore.close();
+                }
+                // 队列中的任务保留给集群其他成员，或在整个集群重启后从队列存储恢复
+                distributedQueue.close();
                 log.info("分布式任务队列管理器已关闭");
             } catch (Exception e) {
                 log.error("关闭分布式任务队列管理器时发生错误: {}", e.getMessage(), e);
@@ -84,7 +160,30 @@ public class DistributedTaskQueueManager<T> {
             log.warn("分布式队列功能已禁用，无法添加任务");
             return false;
         }
-        return distributedQueue.offer(task);
+        if (groupCommitBatcher != null) {
+            // 与其他请求线程的提交合并为一次批量入队；队列已满时不可丢弃任务在调用线程上等待容量，不占用提交线程
+            OfferResult result = groupCommitBatcher.submit(task);
+            if (result != OfferResult.QUEUE_FULL || task.isDiscardable() || offerTimeoutMs == 0) {
+                return result.isAccepted();
+            }
+        }
+        return taskStore != null
+            ? taskStore.offer(task, offerTimeoutMs, TimeUnit.MILLISECONDS)
+            : distributedQueue.offer(task, offerTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 批量添加任务到分布式队列
+     * @return 与输入顺序一致的入队结果，区分重复任务和队列已满
+     */
+    public List<OfferResult> offerTasks(List<? extends Task<T>> tasks) {
+        if (!distributedEnabled) {
+            log.warn("分布式队列功能已禁用，无法添加任务");
+            return new ArrayList<>(Collections.nCopies(tasks.size(), OfferResult.FAILED));
+        }
+        return taskStore != null
+            ? taskStore.offerAllWithResults(tasks, offerTimeoutMs, TimeUnit.MILLISECONDS)
+            : distributedQueue.offerAllWithResults(tasks, offerTimeoutMs, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -95,7 +194,17 @@ public class DistributedTaskQueueManager<T> {
             log.warn("分布式队列功能已禁用，无法获取任务");
             return null;
         }
-        return distributedQueue.take();
+        if (taskStore != null) {
+            Task<T> task;
+            do {
+                task = pollTask(1, TimeUnit.SECONDS);
+            } while (task == null);
+            return task;
+        }
+        // 单条获取的调用方不会确认，取出后立即确认
+        Task<T> task = distributedQueue.take();
+        distributedQueue.acknowledge(List.of(task));
+        return task;
     }
 
     /**
@@ -106,7 +215,19 @@ public class DistributedTaskQueueManager<T> {
             log.warn("分布式队列功能已禁用，无法轮询任务");
             return null;
         }
-        return distributedQueue.poll();
+        if (taskStore != null) {
+            try {
+                return pollTask(0, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        Task<T> task = distributedQueue.poll();
+        if (task != null) {
+            distributedQueue.acknowledge(List.of(task));
+        }
+        return task;
     }
 
     /**
@@ -117,14 +238,92 @@ public class DistributedTaskQueueManager<T> {
             log.warn("分布式队列功能已禁用，无法获取任务");
             return null;
         }
-        return distributedQueue.poll(timeout, unit);
+        // 单条获取的调用方不会确认，取出后立即确认，语义与未启用租约时的出队一致
+        List<Task<T>> tasks = drainTo(1, timeout, unit);
+        acknowledge(tasks);
+        return tasks.isEmpty() ? null : tasks.get(0);
+    }
+
+    /**
+     * 批量获取任务，最多等待 timeout 获取第一个任务，最多返回 maxTasks 个
+     */
+    public List<Task<T>> drainTo(int maxTasks, long timeout, TimeUnit unit) throws InterruptedException {
+        if (!distributedEnabled) {
+            log.warn("分布式队列功能已禁用，无法获取任务");
+            return List.of();
+        }
+        List<Task<T>> tasks = new ArrayList<>(maxTasks);
+        if (taskStore != null) {
+            taskStore.drainTo(tasks, maxTasks, timeout, unit);
+        } else {
+            distributedQueue.drainTo(tasks, maxTasks, timeout, unit);
+        }
+        return tasks;
+    }
+
+    /**
+     * 确认通过 {@link #drainTo(int, long, TimeUnit)} 获取的任务已处理完成
+     * MAP 模式下删除任务条目并释放去重键；QUEUE 模式下删除租约并释放去重键，未启用租约时出队已释放，无需操作
+     */
+    public void acknowledge(List<Task<T>> tasks) {
+        if (taskStore != null) {
+            taskStore.acknowledge(tasks);
+        } else {
+            distributedQueue.acknowledge(tasks);
+        }
+        drainRateMeter.record(tasks.size());
+    }
+
+    /**
+     * 估算的集群每秒出队任务数
+     * 各成员的消费者配置相同，用本成员的确认速率乘以成员数近似，避免每次查询都汇总各成员的计数
+     */
+    public double getDrainRatePerSecond() {
+        try {
+            return drainRateMeter.getRatePerSecond() * hazelcastInstance.getCluster().getMembers().size();
+        } catch (Exception e) {
+            log.error("获取集群成员数失败: {}", e.getMessage(), e);
+            return drainRateMeter.getRatePerSecond();
+        }
+    }
+
+    /**
+     * 未确认的任务是否会重新投递，只有 QUEUE 模式启用租约时才会；
+     * 不会重新投递时，消费者应将失败的任务写入死信队列后确认
+     */
+    public boolean isRedeliveryEnabled() {
+        return taskStore == null && distributedQueue.isLeaseEnabled();
+    }
+
+    /**
+     * 获取当前存储模式
+     */
+    public StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    /**
+     * 获取队列大小，MAP 模式下包含已领取但尚未确认的任务
+     */
+    public int getQueueSize() {
+        return taskStore != null ? taskStore.size() : distributedQueue.size();
+    }
+
+    /**
+     * 清空队列和去重记录
+     */
+    public void clearQueue() {
+        if (taskStore != null) {
+            taskStore.clear();
+        }
+        distributedQueue.clear();
     }
 
     /**
      * 获取队列统计信息
      */
     public DistributedDeduplicatingPriorityBlockingQueue.DistributedQueueStats getQueueStats() {
-        return distributedQueue.getStats();
+        return taskStore != null ? taskStore.getStats() : distributedQueue.getStats();
     }
 
     /**
@@ -209,14 +408,26 @@ public class DistributedTaskQueueManager<T> {
                 "分布式队列状态报告:\n" +
                 "- 集群状态: %s\n" +
                 "- 集群信息: %s\n" +
+                "- 存储模式: %s\n" +
                 "- 队列大小: %d\n" +
+                "- 队列分片: %d（本节点拥有 %d）\n" +
+                "- 容量许可: 集群已租出 %d，本节点空闲 %d\n" +
+                "- 处理中任务: %d（本节点重新投递 %d，放弃 %d）\n" +
                 "- 去重Map大小: %d\n" +
                 "- 总提交任务数: %d\n" +
                 "- 总去重任务数: %d\n" +
                 "- 总处理任务数: %d",
                 clusterHealthy ? "健康" : "异常",
                 clusterInfo,
+                storageMode,
                 stats.getCurrentSize(),
+                distributedQueue.getShardCount(),
+                distributedQueue.getLocalShardCount(),
+                distributedQueue.getLeasedCapacityPermits(),
+                distributedQueue.getLocalCapacityPermits(),
+                distributedQueue.getInFlightCount(),
+                distributedQueue.getTotalRedelivered(),
+                distributedQueue.getTotalAbandoned(),
                 stats.getDeduplicationMapSize(),
                 stats.getTotalOffered(),
                 stats.getTotalDeduplicated(),
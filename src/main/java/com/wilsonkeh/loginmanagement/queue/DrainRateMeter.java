@@ -0,0 +1,93 @@
+package com.wilsonkeh.loginmanagement.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 出队速率计量
+ * 记录处理完成的任务数，至少每 TICK 折算一次瞬时速率，用按时间衰减的指数加权移动平均（EWMA）平滑：
+ * 间隔越长新样本权重越大，长时间没有任务完成时速率随之衰减到0。
+ * 据此与当前积压估算排空时间，作为拒绝入队时建议客户端的重试等待时长
+ */
+public class DrainRateMeter {
+
+    // 默认的平滑时间常数，约为最近10秒的平均速率
+    public static final long DEFAULT_TIME_CONSTANT_MS = 10_000;
+
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double timeConstantNanos;
+    private final LongAdder uncounted = new LongAdder();
+
+    private volatile long lastTickNanos = System.nanoTime();
+    private volatile double ratePerSecond;
+    private boolean initialized;
+
+    public DrainRateMeter() {
+        this(DEFAULT_TIME_CONSTANT_MS);
+    }
+
+    /**
+     * @param timeConstantMs 平滑时间常数（毫秒），越大速率越平稳、对变化的响应越慢
+     */
+    public DrainRateMeter(long timeConstantMs) {
+        this.timeConstantNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, timeConstantMs));
+    }
+
+    /**
+     * 记录处理完成（出队）的任务数
+     */
+    public void record(long count) {
+        if (count <= 0) {
+            return;
+        }
+        uncounted.add(count);
+        tickIfNeeded(System.nanoTime());
+    }
+
+    /**
+     * 获取平滑后的每秒出队任务数
+     */
+    public double getRatePerSecond() {
+        tickIfNeeded(System.nanoTime());
+        return ratePerSecond;
+    }
+
+    /**
+     * 按出队速率估算排空积压所需的秒数
+     * @param depth 当前积压的任务数
+     * @param ratePerSecond 每秒出队任务数
+     * @param maxSeconds 上限，速率为0（消费者停滞）时直接返回上限
+     * @return 取值范围 [1, maxSeconds]
+     */
+    public static long secondsToDrain(long depth, double ratePerSecond, long maxSeconds) {
+        long upperBound = Math.max(1, maxSeconds);
+        if (ratePerSecond <= 0) {
+            return upperBound;
+        }
+        double seconds = Math.ceil(Math.max(0, depth) / ratePerSecond);
+        return (long) Math.max(1, Math.min(upperBound, seconds));
+    }
+
+    private void tickIfNeeded(long now) {
+        if (now - lastTickNanos < TICK_NANOS) {
+            return;
+        }
+        synchronized (this) {
+            long elapsed = now - lastTickNanos;
+            if (elapsed < TICK_NANOS) {
+                return;
+            }
+            double instantRate = uncounted.sumThenReset() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+            if (initialized) {
+                double alpha = 1 - Math.exp(-elapsed / timeConstantNanos);
+                ratePerSecond += alpha * (instantRate - ratePerSecond);
+            } else {
+                // 第一个样本直接作为初值，避免启动后很长时间低估速率
+                ratePerSecond = instantRate;
+                initialized = instantRate > 0;
+            }
+            lastTickNanos = now;
+        }
+    }
+}
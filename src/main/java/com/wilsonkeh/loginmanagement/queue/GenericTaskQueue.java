@@ -2,33 +2,37 @@ package com.wilsonkeh.loginmanagement.queue;
 
 import com.wilsonkeh.loginmanagement.config.QueueConfig;
 import com.wilsonkeh.loginmanagement.monitoring.QueueMetrics;
+import com.wilsonkeh.loginmanagement.queue.deadletter.DeadLetterQueue;
+import com.wilsonkeh.loginmanagement.queue.storage.TaskStorage;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 通用任务队列管理器
+ * 由 TaskQueueManager 创建，每个队列启动 consumerThreads 个消费线程：
+ * 队列中已有 batchSize 个任务时立即处理一批，否则最多等待 lingerMs 后处理已收集的任务，
+ * 低负载时延迟低，高负载时每批尽量填满。
+ * 处理器重试后仍失败的任务写入死信队列，并行处理时只写入失败 lane 的任务，修复故障后可从死信重放。
+ * 队列已满时不可丢弃任务最多等待 offerTimeoutMs，并统计出队速率用于估算建议的重试等待时长。
+ * 虚拟线程模式下消费线程为虚拟线程，阻塞在出队和处理器的JDBC调用上时不占用平台线程
  * @param <T> 任务数据类型
  */
 @Slf4j
-@Component
 public class GenericTaskQueue<T> {
 
-    @Autowired
-    private QueueConfig queueConfig;
-    
-    @Autowired
-    private List<TaskProcessor<T>> taskProcessors;
+    // 消费线程空闲时的等待时长，用于及时响应关闭
+    private static final long IDLE_POLL_MS = 1000;
+
+    private final List<TaskProcessor<T>> taskProcessors;
 
-    @Autowired
-    private QueueMetrics queueMetrics;
+    // 并行处理使用的串行 lane 执行器，按分区键路由
+    private final Executor[] laneExecutors;
 
     private final String queueName;
     private final QueueConfig.QueueProperties properties;
@@ -40,146 +44,305 @@ public class GenericTaskQueue<T> {
     private final AtomicInteger totalProcessed = new AtomicInteger(0);
     private final AtomicInteger totalFailed = new AtomicInteger(0);
     private final AtomicLong lastProcessTime = new AtomicLong(0);
+
+    // 出队速率（成功和失败的任务都计入），用于估算排空积压的时间
+    private final DrainRateMeter drainRateMeter = new DrainRateMeter();
     
     // 监控指标
     private final QueueMetrics.QueueMetricSet metrics;
 
-    public GenericTaskQueue(String queueName) {
+    // 自适应批大小控制器，未启用时为null
+    private final AdaptiveBatchSizer batchSizer;
+
+    // 失败任务的死信队列，为null时失败任务只记录日志
+    private final DeadLetterQueue deadLetterQueue;
+
+    // 消费线程，virtualThreads 为true时使用虚拟线程
+    private final boolean virtualThreads;
+    private final List<Thread> consumers = new ArrayList<>();
+    private volatile boolean running;
+
+    public GenericTaskQueue(String queueName, QueueConfig.QueueProperties properties,
+                            List<TaskProcessor<T>> taskProcessors, QueueMetrics queueMetrics,
+                            Executor[] laneExecutors, DeadLetterQueue deadLetterQueue) {
+        this(queueName, properties, taskProcessors, queueMetrics, laneExecutors, deadLetterQueue, false);
+    }
+
+    public GenericTaskQueue(String queueName, QueueConfig.QueueProperties properties,
+                            List<TaskProcessor<T>> taskProcessors, QueueMetrics queueMetrics,
+                            Executor[] laneExecutors, DeadLetterQueue deadLetterQueue, boolean virtualThreads) {
         this.queueName = queueName;
-        this.properties = queueConfig.getQueueProperties(queueName);
+        this.properties = properties;
+        this.taskProcessors = taskProcessors;
+        this.laneExecutors = laneExecutors;
+        this.deadLetterQueue = deadLetterQueue;
+        this.virtualThreads = virtualThreads;
         this.taskQueue = new DeduplicatingPriorityBlockingQueue<>(
             properties.getMaxQueueSize(),
             properties.isEnableDeduplication(),
-            Task::getDeduplicationKey
+            Task::getDeduplicationKey,
+            TaskStorage.create(properties.getStorageBackend(), properties.getMaxQueueSize(),
+                properties.getPriorityLevels(), properties.getPriorityAgingMs()),
+            properties.isVerifyDeduplicationKeys(),
+            properties.getDeduplicationWindowMs()
         );
         
         // 初始化监控指标
         this.metrics = queueMetrics.getOrCreateQueueMetrics(queueName);
         this.metrics.setQueueCapacity(properties.getMaxQueueSize());
+
+        if (properties.isAdaptiveBatchSizing()) {
+            this.batchSizer = new AdaptiveBatchSizer(properties.getBatchSize(), properties.getMinBatchSize(),
+                properties.getMaxBatchSize(), properties.getTargetBatchLatencyMs(), AdaptiveBatchSizer.DEFAULT_WINDOW_SIZE);
+            this.metrics.setCurrentBatchSize(batchSizer.getCurrentBatchSize());
+        } else {
+            this.batchSizer = null;
+            this.metrics.setCurrentBatchSize(properties.getBatchSize());
+        }
+    }
+
+    /**
+     * 启动消费线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        int threadCount = Math.max(1, properties.getConsumerThreads());
+        String prefix = properties.getThreadNamePrefix() != null ? properties.getThreadNamePrefix() : queueName + "-";
+        for (int i = 0; i < threadCount; i++) {
+            // 虚拟线程总是守护线程
+            Thread.Builder builder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon(true);
+            consumers.add(builder
+                    .name(prefix + "consumer-" + i)
+                    .start(this::consumeLoop));
+        }
+        log.info("队列消费线程已启动，queueName: {}, 线程数: {}, batchSize: {}, lingerMs: {}, 虚拟线程: {}",
+                 queueName, threadCount, properties.getBatchSize(), properties.getLingerMs(), virtualThreads);
+    }
+
+    /**
+     * 停止消费线程，等待正在处理的批次完成
+     */
+    public synchronized void shutdown(long timeoutMs) {
+        if (!running) {
+            return;
+        }
+        running = false;
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (Thread consumer : consumers) {
+            try {
+                consumer.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        consumers.clear();
+        log.info("队列消费线程已停止，queueName: {}, 剩余任务数: {}", queueName, taskQueue.size());
     }
 
     /**
      * 将任务加入队列
      */
     public boolean enqueueTask(Task<T> task) {
+        return enqueueTaskWithResult(task).isAccepted();
+    }
+
+    /**
+     * 将任务加入队列，返回区分重复任务和队列已满的入队结果
+     */
+    public OfferResult enqueueTaskWithResult(Task<T> task) {
         try {
-            boolean success = taskQueue.offer(task);
+            OfferResult result = taskQueue.offerWithResult(task, properties.getOfferTimeoutMs(), TimeUnit.MILLISECONDS);
             
-            if (success) {
-                metrics.recordTaskEnqueued();
-                log.debug("任务已加入队列，taskId: {}, queueName: {}, 当前队列大小: {}", 
-                         task.getTaskId(), queueName, taskQueue.size());
-            } else {
-                if (properties.isEnableDeduplication()) {
+            switch (result) {
+                case ACCEPTED -> {
+                    metrics.recordTaskEnqueued();
+                    log.debug("任务已加入队列，taskId: {}, queueName: {}, 当前队列大小: {}", 
+                             task.getTaskId(), queueName, taskQueue.size());
+                }
+                case DUPLICATE -> {
                     metrics.recordTaskDeduplicated();
                     log.debug("检测到重复任务，已丢弃，taskId: {}, queueName: {}", 
                              task.getTaskId(), queueName);
-                } else {
-                    log.warn("队列已满，无法添加任务，taskId: {}, queueName: {}", 
-                             task.getTaskId(), queueName);
                 }
+                default -> log.warn("队列已满，无法添加任务，taskId: {}, queueName: {}", 
+                             task.getTaskId(), queueName);
             }
             
             // 更新队列大小指标
             metrics.setQueueSize(taskQueue.size());
             
-            return success;
+            return result;
 
         } catch (Exception e) {
             log.error("加入任务队列时发生错误，taskId: {}, queueName: {}, 错误: {}", 
                      task.getTaskId(), queueName, e.getMessage(), e);
-            return false;
+            return OfferResult.FAILED;
         }
     }
 
     /**
-     * 定时批量处理任务
+     * 消费循环：阻塞等待第一个任务，再按数量或等待时长收集一批后处理
      */
-    @Scheduled(fixedRateString = "#{@queueConfig.getQueueProperties('${app.queue.default.name:default}').processIntervalMs}")
-    @Async("batchProcessorExecutor")
-    public void processBatchTasks() {
-        try {
-            int queueSize = taskQueue.size();
-            if (queueSize == 0) {
-                return;
+    private void consumeLoop() {
+        while (running) {
+            try {
+                List<Task<T>> batch = collectBatch();
+                if (!batch.isEmpty()) {
+                    processBatch(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("队列消费线程发生错误，queueName: {}, 错误: {}", 
+                         queueName, e.getMessage(), e);
             }
+        }
+    }
 
-            int batchSize = calculateBatchSize(queueSize);
-            log.info("开始批量处理任务，队列: {}, 队列大小: {}, 批处理大小: {}", 
-                     queueName, queueSize, batchSize);
+    /**
+     * 收集一批任务：已有 batchSize 个任务时立即返回，否则最多等待 lingerMs；
+     * 积压较多时一次取出至多 maxBatchSize 个
+     */
+    private List<Task<T>> collectBatch() throws InterruptedException {
+        Task<T> first = taskQueue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return List.of();
+        }
 
-            List<Task<T>> batch = new ArrayList<>();
-            int processedCount = 0;
-            int failedCount = 0;
+        int batchLimit = Math.max(1, calculateBatchSize());
+        int flushSize = Math.max(1, Math.min(properties.getBatchSize(), batchLimit));
+        List<Task<T>> batch = new ArrayList<>(batchLimit);
+        batch.add(first);
+        taskQueue.drainTo(batch, batchLimit - batch.size());
 
-            // 收集批处理任务
-            for (int i = 0; i < batchSize && !taskQueue.isEmpty(); i++) {
-                Task<T> task = taskQueue.poll();
-                if (task != null) {
-                    batch.add(task);
-                }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getLingerMs());
+        while (batch.size() < flushSize && running) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            Task<T> task = taskQueue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (task == null) {
+                break;
             }
+            batch.add(task);
+            taskQueue.drainTo(batch, batchLimit - batch.size());
+        }
+        return batch;
+    }
+
+    /**
+     * 批量处理任务
+     */
+    private void processBatch(List<Task<T>> batch) {
+        int processedCount = 0;
+        int failedCount = 0;
+
+        log.debug("开始批量处理任务，队列: {}, 批处理大小: {}, 剩余队列大小: {}", 
+                 queueName, batch.size(), taskQueue.size());
 
-            if (!batch.isEmpty()) {
-                // 开始批处理计时
-                var batchTimer = metrics.startBatchProcessingTimer();
-                
-                try {
-                    // 查找对应的处理器
-                    TaskProcessor<T> processor = findProcessor(batch.get(0));
-                    if (processor != null) {
-                        // 根据配置决定是否使用并行处理
-                        if (properties.getEnableParallelProcessing()) {
-                            int threadPoolSize = properties.getParallelThreadPoolSize();
-                            processor.processBatchParallel(batch, threadPoolSize);
-                            log.debug("使用并行处理，线程池大小: {}", threadPoolSize);
+        // 开始批处理计时
+        var batchTimer = metrics.startBatchProcessingTimer();
+        
+        try {
+            // 查找对应的处理器
+            TaskProcessor<T> processor = findProcessor(batch.get(0));
+            if (processor != null) {
+                // 根据配置决定是否使用并行处理
+                if (properties.isEnableParallelProcessing()) {
+                    // 每个 lane 通过处理器代理调用 processBatch，@Retryable 对每个 lane 单独生效；
+                    // 逐个 lane 统计结果，已经提交的 lane 不随其他 lane 的失败写入死信
+                    for (BatchExecutionEngine.LaneOutcome<T> outcome
+                            : BatchExecutionEngine.processInLanes(batch, laneExecutors, processor::processBatch)) {
+                        if (outcome.succeeded()) {
+                            processedCount += outcome.tasks().size();
                         } else {
-                            processor.processBatch(batch);
-                            log.debug("使用串行处理");
+                            log.error("lane处理任务时发生错误，queueName: {}, 任务数量: {}, 错误: {}",
+                                     queueName, outcome.tasks().size(), outcome.failure().getMessage(), outcome.failure());
+                            failedCount += outcome.tasks().size();
+                            deadLetter(outcome.tasks(), rootCauseMessage(outcome.failure()));
                         }
-                        processedCount = batch.size();
-                    } else {
-                        log.error("未找到任务处理器，taskType: {}, queueName: {}", 
-                                 batch.get(0).getTaskType(), queueName);
-                        failedCount = batch.size();
                     }
-                } catch (Exception e) {
-                    log.error("批量处理任务时发生错误，queueName: {}, 错误: {}", 
-                             queueName, e.getMessage(), e);
-                    failedCount = batch.size();
+                    log.debug("使用分道并行处理，lane数: {}", laneExecutors.length);
+                } else {
+                    processor.processBatch(batch);
+                    log.debug("使用串行处理");
+                    processedCount = batch.size();
                 }
-
-                // 停止批处理计时
-                metrics.stopBatchProcessingTimer(batchTimer);
-                
-                // 记录批处理完成
-                metrics.recordBatchProcessed();
+            } else {
+                log.error("未找到任务处理器，taskType: {}, queueName: {}", 
+                         batch.get(0).getTaskType(), queueName);
+                failedCount = batch.size();
+                deadLetter(batch, "未找到任务处理器，taskType: " + batch.get(0).getTaskType());
             }
+        } catch (Exception e) {
+            log.error("批量处理任务时发生错误，queueName: {}, 错误: {}", 
+                     queueName, e.getMessage(), e);
+            failedCount = batch.size();
+            deadLetter(batch, rootCauseMessage(e));
+        }
 
-            totalProcessed.addAndGet(processedCount);
-            totalFailed.addAndGet(failedCount);
-            lastProcessTime.set(System.currentTimeMillis());
+        // 停止批处理计时，并据此调整后续批大小
+        long latencyNanos = metrics.stopBatchProcessingTimer(batchTimer);
+        if (batchSizer != null) {
+            batchSizer.record(batch.size(), latencyNanos);
+            metrics.setCurrentBatchSize(batchSizer.getCurrentBatchSize());
+        }
+        
+        // 记录批处理完成
+        metrics.recordBatchProcessed();
+        drainRateMeter.record(batch.size());
 
-            // 记录处理结果
-            for (int i = 0; i < processedCount; i++) {
-                metrics.recordTaskProcessed();
-            }
-            for (int i = 0; i < failedCount; i++) {
-                metrics.recordTaskFailed();
-            }
+        totalProcessed.addAndGet(processedCount);
+        totalFailed.addAndGet(failedCount);
+        lastProcessTime.set(System.currentTimeMillis());
 
-            // 更新队列大小指标
-            metrics.setQueueSize(taskQueue.size());
+        // 记录处理结果
+        for (int i = 0; i < processedCount; i++) {
+            metrics.recordTaskProcessed();
+        }
+        for (int i = 0; i < failedCount; i++) {
+            metrics.recordTaskFailed();
+        }
 
-            log.info("批量处理完成，队列: {}, 处理数量: {}, 失败数量: {}, 剩余队列大小: {}", 
-                     queueName, processedCount, failedCount, taskQueue.size());
+        // 更新队列大小指标
+        metrics.setQueueSize(taskQueue.size());
 
+        log.info("批量处理完成，队列: {}, 处理数量: {}, 失败数量: {}, 剩余队列大小: {}", 
+                 queueName, processedCount, failedCount, taskQueue.size());
+    }
+
+    /**
+     * 将失败的任务写入死信队列
+     */
+    private void deadLetter(List<Task<T>> batch, String reason) {
+        if (deadLetterQueue == null) {
+            return;
+        }
+        try {
+            deadLetterQueue.addAll(batch, queueName, reason, 1);
         } catch (Exception e) {
-            log.error("批量处理任务时发生错误，queueName: {}, 错误: {}", 
-                     queueName, e.getMessage(), e);
+            log.error("写入死信队列时发生错误，queueName: {}, 任务数量: {}, 错误: {}", 
+                     queueName, batch.size(), e.getMessage(), e);
         }
     }
 
+    /**
+     * 取异常链最底层的原因，并行处理和重试会把真正的错误包装多层
+     */
+    private static String rootCauseMessage(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getClass().getSimpleName() + ": " + cause.getMessage();
+    }
+
     /**
      * 查找任务处理器
      */
@@ -191,14 +354,13 @@ public class GenericTaskQueue<T> {
     }
 
     /**
-     * 计算批处理大小
+     * 计算单批上限，启用自适应时由控制器决定，否则为 maxBatchSize
      */
-    private int calculateBatchSize(int queueSize) {
-        if (queueSize <= properties.getBatchSize()) {
-            return queueSize;
-        } else {
-            return Math.min(queueSize, properties.getMaxBatchSize());
+    private int calculateBatchSize() {
+        if (batchSizer != null) {
+            return batchSizer.getCurrentBatchSize();
         }
+        return properties.getMaxBatchSize();
     }
 
     /**
@@ -210,6 +372,7 @@ public class GenericTaskQueue<T> {
                 .queueName(queueName)
                 .queueSize(queueStats.getCurrentSize())
                 .deduplicationMapSize(queueStats.getDeduplicationMapSize())
+                .deduplicationMemoryBytes(queueStats.getDeduplicationMemoryBytes())
                 .totalEnqueued(queueStats.getTotalOffered())
                 .totalDeduplicated(queueStats.getTotalDeduplicated())
                 .totalProcessed(totalProcessed.get())
@@ -225,6 +388,13 @@ public class GenericTaskQueue<T> {
         return taskQueue.size();
     }
 
+    /**
+     * 获取平滑后的每秒出队任务数
+     */
+    public double getDrainRatePerSecond() {
+        return drainRateMeter.getRatePerSecond();
+    }
+
     /**
      * 获取去重映射大小
      */
@@ -249,6 +419,7 @@ public class GenericTaskQueue<T> {
         private String queueName;
         private int queueSize;
         private int deduplicationMapSize;
+        private long deduplicationMemoryBytes;
         private int totalEnqueued;
         private int totalDeduplicated;
         private int totalProcessed;
@@ -0,0 +1,198 @@
+package com.wilsonkeh.loginmanagement.queue;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 组提交批处理器
+ * 收集多个调用线程提交的元素，最多等待 lingerMicros 微秒或凑满 maxBatchSize 个后一次性提交，
+ * 再按提交顺序把每个元素的入队结果（区分重复任务和队列已满）分别返回给各自的调用方，
+ * 用一次集群往返代替多次逐条往返，突破单次网络延迟对吞吐的限制。
+ * 所有调用方共用一个提交线程，批量提交函数不应等待容量，队列已满时应立即返回 QUEUE_FULL，
+ * 由调用方决定是否等待重试，否则一个批次的等待会推迟所有后续批次
+ * @param <E> 元素类型
+ */
+@Slf4j
+public class GroupCommitBatcher<E> {
+
+    // 提交线程空闲时的等待时长，用于及时响应关闭
+    private static final long IDLE_POLL_MS = 1000;
+
+    private final String name;
+    private final Function<List<E>, List<OfferResult>> flushFunction;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final BlockingQueue<PendingElement<E>> pending = new LinkedBlockingQueue<>();
+
+    // 统计计数器
+    private final AtomicLong totalSubmitted = new AtomicLong(0);
+    private final AtomicLong totalFlushes = new AtomicLong(0);
+
+    private Thread flusher;
+    private volatile boolean running;
+
+    /**
+     * @param name 名称，用于线程命名和日志
+     * @param flushFunction 批量提交函数，返回与输入顺序一致的入队结果，不应等待容量
+     * @param maxBatchSize 单次提交的最大元素数
+     * @param lingerMicros 收集一批的最长等待时间（微秒）
+     */
+    public GroupCommitBatcher(String name, Function<List<E>, List<OfferResult>> flushFunction,
+                              int maxBatchSize, long lingerMicros) {
+        this.name = name;
+        this.flushFunction = flushFunction;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, lingerMicros));
+    }
+
+    /**
+     * 启动提交线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        flusher = Thread.ofPlatform().name(name + "-flusher").daemon(true).start(this::flushLoop);
+        log.info("组提交批处理器已启动，name: {}, 最大批大小: {}, 等待时长: {}us",
+                name, maxBatchSize, TimeUnit.NANOSECONDS.toMicros(lingerNanos));
+    }
+
+    /**
+     * 停止提交线程，剩余元素由调用线程直接提交
+     */
+    public synchronized void shutdown(long timeoutMs) {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            flusher.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushRemaining();
+        log.info("组提交批处理器已停止，name: {}, 总提交: {}, 总批次: {}", name, totalSubmitted.get(), totalFlushes.get());
+    }
+
+    /**
+     * 提交元素并等待其所在批次完成
+     */
+    public OfferResult submit(E element) {
+        return submitAsync(element).join();
+    }
+
+    /**
+     * 提交元素，返回该元素的入队结果
+     */
+    public CompletableFuture<OfferResult> submitAsync(E element) {
+        totalSubmitted.incrementAndGet();
+        if (!running) {
+            // 未启动或已关闭时直接提交
+            PendingElement<E> entry = new PendingElement<>(element, new CompletableFuture<>());
+            flush(List.of(entry));
+            return entry.result();
+        }
+        PendingElement<E> entry = new PendingElement<>(element, new CompletableFuture<>());
+        pending.offer(entry);
+        if (!running) {
+            // 关闭过程中加入的元素可能已错过提交线程，补提交一次
+            flushRemaining();
+        }
+        return entry.result();
+    }
+
+    public long getTotalSubmitted() {
+        return totalSubmitted.get();
+    }
+
+    public long getTotalFlushes() {
+        return totalFlushes.get();
+    }
+
+    /**
+     * 提交循环：阻塞等待第一个元素，再按数量或等待时长收集一批后提交
+     */
+    private void flushLoop() {
+        while (running) {
+            try {
+                List<PendingElement<E>> batch = collectBatch();
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("组提交线程发生错误，name: {}, 错误: {}", name, e.getMessage(), e);
+            }
+        }
+    }
+
+    private List<PendingElement<E>> collectBatch() throws InterruptedException {
+        PendingElement<E> first = pending.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return List.of();
+        }
+        List<PendingElement<E>> batch = new ArrayList<>(maxBatchSize);
+        batch.add(first);
+        pending.drainTo(batch, maxBatchSize - batch.size());
+
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            PendingElement<E> next = pending.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            pending.drainTo(batch, maxBatchSize - batch.size());
+        }
+        return batch;
+    }
+
+    private void flushRemaining() {
+        List<PendingElement<E>> batch = new ArrayList<>(maxBatchSize);
+        while (pending.drainTo(batch, maxBatchSize) > 0) {
+            flush(batch);
+            batch = new ArrayList<>(maxBatchSize);
+        }
+    }
+
+    /**
+     * 一次性提交一批元素，并分别完成每个调用方的结果
+     */
+    private void flush(List<PendingElement<E>> batch) {
+        totalFlushes.incrementAndGet();
+        List<E> elements = new ArrayList<>(batch.size());
+        for (PendingElement<E> entry : batch) {
+            elements.add(entry.element());
+        }
+        try {
+            List<OfferResult> results = flushFunction.apply(elements);
+            for (int i = 0; i < batch.size(); i++) {
+                OfferResult result = i < results.size() && results.get(i) != null ? results.get(i) : OfferResult.FAILED;
+                batch.get(i).result().complete(result);
+            }
+        } catch (Exception e) {
+            log.error("组提交失败，name: {}, 数量: {}, 错误: {}", name, batch.size(), e.getMessage(), e);
+            for (PendingElement<E> entry : batch) {
+                entry.result().complete(OfferResult.FAILED);
+            }
+        }
+    }
+
+    private record PendingElement<E>(E element, CompletableFuture<OfferResult> result) {
+    }
+}
@@ -10,6 +10,7 @@ import lombok.EqualsAndHashCode;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 登录记录任务
@@ -17,6 +18,14 @@ import java.time.LocalDateTime;
 @Data
 @EqualsAndHashCode(callSuper = false)
 public class LoginRecordTask implements Task<LoginRecordRequest>, IdentifiedDataSerializable {
+
+    // 最高优先级，用于可疑登录、管理员账号等需要优先落库的记录
+    public static final int HIGHEST_PRIORITY = 0;
+    // 普通登录记录的默认优先级
+    public static final int DEFAULT_PRIORITY = 4;
+    // 最低优先级，与本地队列默认的8级优先级一致；调用方只能在默认和最低优先级之间选择，
+    // 高于默认的优先级保留给服务端分配
+    public static final int LOWEST_PRIORITY = 7;
     
     private String taskId;
     private LoginRecordRequest data;
@@ -35,7 +44,7 @@ public class LoginRecordTask implements Task<LoginRecordRequest>, IdentifiedData
         this.data = data;
         this.taskType = "LOGIN_RECORD";
         this.deduplicationKey = data.uid(); // 使用uid作为去重键
-        this.priority = 0; // 默认优先级
+        this.priority = DEFAULT_PRIORITY; // 默认优先级
         this.createdTime = System.currentTimeMillis();
         this.discardable = false; // 登录记录不可丢弃
     }
@@ -50,8 +59,13 @@ public class LoginRecordTask implements Task<LoginRecordRequest>, IdentifiedData
         this.discardable = false;
     }
 
+    /**
+     * 任务ID在集群内唯一：同一用户同一毫秒内的多条登录记录（批量写入时常见）也不能共用ID，
+     * 否则按任务ID存放的死信和租约会把它们合并为一条
+     */
     private String generateTaskId(LoginRecordRequest data) {
-        return "login_" + data.uid() + "_" + System.currentTimeMillis();
+        return "login_" + data.uid() + "_" + System.currentTimeMillis() + "_"
+                + Long.toHexString(ThreadLocalRandom.current().nextLong());
     }
 
     @Override
@@ -74,6 +88,12 @@ public class LoginRecordTask implements Task<LoginRecordRequest>, IdentifiedData
         return deduplicationKey;
     }
 
+    @Override
+    public String getPartitionKey() {
+        // 按用户分道，保证同一用户的登录记录按顺序落库
+        return data != null ? data.uid() : deduplicationKey;
+    }
+
     @Override
     public int getPriority() {
         return priority;
@@ -103,6 +123,7 @@ public class LoginRecordTask implements Task<LoginRecordRequest>, IdentifiedData
     @Override
     public void writeData(ObjectDataOutput out) throws IOException {
         out.writeString(taskId);
+        // 由 LoginRecordRequestSerializer 编码，未注册时回退为Java序列化
         out.writeObject(data);
         out.writeString(taskType);
         out.writeString(deduplicationKey);
@@ -1,6 +1,8 @@
 package com.wilsonkeh.loginmanagement.queue;
 
 import com.wilsonkeh.loginmanagement.dto.LoginRecordRequest;
+import com.wilsonkeh.loginmanagement.dto.LoginRecordWriteResult;
+import com.wilsonkeh.loginmanagement.exception.DuplicateTraceIdException;
 import com.wilsonkeh.loginmanagement.service.LoginRecordService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +15,7 @@ import java.util.stream.Collectors;
 
 /**
  * 登录记录任务处理器
+ * Trace ID已存在的任务视为已处理，从死信重放的批次中即使部分记录已经写入也能完成
  */
 @Slf4j
 @Component
@@ -33,6 +36,9 @@ public class LoginRecordTaskProcessor implements TaskProcessor<LoginRecordReques
             loginRecordService.createLoginRecord(request);
             log.debug("登录记录任务处理成功，taskId: {}, uid: {}", 
                      task.getTaskId(), request.uid());
+        } catch (DuplicateTraceIdException e) {
+            log.debug("登录记录已存在，跳过，taskId: {}, traceId: {}", 
+                     task.getTaskId(), task.getData().traceId());
         } catch (Exception e) {
             log.error("处理登录记录任务失败，taskId: {}, uid: {}, 错误: {}", 
                      task.getTaskId(), task.getData().uid(), e.getMessage(), e);
@@ -57,12 +63,12 @@ public class LoginRecordTaskProcessor implements TaskProcessor<LoginRecordReques
                     .map(Task::getData)
                     .collect(Collectors.toList());
 
-            // 使用批量处理
-            List<com.wilsonkeh.loginmanagement.dto.LoginRecordResponse> responses = 
-                    loginRecordService.createLoginRecordsBatch(requests);
+            // 使用批量处理，已存在的记录在数据库中直接跳过
+            List<LoginRecordWriteResult> results = loginRecordService.createLoginRecordsBatch(requests);
+            long inserted = results.stream().filter(LoginRecordWriteResult::inserted).count();
 
-            log.info("批量处理登录记录任务成功，处理数量: {}, 成功数量: {}", 
-                     tasks.size(), responses.size());
+            log.info("批量处理登录记录任务成功，处理数量: {}, 新增数量: {}, 已存在跳过: {}", 
+                     tasks.size(), inserted, results.size() - inserted);
 
         } catch (Exception e) {
             log.error("批量处理登录记录任务失败，任务数量: {}, 错误: {}", 
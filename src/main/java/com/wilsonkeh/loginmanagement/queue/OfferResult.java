@@ -0,0 +1,20 @@
+package com.wilsonkeh.loginmanagement.queue;
+
+/**
+ * 单个任务的入队结果
+ * 区分重复任务和容量不足：重复任务重试也不会成功，只有容量不足才值得客户端稍后重试
+ */
+public enum OfferResult {
+    // 成功入队
+    ACCEPTED,
+    // 与队列中或同批次中的任务重复，未入队
+    DUPLICATE,
+    // 队列已满，等待超时后仍无容量
+    QUEUE_FULL,
+    // 入队过程中发生错误
+    FAILED;
+
+    public boolean isAccepted() {
+        return this == ACCEPTED;
+    }
+}
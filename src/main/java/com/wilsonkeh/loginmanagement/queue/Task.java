@@ -30,6 +30,14 @@ public interface Task<T> extends Serializable {
         return getTaskId();
     }
     
+    /**
+     * 获取分区键（用于分道并行处理，同一分区键的任务按顺序串行处理）
+     * 默认与去重键一致
+     */
+    default String getPartitionKey() {
+        return getDeduplicationKey();
+    }
+    
     /**
      * 获取任务优先级（数字越小优先级越高）
      */
@@ -1,9 +1,7 @@
 package com.wilsonkeh.loginmanagement.queue;
 
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 /**
  * 任务处理器接口
@@ -30,55 +28,37 @@ public interface TaskProcessor<T> {
     }
     
     /**
-     * 并行批量处理任务（使用固定线程池）
+     * 按分区键分道并行处理任务
+     * 同一分区键的任务总是路由到同一个 lane，lane 内按入队顺序串行处理，不同 lane 之间并行，
+     * 保证同一用户的任务有序且不会被并发处理。任一 lane 失败时在全部 lane 结束后抛出异常，
+     * 需要区分各 lane 结果的调用方使用 {@link BatchExecutionEngine#processInLanes}。
+     * 各 lane 在处理器实例内部调用 processBatch，不经过 Spring 代理，@Retryable 等注解不生效；
+     * 需要逐 lane 重试时应像 GenericTaskQueue 一样，以处理器代理的 processBatch 调用 processInLanes
      * @param tasks 任务列表
-     * @param threadPoolSize 线程池大小
+     * @param lanes 串行 lane 执行器，通常由 BatchExecutionEngine 提供
      * @throws Exception 处理异常
      */
-    default void processBatchParallel(List<Task<T>> tasks, int threadPoolSize) throws Exception {
-        if (tasks == null || tasks.isEmpty()) {
-            return;
-        }
-        
-        if (threadPoolSize <= 1) {
-            // 如果线程池大小为1或更小，使用串行处理
-            processBatch(tasks);
-            return;
-        }
-        
-        // For scheduled jobs, it's better to create a new ExecutorService each time to avoid resource leaks and thread exhaustion,
-        // unless you have a strong reason to share a thread pool (e.g., for resource control or reuse).
-        // Here, we keep the ExecutorService local to the method and use try-with-resources for proper shutdown.
-        try (ExecutorService executor = Executors.newFixedThreadPool(threadPoolSize)) {
-            int batchSize = Math.max(1, tasks.size() / threadPoolSize);
-            List<CompletableFuture<Void>> futures = new java.util.ArrayList<>();
-
-            for (int i = 0; i < tasks.size(); i += batchSize) {
-                int endIndex = Math.min(i + batchSize, tasks.size());
-                List<Task<T>> batch = tasks.subList(i, endIndex);
-
-                CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
-                    try {
-                        for (Task<T> task : batch) {
-                            processTask(task);
-                        }
-                    } catch (Exception e) {
-                        throw new RuntimeException("Failed to process batch tasks", e);
-                    }
-                }, executor);
-
-                futures.add(future);
+    default void processBatchParallel(List<Task<T>> tasks, Executor[] lanes) throws Exception {
+        for (BatchExecutionEngine.LaneOutcome<T> outcome : BatchExecutionEngine.processInLanes(tasks, lanes, this::processBatch)) {
+            if (!outcome.succeeded()) {
+                throw new Exception("并行批量处理任务失败", outcome.failure());
             }
-
-            // Wait for all tasks to complete
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
-
-        
-        } catch (Exception e) {
-            throw new Exception("并行批量处理任务失败", e);
         }
     }
     
+    /**
+     * 计算任务所属的 lane
+     */
+    static int laneOf(Task<?> task, int laneCount) {
+        String partitionKey = task.getPartitionKey();
+        if (partitionKey == null) {
+            return 0;
+        }
+        int hash = partitionKey.hashCode();
+        // 混合高位，避免相近的键集中到少数 lane
+        return Math.floorMod(hash ^ (hash >>> 16), laneCount);
+    }
+    
     /**
      * 获取处理器支持的任务类型
      */
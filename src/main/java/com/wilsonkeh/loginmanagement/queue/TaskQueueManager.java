@@ -1,10 +1,15 @@
 package com.wilsonkeh.loginmanagement.queue;
 
 import com.wilsonkeh.loginmanagement.config.QueueConfig;
+import com.wilsonkeh.loginmanagement.monitoring.QueueMetrics;
+import com.wilsonkeh.loginmanagement.queue.deadletter.DeadLetterQueue;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -18,20 +23,52 @@ public class TaskQueueManager {
     @Autowired
     private QueueConfig queueConfig;
 
+    @Autowired
+    private QueueMetrics queueMetrics;
+
+    @Autowired
+    private List<TaskProcessor<?>> taskProcessors;
+
+    @Autowired
+    private BatchExecutionEngine batchExecutionEngine;
+
+    @Autowired
+    private DeadLetterQueue deadLetterQueue;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreadsEnabled;
+
+    // 关闭时等待消费线程处理完当前批次的最长时间
+    private static final long SHUTDOWN_TIMEOUT_MS = 30000;
+
     // 存储所有队列实例
     private final Map<String, GenericTaskQueue<?>> queues = new ConcurrentHashMap<>();
 
     /**
-     * 获取或创建队列实例
+     * 获取或创建队列实例，新建的队列会立即启动消费线程
      */
     @SuppressWarnings("unchecked")
     public <T> GenericTaskQueue<T> getQueue(String queueName) {
         return (GenericTaskQueue<T>) queues.computeIfAbsent(queueName, name -> {
             log.info("创建新的任务队列: {}", name);
-            return new GenericTaskQueue<>(name);
+            List<TaskProcessor<T>> processors = (List<TaskProcessor<T>>) (List<?>) taskProcessors;
+            QueueConfig.QueueProperties properties = queueConfig.getQueueProperties(name);
+            GenericTaskQueue<T> queue = new GenericTaskQueue<>(name, properties, processors, queueMetrics,
+                batchExecutionEngine.getLaneExecutors(name, properties.getParallelThreadPoolSize()), deadLetterQueue,
+                virtualThreadsEnabled);
+            queue.start();
+            return queue;
         });
     }
 
+    /**
+     * 应用关闭时停止所有队列的消费线程
+     */
+    @PreDestroy
+    public void shutdown() {
+        queues.forEach((name, queue) -> queue.shutdown(SHUTDOWN_TIMEOUT_MS));
+    }
+
     /**
      * 获取所有队列的统计信息
      */
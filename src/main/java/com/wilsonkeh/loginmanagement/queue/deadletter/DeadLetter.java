@@ -0,0 +1,112 @@
+package com.wilsonkeh.loginmanagement.queue.deadletter;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.wilsonkeh.loginmanagement.queue.Task;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+
+import java.io.IOException;
+
+/**
+ * 死信：处理失败、不再自动重试的任务
+ * 保存任务本身、来源（本地队列名或分布式队列）、最后一次失败原因、累计失败次数以及首次和最后一次失败时间，
+ * 按首次失败时间排序，分页查询和重放时先处理最早失败的任务
+ */
+public class DeadLetter implements IdentifiedDataSerializable, Comparable<DeadLetter> {
+
+    private Task<?> task;
+    private String source;
+    private String reason;
+    private int attempts;
+    private long firstFailedAt;
+    private long lastFailedAt;
+
+    // 默认构造函数，用于Hazelcast序列化
+    public DeadLetter() {
+    }
+
+    public DeadLetter(Task<?> task, String source, String reason, int attempts, long firstFailedAt, long lastFailedAt) {
+        this.task = task;
+        this.source = source;
+        this.reason = reason;
+        this.attempts = attempts;
+        this.firstFailedAt = firstFailedAt;
+        this.lastFailedAt = lastFailedAt;
+    }
+
+    /**
+     * 同一任务再次失败：保留首次失败时间，累加失败次数，原因和最后失败时间取新的一次
+     */
+    public DeadLetter merge(DeadLetter newer) {
+        return new DeadLetter(newer.task, newer.source, newer.reason, attempts + newer.attempts,
+            Math.min(firstFailedAt, newer.firstFailedAt), Math.max(lastFailedAt, newer.lastFailedAt));
+    }
+
+    public String getTaskId() {
+        return task.getTaskId();
+    }
+
+    public Task<?> getTask() {
+        return task;
+    }
+
+    /**
+     * 任务来源：本地队列为队列名，分布式队列为 {@link DeadLetterQueue#SOURCE_DISTRIBUTED}
+     */
+    public String getSource() {
+        return source;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getFirstFailedAt() {
+        return firstFailedAt;
+    }
+
+    public long getLastFailedAt() {
+        return lastFailedAt;
+    }
+
+    @Override
+    public int compareTo(DeadLetter other) {
+        int result = Long.compare(firstFailedAt, other.firstFailedAt);
+        return result != 0 ? result : getTaskId().compareTo(other.getTaskId());
+    }
+
+    @Override
+    public int getFactoryId() {
+        return LoginRecordDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return LoginRecordDataSerializableFactory.DEAD_LETTER_TYPE;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeObject(task);
+        out.writeString(source);
+        out.writeString(reason);
+        out.writeInt(attempts);
+        out.writeLong(firstFailedAt);
+        out.writeLong(lastFailedAt);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        task = in.readObject();
+        source = in.readString();
+        reason = in.readString();
+        attempts = in.readInt();
+        firstFailedAt = in.readLong();
+        lastFailedAt = in.readLong();
+    }
+}
@@ -0,0 +1,57 @@
+package com.wilsonkeh.loginmanagement.queue.deadletter;
+
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 死信写入处理器
+ * 键不存在时写入死信，已存在时与已有死信合并，返回是否新增了条目
+ */
+public class DeadLetterAddProcessor
+        implements EntryProcessor<String, DeadLetter, Boolean>, IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private DeadLetter letter;
+
+    // 默认构造函数，用于Hazelcast序列化
+    public DeadLetterAddProcessor() {
+    }
+
+    public DeadLetterAddProcessor(DeadLetter letter) {
+        this.letter = letter;
+    }
+
+    @Override
+    public Boolean process(Map.Entry<String, DeadLetter> entry) {
+        DeadLetter existing = entry.getValue();
+        entry.setValue(existing != null ? existing.merge(letter) : letter);
+        return existing == null;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return LoginRecordDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return LoginRecordDataSerializableFactory.DEAD_LETTER_ADD_PROCESSOR_TYPE;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeObject(letter);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        letter = in.readObject();
+    }
+}
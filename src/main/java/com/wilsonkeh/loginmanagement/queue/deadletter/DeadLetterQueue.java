@@ -0,0 +1,192 @@
+package com.wilsonkeh.loginmanagement.queue.deadletter;
+
+import com.hazelcast.aggregation.Aggregators;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.query.PagingPredicate;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
+import com.wilsonkeh.loginmanagement.config.HazelcastConfig;
+import com.wilsonkeh.loginmanagement.queue.Task;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 死信队列
+ * 本地队列和分布式队列处理失败、不再自动重试的任务保存在集群共享的 IMap 中，以任务ID为键，
+ * 同一任务多次失败合并为一条并累加失败次数。数量上限由 max-size 控制，达到上限后新的死信被拒绝并记录错误日志，
+ * 不会挤掉已有的死信。死信可以分页查看，修复故障后批量重放回原来的队列
+ */
+@Slf4j
+@Component
+public class DeadLetterQueue {
+
+    // 分布式队列死信的来源，本地队列的死信以队列名为来源
+    public static final String SOURCE_DISTRIBUTED = "distributed";
+
+    // 失败原因的最大长度，避免完整的SQL异常信息占用过多内存
+    private static final int MAX_REASON_LENGTH = 500;
+
+    private final IMap<String, DeadLetter> deadLetterMap;
+    private final int maxSize;
+
+    @Autowired
+    public DeadLetterQueue(HazelcastInstance hazelcastInstance,
+                           @Value("${app.queue.dead-letter.max-size:100000}") int maxSize) {
+        this.deadLetterMap = hazelcastInstance.getMap(HazelcastConfig.DEAD_LETTER_MAP_NAME);
+        this.maxSize = maxSize;
+        log.info("死信队列初始化完成 - Map名称: {}, 最大大小: {}", HazelcastConfig.DEAD_LETTER_MAP_NAME, maxSize);
+    }
+
+    /**
+     * 批量写入死信，以流水线方式提交到各自分区后统一等待结果
+     * @param tasks 失败的任务
+     * @param source 任务来源
+     * @param reason 失败原因
+     * @param attempts 本次计入的失败次数
+     * @return 成功写入（新增或合并）的任务数，超出容量或写入失败的任务只记录错误日志
+     */
+    public int addAll(Collection<? extends Task<?>> tasks, String source, String reason, int attempts) {
+        if (tasks.isEmpty()) {
+            return 0;
+        }
+        List<Task<?>> accepted = new ArrayList<>(tasks);
+        int remainingCapacity;
+        try {
+            remainingCapacity = Math.max(0, maxSize - deadLetterMap.size());
+        } catch (Exception e) {
+            log.error("写入死信失败，任务丢失 - 来源: {}, 数量: {}, 原因: {}, 错误: {}",
+                    source, tasks.size(), reason, e.getMessage(), e);
+            return 0;
+        }
+        if (accepted.size() > remainingCapacity) {
+            List<Task<?>> overflow = accepted.subList(remainingCapacity, accepted.size());
+            log.error("死信队列已满，丢弃 {} 个失败任务 - 来源: {}, 原因: {}, taskIds: {}",
+                    overflow.size(), source, reason, overflow.stream().map(Task::getTaskId).toList());
+            accepted = accepted.subList(0, remainingCapacity);
+        }
+
+        long now = System.currentTimeMillis();
+        String truncatedReason = truncate(reason);
+        List<CompletableFuture<Boolean>> submissions = new ArrayList<>(accepted.size());
+        for (Task<?> task : accepted) {
+            DeadLetter letter = new DeadLetter(task, source, truncatedReason, attempts, now, now);
+            submissions.add(deadLetterMap.submitToKey(task.getTaskId(), new DeadLetterAddProcessor(letter))
+                .toCompletableFuture());
+        }
+        int stored = 0;
+        for (int i = 0; i < submissions.size(); i++) {
+            try {
+                submissions.get(i).join();
+                stored++;
+            } catch (Exception e) {
+                log.error("写入死信失败，任务丢失 - taskId: {}, 来源: {}, 原因: {}, 错误: {}",
+                        accepted.get(i).getTaskId(), source, reason, e.getMessage(), e);
+            }
+        }
+        log.warn("{} 个失败任务已写入死信队列 - 来源: {}, 原因: {}", stored, source, truncatedReason);
+        return stored;
+    }
+
+    /**
+     * 分页查询死信，按首次失败时间从早到晚排序
+     * @param page 页码，从0开始
+     * @param size 每页数量
+     * @param source 只查询该来源的死信，为null时查询全部
+     */
+    public List<DeadLetter> page(int page, int size, String source) {
+        PagingPredicate<String, DeadLetter> pagingPredicate = Predicates.pagingPredicate(sourcePredicate(source), size);
+        pagingPredicate.setPage(page);
+        return new ArrayList<>(deadLetterMap.values(pagingPredicate));
+    }
+
+    /**
+     * 获取指定任务的死信，按首次失败时间排序，不存在的任务ID被忽略
+     */
+    public List<DeadLetter> getAll(Collection<String> taskIds) {
+        List<DeadLetter> letters = new ArrayList<>(deadLetterMap.getAll(new LinkedHashSet<>(taskIds)).values());
+        letters.sort(null);
+        return letters;
+    }
+
+    /**
+     * 删除已重放的死信，重放期间再次失败而被合并更新的死信保留
+     * @return 删除的死信数
+     */
+    public int removeReplayed(Collection<DeadLetter> letters) {
+        List<CompletableFuture<Boolean>> removals = new ArrayList<>(letters.size());
+        for (DeadLetter letter : letters) {
+            removals.add(deadLetterMap.submitToKey(letter.getTaskId(), new DeadLetterRemoveProcessor(letter))
+                .toCompletableFuture());
+        }
+        return countTrue(removals);
+    }
+
+    /**
+     * 删除指定任务的死信，不再重放
+     * @return 删除的死信数
+     */
+    public int removeAll(Collection<String> taskIds) {
+        List<CompletableFuture<Boolean>> removals = new ArrayList<>(taskIds.size());
+        for (String taskId : new LinkedHashSet<>(taskIds)) {
+            removals.add(deadLetterMap.removeAsync(taskId).toCompletableFuture().thenApply(removed -> removed != null));
+        }
+        return countTrue(removals);
+    }
+
+    /**
+     * 死信数量
+     * @param source 只统计该来源的死信，为null时统计全部
+     */
+    public int count(String source) {
+        if (source == null) {
+            return deadLetterMap.size();
+        }
+        return deadLetterMap.aggregate(Aggregators.count(), sourcePredicate(source)).intValue();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 清空死信（谨慎使用）
+     */
+    public void clear() {
+        deadLetterMap.clear();
+        log.warn("死信队列已清空");
+    }
+
+    private static Predicate<String, DeadLetter> sourcePredicate(String source) {
+        return source != null ? Predicates.equal("source", source) : Predicates.alwaysTrue();
+    }
+
+    private static int countTrue(List<CompletableFuture<Boolean>> futures) {
+        int count = 0;
+        for (CompletableFuture<Boolean> future : futures) {
+            try {
+                if (Boolean.TRUE.equals(future.join())) {
+                    count++;
+                }
+            } catch (Exception e) {
+                log.error("删除死信失败: {}", e.getMessage(), e);
+            }
+        }
+        return count;
+    }
+
+    private static String truncate(String reason) {
+        if (reason == null || reason.length() <= MAX_REASON_LENGTH) {
+            return reason;
+        }
+        return reason.substring(0, MAX_REASON_LENGTH);
+    }
+}
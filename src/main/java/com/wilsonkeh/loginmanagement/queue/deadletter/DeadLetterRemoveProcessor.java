@@ -0,0 +1,65 @@
+package com.wilsonkeh.loginmanagement.queue.deadletter;
+
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 重放后的死信删除处理器
+ * 只有条目仍是重放时读取的那一份（失败次数和最后失败时间都未变化）才删除；
+ * 重放的任务在删除前就再次失败时，合并后的死信保留下来
+ */
+public class DeadLetterRemoveProcessor
+        implements EntryProcessor<String, DeadLetter, Boolean>, IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private int attempts;
+    private long lastFailedAt;
+
+    // 默认构造函数，用于Hazelcast序列化
+    public DeadLetterRemoveProcessor() {
+    }
+
+    public DeadLetterRemoveProcessor(DeadLetter replayed) {
+        this.attempts = replayed.getAttempts();
+        this.lastFailedAt = replayed.getLastFailedAt();
+    }
+
+    @Override
+    public Boolean process(Map.Entry<String, DeadLetter> entry) {
+        DeadLetter current = entry.getValue();
+        if (current == null || current.getAttempts() != attempts || current.getLastFailedAt() != lastFailedAt) {
+            return false;
+        }
+        entry.setValue(null);
+        return true;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return LoginRecordDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return LoginRecordDataSerializableFactory.DEAD_LETTER_REMOVE_PROCESSOR_TYPE;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeInt(attempts);
+        out.writeLong(lastFailedAt);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        attempts = in.readInt();
+        lastFailedAt = in.readLong();
+    }
+}
@@ -0,0 +1,124 @@
+package com.wilsonkeh.loginmanagement.queue.dedup;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地队列去重索引
+ * 入队采用预留/提交/回滚协议：先原子预留去重键，任务写入存储成功后提交，失败则回滚，
+ * 保证被拒绝的任务不会留下阻塞该键的残留记录
+ * 出队时释放键：即时模式下立即移除；时间窗口模式下键在出队后继续保留 windowMs 毫秒，
+ * 由哈希时间轮批量过期，窗口内的重复提交仍会被抑制
+ */
+public class DeduplicationIndex {
+
+    private static final int STRIPES = 16;
+    private static final int WHEEL_SIZE = 512;
+    private static final long MIN_TICK_MS = 10;
+
+    private final StripedLongHashSet keys;
+    private final HashedTimingWheel<String> expirationWheel;
+    private final long windowMs;
+
+    // 已预留但尚未提交或回滚的键数量
+    private final AtomicInteger pendingReservations = new AtomicInteger(0);
+
+    /**
+     * @param expectedSize 预计同时存在的键数量
+     * @param verifyKeys 是否保存并校验完整键
+     * @param windowMs 出队后保留键的时长（毫秒），0表示出队即释放
+     */
+    public DeduplicationIndex(int expectedSize, boolean verifyKeys, long windowMs) {
+        this.keys = new StripedLongHashSet(expectedSize, STRIPES, verifyKeys);
+        this.windowMs = Math.max(0, windowMs);
+        this.expirationWheel = this.windowMs > 0
+            ? new HashedTimingWheel<>(Math.max(MIN_TICK_MS, this.windowMs / WHEEL_SIZE), WHEEL_SIZE, keys::remove)
+            : null;
+    }
+
+    /**
+     * 原子预留去重键，键已存在（排队中或仍在窗口期内）时返回false
+     */
+    public boolean reserve(String key) {
+        expireWindow();
+        if (!keys.add(key)) {
+            return false;
+        }
+        pendingReservations.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 任务已写入存储，提交预留
+     */
+    public void commit(String key) {
+        pendingReservations.decrementAndGet();
+    }
+
+    /**
+     * 任务未能写入存储，撤销预留
+     */
+    public void rollback(String key) {
+        keys.remove(key);
+        pendingReservations.decrementAndGet();
+    }
+
+    /**
+     * 任务已出队，释放去重键
+     */
+    public void release(String key) {
+        if (expirationWheel == null) {
+            keys.remove(key);
+        } else {
+            expirationWheel.schedule(key, windowMs);
+            expirationWheel.advance();
+        }
+    }
+
+    /**
+     * 过期已超出时间窗口的键
+     */
+    public void expireWindow() {
+        if (expirationWheel != null) {
+            expirationWheel.advance();
+        }
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        if (expirationWheel != null) {
+            expirationWheel.clear();
+        }
+        keys.clear();
+    }
+
+    /**
+     * 获取索引中的键数量（排队中、预留中及窗口期内的键）
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * 获取处于时间窗口期内等待过期的键数量
+     */
+    public int windowedSize() {
+        return expirationWheel == null ? 0 : expirationWheel.pending();
+    }
+
+    public int getPendingReservations() {
+        return pendingReservations.get();
+    }
+
+    public long getWindowMs() {
+        return windowMs;
+    }
+
+    /**
+     * 估算索引占用的内存（字节），不含键字符串本身
+     */
+    public long estimatedMemoryBytes() {
+        return keys.estimatedMemoryBytes();
+    }
+}
@@ -0,0 +1,125 @@
+package com.wilsonkeh.loginmanagement.queue.dedup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 哈希时间轮，用于批量过期去重键
+ * 到期时间按刻度映射到环形槽位，调度为 O(1)；不使用后台线程，由调用方在访问时惰性推进，
+ * 每次推进只处理经过的槽位，超过一圈的条目留在槽位中等待后续轮次
+ * @param <K> 条目类型
+ */
+public class HashedTimingWheel<K> {
+
+    private final long tickNanos;
+    private final int mask;
+    private final List<List<Entry<K>>> slots;
+    private final Consumer<K> expirationHandler;
+    private final long startNanos;
+
+    // 下一个待处理的刻度
+    private volatile long currentTick;
+    private int pending;
+
+    /**
+     * @param tickMs 每个刻度的时长（毫秒）
+     * @param wheelSize 槽位数，向上取整为2的幂
+     * @param expirationHandler 条目到期时的回调，在推进时间轮的线程中执行
+     */
+    public HashedTimingWheel(long tickMs, int wheelSize, Consumer<K> expirationHandler) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("时间轮刻度必须大于0: " + tickMs);
+        }
+        int size = wheelSize <= 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.mask = size - 1;
+        this.slots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            slots.add(new ArrayList<>());
+        }
+        this.expirationHandler = expirationHandler;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * 调度条目在 delayMs 毫秒后到期，实际到期时间向上取整到刻度
+     */
+    public synchronized void schedule(K key, long delayMs) {
+        long delayTicks = (TimeUnit.MILLISECONDS.toNanos(delayMs) + tickNanos - 1) / tickNanos;
+        long deadlineTick = Math.max(currentTick, elapsedTicks() + Math.max(1, delayTicks));
+        slots.get((int) (deadlineTick & mask)).add(new Entry<>(key, deadlineTick));
+        pending++;
+    }
+
+    /**
+     * 推进时间轮并过期所有到期条目
+     * @return 本次过期的条目数
+     */
+    public int advance() {
+        // 未跨过刻度时无需加锁
+        if (elapsedTicks() < currentTick) {
+            return 0;
+        }
+        synchronized (this) {
+            long nowTick = elapsedTicks();
+            if (nowTick < currentTick) {
+                return 0;
+            }
+            // 跨越超过一圈时每个槽位只需处理一次
+            long lastTick = Math.min(nowTick, currentTick + mask);
+            int expired = 0;
+            for (long tick = currentTick; tick <= lastTick; tick++) {
+                expired += expireSlot(slots.get((int) (tick & mask)), nowTick);
+            }
+            currentTick = nowTick + 1;
+            pending -= expired;
+            return expired;
+        }
+    }
+
+    /**
+     * 获取尚未到期的条目数
+     */
+    public synchronized int pending() {
+        return pending;
+    }
+
+    /**
+     * 丢弃所有条目，不触发回调
+     */
+    public synchronized void clear() {
+        for (List<Entry<K>> slot : slots) {
+            slot.clear();
+        }
+        pending = 0;
+    }
+
+    private int expireSlot(List<Entry<K>> slot, long nowTick) {
+        if (slot.isEmpty()) {
+            return 0;
+        }
+        int expired = 0;
+        int kept = 0;
+        for (int i = 0, size = slot.size(); i < size; i++) {
+            Entry<K> entry = slot.get(i);
+            if (entry.deadlineTick <= nowTick) {
+                expirationHandler.accept(entry.key);
+                expired++;
+            } else {
+                // 尚需更多轮次，原地压缩保留
+                slot.set(kept++, entry);
+            }
+        }
+        slot.subList(kept, slot.size()).clear();
+        return expired;
+    }
+
+    private long elapsedTicks() {
+        return (System.nanoTime() - startNanos) / tickNanos;
+    }
+
+    private record Entry<K>(K key, long deadlineTick) {
+    }
+}
@@ -0,0 +1,251 @@
+package com.wilsonkeh.loginmanagement.queue.dedup;
+
+import java.util.Arrays;
+
+/**
+ * 基于64位哈希的分段开放寻址集合，用于本地队列的去重键索引
+ * 去重键预先计算为64位哈希后以 long 存储，不保留 String 对象和装箱的 Map.Entry，
+ * 每段独立加锁，段内线性探测，删除时向后移位以避免墓碑
+ * 开启完整键校验时额外保存原始键的引用，哈希碰撞时仍能精确判断；不开启时两个不同键的64位哈希
+ * 相同会被误判为重复，在十万级队列深度下概率约为 10^-10
+ */
+public class StripedLongHashSet {
+
+    private static final int MIN_STRIPE_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    // 数组对象头与引用的估算大小（开启压缩指针的64位JVM）
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+    private final boolean verifyKeys;
+
+    /**
+     * @param expectedSize 预计元素数量，用于确定初始容量
+     * @param concurrencyLevel 分段数，向上取整为2的幂
+     * @param verifyKeys 是否保存并校验完整键
+     */
+    public StripedLongHashSet(int expectedSize, int concurrencyLevel, boolean verifyKeys) {
+        int stripeCount = concurrencyLevel <= 1 ? 1 : Integer.highestOneBit(concurrencyLevel - 1) << 1;
+        int perStripe = (int) Math.ceil(Math.max(1, expectedSize) / (double) stripeCount / LOAD_FACTOR);
+        int stripeCapacity = Math.max(MIN_STRIPE_CAPACITY, Integer.highestOneBit(Math.max(1, perStripe - 1)) << 1);
+
+        this.stripes = new Stripe[stripeCount];
+        this.stripeShift = 64 - Integer.numberOfTrailingZeros(stripeCount);
+        this.verifyKeys = verifyKeys;
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(stripeCapacity, verifyKeys);
+        }
+    }
+
+    /**
+     * 添加键，已存在时返回false
+     */
+    public boolean add(String key) {
+        long hash = hash64(key);
+        return stripeFor(hash).add(hash, key);
+    }
+
+    /**
+     * 检查键是否存在
+     */
+    public boolean contains(String key) {
+        long hash = hash64(key);
+        return stripeFor(hash).contains(hash, key);
+    }
+
+    /**
+     * 移除键，不存在时返回false
+     */
+    public boolean remove(String key) {
+        long hash = hash64(key);
+        return stripeFor(hash).remove(hash, key);
+    }
+
+    /**
+     * 获取元素数量
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    /**
+     * 清空集合，保留已分配的容量
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * 估算索引占用的内存（字节），不含键字符串本身
+     */
+    public long estimatedMemoryBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += stripe.estimatedMemoryBytes();
+        }
+        return bytes;
+    }
+
+    public boolean isVerifyKeys() {
+        return verifyKeys;
+    }
+
+    private Stripe stripeFor(long hash) {
+        return stripes.length == 1 ? stripes[0] : stripes[(int) (hash >>> stripeShift)];
+    }
+
+    /**
+     * 计算键的64位哈希（FNV-1a 后接 murmur3 fmix64 混合），0保留为空槽标记
+     */
+    static long hash64(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0, length = key.length(); i < length; i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * 单个分段，所有操作在段锁内完成
+     */
+    private static final class Stripe {
+        private final boolean verifyKeys;
+        private long[] hashes;
+        private String[] keys;
+        private int mask;
+        private volatile int size;
+        private int resizeThreshold;
+
+        Stripe(int capacity, boolean verifyKeys) {
+            this.verifyKeys = verifyKeys;
+            allocate(capacity);
+        }
+
+        synchronized boolean add(long hash, String key) {
+            int index = (int) hash & mask;
+            long current;
+            while ((current = hashes[index]) != 0) {
+                if (current == hash && (!verifyKeys || keys[index].equals(key))) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+            hashes[index] = hash;
+            if (verifyKeys) {
+                keys[index] = key;
+            }
+            if (++size > resizeThreshold) {
+                rehash(hashes.length << 1);
+            }
+            return true;
+        }
+
+        synchronized boolean contains(long hash, String key) {
+            return indexOf(hash, key) >= 0;
+        }
+
+        synchronized boolean remove(long hash, String key) {
+            int index = indexOf(hash, key);
+            if (index < 0) {
+                return false;
+            }
+            shiftBack(index);
+            size--;
+            return true;
+        }
+
+        synchronized void clear() {
+            Arrays.fill(hashes, 0L);
+            if (verifyKeys) {
+                Arrays.fill(keys, null);
+            }
+            size = 0;
+        }
+
+        synchronized long estimatedMemoryBytes() {
+            long bytes = ARRAY_HEADER_BYTES + (long) hashes.length * Long.BYTES;
+            if (verifyKeys) {
+                bytes += ARRAY_HEADER_BYTES + (long) keys.length * REFERENCE_BYTES;
+            }
+            return bytes;
+        }
+
+        private int indexOf(long hash, String key) {
+            int index = (int) hash & mask;
+            long current;
+            while ((current = hashes[index]) != 0) {
+                if (current == hash && (!verifyKeys || keys[index].equals(key))) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * 向后移位删除：把探测链上后续可以前移的元素填入空位，保持线性探测的不变式
+         */
+        private void shiftBack(int index) {
+            int gap = index;
+            int next = (gap + 1) & mask;
+            long current;
+            while ((current = hashes[next]) != 0) {
+                int home = (int) current & mask;
+                // 元素的理想位置不在 (gap, next] 区间内时，才能移动到空位
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    hashes[gap] = current;
+                    if (verifyKeys) {
+                        keys[gap] = keys[next];
+                    }
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            hashes[gap] = 0;
+            if (verifyKeys) {
+                keys[gap] = null;
+            }
+        }
+
+        private void rehash(int newCapacity) {
+            long[] oldHashes = hashes;
+            String[] oldKeys = keys;
+            allocate(newCapacity);
+            for (int i = 0; i < oldHashes.length; i++) {
+                long hash = oldHashes[i];
+                if (hash != 0) {
+                    int index = (int) hash & mask;
+                    while (hashes[index] != 0) {
+                        index = (index + 1) & mask;
+                    }
+                    hashes[index] = hash;
+                    if (verifyKeys) {
+                        keys[index] = oldKeys[i];
+                    }
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            this.hashes = new long[capacity];
+            this.keys = verifyKeys ? new String[capacity] : null;
+            this.mask = capacity - 1;
+            this.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+        }
+    }
+}
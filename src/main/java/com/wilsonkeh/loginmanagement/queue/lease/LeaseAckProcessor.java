@@ -0,0 +1,65 @@
+package com.wilsonkeh.loginmanagement.queue.lease;
+
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 租约确认处理器
+ * 条目仍持有给定租约之一时删除条目并返回true；租约已过期并重新投递时返回false，
+ * 迟到的确认不会删除其他消费者持有的新租约
+ */
+public class LeaseAckProcessor
+        implements EntryProcessor<String, TaskLease, Boolean>, IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // 已排序的租约ID
+    private long[] leaseIds;
+
+    // 默认构造函数，用于Hazelcast序列化
+    public LeaseAckProcessor() {
+    }
+
+    public LeaseAckProcessor(long[] leaseIds) {
+        this.leaseIds = leaseIds.clone();
+        Arrays.sort(this.leaseIds);
+    }
+
+    @Override
+    public Boolean process(Map.Entry<String, TaskLease> entry) {
+        TaskLease lease = entry.getValue();
+        if (lease == null || lease.getLeaseId() == TaskLease.REDELIVERED
+                || Arrays.binarySearch(leaseIds, lease.getLeaseId()) < 0) {
+            return Boolean.FALSE;
+        }
+        entry.setValue(null);
+        return Boolean.TRUE;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return LoginRecordDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return LoginRecordDataSerializableFactory.LEASE_ACK_PROCESSOR_TYPE;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeLongArray(leaseIds);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        leaseIds = in.readLongArray();
+    }
+}
@@ -0,0 +1,71 @@
+package com.wilsonkeh.loginmanagement.queue.lease;
+
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 租约过期处理器
+ * 条目仍持有给定租约之一（未确认、未被重新授予）时记一次失败投递并返回过期后的租约：
+ * 未达到最大投递次数时标记为已重新投递，由调用方放回队列；达到时删除条目，由调用方放弃该任务。
+ * 租约不匹配时返回null，保证同一租约只被重新投递一次
+ */
+public class LeaseExpiryProcessor
+        implements EntryProcessor<String, TaskLease, TaskLease>, IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // 已排序的租约ID
+    private long[] leaseIds;
+    private int maxAttempts;
+
+    // 默认构造函数，用于Hazelcast序列化
+    public LeaseExpiryProcessor() {
+    }
+
+    public LeaseExpiryProcessor(long[] leaseIds, int maxAttempts) {
+        this.leaseIds = leaseIds.clone();
+        Arrays.sort(this.leaseIds);
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public TaskLease process(Map.Entry<String, TaskLease> entry) {
+        TaskLease lease = entry.getValue();
+        if (lease == null || lease.getLeaseId() == TaskLease.REDELIVERED
+                || Arrays.binarySearch(leaseIds, lease.getLeaseId()) < 0) {
+            return null;
+        }
+        lease.expire();
+        entry.setValue(lease.getAttempts() >= maxAttempts ? null : lease);
+        return lease;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return LoginRecordDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return LoginRecordDataSerializableFactory.LEASE_EXPIRY_PROCESSOR_TYPE;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeLongArray(leaseIds);
+        out.writeInt(maxAttempts);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        leaseIds = in.readLongArray();
+        maxAttempts = in.readInt();
+    }
+}
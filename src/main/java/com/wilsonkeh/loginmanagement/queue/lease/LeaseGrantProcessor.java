@@ -0,0 +1,71 @@
+package com.wilsonkeh.loginmanagement.queue.lease;
+
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.wilsonkeh.loginmanagement.queue.Task;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 租约授予处理器
+ * 写入新租约并沿用已有条目的失败投递次数，返回该次数
+ */
+public class LeaseGrantProcessor
+        implements EntryProcessor<String, TaskLease, Integer>, IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Task<?> task;
+    private long leaseId;
+    private String owner;
+    private long deadline;
+
+    // 默认构造函数，用于Hazelcast序列化
+    public LeaseGrantProcessor() {
+    }
+
+    public LeaseGrantProcessor(Task<?> task, long leaseId, String owner, long deadline) {
+        this.task = task;
+        this.leaseId = leaseId;
+        this.owner = owner;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public Integer process(Map.Entry<String, TaskLease> entry) {
+        TaskLease previous = entry.getValue();
+        int attempts = previous != null ? previous.getAttempts() : 0;
+        entry.setValue(new TaskLease(task, leaseId, owner, deadline, attempts));
+        return attempts;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return LoginRecordDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return LoginRecordDataSerializableFactory.LEASE_GRANT_PROCESSOR_TYPE;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeObject(task);
+        out.writeLong(leaseId);
+        out.writeString(owner);
+        out.writeLong(deadline);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        task = in.readObject();
+        leaseId = in.readLong();
+        owner = in.readString();
+        deadline = in.readLong();
+    }
+}
@@ -0,0 +1,100 @@
+package com.wilsonkeh.loginmanagement.queue.lease;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.wilsonkeh.loginmanagement.queue.Task;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+
+import java.io.IOException;
+
+/**
+ * 处理中任务的租约
+ * 任务出队后以去重键（未启用去重时为任务ID）保存在处理中Map，直到消费者确认；
+ * 租约到期仍未确认时任务重新投递，租约ID用于区分同一任务的多次投递，过期租约的迟到确认不会删除新租约
+ */
+public class TaskLease implements IdentifiedDataSerializable {
+
+    // 已重新投递、等待再次出队的租约ID
+    public static final long REDELIVERED = 0L;
+
+    private Task<?> task;
+    private long leaseId;
+    private String owner;
+    private long deadline;
+    private int attempts;
+
+    // 默认构造函数，用于Hazelcast序列化
+    public TaskLease() {
+    }
+
+    public TaskLease(Task<?> task, long leaseId, String owner, long deadline, int attempts) {
+        this.task = task;
+        this.leaseId = leaseId;
+        this.owner = owner;
+        this.deadline = deadline;
+        this.attempts = attempts;
+    }
+
+    /**
+     * 标记为已过期：失败投递次数加一，租约ID置为已重新投递
+     */
+    public void expire() {
+        this.leaseId = REDELIVERED;
+        this.attempts++;
+    }
+
+    public Task<?> getTask() {
+        return task;
+    }
+
+    public long getLeaseId() {
+        return leaseId;
+    }
+
+    /**
+     * 持有租约的成员UUID，成员离开集群时据此接管其租约
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * 租约到期未确认的次数
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return LoginRecordDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return LoginRecordDataSerializableFactory.TASK_LEASE_TYPE;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeObject(task);
+        out.writeLong(leaseId);
+        out.writeString(owner);
+        out.writeLong(deadline);
+        out.writeInt(attempts);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        task = in.readObject();
+        leaseId = in.readLong();
+        owner = in.readString();
+        deadline = in.readLong();
+        attempts = in.readInt();
+    }
+}
@@ -0,0 +1,371 @@
+package com.wilsonkeh.loginmanagement.queue.lease;
+
+import com.hazelcast.cluster.MembershipEvent;
+import com.hazelcast.cluster.MembershipListener;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.query.Predicates;
+import com.wilsonkeh.loginmanagement.config.HazelcastConfig;
+import com.wilsonkeh.loginmanagement.queue.Task;
+import com.wilsonkeh.loginmanagement.queue.dedup.HashedTimingWheel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 处理中任务的租约跟踪器（可见性超时）
+ * 任务出队后在处理中Map登记租约，消费者处理完成后批量确认；租约到期仍未确认的任务重新放回队列，
+ * 失败投递达到上限的任务放弃。
+ * 到期检查由本地时间轮驱动：每个成员只调度自己授予的租约，到期时按键批量调用一次，不扫描处理中Map；
+ * 成员离开集群时，最老的成员按持有者查询一次并接管其租约。
+ * 租约在任务出队之后登记：出队与登记之间成员崩溃时，已出队的任务没有租约，不会重新投递，
+ * 其去重键在去重Map的TTL到期后释放；这一窗口只有一次集群往返，IQueue 无法在出队的同时登记租约
+ */
+@Slf4j
+public class TaskLeaseTracker<T> {
+
+    // 时间轮刻度，租约最多在到期后一个刻度内被处理
+    private static final long TICK_MS = 100;
+    private static final int WHEEL_SIZE = 1024;
+
+    private final HazelcastInstance hazelcastInstance;
+    private final IMap<String, TaskLease> inFlightMap;
+    private final long visibilityTimeoutMs;
+    private final int maxDeliveryAttempts;
+    private final Function<Task<T>, String> keyExtractor;
+    private final Function<List<Task<T>>, List<Task<T>>> requeue;
+    private final Consumer<List<Task<T>>> abandon;
+    private final String localMemberId;
+
+    // 由本成员调度到期检查的租约：确认时从中取出租约ID，到期时据此跳过已确认的租约
+    private final Map<String, LocalLease> localLeases = new ConcurrentHashMap<>();
+    private final HashedTimingWheel<Lease> timingWheel;
+    // 时间轮回调收集的到期租约，只由推进线程访问
+    private final List<Lease> expired = new ArrayList<>();
+    private final ScheduledExecutorService scheduler;
+    private volatile UUID membershipListenerId;
+
+    private final AtomicLong totalRedelivered = new AtomicLong(0);
+    private final AtomicLong totalAbandoned = new AtomicLong(0);
+
+    /**
+     * @param visibilityTimeoutMs 租约时长（毫秒），超过该时长未确认的任务重新投递
+     * @param maxDeliveryAttempts 最大投递次数，租约第 maxDeliveryAttempts 次到期时放弃任务
+     * @param keyExtractor 处理中Map的键，应与任务的去重键一致
+     * @param requeue 把任务放回队列，返回未能放回的任务
+     * @param abandon 处理被放弃的任务
+     */
+    public TaskLeaseTracker(HazelcastInstance hazelcastInstance,
+                            long visibilityTimeoutMs,
+                            int maxDeliveryAttempts,
+                            Function<Task<T>, String> keyExtractor,
+                            Function<List<Task<T>>, List<Task<T>>> requeue,
+                            Consumer<List<Task<T>>> abandon) {
+        if (visibilityTimeoutMs <= 0) {
+            throw new IllegalArgumentException("租约时长必须大于0: " + visibilityTimeoutMs);
+        }
+        this.hazelcastInstance = hazelcastInstance;
+        this.inFlightMap = hazelcastInstance.getMap(HazelcastConfig.TASK_IN_FLIGHT_MAP_NAME);
+        this.visibilityTimeoutMs = visibilityTimeoutMs;
+        this.maxDeliveryAttempts = Math.max(1, maxDeliveryAttempts);
+        this.keyExtractor = keyExtractor;
+        this.requeue = requeue;
+        this.abandon = abandon;
+        this.localMemberId = hazelcastInstance.getCluster().getLocalMember().getUuid().toString();
+        this.timingWheel = new HashedTimingWheel<>(TICK_MS, WHEEL_SIZE, this::onExpired);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TaskLeaseRedelivery");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        log.info("处理中任务租约跟踪器初始化完成 - Map名称: {}, 租约时长: {}ms, 最大投递次数: {}",
+                HazelcastConfig.TASK_IN_FLIGHT_MAP_NAME, visibilityTimeoutMs, this.maxDeliveryAttempts);
+    }
+
+    /**
+     * 启动到期检查并监听成员离开，在构造完成后调用，避免其他线程看到未构造完成的实例
+     */
+    public synchronized void start() {
+        if (membershipListenerId != null) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::expireLeases, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+        this.membershipListenerId = hazelcastInstance.getCluster().addMembershipListener(new MembershipListener() {
+            @Override
+            public void memberAdded(MembershipEvent event) {
+                // 新成员只调度自己授予的租约
+            }
+
+            @Override
+            public void memberRemoved(MembershipEvent event) {
+                if (event.getMembers().iterator().next().localMember()) {
+                    String owner = event.getMember().getUuid().toString();
+                    scheduler.execute(() -> takeOver(owner));
+                }
+            }
+        });
+    }
+
+    /**
+     * 为刚出队的任务登记租约，以流水线方式提交到各自分区后统一等待
+     * 登记失败的任务仍交给消费者处理，但处理失败时不会重新投递
+     */
+    public void lease(List<Task<T>> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + visibilityTimeoutMs;
+        List<Lease> leases = new ArrayList<>(tasks.size());
+        List<CompletableFuture<Integer>> grants = new ArrayList<>(tasks.size());
+        for (Task<T> task : tasks) {
+            Lease lease = new Lease(keyExtractor.apply(task), nextLeaseId());
+            leases.add(lease);
+            grants.add(inFlightMap.submitToKey(lease.key(),
+                new LeaseGrantProcessor(task, lease.leaseId(), localMemberId, deadline)).toCompletableFuture());
+        }
+        for (int i = 0; i < leases.size(); i++) {
+            Lease lease = leases.get(i);
+            try {
+                grants.get(i).join();
+                localLeases.put(lease.key(), new LocalLease(lease.leaseId(), tasks.get(i)));
+                timingWheel.schedule(lease, visibilityTimeoutMs);
+            } catch (Exception e) {
+                log.error("登记处理中任务租约失败，处理失败时将不会重新投递: {}, 错误: {}", lease.key(), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 批量确认任务处理完成，一次调用删除全部租约
+     * 租约已过期并重新投递的任务不计入确认结果，其去重键和容量许可由新的投递负责释放；
+     * 同一任务重新投递到本成员时，按出队的任务实例区分两次投递，旧投递的迟到确认不会确认新投递
+     * @return 确认成功的任务
+     */
+    public List<Task<T>> acknowledge(Collection<? extends Task<T>> tasks) {
+        Map<String, LocalLease> leases = new LinkedHashMap<>(tasks.size());
+        for (Task<T> task : tasks) {
+            String key = keyExtractor.apply(task);
+            LocalLease lease = localLeases.get(key);
+            if (lease != null && lease.task() == task && localLeases.remove(key, lease)) {
+                leases.put(key, lease);
+            }
+        }
+        if (leases.isEmpty()) {
+            return List.of();
+        }
+        try {
+            Map<String, Boolean> results = inFlightMap.executeOnKeys(leases.keySet(),
+                new LeaseAckProcessor(leases.values().stream().mapToLong(LocalLease::leaseId).toArray()));
+            List<Task<T>> acknowledged = new ArrayList<>(results.size());
+            for (Map.Entry<String, LocalLease> entry : leases.entrySet()) {
+                if (Boolean.TRUE.equals(results.get(entry.getKey()))) {
+                    @SuppressWarnings("unchecked")
+                    Task<T> task = (Task<T>) entry.getValue().task();
+                    acknowledged.add(task);
+                }
+            }
+            log.debug("确认处理中任务: {}", acknowledged.size());
+            return acknowledged;
+        } catch (Exception e) {
+            // 恢复本地租约，时间轮到期后重新投递
+            leases.forEach(localLeases::putIfAbsent);
+            log.error("确认处理中任务失败，任务将在租约到期后重新投递: {}", e.getMessage(), e);
+            return List.of();
+        }
+    }
+
+    private void onExpired(Lease lease) {
+        // 已确认或已重新授予的租约无需再访问集群
+        LocalLease local = localLeases.get(lease.key());
+        if (local != null && local.leaseId() == lease.leaseId() && localLeases.remove(lease.key(), local)) {
+            expired.add(lease);
+        }
+    }
+
+    /**
+     * 推进时间轮，把到期的租约按键批量过期，未达上限的任务放回队列，达到上限的放弃
+     */
+    private void expireLeases() {
+        // 实例已停止时由其他成员接管租约
+        if (!hazelcastInstance.getLifecycleService().isRunning()) {
+            return;
+        }
+        try {
+            timingWheel.advance();
+            if (expired.isEmpty()) {
+                return;
+            }
+            List<Lease> batch = new ArrayList<>(expired);
+            expired.clear();
+            redeliver(batch);
+        } catch (Exception e) {
+            log.error("处理到期租约失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void redeliver(List<Lease> leases) {
+        Set<String> keys = new LinkedHashSet<>(leases.size());
+        long[] leaseIds = new long[leases.size()];
+        for (int i = 0; i < leases.size(); i++) {
+            keys.add(leases.get(i).key());
+            leaseIds[i] = leases.get(i).leaseId();
+        }
+
+        Map<String, TaskLease> results;
+        try {
+            results = inFlightMap.executeOnKeys(keys, new LeaseExpiryProcessor(leaseIds, maxDeliveryAttempts));
+        } catch (Exception e) {
+            log.error("过期处理中任务租约失败，下一刻度重试: {}", e.getMessage(), e);
+            for (Lease lease : leases) {
+                localLeases.putIfAbsent(lease.key(), new LocalLease(lease.leaseId(), null));
+                timingWheel.schedule(lease, TICK_MS);
+            }
+            return;
+        }
+
+        List<Task<T>> redelivered = new ArrayList<>(results.size());
+        List<Task<T>> abandoned = new ArrayList<>();
+        for (TaskLease lease : results.values()) {
+            if (lease == null) {
+                continue;
+            }
+            @SuppressWarnings("unchecked")
+            Task<T> task = (Task<T>) lease.getTask();
+            if (lease.getAttempts() >= maxDeliveryAttempts) {
+                abandoned.add(task);
+            } else {
+                redelivered.add(task);
+            }
+        }
+
+        if (!redelivered.isEmpty()) {
+            List<Task<T>> rejected = requeue.apply(redelivered);
+            totalRedelivered.addAndGet(redelivered.size() - rejected.size());
+            log.warn("重新投递租约到期的任务: {}", redelivered.size() - rejected.size());
+            if (!rejected.isEmpty()) {
+                // 队列已满，由本成员继续持有，下一次到期时再尝试
+                log.warn("队列已满，{} 个到期任务暂不能重新投递", rejected.size());
+                lease(rejected);
+            }
+        }
+        if (!abandoned.isEmpty()) {
+            totalAbandoned.addAndGet(abandoned.size());
+            log.error("任务已投递 {} 次仍未确认，放弃处理: {}", maxDeliveryAttempts, abandoned.size());
+            abandon.accept(abandoned);
+        }
+    }
+
+    /**
+     * 接管离开集群的成员持有的租约，按剩余时长调度到本成员的时间轮
+     */
+    private void takeOver(String owner) {
+        try {
+            long now = System.currentTimeMillis();
+            int count = 0;
+            for (Map.Entry<String, TaskLease> entry : inFlightMap.entrySet(Predicates.equal("owner", owner))) {
+                TaskLease lease = entry.getValue();
+                if (lease.getLeaseId() == TaskLease.REDELIVERED) {
+                    continue;
+                }
+                // 持有者已离开，接管的租约不会在本成员确认
+                localLeases.put(entry.getKey(), new LocalLease(lease.getLeaseId(), null));
+                timingWheel.schedule(new Lease(entry.getKey(), lease.getLeaseId()), Math.max(0, lease.getDeadline() - now));
+                count++;
+            }
+            if (count > 0) {
+                log.warn("成员 {} 已离开集群，接管其持有的处理中任务租约: {}", owner, count);
+            }
+        } catch (Exception e) {
+            log.error("接管成员 {} 的处理中任务租约失败: {}", owner, e.getMessage(), e);
+        }
+    }
+
+    private static long nextLeaseId() {
+        long leaseId;
+        do {
+            leaseId = ThreadLocalRandom.current().nextLong();
+        } while (leaseId == TaskLease.REDELIVERED);
+        return leaseId;
+    }
+
+    /**
+     * 获取集群中处理中（已出队未确认）的任务数
+     */
+    public int getInFlightCount() {
+        try {
+            return inFlightMap.size();
+        } catch (Exception e) {
+            log.error("获取处理中任务数失败: {}", e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * 获取由本成员调度到期检查的租约数
+     */
+    public int getLocalLeaseCount() {
+        return localLeases.size();
+    }
+
+    public long getTotalRedelivered() {
+        return totalRedelivered.get();
+    }
+
+    public long getTotalAbandoned() {
+        return totalAbandoned.get();
+    }
+
+    /**
+     * 丢弃全部租约，不重新投递
+     */
+    public void clear() {
+        localLeases.clear();
+        timingWheel.clear();
+        inFlightMap.clear();
+    }
+
+    /**
+     * 停止到期检查；本成员离开集群后，其持有的租约由其他成员接管
+     */
+    public void close() {
+        if (membershipListenerId != null) {
+            try {
+                hazelcastInstance.getCluster().removeMembershipListener(membershipListenerId);
+            } catch (Exception e) {
+                log.error("移除成员监听器失败: {}", e.getMessage(), e);
+            }
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Lease(String key, long leaseId) {
+    }
+
+    /**
+     * 本成员跟踪的租约，task 为出队时交给消费者的任务实例，接管的租约为null
+     */
+    private record LocalLease(long leaseId, Task<?> task) {
+    }
+}
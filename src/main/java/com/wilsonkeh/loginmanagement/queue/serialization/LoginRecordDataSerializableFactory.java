@@ -1,23 +1,100 @@
 package com.wilsonkeh.loginmanagement.queue.serialization;
 
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.config.SerializerConfig;
 import com.hazelcast.nio.serialization.DataSerializableFactory;
 import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.wilsonkeh.loginmanagement.queue.CapacityLeaseFunction;
+import com.wilsonkeh.loginmanagement.queue.DeduplicationReserveProcessor;
+import com.wilsonkeh.loginmanagement.dto.LoginRecordRequest;
 import com.wilsonkeh.loginmanagement.queue.LoginRecordTask;
+import com.wilsonkeh.loginmanagement.queue.deadletter.DeadLetter;
+import com.wilsonkeh.loginmanagement.queue.deadletter.DeadLetterAddProcessor;
+import com.wilsonkeh.loginmanagement.queue.deadletter.DeadLetterRemoveProcessor;
+import com.wilsonkeh.loginmanagement.queue.lease.LeaseAckProcessor;
+import com.wilsonkeh.loginmanagement.queue.lease.LeaseExpiryProcessor;
+import com.wilsonkeh.loginmanagement.queue.lease.LeaseGrantProcessor;
+import com.wilsonkeh.loginmanagement.queue.lease.TaskLease;
+import com.wilsonkeh.loginmanagement.queue.store.TaskAckProcessor;
+import com.wilsonkeh.loginmanagement.queue.store.TaskClaimProcessor;
+import com.wilsonkeh.loginmanagement.queue.store.TaskEnqueueProcessor;
+import com.wilsonkeh.loginmanagement.queue.store.TaskStoreEntry;
+import com.wilsonkeh.loginmanagement.service.security.UserSecurityAggregate;
+import com.wilsonkeh.loginmanagement.service.security.UserSecurityAggregateReplaceProcessor;
+import com.wilsonkeh.loginmanagement.service.security.UserSecurityAggregateUpdateProcessor;
 
 /**
  * Hazelcast数据序列化工厂
- * 用于序列化登录记录任务
+ * 用于序列化登录记录任务、分区本地任务存储条目、处理中任务租约、死信、用户安全聚合及相关的Entry处理器
  */
 public class LoginRecordDataSerializableFactory implements DataSerializableFactory {
 
     public static final int FACTORY_ID = 1;
     public static final int LOGIN_RECORD_TASK_TYPE = 1;
+    public static final int DEDUPLICATION_RESERVE_PROCESSOR_TYPE = 2;
+    public static final int TASK_STORE_ENTRY_TYPE = 3;
+    public static final int TASK_ENQUEUE_PROCESSOR_TYPE = 4;
+    public static final int TASK_CLAIM_PROCESSOR_TYPE = 5;
+    public static final int TASK_ACK_PROCESSOR_TYPE = 6;
+    public static final int CAPACITY_LEASE_FUNCTION_TYPE = 7;
+    public static final int TASK_LEASE_TYPE = 8;
+    public static final int LEASE_GRANT_PROCESSOR_TYPE = 9;
+    public static final int LEASE_EXPIRY_PROCESSOR_TYPE = 10;
+    public static final int LEASE_ACK_PROCESSOR_TYPE = 11;
+    public static final int DEAD_LETTER_TYPE = 12;
+    public static final int DEAD_LETTER_ADD_PROCESSOR_TYPE = 13;
+    public static final int DEAD_LETTER_REMOVE_PROCESSOR_TYPE = 14;
+    public static final int USER_SECURITY_AGGREGATE_TYPE = 15;
+    public static final int USER_SECURITY_AGGREGATE_UPDATE_PROCESSOR_TYPE = 16;
+    public static final int USER_SECURITY_AGGREGATE_REPLACE_PROCESSOR_TYPE = 17;
+
+    /**
+     * 注册本工厂以及 LoginRecordRequest 的二进制序列化器
+     */
+    public static void register(SerializationConfig serializationConfig) {
+        serializationConfig.addDataSerializableFactory(FACTORY_ID, new LoginRecordDataSerializableFactory());
+        serializationConfig.addSerializerConfig(new SerializerConfig()
+            .setTypeClass(LoginRecordRequest.class)
+            .setImplementation(new LoginRecordRequestSerializer()));
+    }
 
     @Override
     public IdentifiedDataSerializable create(int typeId) {
         switch (typeId) {
             case LOGIN_RECORD_TASK_TYPE:
                 return new LoginRecordTask();
+            case DEDUPLICATION_RESERVE_PROCESSOR_TYPE:
+                return new DeduplicationReserveProcessor();
+            case TASK_STORE_ENTRY_TYPE:
+                return new TaskStoreEntry();
+            case TASK_ENQUEUE_PROCESSOR_TYPE:
+                return new TaskEnqueueProcessor();
+            case TASK_CLAIM_PROCESSOR_TYPE:
+                return new TaskClaimProcessor();
+            case TASK_ACK_PROCESSOR_TYPE:
+                return new TaskAckProcessor();
+            case CAPACITY_LEASE_FUNCTION_TYPE:
+                return new CapacityLeaseFunction();
+            case TASK_LEASE_TYPE:
+                return new TaskLease();
+            case LEASE_GRANT_PROCESSOR_TYPE:
+                return new LeaseGrantProcessor();
+            case LEASE_EXPIRY_PROCESSOR_TYPE:
+                return new LeaseExpiryProcessor();
+            case LEASE_ACK_PROCESSOR_TYPE:
+                return new LeaseAckProcessor();
+            case DEAD_LETTER_TYPE:
+                return new DeadLetter();
+            case DEAD_LETTER_ADD_PROCESSOR_TYPE:
+                return new DeadLetterAddProcessor();
+            case DEAD_LETTER_REMOVE_PROCESSOR_TYPE:
+                return new DeadLetterRemoveProcessor();
+            case USER_SECURITY_AGGREGATE_TYPE:
+                return new UserSecurityAggregate();
+            case USER_SECURITY_AGGREGATE_UPDATE_PROCESSOR_TYPE:
+                return new UserSecurityAggregateUpdateProcessor();
+            case USER_SECURITY_AGGREGATE_REPLACE_PROCESSOR_TYPE:
+                return new UserSecurityAggregateReplaceProcessor();
             default:
                 throw new IllegalArgumentException("Unknown type ID: " + typeId);
         }
@@ -0,0 +1,58 @@
+package com.wilsonkeh.loginmanagement.queue.storage;
+
+import java.util.Collection;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 LinkedBlockingQueue 的存储后端
+ * 入队与出队各持有一把锁，每个元素分配一个链表节点
+ */
+public class LinkedTaskStorage<E> implements TaskStorage<E> {
+
+    private final LinkedBlockingQueue<E> queue;
+
+    public LinkedTaskStorage(int capacity) {
+        this.queue = new LinkedBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public boolean offer(E element) {
+        return queue.offer(element);
+    }
+
+    @Override
+    public E poll() {
+        return queue.poll();
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        return queue.take();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> target, int maxElements) {
+        return queue.drainTo(target, maxElements);
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        queue.clear();
+    }
+}
@@ -0,0 +1,269 @@
+package com.wilsonkeh.loginmanagement.queue.storage;
+
+import com.wilsonkeh.loginmanagement.queue.Task;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 分级桶优先级存储
+ * 每个优先级一个 FIFO 桶，用位图记录非空桶，offer 与 poll 均为 O(1)，避免堆排序的 O(log n) 开销
+ * 支持饥饿老化：低优先级任务每等待 agingMs 毫秒，有效优先级提升一级，保证高峰期低优先级任务仍能被处理
+ */
+public class PriorityBucketTaskStorage<E extends Task<?>> implements TaskStorage<E> {
+
+    public static final int MAX_LEVELS = 32;
+
+    private final int capacity;
+    private final int levels;
+    private final long agingNanos;
+    private final Bucket<E>[] buckets;
+
+    // 第 i 位为1表示优先级 i 的桶非空
+    private int nonEmptyLevels;
+    private volatile int count;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * @param capacity 最大容量
+     * @param levels 优先级级数，任务优先级超出范围时归入最低一级
+     * @param agingMs 老化间隔（毫秒），0表示不启用老化
+     */
+    @SuppressWarnings("unchecked")
+    public PriorityBucketTaskStorage(int capacity, int levels, long agingMs) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("优先级存储容量必须大于0: " + capacity);
+        }
+        if (levels <= 0 || levels > MAX_LEVELS) {
+            throw new IllegalArgumentException("优先级级数必须在1到" + MAX_LEVELS + "之间: " + levels);
+        }
+        this.capacity = capacity;
+        this.levels = levels;
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, agingMs));
+        this.buckets = (Bucket<E>[]) new Bucket<?>[levels];
+        for (int i = 0; i < levels; i++) {
+            buckets[i] = new Bucket<>();
+        }
+    }
+
+    @Override
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        int level = levelOf(element.getPriority());
+        lock.lock();
+        try {
+            if (count >= capacity) {
+                return false;
+            }
+            buckets[level].add(element, System.nanoTime());
+            nonEmptyLevels |= 1 << level;
+            count++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> target, int maxElements) {
+        lock.lock();
+        try {
+            // 一次加锁按优先级顺序取出多个任务
+            int drained = 0;
+            while (drained < maxElements && count > 0) {
+                target.add(dequeue());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            for (Bucket<E> bucket : buckets) {
+                bucket.clear();
+            }
+            nonEmptyLevels = 0;
+            count = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取各优先级当前积压数量
+     */
+    public int[] levelSizes() {
+        lock.lock();
+        try {
+            int[] sizes = new int[levels];
+            for (int i = 0; i < levels; i++) {
+                sizes[i] = buckets[i].size;
+            }
+            return sizes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 出队，调用方需持有锁
+     */
+    private E dequeue() {
+        if (nonEmptyLevels == 0) {
+            return null;
+        }
+        int level = Integer.numberOfTrailingZeros(nonEmptyLevels);
+        if (agingNanos > 0) {
+            level = selectAgedLevel(level);
+        }
+        Bucket<E> bucket = buckets[level];
+        E element = bucket.remove();
+        if (bucket.size == 0) {
+            nonEmptyLevels &= ~(1 << level);
+        }
+        count--;
+        return element;
+    }
+
+    /**
+     * 比较各非空桶队首任务的有效优先级（原优先级减去已老化的级数），返回有效优先级最高的桶
+     * 只检查队首，代价与级数相关而与队列深度无关
+     */
+    private int selectAgedLevel(int highestLevel) {
+        long now = System.nanoTime();
+        int selected = highestLevel;
+        // 最高优先级桶的队首同样按等待时间老化，否则等待更久的高优先级任务会输给老化后的低优先级任务
+        long selectedEffective = highestLevel - (now - buckets[highestLevel].headEnqueueNanos()) / agingNanos;
+        int remaining = nonEmptyLevels & ~(1 << highestLevel);
+        while (remaining != 0) {
+            int level = Integer.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            long effective = level - (now - buckets[level].headEnqueueNanos()) / agingNanos;
+            if (effective < selectedEffective) {
+                selected = level;
+                selectedEffective = effective;
+            }
+        }
+        return selected;
+    }
+
+    private int levelOf(int priority) {
+        if (priority < 0) {
+            return 0;
+        }
+        return Math.min(priority, levels - 1);
+    }
+
+    /**
+     * 单个优先级的 FIFO 桶，使用可扩容的循环数组保存任务及其入队时间
+     */
+    private static final class Bucket<E> {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private Object[] items = new Object[INITIAL_CAPACITY];
+        private long[] enqueueNanos = new long[INITIAL_CAPACITY];
+        private int head;
+        private int size;
+
+        void add(E element, long nanos) {
+            if (size == items.length) {
+                grow();
+            }
+            int index = (head + size) & (items.length - 1);
+            items[index] = element;
+            enqueueNanos[index] = nanos;
+            size++;
+        }
+
+        @SuppressWarnings("unchecked")
+        E remove() {
+            E element = (E) items[head];
+            items[head] = null;
+            head = (head + 1) & (items.length - 1);
+            size--;
+            return element;
+        }
+
+        long headEnqueueNanos() {
+            return enqueueNanos[head];
+        }
+
+        void clear() {
+            items = new Object[INITIAL_CAPACITY];
+            enqueueNanos = new long[INITIAL_CAPACITY];
+            head = 0;
+            size = 0;
+        }
+
+        private void grow() {
+            int oldLength = items.length;
+            Object[] newItems = new Object[oldLength << 1];
+            long[] newNanos = new long[oldLength << 1];
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) & (oldLength - 1);
+                newItems[i] = items[index];
+                newNanos[i] = enqueueNanos[index];
+            }
+            items = newItems;
+            enqueueNanos = newNanos;
+            head = 0;
+        }
+    }
+}
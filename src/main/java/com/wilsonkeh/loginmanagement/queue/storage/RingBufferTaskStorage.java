@@ -0,0 +1,170 @@
+package com.wilsonkeh.loginmanagement.queue.storage;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 有界无锁多生产者多消费者环形缓冲区
+ * 每个槽位带一个序号，生产者和消费者只通过 CAS 推进各自的位置，offer 与 poll 不加锁、不分配节点
+ * 只有消费者需要阻塞等待时才使用锁和条件变量，生产者仅在存在等待者时才去唤醒
+ */
+public class RingBufferTaskStorage<E> implements TaskStorage<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences;
+
+    // 下一个写入位置和下一个读取位置
+    private final AtomicLong tail = new AtomicLong(0);
+    private final AtomicLong head = new AtomicLong(0);
+
+    // 阻塞式获取使用的等待机制
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private final Condition notEmpty = waitLock.newCondition();
+    private final AtomicInteger waitingConsumers = new AtomicInteger(0);
+
+    public RingBufferTaskStorage(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("环形缓冲区容量必须大于0: " + capacity);
+        }
+        // 物理槽位数取不小于容量的2的幂，逻辑容量仍以 capacity 为准
+        int slots = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.capacity = capacity;
+        this.mask = slots - 1;
+        this.buffer = new AtomicReferenceArray<>(slots);
+        this.sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    @Override
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long pos = tail.get();
+        int index;
+        for (;;) {
+            if (pos - head.get() >= capacity) {
+                return false; // 已达到逻辑容量
+            }
+            index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false; // 槽位尚未被消费，缓冲区已满
+            } else {
+                pos = tail.get();
+            }
+        }
+        buffer.setPlain(index, element);
+        // volatile 写发布元素，保证随后读取 waitingConsumers 时不会发生重排序而丢失唤醒
+        sequences.set(index, pos + 1);
+        signalNotEmpty();
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        long pos = head.get();
+        int index;
+        for (;;) {
+            index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return null; // 缓冲区为空
+            } else {
+                pos = head.get();
+            }
+        }
+        E element = buffer.getPlain(index);
+        buffer.setPlain(index, null);
+        // 释放槽位给下一轮生产者
+        sequences.setRelease(index, pos + mask + 1);
+        return element;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E element = poll();
+        if (element != null) {
+            return element;
+        }
+        long nanos = unit.toNanos(timeout);
+        waitLock.lockInterruptibly();
+        waitingConsumers.incrementAndGet();
+        try {
+            while ((element = poll()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return element;
+        } finally {
+            waitingConsumers.decrementAndGet();
+            waitLock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E element = poll();
+        if (element != null) {
+            return element;
+        }
+        waitLock.lockInterruptibly();
+        waitingConsumers.incrementAndGet();
+        try {
+            while ((element = poll()) == null) {
+                notEmpty.await();
+            }
+            return element;
+        } finally {
+            waitingConsumers.decrementAndGet();
+            waitLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        // 先读 head 再读 tail，避免并发出队时得到负数
+        long currentHead = head.get();
+        long currentTail = tail.get();
+        return (int) Math.max(0, Math.min(capacity, currentTail - currentHead));
+    }
+
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            // 逐个出队以保持槽位序号一致
+        }
+    }
+
+    private void signalNotEmpty() {
+        if (waitingConsumers.get() > 0) {
+            waitLock.lock();
+            try {
+                notEmpty.signal();
+            } finally {
+                waitLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.wilsonkeh.loginmanagement.queue.storage;
+
+import com.wilsonkeh.loginmanagement.queue.Task;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 队列存储后端
+ * DeduplicatingPriorityBlockingQueue 通过该接口存取任务，去重与统计由队列本身负责
+ * @param <E> 元素类型
+ */
+public interface TaskStorage<E> {
+
+    String LINKED = "LINKED";
+    String RING_BUFFER = "RING_BUFFER";
+    String PRIORITY = "PRIORITY";
+
+    int DEFAULT_PRIORITY_LEVELS = 8;
+    long DEFAULT_PRIORITY_AGING_MS = 1000;
+
+    /**
+     * 非阻塞式添加元素，存储已满时返回false
+     */
+    boolean offer(E element);
+
+    /**
+     * 非阻塞式获取元素，存储为空时返回null
+     */
+    E poll();
+
+    /**
+     * 带超时的阻塞式获取元素
+     */
+    E poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * 阻塞式获取元素
+     */
+    E take() throws InterruptedException;
+
+    /**
+     * 非阻塞式批量获取元素，最多取出 maxElements 个并追加到 target
+     * @return 实际取出的元素数量
+     */
+    default int drainTo(Collection<? super E> target, int maxElements) {
+        int drained = 0;
+        E element;
+        while (drained < maxElements && (element = poll()) != null) {
+            target.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * 获取当前元素数量
+     */
+    int size();
+
+    /**
+     * 检查是否为空
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 清空存储
+     */
+    void clear();
+
+    /**
+     * 根据配置的后端类型创建存储，优先级后端使用默认级数与老化间隔
+     * @param backend 后端类型：LINKED, RING_BUFFER, PRIORITY
+     * @param capacity 最大容量
+     */
+    static <T> TaskStorage<Task<T>> create(String backend, int capacity) {
+        return create(backend, capacity, DEFAULT_PRIORITY_LEVELS, DEFAULT_PRIORITY_AGING_MS);
+    }
+
+    /**
+     * 根据配置的后端类型创建存储
+     * @param backend 后端类型：LINKED, RING_BUFFER, PRIORITY
+     * @param capacity 最大容量
+     * @param priorityLevels 优先级级数（仅 PRIORITY 后端使用）
+     * @param priorityAgingMs 优先级老化间隔（仅 PRIORITY 后端使用），0表示不启用老化
+     */
+    static <T> TaskStorage<Task<T>> create(String backend, int capacity, int priorityLevels, long priorityAgingMs) {
+        String type = backend == null ? LINKED : backend.trim().toUpperCase();
+        switch (type) {
+            case LINKED:
+                return new LinkedTaskStorage<>(capacity);
+            case RING_BUFFER:
+                return new RingBufferTaskStorage<>(capacity);
+            case PRIORITY:
+                return new PriorityBucketTaskStorage<>(capacity, priorityLevels, priorityAgingMs);
+            default:
+                throw new IllegalArgumentException("未知的队列存储后端: " + backend);
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package com.wilsonkeh.loginmanagement.queue.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 分段内存映射追加日志
+ * 记录按 long 键写入，删除以墓碑记录追加，写入只是对映射内存的拷贝，不产生系统调用；
+ * 由调用方定期调用 {@link #force()} 批量刷盘，刷盘间隔即进程崩溃之外（如断电）可能丢失的数据窗口。
+ *
+ * 记录格式：记录长度(int) + 类型(byte) + 键(long) + CRC32C(int) + 数据。
+ * 恢复时按段顺序重放记录重建内存索引，CRC校验失败或长度为0处即为有效数据的结尾，半写入的尾部记录被丢弃。
+ * 段按创建顺序回收：最老的段中已没有存活记录时才删除，保证墓碑总是晚于它删除的记录被回收。
+ *
+ * 段文件创建时写零预分配磁盘块，避免写入时在缺页中分配块；预分配较慢，
+ * 因此由调用方在后台调用 {@link #prepareNextSegment()} 提前准备下一个段
+ */
+@Slf4j
+public class AppendLog implements Closeable {
+
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_DELETE = 2;
+    private static final int HEADER_SIZE = 4 + 1 + 8 + 4;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int PREALLOCATE_CHUNK_SIZE = 1024 * 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+
+    // 按序号排列的段，最后一个为当前写入段
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    // 存活记录的位置
+    private final Map<Long, RecordLocation> index = new HashMap<>();
+    // 上次刷盘后有写入的段
+    private final Set<Segment> dirtySegments = new LinkedHashSet<>();
+    private Segment active;
+    // 后台预先准备好的下一个段，以及正在准备的段序号（没有时为-1）
+    private Segment spare;
+    private long preparingSequence = -1;
+
+    /**
+     * @param directory 日志目录，不存在时创建，已有段文件时从中恢复
+     * @param segmentSize 段文件大小（字节），超过段大小的单条记录独占一个段
+     */
+    public AppendLog(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    /**
+     * 写入记录，键已存在时覆盖
+     */
+    public synchronized void put(long key, byte[] payload) {
+        RecordLocation location = append(RECORD_PUT, key, payload);
+        RecordLocation previous = index.put(key, location);
+        if (previous != null) {
+            previous.segment.liveRecords--;
+        }
+        location.segment.liveRecords++;
+        reclaimSegments();
+    }
+
+    /**
+     * 批量写入记录
+     */
+    public synchronized void putAll(Map<Long, byte[]> records) {
+        for (Map.Entry<Long, byte[]> entry : records.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * 删除记录，键不存在时忽略
+     */
+    public synchronized void delete(long key) {
+        RecordLocation previous = index.remove(key);
+        if (previous == null) {
+            return;
+        }
+        append(RECORD_DELETE, key, new byte[0]);
+        previous.segment.liveRecords--;
+        reclaimSegments();
+    }
+
+    /**
+     * 批量删除记录
+     */
+    public synchronized void deleteAll(Collection<Long> keys) {
+        for (Long key : keys) {
+            delete(key);
+        }
+    }
+
+    /**
+     * 读取记录，不存在时返回null
+     */
+    public synchronized byte[] get(long key) {
+        RecordLocation location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        byte[] payload = new byte[location.length];
+        location.segment.buffer.get(location.offset + HEADER_SIZE, payload);
+        return payload;
+    }
+
+    /**
+     * 获取全部存活记录的键
+     */
+    public synchronized Set<Long> keys() {
+        return new HashSet<>(index.keySet());
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * 当前写入段已用过半且尚未准备下一个段时，预分配下一个段，预分配在锁外进行
+     */
+    public void prepareNextSegment() {
+        long sequence;
+        synchronized (this) {
+            if (active == null || spare != null || preparingSequence >= 0
+                    || active.writePosition < active.buffer.capacity() / 2) {
+                return;
+            }
+            sequence = active.sequence + 1;
+            preparingSequence = sequence;
+        }
+        Segment prepared = null;
+        try {
+            prepared = openSegment(sequence, segmentPath(sequence), segmentSize, true);
+        } catch (IOException e) {
+            log.error("预分配队列存储日志段失败: {}, 错误: {}", segmentPath(sequence), e.getMessage(), e);
+        }
+        synchronized (this) {
+            preparingSequence = -1;
+            if (prepared != null && active != null && active.sequence + 1 == sequence) {
+                spare = prepared;
+                return;
+            }
+        }
+        // 准备期间写入方已跳过该序号滚动到新段，或日志已关闭
+        if (prepared != null) {
+            deleteSegment(prepared);
+        }
+    }
+
+    /**
+     * 把上次刷盘后写入的段刷到磁盘
+     */
+    public void force() {
+        List<Segment> toForce;
+        synchronized (this) {
+            if (dirtySegments.isEmpty()) {
+                return;
+            }
+            toForce = new ArrayList<>(dirtySegments);
+            dirtySegments.clear();
+        }
+        for (Segment segment : toForce) {
+            if (!segment.closed) {
+                segment.buffer.force();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        force();
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        if (spare != null) {
+            spare.close();
+            spare = null;
+        }
+        segments.clear();
+        index.clear();
+        active = null;
+    }
+
+    /**
+     * 关闭日志并删除全部段文件，用于丢弃已不属于本成员的日志
+     */
+    public synchronized void destroy() {
+        List<Segment> toDelete = new ArrayList<>(segments.values());
+        if (spare != null) {
+            toDelete.add(spare);
+        }
+        close();
+        for (Segment segment : toDelete) {
+            deleteSegment(segment);
+        }
+        try {
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            log.error("删除队列存储日志目录失败: {}, 错误: {}", directory, e.getMessage(), e);
+        }
+    }
+
+    private RecordLocation append(byte type, long key, byte[] payload) {
+        int recordLength = HEADER_SIZE + payload.length;
+        if (active.writePosition + recordLength > active.buffer.capacity()) {
+            active = nextSegment(recordLength);
+        }
+        MappedByteBuffer buffer = active.buffer;
+        int offset = active.writePosition;
+        buffer.put(offset + 4, type);
+        buffer.putLong(offset + 5, key);
+        buffer.putInt(offset + 13, checksum(type, key, payload));
+        buffer.put(offset + HEADER_SIZE, payload);
+        // 最后写入长度，长度为0的位置在恢复时视为日志结尾
+        buffer.putInt(offset, recordLength);
+        active.writePosition += recordLength;
+        dirtySegments.add(active);
+        return new RecordLocation(active, offset, payload.length);
+    }
+
+    /**
+     * 从最老的段开始删除已没有存活记录的段，当前写入段除外
+     */
+    private void reclaimSegments() {
+        while (segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest.liveRecords > 0) {
+                return;
+            }
+            segments.pollFirstEntry();
+            dirtySegments.remove(oldest);
+            deleteSegment(oldest);
+            log.debug("回收队列存储日志段: {}", oldest.path);
+        }
+    }
+
+    private void deleteSegment(Segment segment) {
+        segment.close();
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.error("删除队列存储日志段失败: {}, 错误: {}", segment.path, e.getMessage(), e);
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long sequence = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            segments.put(sequence, openSegment(sequence, file, (int) Files.size(file), false));
+        }
+        for (Segment segment : segments.values()) {
+            replay(segment);
+        }
+
+        if (segments.isEmpty()) {
+            active = createSegment(0, segmentSize, true);
+        } else {
+            active = segments.lastEntry().getValue();
+            reclaimSegments();
+        }
+        if (!index.isEmpty()) {
+            log.info("队列存储日志恢复完成 - 目录: {}, 段数: {}, 记录数: {}", directory, segments.size(), index.size());
+        }
+    }
+
+    /**
+     * 重放段中的记录，遇到长度为0或校验失败的记录时停止，并把写入位置设在该处
+     */
+    private void replay(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_SIZE <= buffer.capacity()) {
+            int recordLength = buffer.getInt(position);
+            if (recordLength < HEADER_SIZE || position + recordLength > buffer.capacity()) {
+                if (recordLength != 0) {
+                    log.warn("队列存储日志记录长度无效，丢弃其后的数据 - 段: {}, 位置: {}", segment.path, position);
+                }
+                break;
+            }
+            byte type = buffer.get(position + 4);
+            long key = buffer.getLong(position + 5);
+            byte[] payload = new byte[recordLength - HEADER_SIZE];
+            buffer.get(position + HEADER_SIZE, payload);
+            if (buffer.getInt(position + 13) != checksum(type, key, payload)) {
+                log.warn("队列存储日志记录校验失败，丢弃其后的数据 - 段: {}, 位置: {}", segment.path, position);
+                // 清除半写入的记录，之后的写入从这里开始
+                buffer.put(position, new byte[Math.min(recordLength, buffer.capacity() - position)]);
+                break;
+            }
+
+            RecordLocation previous = type == RECORD_PUT
+                ? index.put(key, new RecordLocation(segment, position, payload.length))
+                : index.remove(key);
+            if (previous != null) {
+                previous.segment.liveRecords--;
+            }
+            if (type == RECORD_PUT) {
+                segment.liveRecords++;
+            }
+            position += recordLength;
+        }
+        segment.writePosition = position;
+    }
+
+    /**
+     * 滚动到下一个段：优先使用后台准备好的段，否则在写入路径上直接创建（不预分配）
+     */
+    private Segment nextSegment(int recordLength) {
+        Segment prepared = spare;
+        spare = null;
+        if (prepared != null && prepared.buffer.capacity() >= recordLength) {
+            segments.put(prepared.sequence, prepared);
+            return prepared;
+        }
+        if (prepared != null) {
+            deleteSegment(prepared);
+        }
+        // 后台正在准备的序号留给它，准备完成后发现序号已过期会自行删除
+        long sequence = active.sequence + 1 == preparingSequence ? active.sequence + 2 : active.sequence + 1;
+        return createSegment(sequence, Math.max(segmentSize, recordLength), false);
+    }
+
+    private Segment createSegment(long sequence, int size, boolean preallocate) {
+        Path path = segmentPath(sequence);
+        try {
+            Segment segment = openSegment(sequence, path, size, preallocate);
+            segments.put(sequence, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建队列存储日志段失败: " + path, e);
+        }
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("%020d%s", sequence, SEGMENT_SUFFIX));
+    }
+
+    private Segment openSegment(long sequence, Path path, int size, boolean preallocate) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (preallocate) {
+            ByteBuffer zeros = ByteBuffer.allocate(Math.min(size, PREALLOCATE_CHUNK_SIZE));
+            for (long position = channel.size(); position < size; position += zeros.limit()) {
+                zeros.clear();
+                zeros.limit((int) Math.min(zeros.capacity(), size - position));
+                channel.write(zeros, position);
+            }
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return new Segment(sequence, path, channel, buffer);
+    }
+
+    private static int checksum(byte type, long key, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (key >>> shift));
+        }
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 日志段：一个预分配大小并整体映射到内存的文件
+     */
+    private static final class Segment {
+        private final long sequence;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int liveRecords;
+        private volatile boolean closed;
+
+        private Segment(long sequence, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private void close() {
+            closed = true;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.error("关闭队列存储日志段失败: {}, 错误: {}", path, e.getMessage(), e);
+            }
+        }
+    }
+
+    private record RecordLocation(Segment segment, int offset, int length) {
+    }
+}
@@ -0,0 +1,67 @@
+package com.wilsonkeh.loginmanagement.queue.store;
+
+import com.hazelcast.collection.QueueStore;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 基于本地追加日志的 Hazelcast 队列存储
+ * 以二进制模式配置（binary=true），直接保存队列元素序列化后的字节，存取都不需要反序列化；
+ * 每个队列（分片）对应一个独立的日志目录，队列所在分区的主副本成员写入自己的本地日志。
+ * 每次操作都向工厂取当前日志：分区迁出时工厂会丢弃日志，迁回或备份提升为主副本后按队列内容重建
+ */
+public class AppendLogQueueStore implements QueueStore<byte[]> {
+
+    private final Supplier<AppendLog> appendLogs;
+
+    public AppendLogQueueStore(Supplier<AppendLog> appendLogs) {
+        this.appendLogs = appendLogs;
+    }
+
+    @Override
+    public void store(Long key, byte[] value) {
+        appendLogs.get().put(key, value);
+    }
+
+    @Override
+    public void storeAll(Map<Long, byte[]> map) {
+        appendLogs.get().putAll(map);
+    }
+
+    @Override
+    public void delete(Long key) {
+        appendLogs.get().delete(key);
+    }
+
+    @Override
+    public void deleteAll(Collection<Long> keys) {
+        appendLogs.get().deleteAll(keys);
+    }
+
+    @Override
+    public byte[] load(Long key) {
+        return appendLogs.get().get(key);
+    }
+
+    @Override
+    public Map<Long, byte[]> loadAll(Collection<Long> keys) {
+        AppendLog appendLog = appendLogs.get();
+        Map<Long, byte[]> result = new HashMap<>(keys.size());
+        for (Long key : keys) {
+            byte[] value = appendLog.get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Set<Long> loadAllKeys() {
+        return appendLogs.get().keys();
+    }
+}
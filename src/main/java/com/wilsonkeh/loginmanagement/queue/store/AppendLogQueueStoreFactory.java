@@ -0,0 +1,269 @@
+package com.wilsonkeh.loginmanagement.queue.store;
+
+import com.hazelcast.cluster.Member;
+import com.hazelcast.collection.QueueStore;
+import com.hazelcast.collection.QueueStoreFactory;
+import com.hazelcast.collection.impl.queue.QueueContainer;
+import com.hazelcast.collection.impl.queue.QueueItem;
+import com.hazelcast.collection.impl.queue.QueueService;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.instance.impl.HazelcastInstanceProxy;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.partition.MigrationListener;
+import com.hazelcast.partition.MigrationState;
+import com.hazelcast.partition.ReplicaMigrationEvent;
+import com.hazelcast.partition.strategy.StringPartitioningStrategy;
+import com.hazelcast.spi.impl.NodeEngine;
+import com.hazelcast.spi.impl.PartitionSpecificRunnable;
+import com.hazelcast.spi.impl.operationservice.impl.OperationServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 追加日志队列存储工厂
+ * 为每个队列创建独立目录下的追加日志，后台线程按固定间隔批量刷盘并提前预分配下一个日志段：
+ * 入队只写入映射内存，刷盘和磁盘块分配都不在入队路径上，持久化的代价是一次内存拷贝而不是一次数据库往返。
+ *
+ * Hazelcast 每次创建队列容器（主副本、备份、迁移、重建）都会调用 {@link #newQueueStore}，同一队列共用一个日志。
+ * 日志只由主副本写入，因此 {@link #start} 之后监听主副本迁移：主副本迁出本成员时丢弃本地日志，
+ * 迁入（含备份提升）时在分区线程上按队列当前内容重建日志，保证每个队列只有主副本成员的日志有效
+ */
+@Slf4j
+public class AppendLogQueueStoreFactory implements QueueStoreFactory<byte[]>, Closeable {
+
+    private static final long PREPARE_SEGMENT_INTERVAL_MS = 100;
+
+    private final Path directory;
+    private final int segmentSize;
+    // 队列名 -> 日志，同一队列的所有存储实例共用
+    private final Map<String, AppendLog> appendLogs = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean closed;
+    // start 之后才有，之前不处理迁移
+    private volatile NodeEngine nodeEngine;
+    private volatile Member localMember;
+
+    /**
+     * @param directory 存储根目录，每个队列使用以队列名命名的子目录
+     * @param segmentSize 日志段文件大小（字节）
+     * @param fsyncIntervalMillis 批量刷盘间隔（毫秒）
+     */
+    public AppendLogQueueStoreFactory(Path directory, int segmentSize, long fsyncIntervalMillis) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        // 两个线程：预分配段较慢，不能推迟刷盘
+        AtomicInteger threadCounter = new AtomicInteger(0);
+        this.scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "QueueStore-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::forceAll, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::prepareSegments, PREPARE_SEGMENT_INTERVAL_MS,
+            PREPARE_SEGMENT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public QueueStore<byte[]> newQueueStore(String name, Properties properties) {
+        AppendLog appendLog = appendLog(name);
+        log.info("队列存储已创建 - 队列: {}, 目录: {}, 记录数: {}", name, directory.resolve(name), appendLog.size());
+        return new AppendLogQueueStore(() -> appendLog(name));
+    }
+
+    /**
+     * 开始跟踪主副本迁移，应在 Hazelcast 实例创建之后调用
+     */
+    public void start(HazelcastInstance hazelcastInstance) {
+        // 重建日志需要读取队列容器中的元素ID，只能通过内部接口获得
+        this.nodeEngine = ((HazelcastInstanceProxy) hazelcastInstance).getOriginal().node.getNodeEngine();
+        this.localMember = hazelcastInstance.getCluster().getLocalMember();
+        hazelcastInstance.getPartitionService().addMigrationListener(new PrimaryMigrationListener());
+        log.info("队列存储开始跟踪分区迁移 - 成员: {}", localMember);
+    }
+
+    /**
+     * 获取队列的日志，没有时打开（已有段文件时从中恢复）
+     */
+    AppendLog appendLog(String name) {
+        if (closed) {
+            throw new IllegalStateException("队列存储已关闭: " + name);
+        }
+        return appendLogs.computeIfAbsent(name, this::openAppendLog);
+    }
+
+    /**
+     * 获取队列在本成员日志中的记录数，日志未打开时为0
+     */
+    int getStoredRecords(String name) {
+        AppendLog appendLog = appendLogs.get(name);
+        return appendLog == null ? 0 : appendLog.size();
+    }
+
+    private AppendLog openAppendLog(String name) {
+        try {
+            return new AppendLog(directory.resolve(name), segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建队列存储失败: " + name, e);
+        }
+    }
+
+    /**
+     * 主副本已迁入本成员：按队列当前内容重建日志，丢弃原有记录（本成员作为备份时不写日志，原有记录已过期）
+     */
+    private void rebuildAppendLog(String name, int partitionId) {
+        QueueService queueService = nodeEngine.getService(QueueService.SERVICE_NAME);
+        QueueContainer container = queueService.getExistingContainerOrNull(name);
+        if (container == null || !nodeEngine.getPartitionService().getPartition(partitionId).isLocal()) {
+            return;
+        }
+        AppendLog previous = appendLogs.get(name);
+        Map<Long, byte[]> records = new HashMap<>();
+        for (QueueItem item : container.getItemQueue()) {
+            Data data = item.getSerializedObject();
+            // 与二进制模式下 Hazelcast 写入存储的字节相同；超出内存上限的元素只在日志中
+            byte[] value = data != null ? Arrays.copyOf(data.toByteArray(), data.totalSize())
+                : previous != null ? previous.get(item.getItemId()) : null;
+            if (value != null) {
+                records.put(item.getItemId(), value);
+            }
+        }
+        destroyAppendLog(name);
+        AppendLog appendLog = appendLog(name);
+        appendLog.putAll(records);
+        log.info("队列主副本迁入，已按队列内容重建存储 - 队列: {}, 分区: {}, 记录数: {}", name, partitionId, records.size());
+    }
+
+    /**
+     * 主副本已迁出本成员：队列元素由新的主副本持久化，本地日志不再更新，保留会在重启后恢复出已消费的元素
+     */
+    private void discardAppendLog(String name, int partitionId) {
+        if (nodeEngine.getPartitionService().getPartition(partitionId).isLocal()) {
+            return;
+        }
+        if (destroyAppendLog(name)) {
+            log.info("队列主副本迁出，已丢弃本地存储 - 队列: {}, 分区: {}", name, partitionId);
+        }
+    }
+
+    private boolean destroyAppendLog(String name) {
+        AppendLog appendLog = appendLogs.remove(name);
+        if (appendLog == null) {
+            return false;
+        }
+        appendLog.destroy();
+        return true;
+    }
+
+    private void forceAll() {
+        for (AppendLog appendLog : appendLogs.values()) {
+            try {
+                appendLog.force();
+            } catch (Exception e) {
+                log.error("队列存储刷盘失败: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void prepareSegments() {
+        for (AppendLog appendLog : appendLogs.values()) {
+            try {
+                appendLog.prepareNextSegment();
+            } catch (Exception e) {
+                log.error("队列存储预分配日志段失败: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 停止后台线程，刷盘并关闭全部日志，应在 Hazelcast 实例关闭之后调用
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (AppendLog appendLog : appendLogs.values()) {
+            appendLog.close();
+        }
+        appendLogs.clear();
+        log.info("队列存储已关闭");
+    }
+
+    /**
+     * 主副本迁移监听器：迁移事件在事件线程上到达，日志的重建和丢弃交给分区线程执行，
+     * 与该分区上的队列操作（以及由它们触发的存储写入）串行，不会与写入交错
+     */
+    private class PrimaryMigrationListener implements MigrationListener {
+
+        @Override
+        public void migrationStarted(MigrationState state) {
+        }
+
+        @Override
+        public void migrationFinished(MigrationState state) {
+        }
+
+        @Override
+        public void replicaMigrationCompleted(ReplicaMigrationEvent event) {
+            if (event.getReplicaIndex() != 0) {
+                return;
+            }
+            boolean arrived = localMember.equals(event.getDestination());
+            boolean left = localMember.equals(event.getSource());
+            if (!arrived && !left) {
+                return;
+            }
+            int partitionId = event.getPartitionId();
+            for (String name : appendLogs.keySet()) {
+                if (partitionId(name) != partitionId) {
+                    continue;
+                }
+                Runnable task = arrived
+                    ? () -> rebuildAppendLog(name, partitionId)
+                    : () -> discardAppendLog(name, partitionId);
+                ((OperationServiceImpl) nodeEngine.getOperationService()).execute(new PartitionTask(partitionId, task));
+            }
+        }
+
+        @Override
+        public void replicaMigrationFailed(ReplicaMigrationEvent event) {
+        }
+
+        private int partitionId(String name) {
+            return nodeEngine.getPartitionService().getPartitionId(StringPartitioningStrategy.getPartitionKey(name));
+        }
+    }
+
+    private record PartitionTask(int partitionId, Runnable task) implements PartitionSpecificRunnable {
+        @Override
+        public int getPartitionId() {
+            return partitionId;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.error("处理队列存储分区迁移失败 - 分区: {}, 错误: {}", partitionId, e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,588 @@
+package com.wilsonkeh.loginmanagement.queue.store;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
+import com.wilsonkeh.loginmanagement.config.HazelcastConfig;
+import com.wilsonkeh.loginmanagement.queue.DistributedDeduplicatingPriorityBlockingQueue.DistributedQueueStats;
+import com.wilsonkeh.loginmanagement.queue.OfferResult;
+import com.wilsonkeh.loginmanagement.queue.Task;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 分区本地任务存储
+ * 去重键、任务数据和投递状态保存在同一个 IMap 条目中，条目所在分区即任务所在分区：
+ * 入队是一次 Entry 处理器调用（键不存在才写入，同时完成去重），
+ * 消费者先领取本成员拥有的待处理条目（由本地条目监听器收集键，无需逐批查询），
+ * 处理完成后一次调用删除条目，同时完成确认和去重键释放。
+ * 领取的条目带有租约，领取者宕机或处理失败未确认时，租约到期后条目可被重新领取；
+ * 确认时核对领取标识，只删除仍由本次领取持有的条目。
+ * 与 IQueue 模式相比，每次入队省去去重 putIfAbsent 和全局 size 两次往返，每次出队省去去重键删除
+ */
+@Slf4j
+public class PartitionLocalTaskStore<T> {
+
+    // 容量检查使用的近似大小的刷新间隔，避免每次入队都发起全集群 size 调用
+    private static final long SIZE_REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // 无待处理任务时单次等待的最长时间，超时后重新查询，兼顾其他成员上的任务
+    private static final long CLAIM_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // 存储已满时不可丢弃任务等待容量的检查间隔
+    private static final long CAPACITY_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    // 默认租约时长，与 QUEUE 模式的可见性超时默认值一致
+    public static final long DEFAULT_LEASE_TIMEOUT_MS = 30_000;
+    // 本地候选键不断有新任务时，仍按该间隔查询一次本地租约到期的条目
+    private static final long LEASE_CHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // 领取其他成员上的条目时单次查询的键数相对于领取数的倍数，留出轮转选取的余地
+    private static final int REMOTE_SCAN_FACTOR = 4;
+
+    private final IMap<String, TaskStoreEntry> storeMap;
+    private final int maxSize;
+    private final boolean enableDeduplication;
+    private final Function<Task<T>, String> deduplicationKeyExtractor;
+    private final long leaseTimeoutMs;
+
+    // 统计计数器
+    private final AtomicInteger totalOffered = new AtomicInteger(0);
+    private final AtomicInteger totalDeduplicated = new AtomicInteger(0);
+    private final AtomicInteger totalPolled = new AtomicInteger(0);
+    private final AtomicInteger totalAcknowledged = new AtomicInteger(0);
+
+    // 近似大小及其刷新时间
+    private final AtomicInteger approximateSize = new AtomicInteger(0);
+    private volatile long sizeRefreshedAt = System.nanoTime() - SIZE_REFRESH_NANOS;
+
+    // 本成员拥有的分区上新增条目的键，消费者从中取键领取；可能包含已被领取的键，领取时忽略
+    private final Queue<String> localCandidates = new ConcurrentLinkedQueue<>();
+    // 本成员拥有的分区上新增条目的计数，消费者据此判断等待期间是否有新任务到达
+    private final AtomicLong localArrivals = new AtomicLong(0);
+    private final Object arrivalMonitor = new Object();
+    private volatile UUID listenerId;
+    private volatile long leaseCheckedAt = System.nanoTime();
+
+    // 本成员领取且尚未确认的任务的领取标识，确认时核对；超过两倍租约时长仍未确认的视为放弃并清理
+    private final Map<String, Claim> claims = new ConcurrentHashMap<>();
+
+    // 领取其他成员上的条目时的起始位置，使多个消费线程尽量领取不同的条目
+    private final AtomicInteger consumerCursor = new AtomicInteger(0);
+
+    public PartitionLocalTaskStore(HazelcastInstance hazelcastInstance,
+                                   int maxSize,
+                                   boolean enableDeduplication,
+                                   Function<Task<T>, String> deduplicationKeyExtractor) {
+        this(hazelcastInstance, maxSize, enableDeduplication, deduplicationKeyExtractor, DEFAULT_LEASE_TIMEOUT_MS);
+    }
+
+    /**
+     * @param leaseTimeoutMs 领取后的租约时长（毫秒），超过该时长未确认的任务可被重新领取
+     */
+    public PartitionLocalTaskStore(HazelcastInstance hazelcastInstance,
+                                   int maxSize,
+                                   boolean enableDeduplication,
+                                   Function<Task<T>, String> deduplicationKeyExtractor,
+                                   long leaseTimeoutMs) {
+        if (leaseTimeoutMs <= 0) {
+            throw new IllegalArgumentException("租约时长必须大于0: " + leaseTimeoutMs);
+        }
+        this.storeMap = hazelcastInstance.getMap(HazelcastConfig.TASK_STORE_MAP_NAME);
+        this.maxSize = maxSize;
+        this.enableDeduplication = enableDeduplication;
+        this.deduplicationKeyExtractor = deduplicationKeyExtractor;
+        this.leaseTimeoutMs = leaseTimeoutMs;
+
+        log.info("分区本地任务存储初始化完成 - Map名称: {}, 最大大小: {}, 去重启用: {}, 租约时长: {}ms",
+                HazelcastConfig.TASK_STORE_MAP_NAME, maxSize, enableDeduplication, leaseTimeoutMs);
+    }
+
+    /**
+     * 注册本地条目监听器，在构造完成后调用，避免监听线程看到未构造完成的实例；
+     * 未启动时消费者仍可通过本地查询领取，只是不能在新任务到达时立即唤醒
+     */
+    public synchronized void start() {
+        if (listenerId != null) {
+            return;
+        }
+        listenerId = storeMap.addLocalEntryListener(
+            (EntryAddedListener<String, TaskStoreEntry>) event -> onLocalArrival(event.getKey()));
+    }
+
+    /**
+     * 去重并入队，一次集群调用，存储已满时立即拒绝
+     */
+    public boolean offer(Task<T> task) {
+        return offer(task, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 去重并入队，存储已满时可丢弃任务立即拒绝，不可丢弃任务最多等待 timeout 直到有任务确认
+     */
+    public boolean offer(Task<T> task, long timeout, TimeUnit unit) {
+        if (task == null) {
+            return false;
+        }
+
+        totalOffered.incrementAndGet();
+        long deadline = System.nanoTime() + (task.isDiscardable() ? 0 : unit.toNanos(timeout));
+        if (!awaitCapacity(deadline)) {
+            logRejected(task);
+            return false;
+        }
+        return enqueue(task).isAccepted();
+    }
+
+    private OfferResult enqueue(Task<T> task) {
+        try {
+            String key = keyOf(task);
+            boolean added = Boolean.TRUE.equals(storeMap.executeOnKey(key, new TaskEnqueueProcessor(task)));
+            if (added) {
+                approximateSize.incrementAndGet();
+                log.debug("成功添加任务到分区本地任务存储: {}", task);
+                return OfferResult.ACCEPTED;
+            }
+            totalDeduplicated.incrementAndGet();
+            log.debug("检测到重复任务，拒绝添加: {}", key);
+            return OfferResult.DUPLICATE;
+        } catch (Exception e) {
+            log.error("添加任务到分区本地任务存储失败: {}", e.getMessage(), e);
+            return OfferResult.FAILED;
+        }
+    }
+
+    /**
+     * 批量去重并入队
+     * 批内重复的任务只保留第一个，超出剩余容量的任务拒绝，
+     * 其余任务以流水线方式提交到各自分区后统一等待结果
+     * @return 与输入顺序一致的入队结果
+     */
+    public List<Boolean> offerAll(Collection<? extends Task<T>> tasks) {
+        return offerAll(tasks, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 批量去重并入队，超出剩余容量的任务中可丢弃的立即拒绝，
+     * 不可丢弃的在共同的 timeout 内等待容量后逐个入队
+     * @return 与输入顺序一致的入队结果
+     */
+    public List<Boolean> offerAll(Collection<? extends Task<T>> tasks, long timeout, TimeUnit unit) {
+        List<Boolean> accepted = new ArrayList<>(tasks.size());
+        for (OfferResult result : offerAllWithResults(tasks, timeout, unit)) {
+            accepted.add(result.isAccepted());
+        }
+        return accepted;
+    }
+
+    /**
+     * 批量去重并入队，与 {@link #offerAll(Collection, long, TimeUnit)} 相同，但区分重复任务和存储已满
+     * @return 与输入顺序一致的入队结果
+     */
+    public List<OfferResult> offerAllWithResults(Collection<? extends Task<T>> tasks, long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        List<Task<T>> taskList = new ArrayList<>(tasks);
+        int count = taskList.size();
+        List<OfferResult> results = new ArrayList<>(Collections.nCopies(count, OfferResult.FAILED));
+        if (count == 0) {
+            return results;
+        }
+        totalOffered.addAndGet(count);
+
+        Map<String, Integer> firstIndexes = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            Task<T> task = taskList.get(i);
+            if (task == null) {
+                continue;
+            }
+            String key = keyOf(task);
+            if (firstIndexes.putIfAbsent(key, i) != null) {
+                totalDeduplicated.incrementAndGet();
+                results.set(i, OfferResult.DUPLICATE);
+                log.debug("检测到批内重复任务，拒绝添加: {}", key);
+            }
+        }
+
+        int remainingCapacity = Math.max(0, maxSize - currentApproximateSize());
+        List<Integer> admittedIndexes = new ArrayList<>(firstIndexes.values());
+        Collections.sort(admittedIndexes);
+        List<Integer> overflowIndexes = List.of();
+        if (admittedIndexes.size() > remainingCapacity) {
+            overflowIndexes = admittedIndexes.subList(remainingCapacity, admittedIndexes.size());
+            admittedIndexes = admittedIndexes.subList(0, remainingCapacity);
+        }
+
+        List<CompletableFuture<Boolean>> submissions = new ArrayList<>(admittedIndexes.size());
+        for (int index : admittedIndexes) {
+            Task<T> task = taskList.get(index);
+            submissions.add(storeMap.submitToKey(keyOf(task), new TaskEnqueueProcessor(task)).toCompletableFuture());
+        }
+        for (int i = 0; i < submissions.size(); i++) {
+            int index = admittedIndexes.get(i);
+            try {
+                if (Boolean.TRUE.equals(submissions.get(i).join())) {
+                    results.set(index, OfferResult.ACCEPTED);
+                    approximateSize.incrementAndGet();
+                } else {
+                    totalDeduplicated.incrementAndGet();
+                    results.set(index, OfferResult.DUPLICATE);
+                }
+            } catch (Exception e) {
+                log.error("批量添加任务到分区本地任务存储失败: {}", e.getMessage(), e);
+            }
+        }
+
+        int rejected = 0;
+        for (int index : overflowIndexes) {
+            Task<T> task = taskList.get(index);
+            if (!task.isDiscardable() && awaitCapacity(deadline)) {
+                results.set(index, enqueue(task));
+            } else {
+                results.set(index, OfferResult.QUEUE_FULL);
+                rejected++;
+            }
+        }
+        if (rejected > 0) {
+            log.warn("任务存储已满，拒绝批量提交中的 {} 个任务", rejected);
+        }
+        return results;
+    }
+
+    /**
+     * 批量领取待处理任务
+     * 先领取本成员拥有的条目，本地没有时再领取其他成员上的条目（有上限的分页查询）；
+     * 都没有时等待本地新增条目的通知，每段等待超时后重新查询，直到总超时。
+     * 领取的任务必须在处理完成后调用 {@link #acknowledge(Collection)} 确认
+     * @return 领取的任务数，超时仍无任务时返回0
+     */
+    public int drainTo(List<Task<T>> target, int maxElements, long timeout, TimeUnit unit) throws InterruptedException {
+        if (maxElements <= 0) {
+            return 0;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            while (true) {
+                long arrivalsBefore = localArrivals.get();
+                List<Task<T>> claimed = claimLocal(maxElements);
+                if (claimed.isEmpty()) {
+                    claimed = claim(selectKeys(claimableRemoteKeys(maxElements), maxElements));
+                }
+                if (!claimed.isEmpty()) {
+                    totalPolled.addAndGet(claimed.size());
+                    target.addAll(claimed);
+                    log.debug("从分区本地任务存储中批量领取任务: {}", claimed.size());
+                    return claimed.size();
+                }
+
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return 0;
+                }
+                awaitLocalArrival(arrivalsBefore, Math.min(remaining, CLAIM_WAIT_NANOS));
+            }
+        } catch (InterruptedException e) {
+            log.warn("批量领取任务时被中断");
+            throw e;
+        } catch (Exception e) {
+            log.error("从分区本地任务存储批量领取任务失败: {}", e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * 从本地候选键中领取任务；候选键耗尽或到了租约检查时间时用一次本地查询重新同步，
+     * 以覆盖监听器注册前已存在、分区迁移到本成员或租约已到期的条目
+     */
+    private List<Task<T>> claimLocal(int maxElements) {
+        boolean resynced = false;
+        if (System.nanoTime() - leaseCheckedAt >= LEASE_CHECK_NANOS) {
+            resyncLocalCandidates();
+            resynced = true;
+        }
+        while (true) {
+            Set<String> keys = new LinkedHashSet<>();
+            String key;
+            while (keys.size() < maxElements && (key = localCandidates.poll()) != null) {
+                keys.add(key);
+            }
+            if (keys.isEmpty()) {
+                if (resynced) {
+                    return new ArrayList<>(0);
+                }
+                resyncLocalCandidates();
+                resynced = true;
+                continue;
+            }
+            List<Task<T>> claimed = claim(keys);
+            if (!claimed.isEmpty()) {
+                return claimed;
+            }
+        }
+    }
+
+    private void resyncLocalCandidates() {
+        leaseCheckedAt = System.nanoTime();
+        localCandidates.addAll(storeMap.localKeySet(claimable(System.currentTimeMillis() - leaseTimeoutMs)));
+        pruneAbandonedClaims();
+    }
+
+    /**
+     * 其他成员上可领取的键，分页查询只取第一页，每个成员返回的键数有上限，不随存储大小增长
+     */
+    private Set<String> claimableRemoteKeys(int maxElements) {
+        int pageSize = (int) Math.min(Integer.MAX_VALUE, (long) maxElements * REMOTE_SCAN_FACTOR);
+        return storeMap.keySet(Predicates.pagingPredicate(
+            claimable(System.currentTimeMillis() - leaseTimeoutMs), pageSize));
+    }
+
+    /**
+     * 待处理的条目，或领取时间早于 expiredBefore（租约已到期）的处理中条目
+     */
+    private static Predicate<String, TaskStoreEntry> claimable(long expiredBefore) {
+        return Predicates.or(
+            Predicates.equal("state", TaskStoreEntry.STATE_QUEUED),
+            Predicates.and(
+                Predicates.equal("state", TaskStoreEntry.STATE_IN_FLIGHT),
+                Predicates.lessThan("claimedTime", expiredBefore)));
+    }
+
+    /**
+     * 清理超过两倍租约时长仍未确认的领取记录：这些任务已被放弃（处理失败未确认），
+     * 条目在租约到期后会被重新领取，保留领取记录只会占用内存
+     */
+    private void pruneAbandonedClaims() {
+        long abandonedBefore = System.currentTimeMillis() - 2 * leaseTimeoutMs;
+        claims.values().removeIf(claim -> claim.claimedTime() < abandonedBefore);
+    }
+
+    /**
+     * 以轮转的起始位置选取至多 maxElements 个键
+     */
+    private Set<String> selectKeys(Set<String> queuedKeys, int maxElements) {
+        Set<String> selected = new LinkedHashSet<>();
+        if (queuedKeys.isEmpty()) {
+            return selected;
+        }
+        List<String> keys = new ArrayList<>(queuedKeys);
+        int start = Math.floorMod(consumerCursor.getAndAdd(maxElements), keys.size());
+        for (int i = 0; i < keys.size() && selected.size() < maxElements; i++) {
+            selected.add(keys.get((start + i) % keys.size()));
+        }
+        return selected;
+    }
+
+    /**
+     * 在各自分区上领取条目，已被其他消费者领取或已确认的条目返回null并被忽略；
+     * 结果按优先级和创建时间排序
+     */
+    private List<Task<T>> claim(Set<String> keys) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>(0);
+        }
+        long now = System.currentTimeMillis();
+        Claim claim = new Claim(UUID.randomUUID().toString(), now);
+        Map<String, Task<?>> claimed = storeMap.executeOnKeys(keys,
+            new TaskClaimProcessor(now, now - leaseTimeoutMs, claim.claimId()));
+        List<Task<T>> tasks = new ArrayList<>(claimed.size());
+        for (Map.Entry<String, Task<?>> entry : claimed.entrySet()) {
+            if (entry.getValue() != null) {
+                @SuppressWarnings("unchecked")
+                Task<T> typed = (Task<T>) entry.getValue();
+                tasks.add(typed);
+                claims.put(entry.getKey(), claim);
+            }
+        }
+        tasks.sort(Comparator.comparingInt((Task<T> task) -> task.getPriority())
+            .thenComparingLong(Task::getCreatedTime));
+        return tasks;
+    }
+
+    /**
+     * 确认任务处理完成：一次调用删除条目，同时释放去重键
+     * 只确认本成员领取的任务，并按领取标识核对：租约到期后已被重新领取的条目不会被删除
+     */
+    public void acknowledge(Collection<? extends Task<T>> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        Map<String, Set<String>> keysByClaim = new HashMap<>();
+        for (Task<T> task : tasks) {
+            String key = keyOf(task);
+            Claim claim = claims.remove(key);
+            if (claim == null) {
+                log.warn("任务不是本成员领取的或已确认，忽略确认: {}", key);
+                continue;
+            }
+            keysByClaim.computeIfAbsent(claim.claimId(), id -> new LinkedHashSet<>()).add(key);
+        }
+        try {
+            int count = 0;
+            for (Map.Entry<String, Set<String>> entry : keysByClaim.entrySet()) {
+                Map<String, Boolean> removed = storeMap.executeOnKeys(entry.getValue(), new TaskAckProcessor(entry.getKey()));
+                for (Boolean result : removed.values()) {
+                    if (Boolean.TRUE.equals(result)) {
+                        count++;
+                    }
+                }
+            }
+            totalAcknowledged.addAndGet(count);
+            approximateSize.addAndGet(-count);
+            log.debug("从分区本地任务存储中确认已处理任务: {}", count);
+        } catch (Exception e) {
+            log.error("确认已处理任务失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void onLocalArrival(String key) {
+        localCandidates.add(key);
+        localArrivals.incrementAndGet();
+        synchronized (arrivalMonitor) {
+            arrivalMonitor.notifyAll();
+        }
+    }
+
+    private void awaitLocalArrival(long arrivalsBefore, long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        synchronized (arrivalMonitor) {
+            while (localArrivals.get() == arrivalsBefore) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return;
+                }
+                TimeUnit.NANOSECONDS.timedWait(arrivalMonitor, remaining);
+            }
+        }
+    }
+
+    /**
+     * 存储键：启用去重时为去重键，否则为任务ID
+     */
+    private String keyOf(Task<T> task) {
+        return enableDeduplication ? deduplicationKeyExtractor.apply(task) : task.getTaskId();
+    }
+
+    /**
+     * 近似的存储大小，用于容量检查：本成员的增减实时计入，其他成员的增减在定期刷新时计入
+     */
+    private int currentApproximateSize() {
+        long now = System.nanoTime();
+        if (now - sizeRefreshedAt >= SIZE_REFRESH_NANOS) {
+            sizeRefreshedAt = now;
+            try {
+                approximateSize.set(storeMap.size());
+            } catch (Exception e) {
+                log.error("获取分区本地任务存储大小失败: {}", e.getMessage(), e);
+            }
+        }
+        return approximateSize.get();
+    }
+
+    /**
+     * 等待近似大小低于上限，超过截止时间或被中断时返回 false
+     */
+    private boolean awaitCapacity(long deadline) {
+        while (currentApproximateSize() >= maxSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.min(remaining, CAPACITY_WAIT_NANOS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void logRejected(Task<T> task) {
+        if (task.isDiscardable()) {
+            log.warn("任务存储已满，丢弃可丢弃任务: {}", task);
+        } else {
+            log.warn("任务存储已满，拒绝不可丢弃任务: {}", task);
+        }
+    }
+
+    /**
+     * 获取存储大小（含待处理和处理中的任务）
+     */
+    public int size() {
+        try {
+            return storeMap.size();
+        } catch (Exception e) {
+            log.error("获取分区本地任务存储大小失败: {}", e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * 检查存储是否为空
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 清空存储
+     */
+    public void clear() {
+        try {
+            storeMap.clear();
+            localCandidates.clear();
+            claims.clear();
+            approximateSize.set(0);
+            log.info("分区本地任务存储已清空");
+        } catch (Exception e) {
+            log.error("清空分区本地任务存储失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 移除本地条目监听器
+     */
+    public void close() {
+        if (listenerId == null) {
+            return;
+        }
+        try {
+            storeMap.removeEntryListener(listenerId);
+        } catch (Exception e) {
+            log.error("移除分区本地任务存储监听器失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 一次领取：同一次调用领取的任务共用一个领取标识
+     */
+    private record Claim(String claimId, long claimedTime) {
+    }
+
+    public int getTotalAcknowledged() {
+        return totalAcknowledged.get();
+    }
+
+    /**
+     * 获取统计信息，任务存储本身即去重表，两项大小相同
+     */
+    public DistributedQueueStats getStats() {
+        int size = size();
+        return new DistributedQueueStats(size, size, totalOffered.get(), totalDeduplicated.get(), totalPolled.get());
+    }
+}
@@ -0,0 +1,63 @@
+package com.wilsonkeh.loginmanagement.queue.store;
+
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 确认处理器
+ * 删除已处理完成的条目，一次调用同时完成确认和去重键释放。
+ * 只删除仍由同一次领取持有的处理中条目：租约到期后被其他消费者重新领取的条目、
+ * 或已确认后以相同键重新入队的新任务，不会被迟到的确认删除
+ */
+public class TaskAckProcessor
+        implements EntryProcessor<String, TaskStoreEntry, Boolean>, IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String claimId;
+
+    // 默认构造函数，用于Hazelcast序列化
+    public TaskAckProcessor() {
+    }
+
+    public TaskAckProcessor(String claimId) {
+        this.claimId = claimId;
+    }
+
+    @Override
+    public Boolean process(Map.Entry<String, TaskStoreEntry> entry) {
+        TaskStoreEntry value = entry.getValue();
+        if (value == null || value.getState() != TaskStoreEntry.STATE_IN_FLIGHT
+                || !claimId.equals(value.getClaimId())) {
+            return Boolean.FALSE;
+        }
+        entry.setValue(null);
+        return Boolean.TRUE;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return LoginRecordDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return LoginRecordDataSerializableFactory.TASK_ACK_PROCESSOR_TYPE;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeString(claimId);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        claimId = in.readString();
+    }
+}
@@ -0,0 +1,76 @@
+package com.wilsonkeh.loginmanagement.queue.store;
+
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.wilsonkeh.loginmanagement.queue.Task;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 领取处理器
+ * 条目处于待处理状态、或处理中但租约已到期时，标记为本次领取并返回任务；
+ * 已被其他消费者领取且租约未到期或已确认时返回null
+ */
+public class TaskClaimProcessor
+        implements EntryProcessor<String, TaskStoreEntry, Task<?>>, IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long claimTime;
+    private long expiredBefore;
+    private String claimId;
+
+    // 默认构造函数，用于Hazelcast序列化
+    public TaskClaimProcessor() {
+    }
+
+    /**
+     * @param claimTime 领取时间
+     * @param expiredBefore 领取时间早于该值的处理中条目视为租约已到期
+     * @param claimId 本次领取的标识，确认时核对
+     */
+    public TaskClaimProcessor(long claimTime, long expiredBefore, String claimId) {
+        this.claimTime = claimTime;
+        this.expiredBefore = expiredBefore;
+        this.claimId = claimId;
+    }
+
+    @Override
+    public Task<?> process(Map.Entry<String, TaskStoreEntry> entry) {
+        TaskStoreEntry value = entry.getValue();
+        if (value == null || !value.isClaimable(expiredBefore)) {
+            return null;
+        }
+        value.claim(claimTime, claimId);
+        entry.setValue(value);
+        return value.getTask();
+    }
+
+    @Override
+    public int getFactoryId() {
+        return LoginRecordDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return LoginRecordDataSerializableFactory.TASK_CLAIM_PROCESSOR_TYPE;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeLong(claimTime);
+        out.writeLong(expiredBefore);
+        out.writeString(claimId);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        claimTime = in.readLong();
+        expiredBefore = in.readLong();
+        claimId = in.readString();
+    }
+}
@@ -0,0 +1,61 @@
+package com.wilsonkeh.loginmanagement.queue.store;
+
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.wilsonkeh.loginmanagement.queue.Task;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 去重并入队处理器
+ * 键不存在时写入待处理条目并返回true，键已存在（排队中或处理中）时返回false，
+ * 一次调用同时完成去重检查和入队
+ */
+public class TaskEnqueueProcessor
+        implements EntryProcessor<String, TaskStoreEntry, Boolean>, IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Task<?> task;
+
+    // 默认构造函数，用于Hazelcast序列化
+    public TaskEnqueueProcessor() {
+    }
+
+    public TaskEnqueueProcessor(Task<?> task) {
+        this.task = task;
+    }
+
+    @Override
+    public Boolean process(Map.Entry<String, TaskStoreEntry> entry) {
+        if (entry.getValue() != null) {
+            return Boolean.FALSE;
+        }
+        entry.setValue(new TaskStoreEntry(task, System.currentTimeMillis()));
+        return Boolean.TRUE;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return LoginRecordDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return LoginRecordDataSerializableFactory.TASK_ENQUEUE_PROCESSOR_TYPE;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeObject(task);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        task = in.readObject();
+    }
+}
@@ -0,0 +1,99 @@
+package com.wilsonkeh.loginmanagement.queue.store;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.wilsonkeh.loginmanagement.queue.Task;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+
+import java.io.IOException;
+
+/**
+ * 分区本地任务存储中的条目
+ * 以去重键为键，同时保存任务数据和投递状态，去重、入队、确认都在键所在分区上完成
+ */
+public class TaskStoreEntry implements IdentifiedDataSerializable {
+
+    public static final int STATE_QUEUED = 0;
+    public static final int STATE_IN_FLIGHT = 1;
+
+    private Task<?> task;
+    private int state;
+    private long enqueuedTime;
+    private long claimedTime;
+    private String claimId;
+
+    // 默认构造函数，用于Hazelcast序列化
+    public TaskStoreEntry() {
+    }
+
+    public TaskStoreEntry(Task<?> task, long enqueuedTime) {
+        this.task = task;
+        this.state = STATE_QUEUED;
+        this.enqueuedTime = enqueuedTime;
+    }
+
+    /**
+     * 标记为已被消费者领取，领取标识用于确认时核对领取者
+     */
+    public void claim(long now, String claimId) {
+        this.state = STATE_IN_FLIGHT;
+        this.claimedTime = now;
+        this.claimId = claimId;
+    }
+
+    /**
+     * 是否可被领取：待处理，或处理中但租约已在 expiredBefore 之前到期（领取者可能已宕机）
+     */
+    public boolean isClaimable(long expiredBefore) {
+        return state == STATE_QUEUED || (state == STATE_IN_FLIGHT && claimedTime < expiredBefore);
+    }
+
+    public Task<?> getTask() {
+        return task;
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    public long getEnqueuedTime() {
+        return enqueuedTime;
+    }
+
+    public long getClaimedTime() {
+        return claimedTime;
+    }
+
+    public String getClaimId() {
+        return claimId;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return LoginRecordDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return LoginRecordDataSerializableFactory.TASK_STORE_ENTRY_TYPE;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeObject(task);
+        out.writeInt(state);
+        out.writeLong(enqueuedTime);
+        out.writeLong(claimedTime);
+        out.writeString(claimId);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        task = in.readObject();
+        state = in.readInt();
+        enqueuedTime = in.readLong();
+        claimedTime = in.readLong();
+        claimId = in.readString();
+    }
+}
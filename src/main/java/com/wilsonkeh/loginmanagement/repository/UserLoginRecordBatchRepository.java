@@ -0,0 +1,49 @@
+package com.wilsonkeh.loginmanagement.repository;
+
+import com.wilsonkeh.loginmanagement.entity.UserLoginRecord;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 登录记录批量写入
+ * 作为 {@link UserLoginRecordRepository} 的片段，由 {@link UserLoginRecordBatchRepositoryImpl} 实现
+ */
+public interface UserLoginRecordBatchRepository {
+
+    /**
+     * 批量插入新的登录记录
+     * 每 hibernate.jdbc.batch_size 条刷新一次，作为一个 JDBC 批次发送；刷新后清空持久化上下文，
+     * 内存占用不随记录数增长，调用方事务中之前加载的实体也会变为游离状态
+     * @param records 尚未持久化的登录记录
+     * @return 传入的记录，主键已分配
+     */
+    List<UserLoginRecord> insertAll(List<UserLoginRecord> records);
+
+    /**
+     * 以 PostgreSQL 二进制 COPY 批量写入新的登录记录，适合数千条以上的积压数据
+     * 主键按池化序列的规则成块预留后随数据一起写入，不经过持久化上下文；
+     * 整批在调用方事务中写入，任何一行失败（如traceId重复）整批失败。
+     * 数据库连接不是 PostgreSQL 时改用 {@link #insertAll(List)}
+     * @param records 尚未持久化的登录记录
+     * @return 传入的记录，主键和创建时间已赋值
+     */
+    List<UserLoginRecord> copyAll(List<UserLoginRecord> records);
+
+    /**
+     * 批量写入登录记录，traceId 已存在的记录跳过
+     * 以 INSERT ... ON CONFLICT (trace_id) DO NOTHING RETURNING 写入，不需要事先查询traceId是否存在；
+     * 调用方需保证批内traceId不重复。数据库连接不是 PostgreSQL 时先查询已存在的traceId再插入其余记录
+     * @param records 尚未持久化的登录记录，写入的记录主键和创建时间已赋值，跳过的记录主键为null
+     * @return 实际写入的记录的traceId
+     */
+    Set<String> insertIgnoringDuplicates(List<UserLoginRecord> records);
+
+    /**
+     * 以 COPY 写入临时表后合并到登录记录表，traceId 已存在的记录跳过，适合数千条以上的积压数据
+     * 重新投递的任务与首次投递在同一批中时不会使整批失败；数据库连接不是 PostgreSQL 时同 {@link #insertIgnoringDuplicates(List)}
+     * @param records 尚未持久化的登录记录，批内traceId不重复
+     * @return 实际写入的记录的traceId
+     */
+    Set<String> copyIgnoringDuplicates(List<UserLoginRecord> records);
+}
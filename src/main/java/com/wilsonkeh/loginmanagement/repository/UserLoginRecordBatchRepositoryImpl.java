@@ -0,0 +1,397 @@
+package com.wilsonkeh.loginmanagement.repository;
+
+import com.wilsonkeh.loginmanagement.entity.UserLoginRecord;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 登录记录批量写入实现
+ * 主键由池化序列分配（每次取号预留 allocationSize 个），插入按实体排序后以 JDBC 批次发送，
+ * PostgreSQL 驱动开启 reWriteBatchedInserts 后每个批次再改写为多行 INSERT，一个批次只需一次往返。
+ * 数千条以上的积压数据使用二进制 COPY 流式写入，省去逐条语句的解析和执行开销。
+ * 容忍重复的写入由数据库按 trace_id 唯一约束跳过已存在的记录，省去写入前查询traceId的往返
+ */
+@Slf4j
+public class UserLoginRecordBatchRepositoryImpl implements UserLoginRecordBatchRepository {
+
+    // 未配置 hibernate.jdbc.batch_size 时的分段大小，与主键序列的 allocationSize 一致
+    private static final int DEFAULT_BATCH_SIZE = 50;
+
+    private static final String TABLE_NAME = "user_login_records";
+    // COPY 合并前暂存数据的临时表，事务提交时自动清空
+    private static final String STAGING_TABLE_NAME = "user_login_records_staging";
+    private static final String COLUMNS = "id, uid, username, ip_address, login_time, "
+            + "login_method, password_strength, user_agent, trace_id, fingerprint, login_status, failure_reason, "
+            + "session_id, device_type, browser_info, os_info, location_country, location_city, is_suspicious, "
+            + "risk_score, created_at, updated_at";
+    private static final short COLUMN_COUNT = 22;
+    private static final String ON_CONFLICT_SKIP = " ON CONFLICT (trace_id) DO NOTHING RETURNING trace_id";
+    // 多行 INSERT 每条语句的最大行数，参数总数须低于 PostgreSQL 协议上限 65535
+    private static final int INSERT_CHUNK_SIZE = 500;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    // 二进制 COPY 文件头：签名、标志位、头扩展长度
+    private static final byte[] COPY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    // PostgreSQL 时间戳以2000-01-01起的微秒数存储
+    private static final LocalDateTime POSTGRES_EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public List<UserLoginRecord> insertAll(List<UserLoginRecord> records) {
+        if (records.isEmpty()) {
+            return records;
+        }
+        int batchSize = jdbcBatchSize();
+        for (int i = 0; i < records.size(); i++) {
+            entityManager.persist(records.get(i));
+            if ((i + 1) % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        log.debug("批量插入登录记录完成，数量: {}, JDBC批大小: {}", records.size(), batchSize);
+        return records;
+    }
+
+    @Override
+    @Transactional
+    public List<UserLoginRecord> copyAll(List<UserLoginRecord> records) {
+        if (records.isEmpty()) {
+            return records;
+        }
+        Session session = entityManager.unwrap(Session.class);
+        // 先写出持久化上下文中待执行的语句，保证与 COPY 在同一事务中按调用顺序生效
+        session.flush();
+        boolean copied = session.doReturningWork(connection -> {
+            if (!connection.isWrapperFor(PGConnection.class)) {
+                return false;
+            }
+            allocateIds(connection, records);
+            copy(connection.unwrap(PGConnection.class), TABLE_NAME, records);
+            return true;
+        });
+        if (!copied) {
+            log.warn("数据库连接不支持COPY，改用JDBC批量插入，数量: {}", records.size());
+            return insertAll(records);
+        }
+        log.debug("COPY批量写入登录记录完成，数量: {}", records.size());
+        return records;
+    }
+
+    @Override
+    @Transactional
+    public Set<String> insertIgnoringDuplicates(List<UserLoginRecord> records) {
+        if (records.isEmpty()) {
+            return new HashSet<>();
+        }
+        Session session = entityManager.unwrap(Session.class);
+        session.flush();
+        Set<String> inserted = session.doReturningWork(connection -> {
+            if (!connection.isWrapperFor(PGConnection.class)) {
+                return null;
+            }
+            allocateIds(connection, records);
+            LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+            Set<String> traceIds = new HashSet<>(records.size() * 2);
+            for (int from = 0; from < records.size(); from += INSERT_CHUNK_SIZE) {
+                insertChunk(connection, records.subList(from, Math.min(from + INSERT_CHUNK_SIZE, records.size())),
+                        now, traceIds);
+            }
+            return traceIds;
+        });
+        if (inserted == null) {
+            return insertMissing(records);
+        }
+        clearSkippedIds(records, inserted);
+        log.debug("批量写入登录记录完成，数量: {}, 已存在跳过: {}", inserted.size(), records.size() - inserted.size());
+        return inserted;
+    }
+
+    @Override
+    @Transactional
+    public Set<String> copyIgnoringDuplicates(List<UserLoginRecord> records) {
+        if (records.isEmpty()) {
+            return new HashSet<>();
+        }
+        Session session = entityManager.unwrap(Session.class);
+        session.flush();
+        Set<String> inserted = session.doReturningWork(connection -> {
+            if (!connection.isWrapperFor(PGConnection.class)) {
+                return null;
+            }
+            allocateIds(connection, records);
+            try (PreparedStatement create = connection.prepareStatement("CREATE TEMP TABLE IF NOT EXISTS "
+                    + STAGING_TABLE_NAME + " (LIKE " + TABLE_NAME + " INCLUDING DEFAULTS) ON COMMIT DELETE ROWS")) {
+                create.execute();
+            }
+            copy(connection.unwrap(PGConnection.class), STAGING_TABLE_NAME, records);
+            Set<String> traceIds = new HashSet<>(records.size() * 2);
+            try (PreparedStatement merge = connection.prepareStatement("INSERT INTO " + TABLE_NAME + " (" + COLUMNS
+                    + ") SELECT " + COLUMNS + " FROM " + STAGING_TABLE_NAME + ON_CONFLICT_SKIP);
+                 ResultSet resultSet = merge.executeQuery()) {
+                while (resultSet.next()) {
+                    traceIds.add(resultSet.getString(1));
+                }
+            }
+            // 同一事务中的下一次合并不能再看到本批数据
+            try (PreparedStatement truncate = connection.prepareStatement("TRUNCATE " + STAGING_TABLE_NAME)) {
+                truncate.execute();
+            }
+            return traceIds;
+        });
+        if (inserted == null) {
+            return insertMissing(records);
+        }
+        clearSkippedIds(records, inserted);
+        log.debug("COPY合并登录记录完成，数量: {}, 已存在跳过: {}", inserted.size(), records.size() - inserted.size());
+        return inserted;
+    }
+
+    private void insertChunk(Connection connection, List<UserLoginRecord> chunk, LocalDateTime now,
+                             Set<String> traceIds) throws SQLException {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(TABLE_NAME)
+                .append(" (").append(COLUMNS).append(") VALUES ");
+        String placeholders = "(" + "?, ".repeat(COLUMN_COUNT - 1) + "?)";
+        for (int i = 0; i < chunk.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(placeholders);
+        }
+        sql.append(ON_CONFLICT_SKIP);
+        try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+            int parameter = 1;
+            for (UserLoginRecord record : chunk) {
+                record.setCreatedAt(now);
+                record.setUpdatedAt(now);
+                parameter = bindRow(statement, parameter, record);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    traceIds.add(resultSet.getString(1));
+                }
+            }
+        }
+    }
+
+    private static int bindRow(PreparedStatement statement, int parameter, UserLoginRecord record) throws SQLException {
+        statement.setLong(parameter++, record.getId());
+        statement.setString(parameter++, record.getUid());
+        statement.setString(parameter++, record.getUsername());
+        statement.setString(parameter++, record.getIpAddress());
+        statement.setObject(parameter++, record.getLoginTime());
+        statement.setString(parameter++, record.getLoginMethod() != null ? record.getLoginMethod().name() : null);
+        statement.setString(parameter++, record.getPasswordStrength());
+        statement.setString(parameter++, record.getUserAgent());
+        statement.setString(parameter++, record.getTraceId());
+        statement.setString(parameter++, record.getFingerprint());
+        statement.setString(parameter++, record.getLoginStatus() != null ? record.getLoginStatus().name() : null);
+        statement.setString(parameter++, record.getFailureReason());
+        statement.setString(parameter++, record.getSessionId());
+        statement.setString(parameter++, record.getDeviceType());
+        statement.setString(parameter++, record.getBrowserInfo());
+        statement.setString(parameter++, record.getOsInfo());
+        statement.setString(parameter++, record.getLocationCountry());
+        statement.setString(parameter++, record.getLocationCity());
+        if (record.getIsSuspicious() == null) {
+            statement.setNull(parameter++, Types.BOOLEAN);
+        } else {
+            statement.setBoolean(parameter++, record.getIsSuspicious());
+        }
+        if (record.getRiskScore() == null) {
+            statement.setNull(parameter++, Types.INTEGER);
+        } else {
+            statement.setInt(parameter++, record.getRiskScore());
+        }
+        statement.setObject(parameter++, record.getCreatedAt());
+        statement.setObject(parameter++, record.getUpdatedAt());
+        return parameter;
+    }
+
+    /**
+     * 不支持 ON CONFLICT 的数据库：先查询已存在的traceId，再以JDBC批量插入其余记录
+     */
+    private Set<String> insertMissing(List<UserLoginRecord> records) {
+        Set<String> existing = new HashSet<>(entityManager
+                .createQuery("SELECT l.traceId FROM UserLoginRecord l WHERE l.traceId IN :traceIds", String.class)
+                .setParameter("traceIds", records.stream().map(UserLoginRecord::getTraceId).toList())
+                .getResultList());
+        List<UserLoginRecord> missing = records.stream()
+                .filter(record -> !existing.contains(record.getTraceId()))
+                .toList();
+        insertAll(missing);
+        Set<String> inserted = new HashSet<>(missing.size() * 2);
+        for (UserLoginRecord record : missing) {
+            inserted.add(record.getTraceId());
+        }
+        return inserted;
+    }
+
+    /**
+     * 跳过的记录没有写入，撤销为其预留的主键
+     */
+    private static void clearSkippedIds(List<UserLoginRecord> records, Set<String> inserted) {
+        for (UserLoginRecord record : records) {
+            if (!inserted.contains(record.getTraceId())) {
+                record.setId(null);
+            }
+        }
+    }
+
+    /**
+     * 按池化序列的规则预留主键：每次 nextval 得到一个块的上界，块内 ID_ALLOCATION_SIZE 个主键归本批使用，
+     * 与 Hibernate 为逐条插入分配的主键块互不重叠
+     */
+    private void allocateIds(Connection connection, List<UserLoginRecord> records) throws SQLException {
+        int allocationSize = UserLoginRecord.ID_ALLOCATION_SIZE;
+        String sql = "SELECT nextval('" + UserLoginRecord.ID_SEQUENCE_NAME + "') FROM generate_series(1, ?)";
+        int assigned = 0;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            while (assigned < records.size()) {
+                statement.setInt(1, (records.size() - assigned + allocationSize - 1) / allocationSize);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next() && assigned < records.size()) {
+                        long hi = resultSet.getLong(1);
+                        // 新建序列的第一个值小于块大小，只使用正数部分，不足的由下一轮补齐
+                        for (long id = Math.max(1, hi - allocationSize + 1); id <= hi && assigned < records.size(); id++) {
+                            records.get(assigned++).setId(id);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void copy(PGConnection connection, String tableName, List<UserLoginRecord> records) throws SQLException {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        String sql = "COPY " + tableName + " (" + COLUMNS + ") FROM STDIN (FORMAT binary)";
+        PGCopyOutputStream copyStream = new PGCopyOutputStream(connection, sql, COPY_BUFFER_SIZE);
+        try {
+            DataOutputStream out = new DataOutputStream(copyStream);
+            out.write(COPY_SIGNATURE);
+            out.writeInt(0);
+            out.writeInt(0);
+            for (UserLoginRecord record : records) {
+                // 与 @CreationTimestamp/@UpdateTimestamp 一致，插入时两者相同
+                record.setCreatedAt(now);
+                record.setUpdatedAt(now);
+                writeRow(out, record);
+            }
+            out.writeShort(-1);
+            out.flush();
+            copyStream.endCopy();
+        } catch (IOException e) {
+            if (copyStream.isActive()) {
+                copyStream.cancelCopy();
+            }
+            throw new SQLException("COPY写入登录记录失败: " + e.getMessage(), e);
+        }
+    }
+
+    private static void writeRow(DataOutputStream out, UserLoginRecord record) throws IOException {
+        out.writeShort(COLUMN_COUNT);
+        writeLong(out, record.getId());
+        writeText(out, record.getUid());
+        writeText(out, record.getUsername());
+        writeText(out, record.getIpAddress());
+        writeTimestamp(out, record.getLoginTime());
+        writeText(out, record.getLoginMethod() != null ? record.getLoginMethod().name() : null);
+        writeText(out, record.getPasswordStrength());
+        writeText(out, record.getUserAgent());
+        writeText(out, record.getTraceId());
+        writeText(out, record.getFingerprint());
+        writeText(out, record.getLoginStatus() != null ? record.getLoginStatus().name() : null);
+        writeText(out, record.getFailureReason());
+        writeText(out, record.getSessionId());
+        writeText(out, record.getDeviceType());
+        writeText(out, record.getBrowserInfo());
+        writeText(out, record.getOsInfo());
+        writeText(out, record.getLocationCountry());
+        writeText(out, record.getLocationCity());
+        if (record.getIsSuspicious() == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(1);
+            out.writeByte(record.getIsSuspicious() ? 1 : 0);
+        }
+        if (record.getRiskScore() == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(4);
+            out.writeInt(record.getRiskScore());
+        }
+        writeTimestamp(out, record.getCreatedAt());
+        writeTimestamp(out, record.getUpdatedAt());
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(8);
+        out.writeLong(value);
+    }
+
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeTimestamp(DataOutputStream out, LocalDateTime value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(8);
+        out.writeLong(ChronoUnit.MICROS.between(POSTGRES_EPOCH, value));
+    }
+
+    /**
+     * 当前会话的 JDBC 批大小，会话未单独设置时使用全局配置
+     */
+    private int jdbcBatchSize() {
+        Session session = entityManager.unwrap(Session.class);
+        Integer sessionBatchSize = session.getJdbcBatchSize();
+        if (sessionBatchSize != null && sessionBatchSize > 0) {
+            return sessionBatchSize;
+        }
+        Object configured = entityManager.getEntityManagerFactory().getProperties().get("hibernate.jdbc.batch_size");
+        if (configured != null) {
+            try {
+                int batchSize = Integer.parseInt(configured.toString().trim());
+                if (batchSize > 0) {
+                    return batchSize;
+                }
+            } catch (NumberFormatException e) {
+                log.warn("hibernate.jdbc.batch_size 配置无效: {}", configured);
+            }
+        }
+        return DEFAULT_BATCH_SIZE;
+    }
+}
@@ -13,7 +13,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserLoginRecordRepository extends JpaRepository<UserLoginRecord, Long> {
+public interface UserLoginRecordRepository extends JpaRepository<UserLoginRecord, Long>, UserLoginRecordBatchRepository {
 
     @Query("SELECT l FROM UserLoginRecord l WHERE l.uid = :uid ORDER BY l.loginTime DESC")
     Page<UserLoginRecord> findByUidOrderByLoginTimeDesc(@Param("uid") String uid, Pageable pageable);
@@ -0,0 +1,39 @@
+package com.wilsonkeh.loginmanagement.service;
+
+import com.wilsonkeh.loginmanagement.dto.DeadLetterPageResponse;
+import com.wilsonkeh.loginmanagement.dto.DeadLetterReplayRequest;
+import com.wilsonkeh.loginmanagement.dto.DeadLetterReplayResponse;
+
+import java.util.List;
+
+public interface DeadLetterService {
+
+    /**
+     * 分页查询死信
+     * @param page 页码，从0开始
+     * @param size 每页数量
+     * @param source 只查询该来源的死信，为null时查询全部
+     * @return 按首次失败时间从早到晚排序的死信
+     */
+    DeadLetterPageResponse getDeadLetters(int page, int size, String source);
+
+    /**
+     * 获取死信数量
+     * @param source 只统计该来源的死信，为null时统计全部
+     */
+    int getDeadLetterCount(String source);
+
+    /**
+     * 将选中的死信分批重新加入原来的队列，成功入队的死信从死信队列删除
+     * @param request 重放请求
+     * @return 重放结果
+     */
+    DeadLetterReplayResponse replay(DeadLetterReplayRequest request);
+
+    /**
+     * 删除指定任务的死信，不再重放
+     * @param taskIds 任务ID列表
+     * @return 删除的死信数
+     */
+    int purge(List<String> taskIds);
+}
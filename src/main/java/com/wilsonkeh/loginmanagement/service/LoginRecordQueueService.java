@@ -1,6 +1,9 @@
 package com.wilsonkeh.loginmanagement.service;
 
 import com.wilsonkeh.loginmanagement.dto.LoginRecordRequest;
+import com.wilsonkeh.loginmanagement.queue.OfferResult;
+
+import java.util.List;
 
 public interface LoginRecordQueueService {
     
@@ -19,11 +22,25 @@ public interface LoginRecordQueueService {
      */
     boolean enqueueLoginRecord(LoginRecordRequest request, int priority);
     
+    /**
+     * 批量将登录记录请求加入队列
+     * @param requests 登录记录请求列表
+     * @return 与请求顺序一致的入队结果，区分重复任务和队列已满
+     */
+    List<OfferResult> enqueueLoginRecords(List<LoginRecordRequest> requests);
+    
     /**
      * 获取当前队列大小
      * @return 队列中的任务数量
      */
     int getQueueSize();
+
+    /**
+     * 入队被拒绝时建议客户端等待的秒数
+     * 按当前积压和出队速率估算排空时间，并加入随机抖动，避免被拒绝的客户端同时重试
+     * @return 建议的重试等待秒数，不小于1
+     */
+    long getRetryAfterSeconds();
     
     /**
      * 获取去重后的队列大小
@@ -2,6 +2,7 @@ package com.wilsonkeh.loginmanagement.service;
 
 import com.wilsonkeh.loginmanagement.dto.LoginRecordRequest;
 import com.wilsonkeh.loginmanagement.dto.LoginRecordResponse;
+import com.wilsonkeh.loginmanagement.dto.LoginRecordWriteResult;
 import com.wilsonkeh.loginmanagement.dto.UserSecurityAnalysisResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -10,14 +11,18 @@ import java.util.List;
 
 public interface LoginRecordService {
 
+    /**
+     * 创建登录记录
+     * @throws com.wilsonkeh.loginmanagement.exception.DuplicateTraceIdException traceId已存在
+     */
     LoginRecordResponse createLoginRecord(LoginRecordRequest request);
 
     /**
-     * 批量创建登录记录
+     * 批量创建登录记录，traceId已存在（包括批内重复）的记录跳过，不会使整批失败
      * @param requests 登录记录请求列表
-     * @return 创建的登录记录响应列表
+     * @return 与请求顺序一致的写入结果
      */
-    List<LoginRecordResponse> createLoginRecordsBatch(List<LoginRecordRequest> requests);
+    List<LoginRecordWriteResult> createLoginRecordsBatch(List<LoginRecordRequest> requests);
 
     Page<LoginRecordResponse> getUserRecentLoginRecords(String uid, Pageable pageable);
 
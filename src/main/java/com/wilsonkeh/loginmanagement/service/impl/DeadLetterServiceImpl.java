@@ -0,0 +1,157 @@
+package com.wilsonkeh.loginmanagement.service.impl;
+
+import com.wilsonkeh.loginmanagement.dto.DeadLetterPageResponse;
+import com.wilsonkeh.loginmanagement.dto.DeadLetterReplayRequest;
+import com.wilsonkeh.loginmanagement.dto.DeadLetterReplayResponse;
+import com.wilsonkeh.loginmanagement.dto.LoginRecordRequest;
+import com.wilsonkeh.loginmanagement.queue.DistributedTaskQueueManager;
+import com.wilsonkeh.loginmanagement.queue.GenericTaskQueue;
+import com.wilsonkeh.loginmanagement.queue.OfferResult;
+import com.wilsonkeh.loginmanagement.queue.Task;
+import com.wilsonkeh.loginmanagement.queue.TaskQueueManager;
+import com.wilsonkeh.loginmanagement.queue.deadletter.DeadLetter;
+import com.wilsonkeh.loginmanagement.queue.deadletter.DeadLetterQueue;
+import com.wilsonkeh.loginmanagement.service.DeadLetterService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@Service
+public class DeadLetterServiceImpl implements DeadLetterService {
+
+    // 单页查询的最大数量
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    @Autowired
+    private DeadLetterQueue deadLetterQueue;
+
+    @Autowired
+    private TaskQueueManager taskQueueManager;
+
+    @Autowired
+    private DistributedTaskQueueManager<LoginRecordRequest> distributedTaskQueueManager;
+
+    // 重放时每批入队的任务数，分布式队列一批只需一轮流水线调用
+    @Value("${app.queue.dead-letter.replay-batch-size:1000}")
+    private int replayBatchSize;
+
+    @Override
+    public DeadLetterPageResponse getDeadLetters(int page, int size, String source) {
+        if (page < 0 || size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("分页参数无效，page需大于等于0，size需在1到" + MAX_PAGE_SIZE + "之间");
+        }
+        List<DeadLetterPageResponse.Item> items = deadLetterQueue.page(page, size, source).stream()
+                .map(DeadLetterPageResponse.Item::fromDeadLetter)
+                .toList();
+        return new DeadLetterPageResponse(page, size, deadLetterQueue.count(source), items);
+    }
+
+    @Override
+    public int getDeadLetterCount(String source) {
+        return deadLetterQueue.count(source);
+    }
+
+    @Override
+    public DeadLetterReplayResponse replay(DeadLetterReplayRequest request) {
+        List<DeadLetter> selected = selectLetters(request);
+        int batchSize = Math.max(1, replayBatchSize);
+        int replayed = 0;
+        int rejected = 0;
+        for (int from = 0; from < selected.size(); from += batchSize) {
+            List<DeadLetter> batch = selected.subList(from, Math.min(from + batchSize, selected.size()));
+            List<DeadLetter> accepted = replayBatch(batch);
+            // 先入队再删除：删除前进程退出时死信仍在，重复重放的任务由队列去重和处理器跳过已存在的记录
+            deadLetterQueue.removeReplayed(accepted);
+            replayed += accepted.size();
+            rejected += batch.size() - accepted.size();
+        }
+        String source = request != null ? request.source() : null;
+        int remaining = deadLetterQueue.count(source);
+        log.info("死信重放完成 - 选中: {}, 重新入队: {}, 未能入队: {}, 剩余: {}", selected.size(), replayed, rejected, remaining);
+        return new DeadLetterReplayResponse(selected.size(), replayed, rejected, remaining);
+    }
+
+    @Override
+    public int purge(List<String> taskIds) {
+        if (taskIds == null || taskIds.isEmpty()) {
+            throw new IllegalArgumentException("任务ID列表不能为空");
+        }
+        int removed = deadLetterQueue.removeAll(taskIds);
+        log.warn("已删除死信 {} 条，请求数量: {}", removed, taskIds.size());
+        return removed;
+    }
+
+    /**
+     * 选择要重放的死信：指定任务ID时取这些任务，否则按首次失败时间取最早的至多 limit 条
+     */
+    private List<DeadLetter> selectLetters(DeadLetterReplayRequest request) {
+        if (request != null && request.taskIds() != null && !request.taskIds().isEmpty()) {
+            return deadLetterQueue.getAll(request.taskIds());
+        }
+        String source = request != null ? request.source() : null;
+        int limit = request != null && request.limit() != null ? request.limit() : deadLetterQueue.getMaxSize();
+        if (limit <= 0) {
+            throw new IllegalArgumentException("重放数量必须大于0");
+        }
+        return deadLetterQueue.page(0, Math.min(limit, deadLetterQueue.getMaxSize()), source);
+    }
+
+    /**
+     * 将一批死信重新加入各自来源的队列
+     * @return 成功入队的死信
+     */
+    private List<DeadLetter> replayBatch(List<DeadLetter> batch) {
+        Map<String, List<DeadLetter>> bySource = new LinkedHashMap<>();
+        for (DeadLetter letter : batch) {
+            bySource.computeIfAbsent(letter.getSource(), source -> new ArrayList<>()).add(letter);
+        }
+
+        List<DeadLetter> accepted = new ArrayList<>(batch.size());
+        bySource.forEach((source, letters) -> {
+            try {
+                if (DeadLetterQueue.SOURCE_DISTRIBUTED.equals(source)) {
+                    replayDistributed(letters, accepted);
+                } else {
+                    replayLocal(source, letters, accepted);
+                }
+            } catch (Exception e) {
+                log.error("重放死信失败 - 来源: {}, 数量: {}, 错误: {}", source, letters.size(), e.getMessage(), e);
+            }
+        });
+        return accepted;
+    }
+
+    private void replayDistributed(List<DeadLetter> letters, List<DeadLetter> accepted) {
+        List<Task<LoginRecordRequest>> tasks = new ArrayList<>(letters.size());
+        for (DeadLetter letter : letters) {
+            tasks.add(taskOf(letter));
+        }
+        List<OfferResult> results = distributedTaskQueueManager.offerTasks(tasks);
+        for (int i = 0; i < letters.size(); i++) {
+            if (results.get(i).isAccepted()) {
+                accepted.add(letters.get(i));
+            }
+        }
+    }
+
+    private void replayLocal(String queueName, List<DeadLetter> letters, List<DeadLetter> accepted) {
+        GenericTaskQueue<LoginRecordRequest> queue = taskQueueManager.getQueue(queueName);
+        for (DeadLetter letter : letters) {
+            if (queue.enqueueTask(taskOf(letter))) {
+                accepted.add(letter);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Task<LoginRecordRequest> taskOf(DeadLetter letter) {
+        return (Task<LoginRecordRequest>) letter.getTask();
+    }
+}
@@ -1,8 +1,10 @@
 package com.wilsonkeh.loginmanagement.service.impl;
 
 import com.wilsonkeh.loginmanagement.dto.LoginRecordRequest;
+import com.wilsonkeh.loginmanagement.queue.DrainRateMeter;
 import com.wilsonkeh.loginmanagement.queue.GenericTaskQueue;
 import com.wilsonkeh.loginmanagement.queue.LoginRecordTask;
+import com.wilsonkeh.loginmanagement.queue.OfferResult;
 import com.wilsonkeh.loginmanagement.queue.TaskQueueManager;
 import com.wilsonkeh.loginmanagement.queue.DistributedTaskQueueManager;
 import com.wilsonkeh.loginmanagement.service.LoginRecordQueueService;
@@ -11,6 +13,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
 @Slf4j
 @Service
 public class LoginRecordQueueServiceImpl implements LoginRecordQueueService {
@@ -24,11 +31,17 @@ public class LoginRecordQueueServiceImpl implements LoginRecordQueueService {
     @Value("${app.queue.distributed.enabled:true}")
     private boolean distributedEnabled;
 
+    @Value("${app.queue.backpressure.max-retry-after-seconds:60}")
+    private long maxRetryAfterSeconds;
+
+    @Value("${app.queue.backpressure.retry-after-jitter:0.2}")
+    private double retryAfterJitter;
+
     private static final String QUEUE_NAME = "login-record-queue";
 
     @Override
     public boolean enqueueLoginRecord(LoginRecordRequest request) {
-        return enqueueLoginRecord(request, 0);
+        return enqueueLoginRecord(request, LoginRecordTask.DEFAULT_PRIORITY);
     }
 
     @Override
@@ -63,16 +76,60 @@ public class LoginRecordQueueServiceImpl implements LoginRecordQueueService {
         }
     }
 
+    @Override
+    public List<OfferResult> enqueueLoginRecords(List<LoginRecordRequest> requests) {
+        List<OfferResult> results;
+        if (distributedEnabled) {
+            // 分布式队列一次往返提交整批请求
+            List<LoginRecordTask> tasks = new ArrayList<>(requests.size());
+            for (LoginRecordRequest request : requests) {
+                tasks.add(new LoginRecordTask(request));
+            }
+            try {
+                results = distributedTaskQueueManager.offerTasks(tasks);
+            } catch (Exception e) {
+                log.error("批量加入分布式队列时发生错误: {}", e.getMessage(), e);
+                results = new ArrayList<>(Collections.nCopies(requests.size(), OfferResult.FAILED));
+            }
+        } else {
+            GenericTaskQueue<LoginRecordRequest> queue = taskQueueManager.getQueue(QUEUE_NAME);
+            results = new ArrayList<>(requests.size());
+            for (LoginRecordRequest request : requests) {
+                results.add(queue.enqueueTaskWithResult(new LoginRecordTask(request)));
+            }
+        }
+        log.debug("批量加入登录记录队列完成，请求数量: {}, 成功数量: {}", 
+                 requests.size(), results.stream().filter(OfferResult::isAccepted).count());
+        return results;
+    }
+
     @Override
     public int getQueueSize() {
         if (distributedEnabled) {
-            return distributedTaskQueueManager.getDistributedQueue().size();
+            return distributedTaskQueueManager.getQueueSize();
         } else {
             var queue = taskQueueManager.getQueue(QUEUE_NAME);
             return queue.getQueueSize();
         }
     }
 
+    @Override
+    public long getRetryAfterSeconds() {
+        long seconds;
+        try {
+            double drainRate = distributedEnabled
+                    ? distributedTaskQueueManager.getDrainRatePerSecond()
+                    : taskQueueManager.getQueue(QUEUE_NAME).getDrainRatePerSecond();
+            seconds = DrainRateMeter.secondsToDrain(getQueueSize(), drainRate, maxRetryAfterSeconds);
+        } catch (Exception e) {
+            log.error("估算重试等待时间失败: {}", e.getMessage(), e);
+            seconds = Math.max(1, maxRetryAfterSeconds);
+        }
+        // 只向上抖动，保证客户端不会早于预计的排空时间重试
+        long jitter = (long) Math.ceil(seconds * Math.max(0, retryAfterJitter) * ThreadLocalRandom.current().nextDouble());
+        return Math.min(Math.max(1, maxRetryAfterSeconds), seconds + jitter);
+    }
+
     @Override
     public int getDeduplicatedQueueSize() {
         if (distributedEnabled) {
@@ -2,20 +2,27 @@ package com.wilsonkeh.loginmanagement.service.impl;
 
 import com.wilsonkeh.loginmanagement.dto.LoginRecordRequest;
 import com.wilsonkeh.loginmanagement.dto.LoginRecordResponse;
+import com.wilsonkeh.loginmanagement.dto.LoginRecordWriteResult;
 import com.wilsonkeh.loginmanagement.dto.UserSecurityAnalysisResponse;
 import com.wilsonkeh.loginmanagement.entity.UserLoginRecord;
 import com.wilsonkeh.loginmanagement.entity.UserSecurityAnalysis;
+import com.wilsonkeh.loginmanagement.exception.DuplicateTraceIdException;
 import com.wilsonkeh.loginmanagement.repository.UserLoginRecordRepository;
-import com.wilsonkeh.loginmanagement.repository.UserSecurityAnalysisRepository;
 import com.wilsonkeh.loginmanagement.service.LoginRecordService;
+import com.wilsonkeh.loginmanagement.service.security.UserSecurityAggregateService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.CacheEvict;
@@ -29,19 +36,20 @@ public class LoginRecordServiceImpl implements LoginRecordService {
     private UserLoginRecordRepository loginRecordRepository;
 
     @Autowired
-    private UserSecurityAnalysisRepository securityAnalysisRepository;
+    private UserSecurityAggregateService securityAggregateService;
+
+    @Value("${app.persistence.copy.enabled:true}")
+    private boolean copyEnabled;
+
+    // 达到该记录数的批次使用 COPY 合并写入，较小的批次使用多行 INSERT
+    @Value("${app.persistence.copy.threshold:500}")
+    private int copyThreshold;
 
     @Override
     @Transactional
     @CachePut(value = "login-records", key = "#result.id")
     @CacheEvict(value = {"user-login-records", "ip-login-records", "recent-login-records"}, allEntries = true)
     public LoginRecordResponse createLoginRecord(LoginRecordRequest request) {
-        // 检查traceId是否已存在
-        loginRecordRepository.findByTraceId(request.traceId())
-                .ifPresent(existing -> {
-                    throw new IllegalArgumentException("Trace ID已存在: " + request.traceId());
-                });
-
         UserLoginRecord loginRecord = new UserLoginRecord();
         loginRecord.setUid(request.uid());
         loginRecord.setUsername(request.username());
@@ -64,10 +72,14 @@ public class LoginRecordServiceImpl implements LoginRecordService {
         loginRecord.setRiskScore(riskScore);
         loginRecord.setIsSuspicious(riskScore > 70);
 
-        UserLoginRecord savedRecord = loginRecordRepository.save(loginRecord);
+        // traceId冲突由数据库唯一约束跳过，不需要事先查询
+        if (loginRecordRepository.insertIgnoringDuplicates(List.of(loginRecord)).isEmpty()) {
+            throw new DuplicateTraceIdException("Trace ID已存在: " + request.traceId());
+        }
+        UserLoginRecord savedRecord = loginRecord;
 
-        // 异步更新安全分析（这里简化处理，实际应该用异步任务）
-        updateUserSecurityAnalysis(request.uid());
+        // 事务提交后增量更新用户安全聚合
+        securityAggregateService.recordLogins(List.of(savedRecord));
 
         return LoginRecordResponse.fromEntity(savedRecord);
     }
@@ -75,44 +87,44 @@ public class LoginRecordServiceImpl implements LoginRecordService {
     @Override
     @Transactional
     @CacheEvict(value = {"user-login-records", "ip-login-records", "recent-login-records"}, allEntries = true)
-    public List<LoginRecordResponse> createLoginRecordsBatch(List<LoginRecordRequest> requests) {
+    public List<LoginRecordWriteResult> createLoginRecordsBatch(List<LoginRecordRequest> requests) {
         if (requests == null || requests.isEmpty()) {
             return List.of();
         }
 
-        // 检查所有traceId是否已存在
-        List<String> traceIds = requests.stream()
-                .map(LoginRecordRequest::traceId)
-                .toList();
-        
-        List<UserLoginRecord> existingRecords = loginRecordRepository.findByTraceIds(traceIds);
-        if (!existingRecords.isEmpty()) {
-            List<String> existingTraceIds = existingRecords.stream()
-                    .map(UserLoginRecord::getTraceId)
-                    .toList();
-            throw new IllegalArgumentException("以下Trace ID已存在: " + existingTraceIds);
+        // 批量创建实体对象，批内重复的traceId只写入第一条
+        Set<String> batchTraceIds = new HashSet<>();
+        List<UserLoginRecord> loginRecords = new ArrayList<>(requests.size());
+        for (LoginRecordRequest request : requests) {
+            if (batchTraceIds.add(request.traceId())) {
+                loginRecords.add(createLoginRecordEntity(request));
+            }
         }
 
-        // 批量创建实体对象
-        List<UserLoginRecord> loginRecords = requests.stream()
-                .map(this::createLoginRecordEntity)
-                .toList();
-
-        // 批量保存
-        List<UserLoginRecord> savedRecords = loginRecordRepository.saveAll(loginRecords);
+        // 不预先查询traceId，已存在的记录由数据库跳过；大批量（如故障恢复后的积压）使用 COPY 合并写入
+        Set<String> insertedTraceIds = copyEnabled && loginRecords.size() >= copyThreshold
+                ? loginRecordRepository.copyIgnoringDuplicates(loginRecords)
+                : loginRecordRepository.insertIgnoringDuplicates(loginRecords);
 
-        // 批量更新安全分析（按用户分组）
-        Set<String> uniqueUids = requests.stream()
-                .map(LoginRecordRequest::uid)
-                .collect(Collectors.toSet());
-        
-        for (String uid : uniqueUids) {
-            updateUserSecurityAnalysis(uid);
+        Map<String, UserLoginRecord> insertedRecords = new HashMap<>();
+        for (UserLoginRecord loginRecord : loginRecords) {
+            if (insertedTraceIds.contains(loginRecord.getTraceId())) {
+                insertedRecords.put(loginRecord.getTraceId(), loginRecord);
+            }
         }
 
-        return savedRecords.stream()
-                .map(LoginRecordResponse::fromEntity)
-                .collect(Collectors.toList());
+        // 事务提交后按用户增量更新安全聚合，只计入本次新写入的记录
+        securityAggregateService.recordLogins(insertedRecords.values());
+
+        List<LoginRecordWriteResult> results = new ArrayList<>(requests.size());
+        for (LoginRecordRequest request : requests) {
+            // 取出后移除，批内后续相同traceId的请求视为重复
+            UserLoginRecord insertedRecord = insertedRecords.remove(request.traceId());
+            results.add(insertedRecord != null
+                    ? LoginRecordWriteResult.inserted(request.traceId(), LoginRecordResponse.fromEntity(insertedRecord))
+                    : LoginRecordWriteResult.duplicate(request.traceId()));
+        }
+        return results;
     }
 
     /**
@@ -159,14 +171,12 @@ public class LoginRecordServiceImpl implements LoginRecordService {
     @Override
     @Cacheable(value = "user-security-analysis", key = "#uid", unless = "#result == null")
     public UserSecurityAnalysisResponse getUserSecurityAnalysis(String uid) {
-        UserSecurityAnalysis analysis = securityAnalysisRepository.findLatestAnalysisByUid(uid)
-                .orElseGet(() -> generateSecurityAnalysis(uid));
-        return UserSecurityAnalysisResponse.fromEntity(analysis);
+        return UserSecurityAnalysisResponse.fromEntity(securityAggregateService.getAnalysis(uid));
     }
 
     @Override
     public List<UserSecurityAnalysisResponse> getMultipleUsersSecurityAnalysis(List<String> uids) {
-        List<UserSecurityAnalysis> analyses = securityAnalysisRepository.findByUidsOrderByAnalysisDateDesc(uids);
+        List<UserSecurityAnalysis> analyses = securityAggregateService.getAnalyses(uids);
         return analyses.stream()
                 .map(UserSecurityAnalysisResponse::fromEntity)
                 .collect(Collectors.toList());
@@ -234,61 +244,4 @@ public class LoginRecordServiceImpl implements LoginRecordService {
         return recentLogins.stream()
                 .noneMatch(login -> country.equals(login.getLocationCountry()));
     }
-
-    @Transactional
-    @CachePut(value = "user-security-analysis", key = "#uid")
-    @CacheEvict(value = "user-security-analysis", key = "#uid")
-    private void updateUserSecurityAnalysis(String uid) {
-        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
-        
-        UserSecurityAnalysis analysis = new UserSecurityAnalysis();
-        analysis.setUid(uid);
-        analysis.setAnalysisDate(LocalDateTime.now());
-        
-        // 统计登录数据
-        Long totalLogins = loginRecordRepository.countByUidAndLoginTimeAfter(uid, thirtyDaysAgo);
-        Long uniqueIps = loginRecordRepository.countUniqueIpAddressesByUidAndLoginTimeAfter(uid, thirtyDaysAgo);
-        Long uniqueDevices = loginRecordRepository.countUniqueDevicesByUidAndLoginTimeAfter(uid, thirtyDaysAgo);
-        Long suspiciousActivities = loginRecordRepository.countSuspiciousActivitiesByUidAndLoginTimeAfter(uid, thirtyDaysAgo);
-        
-        analysis.setTotalLogins(totalLogins.intValue());
-        analysis.setUniqueIpAddresses(uniqueIps.intValue());
-        analysis.setUniqueDevices(uniqueDevices.intValue());
-        analysis.setSuspiciousActivities(suspiciousActivities.intValue());
-        
-        // 计算风险评分
-        Double avgRiskScore = loginRecordRepository.getAverageRiskScoreByUidAndLoginTimeAfter(uid, thirtyDaysAgo);
-        Integer maxRiskScore = loginRecordRepository.getMaxRiskScoreByUidAndLoginTimeAfter(uid, thirtyDaysAgo);
-        
-        analysis.setAvgRiskScore(avgRiskScore != null ? avgRiskScore : 0.0);
-        analysis.setMaxRiskScore(maxRiskScore != null ? maxRiskScore : 0);
-        
-        // 设置风险等级
-        if (maxRiskScore != null && maxRiskScore > 80) {
-            analysis.setRiskLevel(UserSecurityAnalysis.RiskLevel.CRITICAL);
-        } else if (maxRiskScore != null && maxRiskScore > 60) {
-            analysis.setRiskLevel(UserSecurityAnalysis.RiskLevel.HIGH);
-        } else if (maxRiskScore != null && maxRiskScore > 30) {
-            analysis.setRiskLevel(UserSecurityAnalysis.RiskLevel.MEDIUM);
-        } else {
-            analysis.setRiskLevel(UserSecurityAnalysis.RiskLevel.LOW);
-        }
-        
-        // 获取最新和首次登录时间
-        loginRecordRepository.findLatestLoginByUid(uid).ifPresent(login -> {
-            analysis.setLastLoginTime(login.getLoginTime());
-        });
-        
-        loginRecordRepository.findFirstLoginByUid(uid).ifPresent(login -> {
-            analysis.setFirstLoginTime(login.getLoginTime());
-        });
-        
-        securityAnalysisRepository.save(analysis);
-    }
-
-    private UserSecurityAnalysis generateSecurityAnalysis(String uid) {
-        updateUserSecurityAnalysis(uid);
-        return securityAnalysisRepository.findLatestAnalysisByUid(uid)
-                .orElseThrow(() -> new RuntimeException("无法生成安全分析数据"));
-    }
 } 
\ No newline at end of file
@@ -0,0 +1,98 @@
+package com.wilsonkeh.loginmanagement.service.security;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 待重新计算安全分析的用户集合（防抖）
+ * 同一用户在防抖窗口内的多次登录合并为一条记录，最后一次登录后安静 debounce 时长才到期，
+ * 持续不断的登录（如撞库）最多推迟 maxDelay，保证安全分析的滞后有上限
+ */
+public class DirtyUidTracker {
+
+    private final long debounceNanos;
+    private final long maxDelayNanos;
+    private final ConcurrentHashMap<String, DirtyUid> dirtyUids = new ConcurrentHashMap<>();
+
+    /**
+     * @param debounceMs 最后一次登录后等待的时长（毫秒）
+     * @param maxDelayMs 从第一次登录起最长等待的时长（毫秒），不小于 debounceMs
+     */
+    public DirtyUidTracker(long debounceMs, long maxDelayMs) {
+        if (debounceMs < 0) {
+            throw new IllegalArgumentException("防抖时长不能为负数: " + debounceMs);
+        }
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMs);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(debounceMs, maxDelayMs));
+    }
+
+    /**
+     * 标记用户有新的登录
+     * @param logins 本次计入的登录数
+     * @param nowNanos 当前时间（System.nanoTime）
+     */
+    public void markDirty(String uid, int logins, long nowNanos) {
+        markDirty(uid, logins, nowNanos, false);
+    }
+
+    /**
+     * 标记用户有新的登录
+     * @param logins 本次计入的登录数
+     * @param nowNanos 当前时间（System.nanoTime）
+     * @param reseed 本次登录没有计入聚合，重新计算时需要从登录记录重建
+     */
+    public void markDirty(String uid, int logins, long nowNanos, boolean reseed) {
+        dirtyUids.merge(uid, new DirtyUid(uid, nowNanos, nowNanos, logins, reseed), DirtyUid::merge);
+    }
+
+    /**
+     * 取出并移除已经到期的用户；取出期间再次被标记的用户保留，等待下一次到期
+     */
+    public List<DirtyUid> drainDue(long nowNanos) {
+        List<DirtyUid> due = new ArrayList<>();
+        for (DirtyUid dirtyUid : dirtyUids.values()) {
+            if (dirtyUid.isDue(nowNanos, debounceNanos, maxDelayNanos) && dirtyUids.remove(dirtyUid.uid(), dirtyUid)) {
+                due.add(dirtyUid);
+            }
+        }
+        return due;
+    }
+
+    /**
+     * 取出并移除全部用户，关闭时使用
+     */
+    public List<DirtyUid> drainAll() {
+        List<DirtyUid> all = new ArrayList<>();
+        for (DirtyUid dirtyUid : dirtyUids.values()) {
+            if (dirtyUids.remove(dirtyUid.uid(), dirtyUid)) {
+                all.add(dirtyUid);
+            }
+        }
+        return all;
+    }
+
+    public int size() {
+        return dirtyUids.size();
+    }
+
+    /**
+     * 一个待重新计算的用户
+     * @param firstMarkedNanos 第一次标记的时间，用于计算安全分析的滞后
+     * @param lastMarkedNanos 最后一次标记的时间
+     * @param logins 合并的登录数
+     * @param reseed 合并的登录中有没有计入聚合的，需要从登录记录重建
+     */
+    public record DirtyUid(String uid, long firstMarkedNanos, long lastMarkedNanos, int logins, boolean reseed) {
+
+        DirtyUid merge(DirtyUid newer) {
+            return new DirtyUid(uid, Math.min(firstMarkedNanos, newer.firstMarkedNanos),
+                Math.max(lastMarkedNanos, newer.lastMarkedNanos), logins + newer.logins, reseed || newer.reseed);
+        }
+
+        boolean isDue(long nowNanos, long debounceNanos, long maxDelayNanos) {
+            return nowNanos - lastMarkedNanos >= debounceNanos || nowNanos - firstMarkedNanos >= maxDelayNanos;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.wilsonkeh.loginmanagement.service.security;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.wilsonkeh.loginmanagement.entity.UserLoginRecord;
+import com.wilsonkeh.loginmanagement.entity.UserSecurityAnalysis;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 用户安全聚合：一个用户最近 WINDOW_DAYS 个自然日的登录统计
+ * 每天一个桶，保存登录数、可疑登录数、风险评分之和与最大值，以及最后一次出现在当天的IP数和设备指纹数，
+ * 桶以 epochDay 取模放在环形数组中。新登录只更新所在日期的桶，复杂度 O(1)；日期滑出窗口的桶在被复用时清零，
+ * 读取时只累加窗口内的 WINDOW_DAYS 个桶，不需要重新扫描登录记录
+ */
+public class UserSecurityAggregate implements IdentifiedDataSerializable {
+
+    public static final int WINDOW_DAYS = 30;
+
+    private static final long NO_DAY = Long.MIN_VALUE;
+
+    private final long[] bucketDays = new long[WINDOW_DAYS];
+    private final int[] loginCounts = new int[WINDOW_DAYS];
+    private final int[] suspiciousCounts = new int[WINDOW_DAYS];
+    private final long[] riskScoreSums = new long[WINDOW_DAYS];
+    private final int[] maxRiskScores = new int[WINDOW_DAYS];
+    // 最后一次出现在该桶日期的IP数和设备指纹数，窗口内各桶之和即为去重数
+    private final int[] lastSeenIpCounts = new int[WINDOW_DAYS];
+    private final int[] lastSeenDeviceCounts = new int[WINDOW_DAYS];
+
+    private final Map<String, Long> ipLastSeenDays = new HashMap<>();
+    private final Map<String, Long> deviceLastSeenDays = new HashMap<>();
+
+    private long latestDay = NO_DAY;
+    private LocalDateTime firstLoginTime;
+    private LocalDateTime lastLoginTime;
+    // 每次增量更新或重建递增，对账时据此判断重建期间是否有新的登录写入
+    private long version;
+
+    public UserSecurityAggregate() {
+        Arrays.fill(bucketDays, NO_DAY);
+    }
+
+    /**
+     * 从登录记录重建聚合
+     * @param recentLogins 窗口内的登录记录
+     * @param firstLogin 最早的登录记录，可能早于窗口
+     * @param latestLogin 最新的登录记录
+     */
+    public static UserSecurityAggregate rebuild(Iterable<UserLoginRecord> recentLogins,
+                                                UserLoginRecord firstLogin, UserLoginRecord latestLogin) {
+        UserSecurityAggregate aggregate = new UserSecurityAggregate();
+        for (UserLoginRecord record : recentLogins) {
+            aggregate.add(LoginSample.of(record));
+        }
+        if (firstLogin != null) {
+            aggregate.includeLoginTime(firstLogin.getLoginTime());
+        }
+        if (latestLogin != null) {
+            aggregate.includeLoginTime(latestLogin.getLoginTime());
+        }
+        return aggregate;
+    }
+
+    /**
+     * 增量计入一次登录，早于窗口的登录只影响首次和最后登录时间
+     */
+    public void add(LoginSample login) {
+        includeLoginTime(login.loginTime());
+        long day = login.loginTime().toLocalDate().toEpochDay();
+        if (latestDay != NO_DAY && day <= latestDay - WINDOW_DAYS) {
+            return;
+        }
+        if (day > latestDay) {
+            advance(day);
+        }
+        int index = index(day);
+        if (bucketDays[index] != day) {
+            resetBucket(index, day);
+        }
+        loginCounts[index]++;
+        if (login.suspicious()) {
+            suspiciousCounts[index]++;
+        }
+        riskScoreSums[index] += login.riskScore();
+        maxRiskScores[index] = Math.max(maxRiskScores[index], login.riskScore());
+        touch(ipLastSeenDays, lastSeenIpCounts, login.ipAddress(), day);
+        touch(deviceLastSeenDays, lastSeenDeviceCounts, login.fingerprint(), day);
+    }
+
+    /**
+     * 在 today 所在的窗口内是否没有任何登录
+     */
+    public boolean isEmpty(LocalDate today) {
+        long windowStart = windowStart(today);
+        for (int i = 0; i < WINDOW_DAYS; i++) {
+            if (bucketDays[i] >= windowStart && loginCounts[i] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 汇总 today 及之前 WINDOW_DAYS - 1 天的桶，生成安全分析
+     */
+    public UserSecurityAnalysis toAnalysis(String uid, LocalDate today) {
+        long windowStart = windowStart(today);
+        int totalLogins = 0;
+        int suspiciousActivities = 0;
+        long riskScoreSum = 0;
+        int maxRiskScore = 0;
+        int uniqueIpAddresses = 0;
+        int uniqueDevices = 0;
+        for (int i = 0; i < WINDOW_DAYS; i++) {
+            if (bucketDays[i] < windowStart) {
+                continue;
+            }
+            totalLogins += loginCounts[i];
+            suspiciousActivities += suspiciousCounts[i];
+            riskScoreSum += riskScoreSums[i];
+            maxRiskScore = Math.max(maxRiskScore, maxRiskScores[i]);
+            uniqueIpAddresses += lastSeenIpCounts[i];
+            uniqueDevices += lastSeenDeviceCounts[i];
+        }
+
+        UserSecurityAnalysis analysis = new UserSecurityAnalysis();
+        analysis.setUid(uid);
+        analysis.setAnalysisDate(LocalDateTime.now());
+        analysis.setTotalLogins(totalLogins);
+        analysis.setUniqueIpAddresses(uniqueIpAddresses);
+        analysis.setUniqueDevices(uniqueDevices);
+        analysis.setSuspiciousActivities(suspiciousActivities);
+        analysis.setAvgRiskScore(totalLogins > 0 ? (double) riskScoreSum / totalLogins : 0.0);
+        analysis.setMaxRiskScore(maxRiskScore);
+        analysis.setRiskLevel(UserSecurityAnalysis.RiskLevel.fromMaxRiskScore(maxRiskScore));
+        analysis.setLastLoginTime(lastLoginTime);
+        analysis.setFirstLoginTime(firstLoginTime);
+        return analysis;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    void incrementVersion() {
+        version++;
+    }
+
+    void setVersion(long version) {
+        this.version = version;
+    }
+
+    private void includeLoginTime(LocalDateTime loginTime) {
+        if (firstLoginTime == null || loginTime.isBefore(firstLoginTime)) {
+            firstLoginTime = loginTime;
+        }
+        if (lastLoginTime == null || loginTime.isAfter(lastLoginTime)) {
+            lastLoginTime = loginTime;
+        }
+    }
+
+    /**
+     * 窗口前移到 day，删除最后出现日期已经滑出窗口的IP和设备，每个用户每天至多一次
+     */
+    private void advance(long day) {
+        latestDay = day;
+        long expiredBefore = day - WINDOW_DAYS + 1;
+        ipLastSeenDays.values().removeIf(lastSeen -> lastSeen < expiredBefore);
+        deviceLastSeenDays.values().removeIf(lastSeen -> lastSeen < expiredBefore);
+    }
+
+    /**
+     * 把 key 的最后出现日期更新为 day，并把它从原来的桶移到 day 的桶
+     */
+    private void touch(Map<String, Long> lastSeenDays, int[] lastSeenCounts, String key, long day) {
+        if (key == null) {
+            return;
+        }
+        Long previous = lastSeenDays.get(key);
+        if (previous != null && previous >= day) {
+            return;
+        }
+        lastSeenDays.put(key, day);
+        if (previous != null && previous > latestDay - WINDOW_DAYS && bucketDays[index(previous)] == previous) {
+            lastSeenCounts[index(previous)]--;
+        }
+        lastSeenCounts[index(day)]++;
+    }
+
+    private void resetBucket(int index, long day) {
+        bucketDays[index] = day;
+        loginCounts[index] = 0;
+        suspiciousCounts[index] = 0;
+        riskScoreSums[index] = 0;
+        maxRiskScores[index] = 0;
+        lastSeenIpCounts[index] = 0;
+        lastSeenDeviceCounts[index] = 0;
+    }
+
+    private static long windowStart(LocalDate today) {
+        return today.toEpochDay() - WINDOW_DAYS + 1;
+    }
+
+    private static int index(long day) {
+        return (int) Math.floorMod(day, (long) WINDOW_DAYS);
+    }
+
+    @Override
+    public int getFactoryId() {
+        return LoginRecordDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return LoginRecordDataSerializableFactory.USER_SECURITY_AGGREGATE_TYPE;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        for (int i = 0; i < WINDOW_DAYS; i++) {
+            out.writeLong(bucketDays[i]);
+            out.writeInt(loginCounts[i]);
+            out.writeInt(suspiciousCounts[i]);
+            out.writeLong(riskScoreSums[i]);
+            out.writeInt(maxRiskScores[i]);
+            out.writeInt(lastSeenIpCounts[i]);
+            out.writeInt(lastSeenDeviceCounts[i]);
+        }
+        writeLastSeenDays(out, ipLastSeenDays);
+        writeLastSeenDays(out, deviceLastSeenDays);
+        out.writeLong(latestDay);
+        writeDateTime(out, firstLoginTime);
+        writeDateTime(out, lastLoginTime);
+        out.writeLong(version);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        for (int i = 0; i < WINDOW_DAYS; i++) {
+            bucketDays[i] = in.readLong();
+            loginCounts[i] = in.readInt();
+            suspiciousCounts[i] = in.readInt();
+            riskScoreSums[i] = in.readLong();
+            maxRiskScores[i] = in.readInt();
+            lastSeenIpCounts[i] = in.readInt();
+            lastSeenDeviceCounts[i] = in.readInt();
+        }
+        readLastSeenDays(in, ipLastSeenDays);
+        readLastSeenDays(in, deviceLastSeenDays);
+        latestDay = in.readLong();
+        firstLoginTime = readDateTime(in);
+        lastLoginTime = readDateTime(in);
+        version = in.readLong();
+    }
+
+    private static void writeLastSeenDays(ObjectDataOutput out, Map<String, Long> lastSeenDays) throws IOException {
+        out.writeInt(lastSeenDays.size());
+        for (Map.Entry<String, Long> entry : lastSeenDays.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+    }
+
+    private static void readLastSeenDays(ObjectDataInput in, Map<String, Long> lastSeenDays) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            lastSeenDays.put(in.readString(), in.readLong());
+        }
+    }
+
+    static void writeDateTime(ObjectDataOutput out, LocalDateTime dateTime) throws IOException {
+        out.writeBoolean(dateTime != null);
+        if (dateTime != null) {
+            out.writeLong(dateTime.toLocalDate().toEpochDay());
+            out.writeLong(dateTime.toLocalTime().toNanoOfDay());
+        }
+    }
+
+    static LocalDateTime readDateTime(ObjectDataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        LocalDate date = LocalDate.ofEpochDay(in.readLong());
+        return LocalDateTime.of(date, LocalTime.ofNanoOfDay(in.readLong()));
+    }
+
+    /**
+     * 聚合需要的登录字段
+     */
+    public record LoginSample(LocalDateTime loginTime, String ipAddress, String fingerprint,
+                              int riskScore, boolean suspicious) {
+
+        public static LoginSample of(UserLoginRecord record) {
+            return new LoginSample(record.getLoginTime(), record.getIpAddress(), record.getFingerprint(),
+                record.getRiskScore() != null ? record.getRiskScore() : 0,
+                Boolean.TRUE.equals(record.getIsSuspicious()));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.wilsonkeh.loginmanagement.service.security;
+
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 用户安全聚合替换处理器
+ * 只有聚合仍是重建前读取的版本时才替换为从数据库重建的聚合，重建期间有增量更新写入时放弃本次替换，
+ * 避免覆盖重建时还没有提交的登录。替换为null时删除聚合
+ */
+public class UserSecurityAggregateReplaceProcessor
+        implements EntryProcessor<String, UserSecurityAggregate, Boolean>, IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // 重建前读取的版本，聚合当时不存在时为 ABSENT
+    public static final long ABSENT = -1;
+
+    private long expectedVersion;
+    private UserSecurityAggregate rebuilt;
+
+    // 默认构造函数，用于Hazelcast序列化
+    public UserSecurityAggregateReplaceProcessor() {
+    }
+
+    public UserSecurityAggregateReplaceProcessor(long expectedVersion, UserSecurityAggregate rebuilt) {
+        this.expectedVersion = expectedVersion;
+        this.rebuilt = rebuilt;
+    }
+
+    @Override
+    public Boolean process(Map.Entry<String, UserSecurityAggregate> entry) {
+        UserSecurityAggregate current = entry.getValue();
+        long currentVersion = current != null ? current.getVersion() : ABSENT;
+        if (currentVersion != expectedVersion) {
+            return false;
+        }
+        if (rebuilt != null) {
+            // 版本继续递增，之前读取的版本不会与替换后的聚合混淆
+            rebuilt.setVersion(currentVersion + 1);
+        }
+        entry.setValue(rebuilt);
+        return true;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return LoginRecordDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return LoginRecordDataSerializableFactory.USER_SECURITY_AGGREGATE_REPLACE_PROCESSOR_TYPE;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeLong(expectedVersion);
+        out.writeObject(rebuilt);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        expectedVersion = in.readLong();
+        rebuilt = in.readObject();
+    }
+}
@@ -0,0 +1,340 @@
+package com.wilsonkeh.loginmanagement.service.security;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.wilsonkeh.loginmanagement.config.HazelcastConfig;
+import com.wilsonkeh.loginmanagement.entity.UserLoginRecord;
+import com.wilsonkeh.loginmanagement.entity.UserSecurityAnalysis;
+import com.wilsonkeh.loginmanagement.monitoring.SecurityAnalysisMetrics;
+import com.wilsonkeh.loginmanagement.repository.UserLoginRecordRepository;
+import com.wilsonkeh.loginmanagement.repository.UserSecurityAnalysisRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户安全聚合服务
+ * 每次登录通过 Entry 处理器在用户所在分区上增量更新滚动窗口聚合，查询安全分析时直接汇总聚合，
+ * 不再为每次登录执行多条覆盖30天登录记录的统计查询。
+ * 全量扫描登录记录只在两种情况下进行：聚合不存在时（新用户、集群重启）按需重建，以及定时对账。
+ * 对账修正增量更新失败或事务边界造成的偏差，保存安全分析快照，并删除窗口内已经没有登录的用户的聚合。
+ * 有新登录的用户先记入防抖集合，由后台线程在登录停止 debounce-ms 后（最长 max-delay-ms）重新计算一次，
+ * 一阵连续登录只保存一次安全分析快照、清除一次缓存
+ */
+@Slf4j
+@Service
+public class UserSecurityAggregateService {
+
+    private static final String SECURITY_ANALYSIS_CACHE_NAME = "user-security-analysis";
+    // 重建期间一直有新的增量更新写入时最多重试的次数，仍未成功的由定时对账修正
+    private static final int MAX_RESEED_ATTEMPTS = 3;
+
+    private final IMap<String, UserSecurityAggregate> aggregateMap;
+    private final UserLoginRecordRepository loginRecordRepository;
+    private final UserSecurityAnalysisRepository securityAnalysisRepository;
+    private final CacheManager cacheManager;
+    private final boolean reconciliationEnabled;
+    private final SecurityAnalysisMetrics metrics;
+    private final DirtyUidTracker dirtyUidTracker;
+    private final long recomputeIntervalMs;
+    private ScheduledExecutorService recomputeExecutor;
+
+    @Autowired
+    public UserSecurityAggregateService(HazelcastInstance hazelcastInstance,
+                                        UserLoginRecordRepository loginRecordRepository,
+                                        UserSecurityAnalysisRepository securityAnalysisRepository,
+                                        CacheManager cacheManager,
+                                        SecurityAnalysisMetrics metrics,
+                                        @Value("${app.security-analysis.reconciliation.enabled:true}") boolean reconciliationEnabled,
+                                        @Value("${app.security-analysis.recompute.debounce-ms:2000}") long debounceMs,
+                                        @Value("${app.security-analysis.recompute.max-delay-ms:10000}") long maxDelayMs) {
+        this.aggregateMap = hazelcastInstance.getMap(HazelcastConfig.USER_SECURITY_AGGREGATE_MAP_NAME);
+        this.loginRecordRepository = loginRecordRepository;
+        this.securityAnalysisRepository = securityAnalysisRepository;
+        this.cacheManager = cacheManager;
+        this.reconciliationEnabled = reconciliationEnabled;
+        this.metrics = metrics;
+        this.dirtyUidTracker = new DirtyUidTracker(debounceMs, maxDelayMs);
+        // 检查到期的间隔为防抖时长的一半，滞后最多比防抖时长多半个间隔
+        this.recomputeIntervalMs = Math.max(10, debounceMs / 2);
+        metrics.registerDirtyUidsGauge(dirtyUidTracker::size);
+        log.info("用户安全聚合服务初始化完成 - Map名称: {}, 窗口天数: {}, 定时对账: {}, 防抖: {}ms, 最长滞后: {}ms",
+                HazelcastConfig.USER_SECURITY_AGGREGATE_MAP_NAME, UserSecurityAggregate.WINDOW_DAYS, reconciliationEnabled,
+                debounceMs, maxDelayMs);
+    }
+
+    @PostConstruct
+    public void start() {
+        recomputeExecutor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("SecurityAnalysisRecompute").daemon(true).factory());
+        recomputeExecutor.scheduleWithFixedDelay(() -> recomputeDue(dirtyUidTracker.drainDue(System.nanoTime())),
+            recomputeIntervalMs, recomputeIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止前重新计算所有待处理的用户，避免丢失最后一批登录的安全分析快照
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (recomputeExecutor == null) {
+            return;
+        }
+        recomputeExecutor.shutdown();
+        try {
+            if (!recomputeExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                recomputeExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            recomputeExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        recomputeDue(dirtyUidTracker.drainAll());
+    }
+
+    /**
+     * 把新写入的登录记录计入各用户的聚合
+     * 在事务中调用时等事务提交后再更新，回滚或重试的批次不会被重复计入；
+     * 安全分析快照的保存和缓存清除由后台重新计算阶段按用户合并完成，不占用写入路径
+     */
+    public void recordLogins(Collection<UserLoginRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        Map<String, List<UserSecurityAggregate.LoginSample>> loginsByUid = new LinkedHashMap<>();
+        for (UserLoginRecord record : records) {
+            loginsByUid.computeIfAbsent(record.getUid(), uid -> new ArrayList<>())
+                .add(UserSecurityAggregate.LoginSample.of(record));
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyLogins(loginsByUid);
+                }
+            });
+        } else {
+            applyLogins(loginsByUid);
+        }
+    }
+
+    /**
+     * 获取用户最近 WINDOW_DAYS 天的安全分析，聚合不存在时从数据库重建
+     */
+    public UserSecurityAnalysis getAnalysis(String uid) {
+        UserSecurityAggregate aggregate = aggregateMap.get(uid);
+        if (aggregate == null) {
+            aggregate = seed(uid);
+        }
+        return aggregate.toAnalysis(uid, LocalDate.now());
+    }
+
+    /**
+     * 批量获取安全分析，按 uids 的顺序返回，重复的uid只返回一次
+     */
+    public List<UserSecurityAnalysis> getAnalyses(List<String> uids) {
+        Map<String, UserSecurityAggregate> aggregates = aggregateMap.getAll(new HashSet<>(uids));
+        LocalDate today = LocalDate.now();
+        List<UserSecurityAnalysis> analyses = new ArrayList<>();
+        for (String uid : new LinkedHashSet<>(uids)) {
+            UserSecurityAggregate aggregate = aggregates.get(uid);
+            analyses.add((aggregate != null ? aggregate : seed(uid)).toAnalysis(uid, today));
+        }
+        return analyses;
+    }
+
+    /**
+     * 全量对账一个用户：从登录记录重建聚合并与增量聚合比较，保存安全分析快照
+     * 重建期间有新的增量更新时保留增量聚合，由下一轮对账处理
+     * @return 增量聚合是否存在偏差并被修正
+     */
+    public boolean reconcile(String uid) {
+        UserSecurityAggregate current = aggregateMap.get(uid);
+        long expectedVersion = current != null ? current.getVersion() : UserSecurityAggregateReplaceProcessor.ABSENT;
+        LocalDate today = LocalDate.now();
+        UserSecurityAggregate rebuilt = rebuild(uid, today);
+        UserSecurityAnalysis analysis = rebuilt.toAnalysis(uid, today);
+
+        // 窗口内没有登录的用户不再占用内存，下次查询或登录时重建
+        UserSecurityAggregate replacement = rebuilt.isEmpty(today) ? null : rebuilt;
+        boolean replaced = (current != null || replacement != null) && aggregateMap.executeOnKey(uid,
+            new UserSecurityAggregateReplaceProcessor(expectedVersion, replacement));
+        boolean drifted = replaced && current != null && !sameTotals(current.toAnalysis(uid, today), analysis);
+        if (drifted) {
+            log.warn("用户安全聚合与登录记录不一致，已修正 - uid: {}, 增量登录数: {}, 实际登录数: {}",
+                    uid, current.toAnalysis(uid, today).getTotalLogins(), analysis.getTotalLogins());
+        }
+        securityAnalysisRepository.save(analysis);
+        evictCachedAnalysis(uid);
+        return drifted;
+    }
+
+    /**
+     * 定时对账本成员拥有的聚合，每个成员只处理本地分区上的用户
+     */
+    @Scheduled(fixedDelayString = "${app.security-analysis.reconciliation.interval-ms:3600000}",
+               initialDelayString = "${app.security-analysis.reconciliation.interval-ms:3600000}")
+    public void reconcileLocalAggregates() {
+        if (!reconciliationEnabled) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        int reconciled = 0;
+        int drifted = 0;
+        for (String uid : aggregateMap.localKeySet()) {
+            try {
+                if (reconcile(uid)) {
+                    drifted++;
+                }
+                reconciled++;
+            } catch (Exception e) {
+                log.error("用户安全聚合对账失败 - uid: {}, 错误: {}", uid, e.getMessage(), e);
+            }
+        }
+        log.info("用户安全聚合对账完成 - 用户数: {}, 修正数: {}, 耗时: {}ms",
+                reconciled, drifted, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    /**
+     * 异步提交增量更新，完成后把用户标记为待重新计算，不等待更新结果
+     */
+    private void applyLogins(Map<String, List<UserSecurityAggregate.LoginSample>> loginsByUid) {
+        for (Map.Entry<String, List<UserSecurityAggregate.LoginSample>> entry : loginsByUid.entrySet()) {
+            String uid = entry.getKey();
+            int logins = entry.getValue().size();
+            aggregateMap.submitToKey(uid, new UserSecurityAggregateUpdateProcessor(entry.getValue()))
+                .whenComplete((updated, error) -> {
+                    if (error != null) {
+                        log.error("更新用户安全聚合失败，重新计算时从登录记录重建 - uid: {}, 登录数: {}, 错误: {}",
+                                uid, logins, error.getMessage(), error);
+                    }
+                    // 更新失败或聚合不存在（updated为false）时本次登录没有计入聚合，由重新计算阶段从数据库重建
+                    dirtyUidTracker.markDirty(uid, logins, System.nanoTime(), !Boolean.TRUE.equals(updated));
+                    metrics.recordLoginsMarked(logins);
+                });
+        }
+    }
+
+    /**
+     * 重新计算到期的用户：有登录没有计入聚合或聚合不存在时从数据库重建，保存安全分析快照并清除缓存。
+     * 同一用户在防抖窗口内的多次登录只重新计算一次
+     */
+    void recomputeDue(List<DirtyUidTracker.DirtyUid> due) {
+        for (DirtyUidTracker.DirtyUid dirtyUid : due) {
+            long startTime = System.nanoTime();
+            try {
+                UserSecurityAggregate aggregate = dirtyUid.reseed() ? reseed(dirtyUid.uid()) : aggregateMap.get(dirtyUid.uid());
+                if (aggregate == null) {
+                    aggregate = seed(dirtyUid.uid());
+                }
+                securityAnalysisRepository.save(aggregate.toAnalysis(dirtyUid.uid(), LocalDate.now()));
+                evictCachedAnalysis(dirtyUid.uid());
+                long endTime = System.nanoTime();
+                metrics.recordRecomputation(endTime - dirtyUid.firstMarkedNanos(), endTime - startTime);
+                log.debug("重新计算用户安全分析 - uid: {}, 合并登录数: {}", dirtyUid.uid(), dirtyUid.logins());
+            } catch (Exception e) {
+                metrics.recordRecomputeFailure();
+                log.error("重新计算用户安全分析失败，等待对账修正 - uid: {}, 合并登录数: {}, 错误: {}",
+                        dirtyUid.uid(), dirtyUid.logins(), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 聚合不存在时从数据库重建，其他线程先写入的聚合优先
+     * 重建读取数据库后、写入聚合前提交的登录，其增量更新因聚合不存在被跳过，也不在重建结果中；
+     * applyLogins 把这些用户标记为需要重建，由 reseed 在提交之后重新读取数据库补上
+     */
+    private UserSecurityAggregate seed(String uid) {
+        LocalDate today = LocalDate.now();
+        UserSecurityAggregate rebuilt = rebuild(uid, today);
+        if (rebuilt.isEmpty(today)) {
+            return rebuilt;
+        }
+        boolean stored = aggregateMap.executeOnKey(uid,
+            new UserSecurityAggregateReplaceProcessor(UserSecurityAggregateReplaceProcessor.ABSENT, rebuilt));
+        if (stored) {
+            log.debug("从登录记录重建用户安全聚合 - uid: {}", uid);
+            return rebuilt;
+        }
+        UserSecurityAggregate existing = aggregateMap.get(uid);
+        return existing != null ? existing : rebuilt;
+    }
+
+    /**
+     * 有登录没有计入聚合时重新从数据库重建：这些登录所在的事务已经提交，此时读取的登录记录一定包含它们。
+     * 并发的 seed 可能在提交前读取数据库并写入缺少这些登录的聚合，所以聚合已经存在时也按版本替换；
+     * 重建期间有新的增量更新写入时重新读取，新的登录同样已经提交，不会因替换而丢失
+     * @return 重建的聚合，窗口内没有登录时为空聚合；多次重试仍被增量更新抢先时返回当前聚合，由定时对账修正
+     */
+    private UserSecurityAggregate reseed(String uid) {
+        LocalDate today = LocalDate.now();
+        for (int attempt = 1; ; attempt++) {
+            UserSecurityAggregate current = aggregateMap.get(uid);
+            long expectedVersion = current != null ? current.getVersion() : UserSecurityAggregateReplaceProcessor.ABSENT;
+            UserSecurityAggregate rebuilt = rebuild(uid, today);
+            UserSecurityAggregate replacement = rebuilt.isEmpty(today) ? null : rebuilt;
+            if (current == null && replacement == null) {
+                return rebuilt;
+            }
+            if (aggregateMap.executeOnKey(uid, new UserSecurityAggregateReplaceProcessor(expectedVersion, replacement))) {
+                log.debug("补上未计入的登录，从登录记录重建用户安全聚合 - uid: {}, 尝试次数: {}", uid, attempt);
+                return rebuilt;
+            }
+            if (attempt >= MAX_RESEED_ATTEMPTS) {
+                log.warn("重建用户安全聚合期间持续有增量更新写入，等待对账修正 - uid: {}, 尝试次数: {}", uid, attempt);
+                UserSecurityAggregate latest = aggregateMap.get(uid);
+                return latest != null ? latest : rebuilt;
+            }
+        }
+    }
+
+    /**
+     * 全量扫描窗口内的登录记录重建聚合
+     */
+    private UserSecurityAggregate rebuild(String uid, LocalDate today) {
+        List<UserLoginRecord> recentLogins = loginRecordRepository.findByUidAndLoginTimeAfterOrderByLoginTimeDesc(
+            uid, today.minusDays(UserSecurityAggregate.WINDOW_DAYS - 1).atStartOfDay());
+        UserLoginRecord firstLogin = loginRecordRepository.findFirstLoginByUid(uid).orElse(null);
+        // 登录记录按时间倒序，窗口内有登录时第一条就是最新的登录
+        UserLoginRecord latestLogin = !recentLogins.isEmpty()
+            ? recentLogins.get(0)
+            : loginRecordRepository.findLatestLoginByUid(uid).orElse(null);
+        return UserSecurityAggregate.rebuild(recentLogins, firstLogin, latestLogin);
+    }
+
+    private void evictCachedAnalysis(String uid) {
+        Cache cache = cacheManager.getCache(SECURITY_ANALYSIS_CACHE_NAME);
+        if (cache != null) {
+            cache.evict(uid);
+        }
+    }
+
+    private static boolean sameTotals(UserSecurityAnalysis incremental, UserSecurityAnalysis rebuilt) {
+        return Objects.equals(incremental.getTotalLogins(), rebuilt.getTotalLogins())
+            && Objects.equals(incremental.getUniqueIpAddresses(), rebuilt.getUniqueIpAddresses())
+            && Objects.equals(incremental.getUniqueDevices(), rebuilt.getUniqueDevices())
+            && Objects.equals(incremental.getSuspiciousActivities(), rebuilt.getSuspiciousActivities())
+            && Objects.equals(incremental.getMaxRiskScore(), rebuilt.getMaxRiskScore());
+    }
+}
@@ -0,0 +1,79 @@
+package com.wilsonkeh.loginmanagement.service.security;
+
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户安全聚合增量更新处理器
+ * 在键所在分区上把一批登录计入聚合，返回是否已有聚合；
+ * 聚合不存在时不创建，由调用方从数据库重建，避免只含新登录的不完整聚合
+ */
+public class UserSecurityAggregateUpdateProcessor
+        implements EntryProcessor<String, UserSecurityAggregate, Boolean>, IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<UserSecurityAggregate.LoginSample> logins;
+
+    // 默认构造函数，用于Hazelcast序列化
+    public UserSecurityAggregateUpdateProcessor() {
+    }
+
+    public UserSecurityAggregateUpdateProcessor(List<UserSecurityAggregate.LoginSample> logins) {
+        this.logins = logins;
+    }
+
+    @Override
+    public Boolean process(Map.Entry<String, UserSecurityAggregate> entry) {
+        UserSecurityAggregate aggregate = entry.getValue();
+        if (aggregate == null) {
+            return false;
+        }
+        for (UserSecurityAggregate.LoginSample login : logins) {
+            aggregate.add(login);
+        }
+        aggregate.incrementVersion();
+        entry.setValue(aggregate);
+        return true;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return LoginRecordDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return LoginRecordDataSerializableFactory.USER_SECURITY_AGGREGATE_UPDATE_PROCESSOR_TYPE;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeInt(logins.size());
+        for (UserSecurityAggregate.LoginSample login : logins) {
+            UserSecurityAggregate.writeDateTime(out, login.loginTime());
+            out.writeString(login.ipAddress());
+            out.writeString(login.fingerprint());
+            out.writeInt(login.riskScore());
+            out.writeBoolean(login.suspicious());
+        }
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        int size = in.readInt();
+        logins = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            logins.add(new UserSecurityAggregate.LoginSample(UserSecurityAggregate.readDateTime(in),
+                in.readString(), in.readString(), in.readInt(), in.readBoolean()));
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.wilsonkeh.loginmanagement.queue;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Backpressure Test
+ * Verify that a full queue rejects discardable tasks immediately, lets non-discardable tasks wait
+ * until a consumer frees space, and that the suggested Retry-After follows the drain rate
+ */
+class BackpressureTest {
+
+    private static final int CAPACITY = 100;
+
+    @AfterEach
+    void tearDown() {
+        Hazelcast.shutdownAll();
+    }
+
+    @Test
+    void testLocalQueueBlocksOnlyNonDiscardableTasks() throws InterruptedException {
+        DeduplicatingPriorityBlockingQueue<String> queue =
+            new DeduplicatingPriorityBlockingQueue<>(CAPACITY, true, Task::getDeduplicationKey);
+        int filled = 0;
+        for (int i = 0; i < CAPACITY; i++) {
+            if (queue.offer(new TestTask("filled-" + i, false))) {
+                filled++;
+            }
+        }
+
+        long start = System.nanoTime();
+        boolean discardableAdmitted = queue.offer(new TestTask("discardable", true), 1, TimeUnit.SECONDS);
+        long discardableMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Nobody consumes: the wait ends at the timeout
+        start = System.nanoTime();
+        boolean timedOutAdmitted = queue.offer(new TestTask("timed-out", false), 100, TimeUnit.MILLISECONDS);
+        long timedOutMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // A consumer frees one slot once the offer is waiting for space
+        Thread consumer = Thread.ofPlatform().start(() -> {
+            awaitWaiter(queue::getSpaceWaiters);
+            queue.poll();
+        });
+        start = System.nanoTime();
+        boolean admitted = queue.offer(new TestTask("waiting", false), 2, TimeUnit.SECONDS);
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        consumer.join();
+
+        System.out.println("=== Local Queue Backpressure Test ===");
+        System.out.println("Discardable rejected in " + discardableMs + "ms, timed out after " + timedOutMs
+                + "ms, admitted after " + waitedMs + "ms");
+
+        assert filled == CAPACITY;
+        assert !discardableAdmitted && discardableMs < 50;
+        assert !timedOutAdmitted && timedOutMs >= 100;
+        assert admitted && waitedMs < 1_000;
+        assert queue.size() == CAPACITY;
+    }
+
+    @Test
+    void testDistributedQueueBlocksOnlyNonDiscardableTasks() throws InterruptedException {
+        HazelcastInstance instance = Hazelcast.newHazelcastInstance(createConfig());
+        DistributedDeduplicatingPriorityBlockingQueue<String> queue = new DistributedDeduplicatingPriorityBlockingQueue<>(
+            instance, CAPACITY, true, Task::getDeduplicationKey, 1, 16);
+        queue.start();
+        try {
+            List<Task<String>> filled = new ArrayList<>(CAPACITY);
+            for (int i = 0; i < CAPACITY; i++) {
+                filled.add(new TestTask("filled-" + i, false));
+            }
+            List<Boolean> filledResults = queue.offerAll(filled);
+
+            long start = System.nanoTime();
+            boolean discardableAdmitted = queue.offer(new TestTask("discardable", true), 1, TimeUnit.SECONDS);
+            long discardableMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            // A consumer drains part of the queue once the mixed batch is waiting for capacity,
+            // so the discardable task has already been rejected
+            Thread consumer = Thread.ofPlatform().start(() -> {
+                awaitWaiter(queue::getCapacityWaiters);
+                List<Task<String>> drained = new ArrayList<>();
+                while (drained.size() < 10) {
+                    try {
+                        queue.drainTo(drained, 10 - drained.size(), 1, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                queue.acknowledge(drained);
+            });
+            List<Task<String>> batch = List.of(
+                new TestTask("batch-0", false), new TestTask("batch-1", true), new TestTask("batch-2", false));
+            start = System.nanoTime();
+            List<Boolean> results = queue.offerAll(batch, 2, TimeUnit.SECONDS);
+            long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            consumer.join();
+
+            System.out.println("=== Distributed Queue Backpressure Test ===");
+            System.out.println("Discardable rejected in " + discardableMs + "ms, batch results " + results
+                    + " after " + waitedMs + "ms");
+
+            assert filledResults.stream().allMatch(Boolean::booleanValue);
+            // Only the cluster round trips of the first offer, no wait for capacity
+            assert !discardableAdmitted && discardableMs < 500;
+            assert results.equals(List.of(true, false, true));
+            assert waitedMs < 1_000;
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    void testBatchReportsDuplicatesSeparatelyFromFullQueue() {
+        HazelcastInstance instance = Hazelcast.newHazelcastInstance(createConfig());
+        DistributedDeduplicatingPriorityBlockingQueue<String> queue = new DistributedDeduplicatingPriorityBlockingQueue<>(
+            instance, CAPACITY, true, Task::getDeduplicationKey, 1, 16);
+        queue.start();
+        try {
+            List<Task<String>> filled = new ArrayList<>(CAPACITY);
+            for (int i = 0; i < CAPACITY; i++) {
+                filled.add(new TestTask("filled-" + i, false));
+            }
+            List<OfferResult> filledResults = queue.offerAllWithResults(filled, 0, TimeUnit.MILLISECONDS);
+
+            // A re-sent task, a new task that does not fit, and an in-batch duplicate of that new task
+            List<Task<String>> batch = List.of(
+                new TestTask("filled-0", false), new TestTask("overflow", false), new TestTask("overflow", false));
+            List<OfferResult> results = queue.offerAllWithResults(batch, 0, TimeUnit.MILLISECONDS);
+
+            System.out.println("=== Batch Offer Result Test ===");
+            System.out.println("Batch results on a full queue: " + results);
+
+            assert filledResults.stream().allMatch(OfferResult::isAccepted);
+            assert results.equals(List.of(OfferResult.DUPLICATE, OfferResult.QUEUE_FULL, OfferResult.DUPLICATE));
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    void testRetryAfterFollowsDrainRate() {
+        assert DrainRateMeter.secondsToDrain(1_000, 100, 60) == 10;
+        assert DrainRateMeter.secondsToDrain(1_001, 100, 60) == 11;
+        // An idle queue still asks for at least one second
+        assert DrainRateMeter.secondsToDrain(0, 100, 60) == 1;
+        // A stalled consumer or a long backlog is capped
+        assert DrainRateMeter.secondsToDrain(1_000, 0, 60) == 60;
+        assert DrainRateMeter.secondsToDrain(1_000_000, 100, 60) == 60;
+
+        // No tick has elapsed yet, so nothing has been measured
+        DrainRateMeter meter = new DrainRateMeter(1_000);
+        meter.record(500);
+        System.out.println("=== Retry-After Test ===");
+        System.out.println("Rate before the first tick: " + meter.getRatePerSecond() + "/s");
+        assert meter.getRatePerSecond() == 0;
+    }
+
+    /**
+     * Wait until an offer is blocked waiting for space, bounded so a broken queue fails the test instead of hanging
+     */
+    private static void awaitWaiter(IntSupplier waiters) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (waiters.getAsInt() == 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Config createConfig() {
+        Config config = new Config();
+        config.setClusterName("backpressure-test");
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        LoginRecordDataSerializableFactory.register(config.getSerializationConfig());
+        return config;
+    }
+
+    private record TestTask(String taskId, boolean discardable) implements Task<String> {
+        @Override
+        public String getTaskId() { return taskId; }
+        @Override
+        public String getData() { return taskId; }
+        @Override
+        public String getTaskType() { return "TEST"; }
+        @Override
+        public boolean isDiscardable() { return discardable; }
+    }
+}
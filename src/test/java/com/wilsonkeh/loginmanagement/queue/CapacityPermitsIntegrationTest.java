@@ -0,0 +1,180 @@
+package com.wilsonkeh.loginmanagement.queue;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.cp.IAtomicLong;
+import com.hazelcast.map.IMap;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Capacity Permits Integration Test
+ * Verify that admission control leases permits in blocks instead of one cluster call per offer,
+ * and that members sharing the cluster counter never admit more than the capacity,
+ * and that the idle permits of a crashed member are returned to the cluster
+ */
+class CapacityPermitsIntegrationTest {
+
+    private static final int CAPACITY = 1_000;
+    private static final int LEASE_SIZE = 64;
+
+    private static final String POOL_MAP_NAME = "capacity-permits-test-pools";
+
+    private HazelcastInstance hazelcastInstance;
+    private IAtomicLong counter;
+    private final AtomicInteger counterCalls = new AtomicInteger(0);
+
+    @BeforeEach
+    void setUp() {
+        hazelcastInstance = Hazelcast.newHazelcastInstance(createConfig());
+        counter = countingProxy(hazelcastInstance.getCPSubsystem().getAtomicLong("capacity-permits-test"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        Hazelcast.shutdownAll();
+    }
+
+    @Test
+    void testSteadyStateNeedsNoClusterCalls() {
+        CapacityPermits permits = new CapacityPermits(counter, CAPACITY, LEASE_SIZE);
+        int operations = 100_000;
+
+        // Offer/poll pairs, as a member that both produces and consumes
+        int acquired = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            acquired += permits.tryAcquire(1);
+            permits.release(1);
+        }
+        long nanosPerOffer = (System.nanoTime() - start) / operations;
+
+        System.out.println("=== Capacity Permits Steady State Test ===");
+        System.out.println("Offers: " + operations + ", cluster counter calls: " + counterCalls.get()
+                + ", " + nanosPerOffer + " ns/offer");
+
+        assert acquired == operations;
+        assert counterCalls.get() == 1;
+        assert permits.getClusterLeased() == LEASE_SIZE;
+    }
+
+    @Test
+    void testMembersNeverExceedCapacity() throws Exception {
+        // Two members sharing one cluster counter, each with several producer threads
+        CapacityPermits memberA = new CapacityPermits(counter, CAPACITY, LEASE_SIZE);
+        CapacityPermits memberB = new CapacityPermits(counter, CAPACITY, LEASE_SIZE);
+        AtomicInteger admitted = new AtomicInteger(0);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int thread = 0; thread < 8; thread++) {
+                CapacityPermits member = thread % 2 == 0 ? memberA : memberB;
+                executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        admitted.addAndGet(member.tryAcquire(1));
+                    }
+                });
+            }
+        }
+
+        int requested = 8 * 500;
+        System.out.println("=== Capacity Permits Bound Test ===");
+        System.out.println("Requested: " + requested + ", admitted: " + admitted.get()
+                + ", cluster counter calls: " + counterCalls.get());
+
+        // Read the call count first: reading the counter goes through the counting proxy too
+        int calls = counterCalls.get();
+        long leased = counter.get();
+
+        // Free permits stranded in a member's pool are at most one lease per member
+        assert admitted.get() <= CAPACITY;
+        assert admitted.get() >= CAPACITY - 2 * LEASE_SIZE;
+        assert leased <= CAPACITY;
+        // Rejections while the cluster is exhausted back off instead of calling the counter each time
+        assert calls < requested / 2;
+
+        // Permits returned by consumers become available again
+        memberA.release(admitted.get());
+        int reacquired = memberA.tryAcquire(10);
+        assert reacquired == 10;
+    }
+
+    @Test
+    void testCrashedMemberPermitsAreReclaimed() {
+        HazelcastInstance crashing = Hazelcast.newHazelcastInstance(createConfig());
+        IMap<String, Integer> pools = hazelcastInstance.getMap(POOL_MAP_NAME);
+        CapacityPermits survivor = new CapacityPermits(counter, CAPACITY, LEASE_SIZE);
+        survivor.start(hazelcastInstance, pools);
+        CapacityPermits crashingMember = new CapacityPermits(
+            crashing.getCPSubsystem().getAtomicLong("capacity-permits-test"), CAPACITY, LEASE_SIZE);
+        crashingMember.start(crashing, crashing.getMap(POOL_MAP_NAME));
+
+        // Ten permits back tasks now in the queue, the rest of the lease idles in the member's pool
+        int acquired = crashingMember.tryAcquire(10);
+        int idle = crashingMember.getLocalPermits();
+        String crashingId = crashing.getCluster().getLocalMember().getUuid().toString();
+        awaitCondition(() -> Integer.valueOf(idle).equals(pools.get(crashingId)));
+        long leasedBeforeCrash = survivor.getClusterLeased();
+
+        crashing.getLifecycleService().terminate();
+        awaitCondition(() -> survivor.getClusterLeased() == acquired);
+        long leasedAfterCrash = survivor.getClusterLeased();
+
+        System.out.println("=== Crashed Member Permits Test ===");
+        System.out.println("Leased before crash: " + leasedBeforeCrash + ", idle in crashed pool: " + idle
+                + ", leased after crash: " + leasedAfterCrash);
+
+        assert acquired == 10 && idle == LEASE_SIZE - 10;
+        assert leasedBeforeCrash == LEASE_SIZE;
+        // Only the permits of queued tasks stay leased
+        assert leasedAfterCrash == acquired;
+        assert !pools.containsKey(crashingId);
+        survivor.close();
+    }
+
+    private Config createConfig() {
+        Config config = new Config();
+        config.setClusterName("capacity-permits-test");
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        LoginRecordDataSerializableFactory.register(config.getSerializationConfig());
+        return config;
+    }
+
+    /**
+     * Wait for the pool to be published or reclaimed, bounded so a broken reclaim fails the test instead of hanging
+     */
+    private static void awaitCondition(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private IAtomicLong countingProxy(IAtomicLong delegate) {
+        return (IAtomicLong) Proxy.newProxyInstance(IAtomicLong.class.getClassLoader(),
+            new Class<?>[]{IAtomicLong.class}, (proxy, method, args) -> {
+                counterCalls.incrementAndGet();
+                try {
+                    return method.invoke(delegate, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+    }
+}
@@ -1,11 +1,21 @@
 package com.wilsonkeh.loginmanagement.queue;
 
+import com.wilsonkeh.loginmanagement.queue.dedup.HashedTimingWheel;
+import com.wilsonkeh.loginmanagement.queue.dedup.StripedLongHashSet;
+import com.wilsonkeh.loginmanagement.queue.storage.TaskStorage;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Queue Performance Test
@@ -13,6 +23,10 @@ import java.util.concurrent.TimeUnit;
  */
 class DeduplicatingPriorityBlockingQueuePerformanceTest {
 
+    private static final int WARMUP_ROUNDS = 2;
+
+    private static final String[] BACKENDS = {TaskStorage.LINKED, TaskStorage.RING_BUFFER, TaskStorage.PRIORITY};
+
     @Test
     void testConcurrentOfferPerformance() throws InterruptedException {
         // Test parameters
@@ -20,47 +34,325 @@ class DeduplicatingPriorityBlockingQueuePerformanceTest {
         int tasksPerThread = 100_000;
         int totalTasks = threadCount * tasksPerThread;
 
-        // Create queue
-        DeduplicatingPriorityBlockingQueue<String> queue = new DeduplicatingPriorityBlockingQueue<>(1000000);
+        for (String backend : BACKENDS) {
+            // Warm up so that both backends are measured after JIT compilation
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                runConcurrentOffer(backend, threadCount, tasksPerThread);
+            }
+
+            long start = System.currentTimeMillis();
+            DeduplicatingPriorityBlockingQueue<String> queue = runConcurrentOffer(backend, threadCount, tasksPerThread);
+            long duration = Math.max(1, System.currentTimeMillis() - start);
+
+            // Get statistics
+            DeduplicatingPriorityBlockingQueue.QueueStats stats = queue.getStats();
+
+            System.out.println("=== Concurrent Offer Performance Test (" + backend + ") ===");
+            System.out.println("Thread count: " + threadCount);
+            System.out.println("Tasks per thread: " + tasksPerThread);
+            System.out.println("Total tasks: " + totalTasks);
+            System.out.println("Total time: " + duration + "ms");
+            System.out.println("Average throughput: " + (totalTasks * 1000.0 / duration) + " tasks/sec");
+            System.out.println("Queue size: " + stats.getCurrentSize());
+            System.out.println("Deduplication map size: " + stats.getDeduplicationMapSize());
+            System.out.println("Total offered: " + stats.getTotalOffered());
+            System.out.println("Total deduplicated: " + stats.getTotalDeduplicated());
+            System.out.println("Total polled: " + stats.getTotalPolled());
+
+            // Verify performance requirements
+            assert stats.getCurrentSize() == totalTasks;
+            assert stats.getTotalOffered() == totalTasks;
+            assert stats.getTotalDeduplicated() == 0;
+        }
+    }
+
+    @Test
+    void testProducerConsumerCorrectness() throws InterruptedException {
+        int producerCount = 8;
+        int consumerCount = 4;
+        int tasksPerProducer = 20_000;
+        int totalTasks = producerCount * tasksPerProducer;
+
+        for (String backend : BACKENDS) {
+            // Small capacity forces producers to hit the full path and retry the same task,
+            // which only succeeds if the rejected offer rolled back its deduplication key
+            DeduplicatingPriorityBlockingQueue<String> queue = createQueue(backend, 1024);
+            Set<String> consumed = ConcurrentHashMap.newKeySet();
+            AtomicInteger consumedCount = new AtomicInteger(0);
+
+            ExecutorService executor = Executors.newFixedThreadPool(producerCount + consumerCount);
+            CountDownLatch latch = new CountDownLatch(producerCount + consumerCount);
+            long start = System.currentTimeMillis();
+
+            for (int i = 0; i < producerCount; i++) {
+                final int threadId = i;
+                executor.submit(() -> {
+                    for (int j = 0; j < tasksPerProducer; j++) {
+                        SimpleTask task = new SimpleTask("task-" + threadId + "-" + j, j % 8);
+                        while (!queue.offer(task)) {
+                            Thread.yield();
+                        }
+                    }
+                    latch.countDown();
+                });
+            }
+            for (int i = 0; i < consumerCount; i++) {
+                executor.submit(() -> {
+                    try {
+                        while (consumedCount.get() < totalTasks) {
+                            Task<String> task = queue.poll(10, TimeUnit.MILLISECONDS);
+                            if (task != null) {
+                                consumed.add(task.getTaskId());
+                                consumedCount.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    latch.countDown();
+                });
+            }
+
+            latch.await(60, TimeUnit.SECONDS);
+            long duration = Math.max(1, System.currentTimeMillis() - start);
+            executor.shutdownNow();
+
+            System.out.println("=== Producer Consumer Test (" + backend + ") ===");
+            System.out.println("Producers: " + producerCount + ", consumers: " + consumerCount);
+            System.out.println("Total time: " + duration + "ms");
+            System.out.println("Average throughput: " + (totalTasks * 1000.0 / duration) + " tasks/sec");
+
+            // Every task is delivered exactly once
+            assert consumedCount.get() == totalTasks;
+            assert consumed.size() == totalTasks;
+            assert queue.isEmpty();
+        }
+    }
+
+    @Test
+    void testPriorityOrderingAndAging() throws InterruptedException {
+        // Without aging, a backlog of low priority tasks never delays a high priority one
+        DeduplicatingPriorityBlockingQueue<String> queue = new DeduplicatingPriorityBlockingQueue<>(
+                10_000, true, Task::getDeduplicationKey, TaskStorage.create(TaskStorage.PRIORITY, 10_000, 8, 0));
+        for (int i = 0; i < 5_000; i++) {
+            queue.offer(new SimpleTask("low-" + i, 7));
+        }
+        queue.offer(new SimpleTask("high", 0));
+        queue.offer(new SimpleTask("middle", 3));
+
+        List<String> served = pollTaskIds(queue, 3);
+        assert served.equals(List.of("high", "middle", "low-0"));
+
+        // With aging, a low priority task that has waited long enough is served ahead of newer high priority tasks
+        DeduplicatingPriorityBlockingQueue<String> agingQueue = new DeduplicatingPriorityBlockingQueue<>(
+                10_000, true, Task::getDeduplicationKey, TaskStorage.create(TaskStorage.PRIORITY, 10_000, 8, 5));
+        agingQueue.offer(new SimpleTask("starving", 7));
+        Thread.sleep(50);
+        for (int i = 0; i < 100; i++) {
+            agingQueue.offer(new SimpleTask("high-" + i, 0));
+        }
+
+        List<String> agedServed = pollTaskIds(agingQueue, 2);
+        assert agedServed.equals(List.of("starving", "high-0"));
+
+        // The highest priority head ages too: an older high priority task still beats an aged default priority one
+        DeduplicatingPriorityBlockingQueue<String> headAgingQueue = new DeduplicatingPriorityBlockingQueue<>(
+                10_000, true, Task::getDeduplicationKey, TaskStorage.create(TaskStorage.PRIORITY, 10_000, 8, 5));
+        headAgingQueue.offer(new SimpleTask("old-high", 0));
+        Thread.sleep(20);
+        headAgingQueue.offer(new SimpleTask("aged-default", 5));
+        Thread.sleep(50);
+
+        List<String> headAgedServed = pollTaskIds(headAgingQueue, 2);
+        assert headAgedServed.equals(List.of("old-high", "aged-default"));
+
+        System.out.println("=== Priority Ordering Test ===");
+        System.out.println("High priority task served ahead of 5000 queued low priority tasks");
+        System.out.println("Aged low priority task served ahead of newer high priority tasks");
+        System.out.println("Older high priority head served ahead of aged default priority task");
+    }
+
+    @Test
+    void testDeduplicationIndexMemory() {
+        int depth = 100_000;
+        DeduplicatingPriorityBlockingQueue<String> queue = createQueue(TaskStorage.PRIORITY, depth);
+        for (int i = 0; i < depth; i++) {
+            queue.offer(new SimpleTask("user-" + i));
+        }
+
+        DeduplicatingPriorityBlockingQueue.QueueStats stats = queue.getStats();
+
+        System.out.println("=== Deduplication Index Memory Test ===");
+        System.out.println("Queue depth: " + depth);
+        System.out.println("Deduplication index memory: " + stats.getDeduplicationMemoryBytes() + " bytes");
+        System.out.println("Bytes per entry: " + String.format("%.2f", stats.getDeduplicationBytesPerEntry()));
+        // A ConcurrentHashMap<String, Boolean> needs a 32 byte node plus a table slot per entry
+        System.out.println("ConcurrentHashMap estimate: ~40 bytes per entry");
+
+        assert stats.getDeduplicationMapSize() == depth;
+        assert stats.getDeduplicationBytesPerEntry() <= 40;
+        boolean duplicateAdmitted = queue.offer(new SimpleTask("user-42"));
+        assert !duplicateAdmitted;
+
+        // Draining the queue releases every key
+        while (queue.poll() != null) {
+            // drain
+        }
+        assert queue.getStats().getDeduplicationMapSize() == 0;
+        boolean readmitted = queue.offer(new SimpleTask("user-42"));
+        assert readmitted;
+    }
+
+    @Test
+    void testStripedLongHashSetMatchesHashSet() {
+        for (boolean verifyKeys : new boolean[]{false, true}) {
+            StripedLongHashSet set = new StripedLongHashSet(16, 4, verifyKeys);
+            Set<String> expected = new HashSet<>();
+            Random random = new Random(42);
+
+            // Random adds and removes over a small key space exercise probing, growth and backward-shift deletion
+            for (int i = 0; i < 200_000; i++) {
+                String key = "uid-" + random.nextInt(5_000);
+                boolean changed;
+                boolean expectedChanged;
+                if (random.nextBoolean()) {
+                    changed = set.add(key);
+                    expectedChanged = expected.add(key);
+                } else {
+                    changed = set.remove(key);
+                    expectedChanged = expected.remove(key);
+                }
+                assert changed == expectedChanged;
+            }
+            assert set.size() == expected.size();
+            for (int i = 0; i < 5_000; i++) {
+                String key = "uid-" + i;
+                assert set.contains(key) == expected.contains(key);
+            }
+        }
+    }
+
+    @Test
+    void testRejectedOfferRollsBackDeduplicationKey() {
+        DeduplicatingPriorityBlockingQueue<String> queue = createQueue(TaskStorage.PRIORITY, 1);
+        boolean firstAdmitted = queue.offer(new SimpleTask("user-1"));
+
+        // Rejected because the queue is full, not because of the key
+        boolean overflowAdmitted = queue.offer(new SimpleTask("user-2"));
+        assert firstAdmitted;
+        assert !overflowAdmitted;
+        assert queue.getStats().getTotalDeduplicated() == 0;
+        assert queue.getStats().getDeduplicationMapSize() == 1;
+
+        queue.poll();
+        boolean retryAdmitted = queue.offer(new SimpleTask("user-2"));
+        assert retryAdmitted;
+    }
+
+    @Test
+    void testWindowedDeduplication() throws InterruptedException {
+        long windowMs = 200;
+        DeduplicatingPriorityBlockingQueue<String> queue = new DeduplicatingPriorityBlockingQueue<>(
+                100, true, Task::getDeduplicationKey, TaskStorage.create(TaskStorage.PRIORITY, 100), false, windowMs);
+
+        boolean firstAdmitted = queue.offer(new SimpleTask("user-1"));
+        queue.poll();
+
+        // Still suppressed inside the window after dequeue
+        boolean insideWindowAdmitted = queue.offer(new SimpleTask("user-1"));
+
+        Thread.sleep(windowMs * 2);
+        boolean afterWindowAdmitted = queue.offer(new SimpleTask("user-1"));
+
+        assert firstAdmitted;
+        assert !insideWindowAdmitted;
+        assert afterWindowAdmitted;
+    }
+
+    @Test
+    void testTimingWheelBulkExpiry() throws InterruptedException {
+        List<String> expired = new ArrayList<>();
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 8, expired::add);
+
+        // Delays beyond one revolution (80ms) stay in their slot for later rounds
+        int keyCount = 50_000;
+        for (int i = 0; i < keyCount; i++) {
+            wheel.schedule("key-" + i, i % 2 == 0 ? 20 : 150);
+        }
+
+        Thread.sleep(60);
+        long start = System.nanoTime();
+        wheel.advance();
+        long advanceMicros = (System.nanoTime() - start) / 1000;
+        assert expired.size() == keyCount / 2;
+
+        Thread.sleep(150);
+        wheel.advance();
+        assert expired.size() == keyCount;
+        assert wheel.pending() == 0;
+
+        System.out.println("=== Timing Wheel Expiry Test ===");
+        System.out.println("Expired " + keyCount / 2 + " keys in one advance: " + advanceMicros + "us");
+    }
+
+    private DeduplicatingPriorityBlockingQueue<String> runConcurrentOffer(String backend, int threadCount,
+                                                                         int tasksPerThread) throws InterruptedException {
+        DeduplicatingPriorityBlockingQueue<String> queue = createQueue(backend, threadCount * tasksPerThread);
 
         ExecutorService executor = Executors.newFixedThreadPool(threadCount);
         CountDownLatch latch = new CountDownLatch(threadCount);
 
-        long start = System.currentTimeMillis();
-
         // Concurrently offer tasks
         for (int i = 0; i < threadCount; i++) {
             final int threadId = i;
             executor.submit(() -> {
                 for (int j = 0; j < tasksPerThread; j++) {
-                    queue.offer("task-" + threadId + "-" + j);
+                    queue.offer(new SimpleTask("task-" + threadId + "-" + j, j % 8));
                 }
                 latch.countDown();
             });
         }
 
         latch.await();
-        long end = System.currentTimeMillis();
-        long duration = end - start;
+        executor.shutdown();
+        return queue;
+    }
 
-        // Get statistics
-        DeduplicatingPriorityBlockingQueue.QueueStats stats = queue.getStats();
+    private DeduplicatingPriorityBlockingQueue<String> createQueue(String backend, int capacity) {
+        return new DeduplicatingPriorityBlockingQueue<>(capacity, true, Task::getDeduplicationKey,
+                TaskStorage.create(backend, capacity));
+    }
+
+    /**
+     * Poll up to count tasks and return their ids in the order they were served
+     */
+    private static List<String> pollTaskIds(DeduplicatingPriorityBlockingQueue<String> queue, int count) {
+        List<String> taskIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Task<String> task = queue.poll();
+            if (task == null) {
+                break;
+            }
+            taskIds.add(task.getTaskId());
+        }
+        return taskIds;
+    }
+
+    /**
+     * Minimal task, deduplicated by its id
+     */
+    private record SimpleTask(String id, int priority) implements Task<String> {
+        SimpleTask(String id) {
+            this(id, 0);
+        }
 
-        System.out.println("=== Concurrent Offer Performance Test ===");
-        System.out.println("Thread count: " + threadCount);
-        System.out.println("Tasks per thread: " + tasksPerThread);
-        System.out.println("Total tasks: " + totalTasks);
-        System.out.println("Total time: " + duration + "ms");
-        System.out.println("Average throughput: " + (totalTasks * 1000.0 / duration) + " tasks/sec");
-        System.out.println("Queue size: " + stats.getCurrentSize());
-        System.out.println("Deduplication map size: " + stats.getDeduplicationMapSize());
-        System.out.println("Total offered: " + stats.getTotalOffered());
-        System.out.println("Total deduplicated: " + stats.getTotalDeduplicated());
-        System.out.println("Total polled: " + stats.getTotalPolled());
-
-        // Verify performance requirements
-        assert stats.getCurrentSize() == totalTasks;
-        assert stats.getTotalOffered() == totalTasks;
-        assert stats.getTotalDeduplicated() == 0;
+        @Override
+        public String getTaskId() { return id; }
+        @Override
+        public String getData() { return id; }
+        @Override
+        public String getTaskType() { return "TEST"; }
+        @Override
+        public int getPriority() { return priority; }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,189 @@
+package com.wilsonkeh.loginmanagement.queue;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.wilsonkeh.loginmanagement.config.HazelcastConfig;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distributed Queue Lease Integration Test
+ * Verify that unacknowledged tasks are redelivered after the visibility timeout, that stale and
+ * acknowledged deliveries are not redelivered, that tasks held by a crashed member are taken over,
+ * and that tasks are abandoned after the maximum number of attempts
+ */
+class DistributedQueueLeaseIntegrationTest {
+
+    private static final long VISIBILITY_TIMEOUT_MS = 300;
+
+    private final List<DistributedDeduplicatingPriorityBlockingQueue<String>> queues = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (DistributedDeduplicatingPriorityBlockingQueue<String> queue : queues) {
+            queue.close();
+        }
+        Hazelcast.shutdownAll();
+    }
+
+    @Test
+    void testUnacknowledgedTasksAreRedelivered() throws InterruptedException {
+        HazelcastInstance instance = Hazelcast.newHazelcastInstance(createConfig());
+        DistributedDeduplicatingPriorityBlockingQueue<String> queue = createQueue(instance, 3);
+        int offered = 0;
+        for (int i = 0; i < 100; i++) {
+            if (queue.offer(new LeaseTask("task-" + i))) {
+                offered++;
+            }
+        }
+        assert offered == 100;
+
+        List<Task<String>> delivered = new ArrayList<>();
+        queue.drainTo(delivered, 100, 1, TimeUnit.SECONDS);
+        assert delivered.size() == 100;
+        assert queue.getInFlightCount() == 100;
+        // An in-flight task still holds its deduplication key
+        boolean inFlightDuplicateAdmitted = queue.offer(new LeaseTask("task-0"));
+        assert !inFlightDuplicateAdmitted;
+
+        // Workers finish 60 tasks, the other 40 fail or their worker died
+        queue.acknowledge(delivered.subList(0, 60));
+        assert queue.getInFlightCount() == 40;
+
+        List<Task<String>> redelivered = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        while (redelivered.size() < 40) {
+            int count = queue.drainTo(redelivered, 100, 2, TimeUnit.SECONDS);
+            assert count > 0 : "tasks were not redelivered";
+        }
+        long redeliveryMs = System.currentTimeMillis() - start;
+
+        Set<String> redeliveredIds = new HashSet<>();
+        for (Task<String> task : redelivered) {
+            redeliveredIds.add(task.getTaskId());
+        }
+        for (Task<String> task : delivered.subList(60, 100)) {
+            assert redeliveredIds.contains(task.getTaskId());
+        }
+
+        // A late acknowledgement of the first delivery does not acknowledge the redelivery
+        queue.acknowledge(delivered.subList(60, 100));
+        assert queue.getInFlightCount() == 40;
+        queue.acknowledge(redelivered);
+
+        System.out.println("=== Lease Redelivery Test ===");
+        System.out.println("Delivered: 100, acknowledged: 60, redelivered: " + redelivered.size()
+                + " after " + redeliveryMs + "ms");
+
+        assert redelivered.size() == 40;
+        assert queue.getTotalRedelivered() == 40;
+        assert queue.getInFlightCount() == 0;
+        assert queue.isEmpty();
+        assert queue.getStats().getDeduplicationMapSize() == 0;
+        // Every leased capacity permit is back in the local pool
+        assert queue.getLocalCapacityPermits() == queue.getLeasedCapacityPermits();
+    }
+
+    @Test
+    void testLeasesOfCrashedMemberAreTakenOver() throws InterruptedException {
+        HazelcastInstance survivor = Hazelcast.newHazelcastInstance(createConfig());
+        HazelcastInstance crashing = Hazelcast.newHazelcastInstance(createConfig());
+        DistributedDeduplicatingPriorityBlockingQueue<String> survivorQueue = createQueue(survivor, 3);
+        DistributedDeduplicatingPriorityBlockingQueue<String> crashingQueue = createQueue(crashing, 3);
+        int offered = 0;
+        for (int i = 0; i < 50; i++) {
+            if (survivorQueue.offer(new LeaseTask("task-" + i))) {
+                offered++;
+            }
+        }
+        assert offered == 50;
+
+        // The consumer on the second member takes every task, then its member dies
+        List<Task<String>> lost = new ArrayList<>();
+        crashingQueue.drainTo(lost, 100, 1, TimeUnit.SECONDS);
+        assert lost.size() == 50;
+        crashing.getLifecycleService().terminate();
+
+        List<Task<String>> recovered = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        while (recovered.size() < 50) {
+            int count = survivorQueue.drainTo(recovered, 100, 5, TimeUnit.SECONDS);
+            assert count > 0 : "leases of the crashed member were not taken over";
+        }
+        long recoveryMs = System.currentTimeMillis() - start;
+        survivorQueue.acknowledge(recovered);
+
+        System.out.println("=== Crashed Member Takeover Test ===");
+        System.out.println("Tasks held by crashed member: " + lost.size() + ", recovered: " + recovered.size()
+                + " after " + recoveryMs + "ms");
+
+        assert recovered.size() == 50;
+        assert survivorQueue.getInFlightCount() == 0;
+    }
+
+    @Test
+    void testTaskIsAbandonedAfterMaxAttempts() throws InterruptedException {
+        HazelcastInstance instance = Hazelcast.newHazelcastInstance(createConfig());
+        DistributedDeduplicatingPriorityBlockingQueue<String> queue = createQueue(instance, 2);
+        boolean admitted = queue.offer(new LeaseTask("poison"));
+        assert admitted;
+
+        // Two deliveries, neither acknowledged
+        List<Task<String>> deliveries = new ArrayList<>();
+        queue.drainTo(deliveries, 10, 1, TimeUnit.SECONDS);
+        queue.drainTo(deliveries, 10, 2, TimeUnit.SECONDS);
+        assert deliveries.size() == 2;
+
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (queue.getTotalAbandoned() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        System.out.println("=== Max Attempts Test ===");
+        System.out.println("Deliveries: " + deliveries.size() + ", abandoned: " + queue.getTotalAbandoned());
+
+        assert queue.getTotalAbandoned() == 1;
+        assert queue.getInFlightCount() == 0;
+        assert queue.isEmpty();
+        // The abandoned task released its deduplication key and capacity
+        boolean readmitted = queue.offer(new LeaseTask("poison"));
+        assert readmitted;
+    }
+
+    private DistributedDeduplicatingPriorityBlockingQueue<String> createQueue(HazelcastInstance instance,
+                                                                             int maxAttempts) {
+        DistributedDeduplicatingPriorityBlockingQueue<String> queue = new DistributedDeduplicatingPriorityBlockingQueue<>(
+            instance, 10_000, true, Task::getDeduplicationKey, 1,
+            DistributedDeduplicatingPriorityBlockingQueue.DEFAULT_CAPACITY_LEASE_SIZE, VISIBILITY_TIMEOUT_MS, maxAttempts);
+        queue.start();
+        queues.add(queue);
+        return queue;
+    }
+
+    private Config createConfig() {
+        Config config = new Config();
+        config.setClusterName("lease-queue-test");
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        config.getMapConfig(HazelcastConfig.TASK_IN_FLIGHT_MAP_NAME).setBackupCount(1);
+        LoginRecordDataSerializableFactory.register(config.getSerializationConfig());
+        return config;
+    }
+
+    private record LeaseTask(String taskId) implements Task<String> {
+        @Override
+        public String getTaskId() { return taskId; }
+        @Override
+        public String getData() { return taskId; }
+        @Override
+        public String getTaskType() { return "TEST"; }
+    }
+}
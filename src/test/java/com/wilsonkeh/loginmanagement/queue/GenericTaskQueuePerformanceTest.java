@@ -0,0 +1,595 @@
+package com.wilsonkeh.loginmanagement.queue;
+
+import com.wilsonkeh.loginmanagement.config.QueueConfig;
+import com.wilsonkeh.loginmanagement.monitoring.QueueMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.retry.annotation.AnnotationAwareRetryOperationsInterceptor;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generic Task Queue Performance Test
+ * Measure enqueue-to-processing latency at low load, batch fill at high load, adaptive batch sizing,
+ * uid-partitioned parallel batch execution on the shared executor, and virtual consumer threads
+ */
+class GenericTaskQueuePerformanceTest {
+
+    private static final ForkJoinPool SHARED_POOL = new ForkJoinPool(8, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+
+    @Test
+    void testLowLoadLatency() throws InterruptedException {
+        RecordingProcessor processor = new RecordingProcessor(0);
+        GenericTaskQueue<String> queue = createQueue(processor, 20, 50, 20);
+        queue.start();
+
+        try {
+            int rounds = 20;
+            long totalLatencyMs = 0;
+            for (int i = 0; i < rounds; i++) {
+                processor.expect(1);
+                long start = System.nanoTime();
+                queue.enqueueTask(new SimpleTask("low-" + i));
+                assert processor.await(5, TimeUnit.SECONDS);
+                totalLatencyMs += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            }
+
+            double averageLatencyMs = totalLatencyMs / (double) rounds;
+
+            System.out.println("=== Low Load Latency Test ===");
+            System.out.println("Linger: 20ms");
+            System.out.println("Average enqueue-to-processing latency: " + averageLatencyMs + "ms");
+
+            // A lone task waits at most the linger time, not a scheduling interval
+            assert averageLatencyMs < 500;
+        } finally {
+            queue.shutdown(5000);
+        }
+    }
+
+    @Test
+    void testVirtualConsumerThreads() throws InterruptedException {
+        Set<Boolean> consumerIsVirtual = ConcurrentHashMap.newKeySet();
+        RecordingProcessor processor = new RecordingProcessor(0) {
+            @Override
+            public void processBatch(List<Task<String>> tasks) throws Exception {
+                consumerIsVirtual.add(Thread.currentThread().isVirtual());
+                super.processBatch(tasks);
+            }
+        };
+        QueueConfig.QueueProperties properties = new QueueConfig.QueueProperties();
+        properties.setName("virtual-queue");
+        properties.setLingerMs(20);
+        properties.setMaxQueueSize(1000);
+        GenericTaskQueue<String> queue = new GenericTaskQueue<>("virtual-queue", properties, List.of(processor),
+                new QueueMetrics(new SimpleMeterRegistry()), createLanes(4), null, true);
+        processor.expect(100);
+        queue.start();
+
+        try {
+            for (int i = 0; i < 100; i++) {
+                queue.enqueueTask(new SimpleTask("virtual-" + i));
+            }
+            assert processor.await(5, TimeUnit.SECONDS);
+
+            System.out.println("=== Virtual Consumer Threads Test ===");
+            System.out.println("Consumer thread is virtual: " + consumerIsVirtual);
+            // In virtual thread mode the consumers no longer occupy platform threads
+            assert consumerIsVirtual.equals(Set.of(true));
+        } finally {
+            queue.shutdown(5000);
+        }
+    }
+
+    @Test
+    void testHighLoadBatchFill() throws InterruptedException {
+        // Slow processor lets a backlog build up while a batch is being persisted
+        RecordingProcessor processor = new RecordingProcessor(5);
+        GenericTaskQueue<String> queue = createQueue(processor, 20, 50, 20);
+        int taskCount = 5_000;
+        processor.expect(taskCount);
+        queue.start();
+
+        try {
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < taskCount; i++) {
+                while (!queue.enqueueTask(new SimpleTask("high-" + i))) {
+                    Thread.sleep(1);
+                }
+            }
+            assert processor.await(60, TimeUnit.SECONDS);
+            long duration = Math.max(1, System.currentTimeMillis() - start);
+
+            double averageBatchSize = taskCount / (double) processor.batchSizes.size();
+
+            System.out.println("=== High Load Batch Fill Test ===");
+            System.out.println("Total tasks: " + taskCount);
+            System.out.println("Batches: " + processor.batchSizes.size());
+            System.out.println("Average batch size: " + String.format("%.2f", averageBatchSize));
+            System.out.println("Total time: " + duration + "ms");
+
+            assert queue.getStatistics().getTotalProcessed() == taskCount;
+            // Most batches should be at or above batchSize under sustained load
+            assert averageBatchSize >= 20;
+        } finally {
+            queue.shutdown(5000);
+        }
+    }
+
+    @Test
+    void testAdaptiveBatchSizing() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(20, 5, 500, 200, AdaptiveBatchSizer.DEFAULT_WINDOW_SIZE);
+
+        // Night: 0.5ms per row, a 200ms budget fits about 380 rows
+        int nightSize = simulate(sizer, 0.5, 2_000);
+        // Day: 5ms per row, a 200ms budget fits about 38 rows
+        int daySize = simulate(sizer, 5.0, 2_000);
+        // Back to night: the sizer grows again
+        int recoveredSize = simulate(sizer, 0.5, 2_000);
+
+        System.out.println("=== Adaptive Batch Sizing Test ===");
+        System.out.println("Night batch size: " + nightSize);
+        System.out.println("Day batch size: " + daySize);
+        System.out.println("Recovered night batch size: " + recoveredSize);
+
+        // AIMD saw-tooths around the budget, so allow headroom above the ideal size
+        assert nightSize > 200;
+        assert daySize < 60;
+        assert recoveredSize > 200;
+    }
+
+    @Test
+    void testSharedParallelExecution() throws Exception {
+        int batches = 2_000;
+        int parallelism = 4;
+        List<Task<String>> batch = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            batch.add(new SimpleTask("parallel-" + i));
+        }
+        RecordingProcessor processor = new RecordingProcessor(0);
+
+        // Previous behaviour: a new fixed thread pool per batch
+        processor.expect(batches * batch.size());
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < batches; i++) {
+            try (ExecutorService perBatchPool = Executors.newFixedThreadPool(parallelism)) {
+                Executor[] lanes = new Executor[parallelism];
+                Arrays.fill(lanes, perBatchPool);
+                processor.processBatchParallel(batch, lanes);
+            }
+        }
+        long perBatchPoolMs = Math.max(1, System.currentTimeMillis() - start);
+        assert processor.await(5, TimeUnit.SECONDS);
+
+        // Shared work-stealing pool behind serial lanes
+        Executor[] lanes = createLanes(parallelism);
+        processor.expect(batches * batch.size());
+        start = System.currentTimeMillis();
+        for (int i = 0; i < batches; i++) {
+            processor.processBatchParallel(batch, lanes);
+        }
+        long sharedPoolMs = Math.max(1, System.currentTimeMillis() - start);
+        assert processor.await(5, TimeUnit.SECONDS);
+
+        System.out.println("=== Shared Parallel Execution Test ===");
+        System.out.println("Batches: " + batches + ", parallelism: " + parallelism);
+        System.out.println("Per-batch thread pool: " + perBatchPoolMs + "ms");
+        System.out.println("Shared work-stealing pool: " + sharedPoolMs + "ms");
+    }
+
+    @Test
+    void testQueueConcurrencyQuota() throws InterruptedException {
+        int quota = 3;
+        Executor quotaExecutor = new BatchExecutionEngine.QuotaExecutor(SHARED_POOL, quota);
+        AtomicInteger running = new AtomicInteger(0);
+        AtomicInteger maxRunning = new AtomicInteger(0);
+        int taskCount = 200;
+        CountDownLatch latch = new CountDownLatch(taskCount);
+
+        for (int i = 0; i < taskCount; i++) {
+            quotaExecutor.execute(() -> {
+                int current = running.incrementAndGet();
+                maxRunning.accumulateAndGet(current, Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                latch.countDown();
+            });
+        }
+
+        assert latch.await(30, TimeUnit.SECONDS);
+
+        System.out.println("=== Queue Concurrency Quota Test ===");
+        System.out.println("Quota: " + quota + ", max observed concurrency: " + maxRunning.get());
+
+        // The shared pool has 8 workers but this queue never uses more than its quota
+        assert maxRunning.get() <= quota;
+    }
+
+    @Test
+    void testLanesOnThrottledExecutorDoNotDeadlock() throws InterruptedException {
+        // A delegate whose execute blocks at its concurrency limit, like a throttled virtual-thread executor:
+        // a finishing sub-task must not wait inside the delegate for a permit that it holds itself
+        SimpleAsyncTaskExecutor throttled = new SimpleAsyncTaskExecutor("Throttled-");
+        throttled.setVirtualThreads(true);
+        throttled.setConcurrencyLimit(2);
+        Executor[] lanes = new Executor[2];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new BatchExecutionEngine.QuotaExecutor(throttled, 1);
+        }
+        int tasksPerLane = 50;
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(lanes.length * tasksPerLane);
+
+        // The first sub-task of each lane holds one of the two permits until the rest are queued behind it
+        for (Executor lane : lanes) {
+            lane.execute(() -> {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                latch.countDown();
+            });
+        }
+        for (int i = 1; i < tasksPerLane; i++) {
+            for (Executor lane : lanes) {
+                lane.execute(latch::countDown);
+            }
+        }
+        gate.countDown();
+
+        boolean completed = latch.await(10, TimeUnit.SECONDS);
+        System.out.println("=== Throttled Delegate Test ===");
+        System.out.println("Completed: " + completed + ", remaining: " + latch.getCount());
+        assert completed;
+    }
+
+    @Test
+    void testUidLaneOrdering() throws Exception {
+        int users = 50;
+        int loginsPerUser = 40;
+        LaneRecordingProcessor processor = new LaneRecordingProcessor();
+        Executor[] lanes = createLanes(4);
+
+        // Interleave users so every batch mixes many uids
+        List<Task<String>> tasks = new ArrayList<>();
+        for (int seq = 0; seq < loginsPerUser; seq++) {
+            for (int user = 0; user < users; user++) {
+                tasks.add(new UidTask("uid-" + user, seq));
+            }
+        }
+        for (int i = 0; i < tasks.size(); i += 100) {
+            processor.processBatchParallel(tasks.subList(i, Math.min(i + 100, tasks.size())), lanes);
+        }
+
+        System.out.println("=== Uid Lane Ordering Test ===");
+        System.out.println("Users: " + users + ", logins per user: " + loginsPerUser);
+        System.out.println("Lane batches: " + processor.laneBatches.get()
+                + ", uid groups coalesced per lane batch: " + processor.coalescedGroups.get());
+        System.out.println("Max concurrent batches for one uid: " + processor.maxConcurrentPerUid.get());
+
+        for (int user = 0; user < users; user++) {
+            List<Integer> sequence = processor.sequences.get("uid-" + user);
+            assert sequence.size() == loginsPerUser;
+            for (int seq = 0; seq < loginsPerUser; seq++) {
+                assert sequence.get(seq) == seq : "uid-" + user + " out of order: " + sequence;
+            }
+        }
+        // A uid is never processed by two lanes at once
+        assert processor.maxConcurrentPerUid.get() == 1;
+    }
+
+    @Test
+    void testOnlyFailedLaneIsCountedAsFailed() throws InterruptedException {
+        int users = 20;
+        int loginsPerUser = 5;
+        int laneCount = 4;
+        FailingUidProcessor processor = new FailingUidProcessor("uid-0");
+        GenericTaskQueue<String> queue = createQueue(processor, 200, 200, 50, true);
+
+        int expectedFailed = 0;
+        for (int seq = 0; seq < loginsPerUser; seq++) {
+            for (int user = 0; user < users; user++) {
+                UidTask task = new UidTask("uid-" + user, seq);
+                queue.enqueueTask(task);
+                if (TaskProcessor.laneOf(task, laneCount) == TaskProcessor.laneOf(new UidTask("uid-0", 0), laneCount)) {
+                    expectedFailed++;
+                }
+            }
+        }
+        int total = users * loginsPerUser;
+
+        queue.start();
+        try {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (queue.getStatistics().getTotalProcessed() + queue.getStatistics().getTotalFailed() < total
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            queue.shutdown(5000);
+        }
+        long processed = queue.getStatistics().getTotalProcessed();
+        long failed = queue.getStatistics().getTotalFailed();
+
+        System.out.println("=== Failed Lane Isolation Test ===");
+        System.out.println("Tasks: " + total + ", processed: " + processed + ", failed: " + failed
+                + ", committed by other lanes: " + processor.committed.get());
+
+        // Only the lane holding the failing uid fails, the other lanes stay committed
+        assert expectedFailed < total;
+        assert failed == expectedFailed;
+        assert processed == total - expectedFailed;
+        assert processor.committed.get() == total - expectedFailed;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testParallelLanesAreRetriedThroughProxy() throws InterruptedException {
+        int users = 20;
+        int loginsPerUser = 5;
+        // Same retry advice Spring applies to the processor bean
+        FlakyLaneProcessor target = new FlakyLaneProcessor();
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addInterface(TaskProcessor.class);
+        proxyFactory.addAdvisor(new DefaultPointcutAdvisor(new AnnotationAwareRetryOperationsInterceptor()));
+        TaskProcessor<String> processor = (TaskProcessor<String>) proxyFactory.getProxy();
+        GenericTaskQueue<String> queue = createQueue(processor, 200, 200, 50, true);
+
+        for (int seq = 0; seq < loginsPerUser; seq++) {
+            for (int user = 0; user < users; user++) {
+                queue.enqueueTask(new UidTask("uid-" + user, seq));
+            }
+        }
+        int total = users * loginsPerUser;
+
+        queue.start();
+        try {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (queue.getStatistics().getTotalProcessed() + queue.getStatistics().getTotalFailed() < total
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            queue.shutdown(5000);
+        }
+        long processed = queue.getStatistics().getTotalProcessed();
+        long failed = queue.getStatistics().getTotalFailed();
+
+        System.out.println("=== Parallel Lane Retry Test ===");
+        System.out.println("Tasks: " + total + ", processed: " + processed + ", failed: " + failed
+                + ", lane attempts: " + target.attempts.get() + ", lanes: " + target.lanes.size());
+
+        // Every lane fails once and succeeds on the retry applied by the proxy
+        assert failed == 0;
+        assert processed == total;
+        assert target.attempts.get() == 2 * target.lanes.size();
+    }
+
+    /**
+     * Feed full batches whose latency is 10ms fixed cost plus a per-row cost, return the settled batch size
+     */
+    private int simulate(AdaptiveBatchSizer sizer, double perRowMs, int batches) {
+        for (int i = 0; i < batches; i++) {
+            int size = sizer.getCurrentBatchSize();
+            long latencyNanos = (long) ((10 + perRowMs * size) * 1_000_000);
+            sizer.record(size, latencyNanos);
+        }
+        return sizer.getCurrentBatchSize();
+    }
+
+    private Executor[] createLanes(int laneCount) {
+        Executor[] lanes = new Executor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new BatchExecutionEngine.QuotaExecutor(SHARED_POOL, 1);
+        }
+        return lanes;
+    }
+
+    private GenericTaskQueue<String> createQueue(TaskProcessor<String> processor, int batchSize,
+                                                 int maxBatchSize, long lingerMs) {
+        return createQueue(processor, batchSize, maxBatchSize, lingerMs, false);
+    }
+
+    private GenericTaskQueue<String> createQueue(TaskProcessor<String> processor, int batchSize,
+                                                 int maxBatchSize, long lingerMs, boolean parallel) {
+        QueueConfig.QueueProperties properties = new QueueConfig.QueueProperties();
+        properties.setEnableParallelProcessing(parallel);
+        properties.setName("test-queue");
+        properties.setBatchSize(batchSize);
+        properties.setMaxBatchSize(maxBatchSize);
+        properties.setLingerMs(lingerMs);
+        properties.setMaxQueueSize(1000);
+        return new GenericTaskQueue<>("test-queue", properties, List.of(processor),
+                new QueueMetrics(new SimpleMeterRegistry()), createLanes(4), null);
+    }
+
+    /**
+     * Processor that records batch sizes and counts processed tasks
+     */
+    private static class RecordingProcessor implements TaskProcessor<String> {
+        private final long batchDelayMs;
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch latch = new CountDownLatch(0);
+
+        RecordingProcessor(long batchDelayMs) {
+            this.batchDelayMs = batchDelayMs;
+        }
+
+        void expect(int taskCount) {
+            latch = new CountDownLatch(taskCount);
+        }
+
+        boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            return latch.await(timeout, unit);
+        }
+
+        @Override
+        public void processTask(Task<String> task) {
+            latch.countDown();
+        }
+
+        @Override
+        public void processBatch(List<Task<String>> tasks) throws Exception {
+            if (batchDelayMs > 0) {
+                Thread.sleep(batchDelayMs);
+            }
+            batchSizes.add(tasks.size());
+            for (Task<String> task : tasks) {
+                processTask(task);
+            }
+        }
+
+        @Override
+        public String getSupportedTaskType() {
+            return "TEST";
+        }
+    }
+
+    /**
+     * Processor that records the per-uid processing order and concurrency
+     */
+    private static class LaneRecordingProcessor implements TaskProcessor<String> {
+        private final Map<String, List<Integer>> sequences = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+        private final AtomicInteger maxConcurrentPerUid = new AtomicInteger(0);
+        private final AtomicInteger laneBatches = new AtomicInteger(0);
+        private final AtomicInteger coalescedGroups = new AtomicInteger(0);
+
+        @Override
+        public void processTask(Task<String> task) {
+            UidTask uidTask = (UidTask) task;
+            sequences.computeIfAbsent(uidTask.uid(), uid -> new CopyOnWriteArrayList<>()).add(uidTask.seq());
+        }
+
+        @Override
+        public void processBatch(List<Task<String>> tasks) {
+            laneBatches.incrementAndGet();
+            Map<String, List<Task<String>>> byUid = new LinkedHashMap<>();
+            for (Task<String> task : tasks) {
+                byUid.computeIfAbsent(task.getPartitionKey(), uid -> new ArrayList<>()).add(task);
+            }
+            coalescedGroups.addAndGet(byUid.size());
+            for (Map.Entry<String, List<Task<String>>> entry : byUid.entrySet()) {
+                AtomicInteger counter = inFlight.computeIfAbsent(entry.getKey(), uid -> new AtomicInteger(0));
+                maxConcurrentPerUid.accumulateAndGet(counter.incrementAndGet(), Math::max);
+                try {
+                    Thread.yield();
+                    for (Task<String> task : entry.getValue()) {
+                        processTask(task);
+                    }
+                } finally {
+                    counter.decrementAndGet();
+                }
+            }
+        }
+
+        @Override
+        public String getSupportedTaskType() {
+            return "TEST";
+        }
+    }
+
+    /**
+     * Processor whose lane batches fail whenever they contain the given uid
+     */
+    private static class FailingUidProcessor implements TaskProcessor<String> {
+        private final String failingUid;
+        private final AtomicInteger committed = new AtomicInteger(0);
+
+        FailingUidProcessor(String failingUid) {
+            this.failingUid = failingUid;
+        }
+
+        @Override
+        public void processTask(Task<String> task) {
+            committed.incrementAndGet();
+        }
+
+        @Override
+        public void processBatch(List<Task<String>> tasks) throws Exception {
+            for (Task<String> task : tasks) {
+                if (failingUid.equals(task.getPartitionKey())) {
+                    throw new IllegalStateException("database unavailable for " + failingUid);
+                }
+            }
+            for (Task<String> task : tasks) {
+                processTask(task);
+            }
+        }
+
+        @Override
+        public String getSupportedTaskType() {
+            return "TEST";
+        }
+    }
+
+    /**
+     * Processor whose lane batches fail on the first attempt and succeed when retried
+     */
+    private static class FlakyLaneProcessor implements TaskProcessor<String> {
+        private final Set<String> lanes = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger attempts = new AtomicInteger(0);
+
+        @Override
+        public void processTask(Task<String> task) {
+        }
+
+        @Override
+        @Retryable(value = {Exception.class}, maxAttempts = 3, backoff = @Backoff(delay = 1))
+        public void processBatch(List<Task<String>> tasks) throws Exception {
+            attempts.incrementAndGet();
+            if (lanes.add(tasks.get(0).getTaskId())) {
+                throw new IllegalStateException("transient failure of lane " + tasks.get(0).getPartitionKey());
+            }
+        }
+
+        @Override
+        public String getSupportedTaskType() {
+            return "TEST";
+        }
+    }
+
+    private record UidTask(String uid, int seq) implements Task<String> {
+        @Override
+        public String getTaskId() { return uid + "-" + seq; }
+        @Override
+        public String getData() { return uid; }
+        @Override
+        public String getTaskType() { return "TEST"; }
+        @Override
+        public String getPartitionKey() { return uid; }
+    }
+
+    private record SimpleTask(String id) implements Task<String> {
+        @Override
+        public String getTaskId() { return id; }
+        @Override
+        public String getData() { return id; }
+        @Override
+        public String getTaskType() { return "TEST"; }
+    }
+}
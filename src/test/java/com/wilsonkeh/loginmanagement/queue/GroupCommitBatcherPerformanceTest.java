@@ -0,0 +1,126 @@
+package com.wilsonkeh.loginmanagement.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Group Commit Batcher Performance Test
+ * Compare one cluster round trip per offer against group commit, which collects offers
+ * from many request threads and submits them with one round trip
+ */
+class GroupCommitBatcherPerformanceTest {
+
+    // Simulated latency of one Hazelcast round trip, independent of batch size
+    private static final long ROUND_TRIP_MS = 1;
+
+    @Test
+    void testGroupCommitThroughput() throws Exception {
+        int requestCount = 5_000;
+        AtomicInteger roundTrips = new AtomicInteger(0);
+        Function<List<Integer>, List<OfferResult>> offerAll = elements -> {
+            roundTrips.incrementAndGet();
+            sleep(ROUND_TRIP_MS);
+            List<OfferResult> results = new ArrayList<>(elements.size());
+            for (int i = 0; i < elements.size(); i++) {
+                results.add(OfferResult.ACCEPTED);
+            }
+            return results;
+        };
+
+        // One round trip per request thread
+        long directMs = runRequests(requestCount, element -> offerAll.apply(List.of(element)).get(0));
+        int directRoundTrips = roundTrips.getAndSet(0);
+
+        // Offers from all request threads share round trips
+        GroupCommitBatcher<Integer> batcher = new GroupCommitBatcher<>("test-group-commit", offerAll, 256, 200);
+        batcher.start();
+        long groupCommitMs;
+        try {
+            groupCommitMs = runRequests(requestCount, batcher::submit);
+        } finally {
+            batcher.shutdown(5000);
+        }
+        int groupCommitRoundTrips = roundTrips.get();
+
+        System.out.println("=== Group Commit Throughput Test ===");
+        System.out.println("Requests: " + requestCount);
+        System.out.println("Direct: " + directMs + "ms, round trips: " + directRoundTrips
+                + ", throughput: " + (requestCount * 1000L / directMs) + " ops/sec");
+        System.out.println("Group commit: " + groupCommitMs + "ms, round trips: " + groupCommitRoundTrips
+                + ", throughput: " + (requestCount * 1000L / groupCommitMs) + " ops/sec");
+
+        assert directRoundTrips == requestCount;
+        assert batcher.getTotalSubmitted() == requestCount;
+        assert groupCommitRoundTrips < requestCount / 2;
+    }
+
+    @Test
+    void testPerCallerResults() throws Exception {
+        // Reject odd elements as duplicates or queue full so every caller must receive its own result, not the batch's
+        GroupCommitBatcher<Integer> batcher = new GroupCommitBatcher<>("test-group-commit", elements -> {
+            List<OfferResult> results = new ArrayList<>(elements.size());
+            for (Integer element : elements) {
+                results.add(expectedResult(element));
+            }
+            return results;
+        }, 64, 500);
+        batcher.start();
+
+        try {
+            List<CompletableFuture<OfferResult>> futures = new ArrayList<>();
+            for (int i = 0; i < 1_000; i++) {
+                futures.add(batcher.submitAsync(i));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assert futures.get(i).get(5, TimeUnit.SECONDS) == expectedResult(i) : "wrong result for " + i;
+            }
+
+            System.out.println("=== Per Caller Results Test ===");
+            System.out.println("Submitted: " + batcher.getTotalSubmitted() + ", flushes: " + batcher.getTotalFlushes());
+            assert batcher.getTotalFlushes() < 1_000;
+        } finally {
+            batcher.shutdown(5000);
+        }
+    }
+
+    private static OfferResult expectedResult(int element) {
+        if (element % 2 == 0) {
+            return OfferResult.ACCEPTED;
+        }
+        return element % 4 == 1 ? OfferResult.DUPLICATE : OfferResult.QUEUE_FULL;
+    }
+
+    private long runRequests(int requestCount, Function<Integer, OfferResult> offer) throws InterruptedException {
+        AtomicInteger accepted = new AtomicInteger(0);
+        long start = System.currentTimeMillis();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requestCount; i++) {
+                int element = i;
+                executor.submit(() -> {
+                    if (offer.apply(element).isAccepted()) {
+                        accepted.incrementAndGet();
+                    }
+                });
+            }
+        }
+        long duration = Math.max(1, System.currentTimeMillis() - start);
+        assert accepted.get() == requestCount;
+        return duration;
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
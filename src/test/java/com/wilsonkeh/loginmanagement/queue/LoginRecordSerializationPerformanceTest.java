@@ -0,0 +1,157 @@
+package com.wilsonkeh.loginmanagement.queue;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.internal.nio.BufferObjectDataInput;
+import com.hazelcast.internal.nio.BufferObjectDataOutput;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.internal.serialization.impl.compact.Schema;
+import com.hazelcast.internal.serialization.impl.compact.SchemaService;
+import com.wilsonkeh.loginmanagement.dto.LoginRecordRequest;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordRequestSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Login Record Serialization Performance Test
+ * Compare bytes and nanoseconds per task between Hazelcast's default encoding of
+ * LoginRecordRequest and the dedicated binary serializer
+ */
+class LoginRecordSerializationPerformanceTest {
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int MEASURED_ITERATIONS = 100_000;
+
+    @Test
+    void testSerializationSizeAndSpeed() {
+        LoginRecordTask task = new LoginRecordTask(createRequest());
+
+        // Previous setup: only the data-serializable factory. The record is not Serializable,
+        // so Hazelcast falls back to zero-config reflective Compact serialization
+        SerializationConfig defaultConfig = new SerializationConfig();
+        defaultConfig.addDataSerializableFactory(LoginRecordDataSerializableFactory.FACTORY_ID,
+                new LoginRecordDataSerializableFactory());
+        InternalSerializationService defaultService = createService(defaultConfig);
+
+        SerializationConfig binaryConfig = new SerializationConfig();
+        LoginRecordDataSerializableFactory.register(binaryConfig);
+        InternalSerializationService binaryService = createService(binaryConfig);
+
+        int defaultBytes = defaultService.toData(task).totalSize();
+        int binaryBytes = binaryService.toData(task).totalSize();
+        double defaultNanos = measureRoundTrip(defaultService, task);
+        double binaryNanos = measureRoundTrip(binaryService, task);
+
+        System.out.println("=== Login Record Serialization Test ===");
+        System.out.println("Default encoding: " + defaultBytes + " bytes/task, "
+                + String.format("%.0f", defaultNanos) + " ns/round trip");
+        System.out.println("Binary serializer: " + binaryBytes + " bytes/task, "
+                + String.format("%.0f", binaryNanos) + " ns/round trip");
+
+        LoginRecordTask decoded = binaryService.toObject(binaryService.toData(task));
+        assert decoded.getData().equals(task.getData());
+        assert decoded.getTaskId().equals(task.getTaskId());
+        assert binaryBytes < defaultBytes;
+    }
+
+    @Test
+    void testSchemaEvolution() throws Exception {
+        InternalSerializationService service = createService(new SerializationConfig());
+        LoginRecordRequest request = createRequest();
+
+        // A newer writer appends one more String field and bumps the version
+        BufferObjectDataOutput out = service.createObjectDataOutput();
+        out.writeByte(LoginRecordRequestSerializer.VERSION + 1);
+        out.writeByte(16);
+        out.writeString(request.uid());
+        out.writeString(request.username());
+        out.writeString(request.ipAddress());
+        out.writeInt((int) request.loginTime().toLocalDate().toEpochDay());
+        out.writeLong(request.loginTime().toLocalTime().toNanoOfDay());
+        out.writeString(request.loginMethod());
+        out.writeString(request.passwordStrength());
+        out.writeString(request.userAgent());
+        out.writeString(request.traceId());
+        out.writeString(request.fingerprint());
+        out.writeString(request.sessionId());
+        out.writeString(request.deviceType());
+        out.writeString(request.browserInfo());
+        out.writeString(request.osInfo());
+        out.writeString(request.locationCountry());
+        out.writeString(request.locationCity());
+        out.writeString("field-added-in-v2");
+        out.writeString("trailing-data");
+
+        BufferObjectDataInput in = service.createObjectDataInput(out.toByteArray());
+        LoginRecordRequest decoded = new LoginRecordRequestSerializer().read(in);
+
+        System.out.println("=== Schema Evolution Test ===");
+        System.out.println("Decoded newer payload: " + decoded.traceId());
+
+        // The current reader keeps every known field and skips the appended one
+        assert decoded.equals(request);
+        assert "trailing-data".equals(in.readString());
+    }
+
+    private double measureRoundTrip(InternalSerializationService service, LoginRecordTask task) {
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            checksum += roundTrip(service, task);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            checksum += roundTrip(service, task);
+        }
+        long duration = System.nanoTime() - start;
+        assert checksum > 0;
+        return duration / (double) MEASURED_ITERATIONS;
+    }
+
+    private int roundTrip(InternalSerializationService service, LoginRecordTask task) {
+        Data data = service.toData(task);
+        LoginRecordTask decoded = service.toObject(data);
+        return decoded.getPriority() + data.totalSize();
+    }
+
+    private InternalSerializationService createService(SerializationConfig config) {
+        return new DefaultSerializationServiceBuilder()
+                .setConfig(config)
+                .setSchemaService(new InMemorySchemaService())
+                .build();
+    }
+
+    /**
+     * Schema registry for Compact serialization, normally replicated by the cluster
+     */
+    private static class InMemorySchemaService implements SchemaService {
+        private final Map<Long, Schema> schemas = new ConcurrentHashMap<>();
+
+        @Override
+        public Schema get(long schemaId) {
+            return schemas.get(schemaId);
+        }
+
+        @Override
+        public void put(Schema schema) {
+            schemas.put(schema.getSchemaId(), schema);
+        }
+
+        @Override
+        public void putLocal(Schema schema) {
+            put(schema);
+        }
+    }
+
+    private LoginRecordRequest createRequest() {
+        return new LoginRecordRequest(
+                "user-10086", "zhangsan", "203.0.113.42", LocalDateTime.of(2024, 5, 1, 8, 30, 15, 123_000_000),
+                "PASSWORD", "STRONG", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36",
+                "trace-7f3c9a2e-4b1d-4e8a-9c6f-1a2b3c4d5e6f", "fp-9a8b7c6d", "session-123456",
+                "DESKTOP", "Chrome 124", "Windows 11", "CN", "Shanghai");
+    }
+}
@@ -0,0 +1,134 @@
+package com.wilsonkeh.loginmanagement.queue;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sharded Distributed Queue Integration Test
+ * Verify that uid-keyed tasks spread across shard queues, each uid stays in one shard
+ * and consumers drain every shard
+ */
+class ShardedDistributedQueueIntegrationTest {
+
+    private static final int SHARDS = 8;
+
+    private HazelcastInstance hazelcastInstance;
+    private DistributedDeduplicatingPriorityBlockingQueue<String> queue;
+
+    @BeforeEach
+    void setUp() {
+        Config config = new Config();
+        config.setClusterName("sharded-queue-test");
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        LoginRecordDataSerializableFactory.register(config.getSerializationConfig());
+        hazelcastInstance = Hazelcast.newHazelcastInstance(config);
+        queue = new DistributedDeduplicatingPriorityBlockingQueue<>(
+            hazelcastInstance, 10_000, true, Task::getDeduplicationKey, SHARDS);
+        queue.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.clear();
+        }
+        if (hazelcastInstance != null) {
+            hazelcastInstance.shutdown();
+        }
+    }
+
+    @Test
+    void testTasksSpreadAcrossShards() throws InterruptedException {
+        int users = 200;
+        int loginsPerUser = 5;
+        List<Task<String>> tasks = new ArrayList<>();
+        for (int seq = 0; seq < loginsPerUser; seq++) {
+            for (int user = 0; user < users; user++) {
+                tasks.add(new UidTask("uid-" + user, seq));
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        List<Boolean> results = queue.offerAll(tasks);
+        long offerMs = System.currentTimeMillis() - start;
+        assert results.stream().allMatch(Boolean::booleanValue);
+        assert queue.size() == tasks.size();
+
+        // Every uid lives in exactly one shard
+        Map<String, Integer> uidShards = new HashMap<>();
+        int usedShards = 0;
+        for (int shard = 0; shard < SHARDS; shard++) {
+            String name = DistributedDeduplicatingPriorityBlockingQueue.shardQueueName(shard, SHARDS);
+            int shardSize = hazelcastInstance.<Task<String>>getQueue(name).size();
+            if (shardSize > 0) {
+                usedShards++;
+            }
+            for (Task<String> task : hazelcastInstance.<Task<String>>getQueue(name)) {
+                Integer previous = uidShards.put(task.getPartitionKey(), shard);
+                assert previous == null || previous == shard : task.getPartitionKey() + " found in two shards";
+            }
+        }
+
+        // A single member owns every shard, so every shard is drained
+        List<Task<String>> drained = new ArrayList<>();
+        start = System.currentTimeMillis();
+        while (drained.size() < tasks.size()) {
+            int count = queue.drainTo(drained, 100, 1, TimeUnit.SECONDS);
+            assert count > 0;
+        }
+        long drainMs = System.currentTimeMillis() - start;
+
+        System.out.println("=== Sharded Distributed Queue Test ===");
+        System.out.println("Shards: " + SHARDS + ", used: " + usedShards + ", local: " + queue.getLocalShardCount());
+        System.out.println("Tasks: " + tasks.size() + ", offerAll: " + offerMs + "ms, drain: " + drainMs + "ms");
+
+        assert usedShards == SHARDS;
+        assert queue.getLocalShardCount() == SHARDS;
+        assert queue.isEmpty();
+        assert queue.getStats().getTotalPolled() == tasks.size();
+    }
+
+    @Test
+    void testCapacityAcrossShards() {
+        DistributedDeduplicatingPriorityBlockingQueue<String> smallQueue = new DistributedDeduplicatingPriorityBlockingQueue<>(
+            hazelcastInstance, 2, true, Task::getDeduplicationKey, SHARDS);
+        smallQueue.start();
+
+        // Capacity is shared by all shards, whichever shard each uid hashes to
+        boolean firstAdmitted = smallQueue.offer(new UidTask("uid-a", 0));
+        boolean secondAdmitted = smallQueue.offer(new UidTask("uid-b", 0));
+        boolean overflowAdmitted = smallQueue.offer(new UidTask("uid-c", 0));
+
+        // The rejected task's dedup key was rolled back, and polling returns its permit
+        Task<String> polled = smallQueue.poll();
+        boolean retryAdmitted = smallQueue.offer(new UidTask("uid-c", 0));
+
+        assert firstAdmitted && secondAdmitted;
+        assert !overflowAdmitted;
+        assert polled != null;
+        assert retryAdmitted;
+        assert smallQueue.getLeasedCapacityPermits() == 2;
+    }
+
+    private record UidTask(String uid, int seq) implements Task<String> {
+        @Override
+        public String getTaskId() { return uid + "-" + seq; }
+        @Override
+        public String getData() { return uid; }
+        @Override
+        public String getTaskType() { return "TEST"; }
+        @Override
+        public String getPartitionKey() { return uid; }
+    }
+}
@@ -0,0 +1,119 @@
+package com.wilsonkeh.loginmanagement.queue;
+
+import com.wilsonkeh.loginmanagement.dto.LoginRecordRequest;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Virtual Thread Execution Performance Test
+ * Compare platform thread pools and virtual threads on the enqueue and persist paths,
+ * both of which spend most of their time blocked on Hazelcast or JDBC round trips
+ */
+class VirtualThreadExecutionPerformanceTest {
+
+    // Simulated latency of a Hazelcast round trip on the enqueue path
+    private static final long ENQUEUE_BLOCKING_MS = 1;
+
+    // Simulated latency of a JDBC insert on the persist path
+    private static final long PERSIST_BLOCKING_MS = 2;
+
+    @Test
+    void testEnqueuePathPerformance() throws InterruptedException {
+        int requestCount = 10_000;
+
+        // Tomcat default max threads vs one virtual thread per request
+        long platformMs = runEnqueuePath(Executors.newFixedThreadPool(200), requestCount);
+        long virtualMs = runEnqueuePath(Executors.newVirtualThreadPerTaskExecutor(), requestCount);
+
+        printResult("Enqueue Path", requestCount, platformMs, virtualMs);
+    }
+
+    @Test
+    void testPersistPathPerformance() throws InterruptedException {
+        int taskCount = 2_000;
+
+        // loginRecordTaskExecutor max pool size vs one virtual thread per task
+        long platformMs = runPersistPath(Executors.newFixedThreadPool(20), taskCount);
+        long virtualMs = runPersistPath(Executors.newVirtualThreadPerTaskExecutor(), taskCount);
+
+        printResult("Persist Path", taskCount, platformMs, virtualMs);
+    }
+
+    private long runEnqueuePath(ExecutorService executor, int requestCount) throws InterruptedException {
+        DeduplicatingPriorityBlockingQueue<LoginRecordRequest> queue =
+                new DeduplicatingPriorityBlockingQueue<>(requestCount, true, Task::getDeduplicationKey);
+
+        long duration = runBlockingWorkload(executor, requestCount, index -> {
+            sleep(ENQUEUE_BLOCKING_MS);
+            queue.offer(new LoginRecordTask(createRequest(index)));
+        });
+
+        assert queue.size() == requestCount;
+        return duration;
+    }
+
+    private long runPersistPath(ExecutorService executor, int taskCount) throws InterruptedException {
+        AtomicInteger persisted = new AtomicInteger(0);
+
+        long duration = runBlockingWorkload(executor, taskCount, index -> {
+            sleep(PERSIST_BLOCKING_MS);
+            persisted.incrementAndGet();
+        });
+
+        assert persisted.get() == taskCount;
+        return duration;
+    }
+
+    private long runBlockingWorkload(ExecutorService executor, int taskCount,
+                                     IntConsumer work) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(taskCount);
+        long start = System.currentTimeMillis();
+
+        try (executor) {
+            for (int i = 0; i < taskCount; i++) {
+                final int index = i;
+                executor.submit(() -> {
+                    try {
+                        work.accept(index);
+                    } finally {
+                        latch.countDown();
+                    }
+                });
+            }
+            latch.await(60, TimeUnit.SECONDS);
+        }
+
+        return System.currentTimeMillis() - start;
+    }
+
+    private void printResult(String path, int taskCount, long platformMs, long virtualMs) {
+        System.out.println("=== " + path + " Performance Test ===");
+        System.out.println("Total tasks: " + taskCount);
+        System.out.println("Platform threads: " + platformMs + "ms, throughput: "
+                + String.format("%.2f", taskCount * 1000.0 / Math.max(1, platformMs)) + " tasks/sec");
+        System.out.println("Virtual threads: " + virtualMs + "ms, throughput: "
+                + String.format("%.2f", taskCount * 1000.0 / Math.max(1, virtualMs)) + " tasks/sec");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static LoginRecordRequest createRequest(int index) {
+        return new LoginRecordRequest(
+            "user-" + index, "user" + index, "192.168.1." + (index % 255),
+            LocalDateTime.now(), "PASSWORD", "STRONG", "Mozilla/5.0",
+            "trace-" + index, "fp-" + index, null, "DESKTOP", "Chrome", "Windows 10", "CN", "Beijing");
+    }
+}
@@ -0,0 +1,208 @@
+package com.wilsonkeh.loginmanagement.queue.deadletter;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.wilsonkeh.loginmanagement.dto.LoginRecordRequest;
+import com.wilsonkeh.loginmanagement.queue.DistributedDeduplicatingPriorityBlockingQueue;
+import com.wilsonkeh.loginmanagement.queue.LoginRecordTask;
+import com.wilsonkeh.loginmanagement.queue.Task;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dead Letter Queue Test
+ * Verify that repeated failures are merged, that pages are ordered by first failure and filtered
+ * by source, that the store is bounded, that distinct login records of one user are never merged,
+ * and that abandoned distributed tasks can be replayed in bulk
+ */
+class DeadLetterQueueTest {
+
+    private static final long VISIBILITY_TIMEOUT_MS = 200;
+    private static final int MAX_DELIVERY_ATTEMPTS = 1;
+
+    @AfterEach
+    void tearDown() {
+        Hazelcast.shutdownAll();
+    }
+
+    @Test
+    void testFailuresAreMergedPagedAndBounded() throws InterruptedException {
+        HazelcastInstance instance = Hazelcast.newHazelcastInstance(createConfig());
+        DeadLetterQueue deadLetterQueue = new DeadLetterQueue(instance, 100);
+
+        int localStored = deadLetterQueue.addAll(tasks("local", 0, 30), "login-record-queue", "DB down", 1);
+        Thread.sleep(5);
+        int remoteStored = deadLetterQueue.addAll(tasks("remote", 0, 30), DeadLetterQueue.SOURCE_DISTRIBUTED, "lease expired", 5);
+        // The same local tasks fail again
+        Thread.sleep(5);
+        int mergedStored = deadLetterQueue.addAll(tasks("local", 0, 10), "login-record-queue", "DB still down", 1);
+        assert localStored == 30 && remoteStored == 30 && mergedStored == 10;
+        assert deadLetterQueue.count(null) == 60;
+        assert deadLetterQueue.count(DeadLetterQueue.SOURCE_DISTRIBUTED) == 30;
+
+        // Oldest failures first; merged letters keep their first failure time
+        List<DeadLetter> firstPage = deadLetterQueue.page(0, 25, null);
+        List<DeadLetter> thirdPage = deadLetterQueue.page(2, 25, null);
+        assert firstPage.size() == 25 && thirdPage.size() == 10;
+        for (DeadLetter letter : firstPage) {
+            assert letter.getSource().equals("login-record-queue");
+        }
+        DeadLetter merged = deadLetterQueue.getAll(List.of("local-0")).get(0);
+        assert merged.getAttempts() == 2;
+        assert merged.getReason().equals("DB still down");
+        assert merged.getFirstFailedAt() < merged.getLastFailedAt();
+        for (DeadLetter letter : deadLetterQueue.page(0, 50, DeadLetterQueue.SOURCE_DISTRIBUTED)) {
+            assert letter.getSource().equals(DeadLetterQueue.SOURCE_DISTRIBUTED);
+            assert letter.getAttempts() == 5;
+        }
+
+        // Only 40 more letters fit
+        int stored = deadLetterQueue.addAll(tasks("overflow", 0, 100), "login-record-queue", "DB down", 1);
+        int letters = deadLetterQueue.count(null);
+        int removedLetters = deadLetterQueue.removeAll(List.of("overflow-0", "overflow-1", "missing"));
+
+        System.out.println("=== Dead Letter Paging Test ===");
+        System.out.println("Letters: " + letters + ", stored from overflowing batch: " + stored);
+
+        assert stored == 40;
+        assert letters == 100;
+        assert removedLetters == 2;
+    }
+
+    @Test
+    void testLoginRecordsOfOneUserAreNotMerged() {
+        HazelcastInstance instance = Hazelcast.newHazelcastInstance(createConfig());
+        DeadLetterQueue deadLetterQueue = new DeadLetterQueue(instance, 1_000);
+
+        // Distinct logins of the same user created back to back, as in a bulk ingest:
+        // many of them share a creation millisecond
+        int loginCount = 200;
+        LocalDateTime loginTime = LocalDateTime.of(2024, 5, 1, 8, 30);
+        List<Task<?>> failed = new ArrayList<>(loginCount);
+        for (int i = 0; i < loginCount; i++) {
+            failed.add(new LoginRecordTask(loginRequest("trace-" + i, loginTime.plusSeconds(i))));
+        }
+        long distinctTaskIds = failed.stream().map(Task::getTaskId).distinct().count();
+        int stored = deadLetterQueue.addAll(failed, DeadLetterQueue.SOURCE_DISTRIBUTED, "DB down", 1);
+        int letters = deadLetterQueue.count(null);
+
+        System.out.println("=== Dead Letter Task Id Collision Test ===");
+        System.out.println("Logins: " + loginCount + ", distinct task ids: " + distinctTaskIds + ", letters: " + letters);
+
+        assert distinctTaskIds == loginCount;
+        assert stored == loginCount;
+        // Every failed login keeps its own letter, none was merged into another
+        assert letters == loginCount;
+    }
+
+    @Test
+    void testAbandonedTasksAreReplayedInBulk() throws InterruptedException {
+        HazelcastInstance instance = Hazelcast.newHazelcastInstance(createConfig());
+        DeadLetterQueue deadLetterQueue = new DeadLetterQueue(instance, 100_000);
+        DistributedDeduplicatingPriorityBlockingQueue<String> queue = new DistributedDeduplicatingPriorityBlockingQueue<>(
+            instance, 100_000, true, Task::getDeduplicationKey, 1,
+            DistributedDeduplicatingPriorityBlockingQueue.DEFAULT_CAPACITY_LEASE_SIZE,
+            VISIBILITY_TIMEOUT_MS, MAX_DELIVERY_ATTEMPTS,
+            tasks -> deadLetterQueue.addAll(tasks, DeadLetterQueue.SOURCE_DISTRIBUTED, "lease expired", MAX_DELIVERY_ATTEMPTS));
+        queue.start();
+        try {
+            // The database is down: every delivered task stays unacknowledged until it is abandoned
+            int taskCount = 5_000;
+            List<Boolean> offered = queue.offerAll(tasks("task", 0, taskCount));
+            assert offered.stream().allMatch(Boolean::booleanValue);
+            List<Task<String>> delivered = new ArrayList<>();
+            while (delivered.size() < taskCount) {
+                queue.drainTo(delivered, 1_000, 1, TimeUnit.SECONDS);
+            }
+            // Every lease has to expire MAX_DELIVERY_ATTEMPTS times; poll until nothing is in flight,
+            // with a bound far above that so a slow machine does not fail the test
+            long deadline = System.currentTimeMillis() + VISIBILITY_TIMEOUT_MS * MAX_DELIVERY_ATTEMPTS + 60_000;
+            while ((queue.getInFlightCount() > 0 || deadLetterQueue.count(null) < taskCount)
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assert deadLetterQueue.count(null) == taskCount;
+            assert queue.isEmpty() && queue.getInFlightCount() == 0;
+
+            // The database is back: replay everything in batches of 1000
+            long start = System.nanoTime();
+            List<DeadLetter> selected = deadLetterQueue.page(0, taskCount, null);
+            // A replayed task fails again before its letter is removed
+            deadLetterQueue.addAll(List.of(selected.get(0).getTask()), DeadLetterQueue.SOURCE_DISTRIBUTED, "failed again", 1);
+            int replayed = 0;
+            int removed = 0;
+            for (int from = 0; from < selected.size(); from += 1_000) {
+                List<DeadLetter> batch = selected.subList(from, Math.min(from + 1_000, selected.size()));
+                List<Task<String>> batchTasks = new ArrayList<>(batch.size());
+                for (DeadLetter letter : batch) {
+                    @SuppressWarnings("unchecked")
+                    Task<String> task = (Task<String>) letter.getTask();
+                    batchTasks.add(task);
+                }
+                List<Boolean> results = queue.offerAll(batchTasks);
+                List<DeadLetter> accepted = new ArrayList<>(batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    if (results.get(i)) {
+                        accepted.add(batch.get(i));
+                    }
+                }
+                replayed += accepted.size();
+                removed += deadLetterQueue.removeReplayed(accepted);
+            }
+            long replayMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            System.out.println("=== Dead Letter Replay Test ===");
+            System.out.println("Dead letters: " + taskCount + ", replayed: " + replayed + " in " + replayMs
+                    + "ms, remaining: " + deadLetterQueue.count(null));
+
+            assert replayed == taskCount;
+            assert queue.size() == taskCount;
+            assert removed == taskCount - 1;
+            assert deadLetterQueue.count(null) == 1;
+            // The newer failure of the first task was not removed with the replayed snapshot
+            DeadLetter kept = deadLetterQueue.getAll(List.of(selected.get(0).getTaskId())).get(0);
+            assert kept.getReason().equals("failed again") && kept.getAttempts() == 2;
+        } finally {
+            queue.close();
+        }
+    }
+
+    private static List<Task<String>> tasks(String prefix, int from, int to) {
+        List<Task<String>> tasks = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            tasks.add(new FailedTask(prefix + "-" + i));
+        }
+        return tasks;
+    }
+
+    private static LoginRecordRequest loginRequest(String traceId, LocalDateTime loginTime) {
+        return new LoginRecordRequest(
+                "user-10086", "zhangsan", "203.0.113.42", loginTime,
+                "PASSWORD", "STRONG", "Mozilla/5.0", traceId, "fp-9a8b7c6d", "session-123456",
+                "DESKTOP", "Chrome 124", "Windows 11", "CN", "Shanghai");
+    }
+
+    private Config createConfig() {
+        Config config = new Config();
+        config.setClusterName("dead-letter-test");
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        LoginRecordDataSerializableFactory.register(config.getSerializationConfig());
+        return config;
+    }
+
+    private record FailedTask(String taskId) implements Task<String> {
+        @Override
+        public String getTaskId() { return taskId; }
+        @Override
+        public String getData() { return taskId; }
+        @Override
+        public String getTaskType() { return "TEST"; }
+    }
+}
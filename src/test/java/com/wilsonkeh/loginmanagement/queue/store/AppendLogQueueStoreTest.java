@@ -0,0 +1,330 @@
+package com.wilsonkeh.loginmanagement.queue.store;
+
+import com.hazelcast.collection.IQueue;
+import com.hazelcast.collection.QueueStore;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.QueueConfig;
+import com.hazelcast.config.QueueStoreConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.partition.strategy.StringPartitioningStrategy;
+import com.wilsonkeh.loginmanagement.queue.Task;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Append Log Queue Store Test
+ * Verify that queued tasks survive a full cluster restart, that the store follows the primary replica
+ * when partitions migrate, that torn writes and reclaimed segments are handled on recovery,
+ * and measure the cost of a durable append
+ */
+class AppendLogQueueStoreTest {
+
+    private static final String QUEUE_NAME = "append-log-test-queue";
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("queue-store-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Hazelcast.shutdownAll();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void testTasksSurviveClusterRestart() {
+        AppendLogQueueStoreFactory factory = new AppendLogQueueStoreFactory(directory, 1024 * 1024, 10);
+        HazelcastInstance instance = Hazelcast.newHazelcastInstance(createConfig(factory));
+        IQueue<Task<String>> queue = instance.getQueue(QUEUE_NAME);
+        int offered = 0;
+        for (int i = 0; i < 1_000; i++) {
+            if (queue.offer(new StoredTask("task-" + i))) {
+                offered++;
+            }
+        }
+        List<Task<String>> processed = new ArrayList<>();
+        queue.drainTo(processed, 200);
+
+        // Whole cluster goes down
+        instance.shutdown();
+        factory.close();
+
+        AppendLogQueueStoreFactory restartedFactory = new AppendLogQueueStoreFactory(directory, 1024 * 1024, 10);
+        HazelcastInstance restarted = Hazelcast.newHazelcastInstance(createConfig(restartedFactory));
+        IQueue<Task<String>> recovered = restarted.getQueue(QUEUE_NAME);
+
+        System.out.println("=== Cluster Restart Recovery Test ===");
+        System.out.println("Offered: 1000, processed before restart: " + processed.size()
+                + ", recovered: " + recovered.size());
+
+        int recoveredSize = recovered.size();
+        Task<String> head = recovered.poll();
+        assert offered == 1_000;
+        assert recoveredSize == 800;
+        assert head != null && head.getTaskId().equals("task-200");
+        restarted.shutdown();
+        restartedFactory.close();
+    }
+
+    @Test
+    void testStoreFollowsPrimaryReplicaOnMigration() throws IOException {
+        int queueCount = 16;
+        int tasksPerQueue = 50;
+        AppendLogQueueStoreFactory factoryA = new AppendLogQueueStoreFactory(directory.resolve("member-a"), 1024 * 1024, 10);
+        AppendLogQueueStoreFactory factoryB = new AppendLogQueueStoreFactory(directory.resolve("member-b"), 1024 * 1024, 10);
+        try {
+            HazelcastInstance memberA = Hazelcast.newHazelcastInstance(createConfig(factoryA));
+            factoryA.start(memberA);
+            for (int queue = 0; queue < queueCount; queue++) {
+                IQueue<Task<String>> tasks = memberA.getQueue(QUEUE_NAME + "-" + queue);
+                for (int i = 0; i < tasksPerQueue; i++) {
+                    tasks.offer(new StoredTask("task-" + queue + "-" + i));
+                }
+            }
+
+            // A second member takes over about half of the partitions, and the queues in them
+            HazelcastInstance memberB = Hazelcast.newHazelcastInstance(createConfig(factoryB));
+            factoryB.start(memberB);
+            awaitCondition(() -> memberA.getPartitionService().isClusterSafe());
+
+            List<String> migrated = new ArrayList<>();
+            for (int queue = 0; queue < queueCount; queue++) {
+                String name = QUEUE_NAME + "-" + queue;
+                if (!memberA.getCluster().getLocalMember().equals(ownerOf(memberA, name))) {
+                    migrated.add(name);
+                }
+            }
+            // Only the owner of each queue keeps its records, the former owner dropped its log
+            awaitCondition(() -> storedOnOwners(memberA, factoryA, factoryB, queueCount, tasksPerQueue));
+            boolean storedOnOwnersAfterMigration = storedOnOwners(memberA, factoryA, factoryB, queueCount, tasksPerQueue);
+            List<String> leftOnDisk = new ArrayList<>();
+            for (String name : migrated) {
+                if (Files.exists(directory.resolve("member-a").resolve(name))) {
+                    leftOnDisk.add(name);
+                }
+            }
+
+            // Consuming on the new owner empties its log
+            for (int queue = 0; queue < queueCount; queue++) {
+                memberB.getQueue(QUEUE_NAME + "-" + queue).clear();
+            }
+            awaitCondition(() -> totalStored(factoryA, factoryB, queueCount) == 0);
+            int storedAfterConsume = totalStored(factoryA, factoryB, queueCount);
+
+            System.out.println("=== Primary Replica Migration Test ===");
+            System.out.println("Queues: " + queueCount + ", migrated to second member: " + migrated.size()
+                    + ", left on former owner's disk: " + leftOnDisk.size()
+                    + ", stored after consume: " + storedAfterConsume);
+
+            assert !migrated.isEmpty() && migrated.size() < queueCount;
+            assert storedOnOwnersAfterMigration;
+            assert leftOnDisk.isEmpty();
+            assert storedAfterConsume == 0;
+        } finally {
+            Hazelcast.shutdownAll();
+            factoryA.close();
+            factoryB.close();
+        }
+    }
+
+    @Test
+    void testTornTailIsDiscarded() throws IOException {
+        try (AppendLog appendLog = new AppendLog(directory, 4096)) {
+            appendLog.put(1, payload(100));
+            appendLog.put(2, payload(100));
+            appendLog.put(3, payload(100));
+        }
+
+        // Corrupt the payload of the last record, as if the process died mid-write
+        Path segment = singleSegment();
+        int lastRecordOffset = 2 * (17 + 100);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(lastRecordOffset + 17 + 50);
+            file.write(0x7F);
+        }
+
+        try (AppendLog appendLog = new AppendLog(directory, 4096)) {
+            assert appendLog.size() == 2;
+            assert appendLog.get(3) == null;
+            // Writing resumes where the valid data ends
+            appendLog.put(4, payload(10));
+        }
+        try (AppendLog appendLog = new AppendLog(directory, 4096)) {
+            assert appendLog.keys().equals(Set.of(1L, 2L, 4L));
+        }
+    }
+
+    @Test
+    void testSegmentsAreReclaimed() throws IOException {
+        try (AppendLog appendLog = new AppendLog(directory, 4096)) {
+            // FIFO traffic, about 35 records per segment
+            for (long key = 0; key < 10_000; key++) {
+                appendLog.put(key, payload(100));
+                if (key >= 10) {
+                    appendLog.delete(key - 10);
+                }
+            }
+            System.out.println("=== Segment Reclaim Test ===");
+            System.out.println("Live records: " + appendLog.size() + ", segments: " + appendLog.getSegmentCount());
+            assert appendLog.size() == 10;
+            assert appendLog.getSegmentCount() <= 2;
+        }
+
+        // Deleted records do not come back after recovery
+        try (AppendLog appendLog = new AppendLog(directory, 4096)) {
+            assert appendLog.size() == 10;
+            assert appendLog.get(9_990) != null;
+            assert appendLog.get(9_989) == null;
+        }
+    }
+
+    @Test
+    void testAppendLatency() throws IOException {
+        int operations = 40_000;
+        byte[] payload = payload(300);
+
+        // Durable append as configured: background batched fsync and segment preallocation
+        AppendLogQueueStoreFactory factory = new AppendLogQueueStoreFactory(directory, 16 * 1024 * 1024, 10);
+        long appendNanos;
+        try {
+            QueueStore<byte[]> store = factory.newQueueStore("latency", new Properties());
+            for (long key = 0; key < 5_000; key++) {
+                store.store(key, payload);
+                store.delete(key);
+            }
+            long start = System.nanoTime();
+            for (long key = 0; key < operations; key++) {
+                store.store(key, payload);
+            }
+            appendNanos = (System.nanoTime() - start) / operations;
+            assert store.loadAllKeys().size() == operations;
+        } finally {
+            factory.close();
+        }
+
+        // The same append followed by a synchronous fsync each time
+        int syncOperations = 1_000;
+        long syncNanos;
+        try (AppendLog appendLog = new AppendLog(directory.resolve("sync"), 1024 * 1024)) {
+            long start = System.nanoTime();
+            for (long key = 0; key < syncOperations; key++) {
+                appendLog.put(key, payload);
+                appendLog.force();
+            }
+            syncNanos = (System.nanoTime() - start) / syncOperations;
+        }
+
+        System.out.println("=== Append Latency Test ===");
+        System.out.println("Append with batched fsync: " + appendNanos + " ns/op");
+        System.out.println("Append with fsync per record: " + syncNanos + " ns/op");
+        assert appendNanos < syncNanos;
+    }
+
+    private Config createConfig(AppendLogQueueStoreFactory factory) {
+        Config config = new Config();
+        config.setClusterName("queue-store-test");
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        LoginRecordDataSerializableFactory.register(config.getSerializationConfig());
+        // Same queue store settings as HazelcastConfig
+        QueueStoreConfig queueStoreConfig = new QueueStoreConfig()
+            .setEnabled(true)
+            .setFactoryImplementation(factory)
+            .setProperty(QueueStoreConfig.STORE_BINARY, "true")
+            .setProperty(QueueStoreConfig.STORE_MEMORY_LIMIT, "10000");
+        config.addQueueConfig(new QueueConfig(QUEUE_NAME + "*").setQueueStoreConfig(queueStoreConfig));
+        return config;
+    }
+
+    private static Object ownerOf(HazelcastInstance instance, String queueName) {
+        return instance.getPartitionService().getPartition(StringPartitioningStrategy.getPartitionKey(queueName)).getOwner();
+    }
+
+    /**
+     * Every queue is fully stored on the member owning its primary replica and not at all on the other member
+     */
+    private static boolean storedOnOwners(HazelcastInstance memberA, AppendLogQueueStoreFactory factoryA,
+                                          AppendLogQueueStoreFactory factoryB, int queueCount, int tasksPerQueue) {
+        for (int queue = 0; queue < queueCount; queue++) {
+            String name = QUEUE_NAME + "-" + queue;
+            boolean ownedByA = memberA.getCluster().getLocalMember().equals(ownerOf(memberA, name));
+            AppendLogQueueStoreFactory owner = ownedByA ? factoryA : factoryB;
+            AppendLogQueueStoreFactory other = ownedByA ? factoryB : factoryA;
+            if (owner.getStoredRecords(name) != tasksPerQueue || other.getStoredRecords(name) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int totalStored(AppendLogQueueStoreFactory factoryA, AppendLogQueueStoreFactory factoryB,
+                                   int queueCount) {
+        int stored = 0;
+        for (int queue = 0; queue < queueCount; queue++) {
+            stored += factoryA.getStoredRecords(QUEUE_NAME + "-" + queue)
+                + factoryB.getStoredRecords(QUEUE_NAME + "-" + queue);
+        }
+        return stored;
+    }
+
+    /**
+     * Wait for migration events to be applied, bounded so a broken store fails the test instead of hanging
+     */
+    private static void awaitCondition(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Path singleSegment() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            List<Path> segments = paths.toList();
+            assert segments.size() == 1;
+            return segments.get(0);
+        }
+    }
+
+    private static byte[] payload(int size) {
+        byte[] payload = new byte[size];
+        for (int i = 0; i < size; i++) {
+            payload[i] = (byte) i;
+        }
+        return payload;
+    }
+
+    private record StoredTask(String taskId) implements Task<String> {
+        @Override
+        public String getTaskId() { return taskId; }
+        @Override
+        public String getData() { return taskId; }
+        @Override
+        public String getTaskType() { return "TEST"; }
+    }
+}
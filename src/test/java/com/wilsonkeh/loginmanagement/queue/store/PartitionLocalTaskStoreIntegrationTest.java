@@ -0,0 +1,239 @@
+package com.wilsonkeh.loginmanagement.queue.store;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.IndexConfig;
+import com.hazelcast.config.IndexType;
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.wilsonkeh.loginmanagement.config.HazelcastConfig;
+import com.wilsonkeh.loginmanagement.queue.DistributedDeduplicatingPriorityBlockingQueue;
+import com.wilsonkeh.loginmanagement.queue.Task;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Partition Local Task Store Integration Test
+ * Verify single-invocation dedup-and-enqueue, claim and ack on an embedded member,
+ * and compare one offer/drain/ack cycle against the dedup map + IQueue mode
+ */
+class PartitionLocalTaskStoreIntegrationTest {
+
+    private HazelcastInstance hazelcastInstance;
+    private PartitionLocalTaskStore<String> store;
+
+    @BeforeEach
+    void setUp() {
+        hazelcastInstance = Hazelcast.newHazelcastInstance(createConfig());
+        store = new PartitionLocalTaskStore<>(hazelcastInstance, 10_000, true, Task::getDeduplicationKey);
+        store.start();
+    }
+
+    private Config createConfig() {
+        Config config = new Config();
+        config.setClusterName("task-store-test");
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        // Same map settings as HazelcastConfig
+        MapConfig mapConfig = new MapConfig(HazelcastConfig.TASK_STORE_MAP_NAME);
+        mapConfig.setInMemoryFormat(InMemoryFormat.OBJECT);
+        mapConfig.addIndexConfig(new IndexConfig(IndexType.HASH, "state"));
+        config.addMapConfig(mapConfig);
+        LoginRecordDataSerializableFactory.register(config.getSerializationConfig());
+        return config;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.close();
+            store.clear();
+        }
+        Hazelcast.shutdownAll();
+    }
+
+    @Test
+    void testDeduplicateClaimAndAcknowledge() throws InterruptedException {
+        boolean firstAdmitted = store.offer(new KeyedTask("login-1", 1));
+        // Same dedup key is rejected while queued
+        boolean queuedDuplicateAdmitted = store.offer(new KeyedTask("login-1", 1));
+        boolean secondAdmitted = store.offer(new KeyedTask("login-2", 0));
+        assert firstAdmitted && secondAdmitted;
+        assert !queuedDuplicateAdmitted;
+
+        // Keys reach the local candidates through an asynchronous listener
+        List<Task<String>> claimed = new ArrayList<>();
+        while (claimed.size() < 2) {
+            int count = store.drainTo(claimed, 10, 1, TimeUnit.SECONDS);
+            assert count > 0;
+        }
+        claimed.sort(Comparator.comparingInt(Task::getPriority));
+        assert claimed.get(0).getData().equals("login-2");
+
+        // Still rejected while in flight, nothing left to claim
+        boolean inFlightDuplicateAdmitted = store.offer(new KeyedTask("login-1", 1));
+        int leftToClaim = store.drainTo(new ArrayList<>(), 10, 0, TimeUnit.SECONDS);
+        assert !inFlightDuplicateAdmitted;
+        assert leftToClaim == 0;
+        assert store.size() == 2;
+
+        // Ack removes the entries and releases the dedup keys
+        store.acknowledge(claimed);
+        assert store.isEmpty();
+        boolean readmitted = store.offer(new KeyedTask("login-1", 1));
+        assert readmitted;
+
+        System.out.println("=== Partition Local Task Store Test ===");
+        System.out.println("Stats: " + store.getStats());
+        assert store.getStats().getTotalDeduplicated() == 2;
+        assert store.getTotalAcknowledged() == 2;
+    }
+
+    @Test
+    void testConsumerWakesOnArrival() throws Exception {
+        List<Task<String>> claimed = new ArrayList<>();
+        Thread consumer = new Thread(() -> {
+            try {
+                store.drainTo(claimed, 10, 5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        Thread.sleep(200);
+
+        long start = System.nanoTime();
+        boolean admitted = store.offer(new KeyedTask("late-login", 0));
+        consumer.join(5000);
+        long wakeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        System.out.println("Consumer woke after " + wakeMs + "ms");
+        assert admitted;
+        assert claimed.size() == 1;
+        assert wakeMs < 1000;
+    }
+
+    @Test
+    void testExpiredClaimIsReclaimedAndStaleAckIgnored() throws InterruptedException {
+        // Two consumers with a short lease; the first claims and stalls as if its member had crashed
+        PartitionLocalTaskStore<String> stalled =
+            new PartitionLocalTaskStore<>(hazelcastInstance, 10_000, true, Task::getDeduplicationKey, 300);
+        PartitionLocalTaskStore<String> survivor =
+            new PartitionLocalTaskStore<>(hazelcastInstance, 10_000, true, Task::getDeduplicationKey, 300);
+        stalled.start();
+        survivor.start();
+        try {
+            assert stalled.offer(new KeyedTask("login-lease", 0));
+            List<Task<String>> stalledClaim = new ArrayList<>();
+            while (stalledClaim.isEmpty()) {
+                stalled.drainTo(stalledClaim, 10, 1, TimeUnit.SECONDS);
+            }
+
+            // Not claimable while the lease is live, claimable once it has expired
+            int claimedWhileLeased = survivor.drainTo(new ArrayList<>(), 10, 0, TimeUnit.SECONDS);
+            Thread.sleep(400);
+            List<Task<String>> reclaimed = new ArrayList<>();
+            survivor.drainTo(reclaimed, 10, 1, TimeUnit.SECONDS);
+            System.out.println("Claimed while leased: " + claimedWhileLeased + ", reclaimed: " + reclaimed.size());
+            assert claimedWhileLeased == 0;
+            assert reclaimed.size() == 1;
+
+            // The stalled consumer's late ack must not remove the entry now held by the survivor
+            stalled.acknowledge(stalledClaim);
+            assert stalled.getTotalAcknowledged() == 0;
+            assert store.size() == 1;
+            // A consumer that never claimed the task cannot ack it either
+            store.acknowledge(reclaimed);
+            assert store.size() == 1;
+
+            survivor.acknowledge(reclaimed);
+            assert survivor.getTotalAcknowledged() == 1;
+            assert store.isEmpty();
+        } finally {
+            stalled.close();
+            survivor.close();
+        }
+    }
+
+    @Test
+    void testOfferDrainAckCycleComparedToQueueMode() throws InterruptedException {
+        // A second member puts roughly half of the partitions, and the queue, behind a network hop
+        Hazelcast.newHazelcastInstance(createConfig());
+        assert hazelcastInstance.getCluster().getMembers().size() == 2;
+
+        int taskCount = 5_000;
+        List<Task<String>> tasks = new ArrayList<>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            tasks.add(new KeyedTask("login-" + i, i % 3));
+        }
+
+        DistributedDeduplicatingPriorityBlockingQueue<String> queue = new DistributedDeduplicatingPriorityBlockingQueue<>(
+            hazelcastInstance, 10_000, true, Task::getDeduplicationKey);
+        queue.start();
+        long queueMs = measureCycle(tasks, queue::offer, (target, max) -> queue.drainTo(target, max, 1, TimeUnit.SECONDS),
+            claimed -> { });
+        queue.clear();
+
+        long storeMs = measureCycle(tasks, store::offer, (target, max) -> store.drainTo(target, max, 1, TimeUnit.SECONDS),
+            store::acknowledge);
+
+        System.out.println("=== Offer/Drain/Ack Cycle Test ===");
+        System.out.println("Members: 2, tasks: " + taskCount);
+        System.out.println("Dedup map + IQueue: " + queueMs + "ms");
+        System.out.println("Partition local store: " + storeMs + "ms");
+
+        assert store.isEmpty();
+        assert store.getStats().getTotalPolled() == taskCount;
+    }
+
+    private long measureCycle(List<Task<String>> tasks, Offer offer, Drain drain, Ack ack) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        int offered = 0;
+        for (Task<String> task : tasks) {
+            if (offer.offer(task)) {
+                offered++;
+            }
+        }
+        assert offered == tasks.size();
+        int drained = 0;
+        while (drained < tasks.size()) {
+            List<Task<String>> batch = new ArrayList<>();
+            int count = drain.drain(batch, 100);
+            assert count > 0;
+            ack.ack(batch);
+            drained += count;
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private interface Offer {
+        boolean offer(Task<String> task);
+    }
+
+    private interface Drain {
+        int drain(List<Task<String>> target, int max) throws InterruptedException;
+    }
+
+    private interface Ack {
+        void ack(List<Task<String>> tasks);
+    }
+
+    private record KeyedTask(String key, int priority) implements Task<String> {
+        @Override
+        public String getTaskId() { return key; }
+        @Override
+        public String getData() { return key; }
+        @Override
+        public String getTaskType() { return "TEST"; }
+        @Override
+        public int getPriority() { return priority; }
+    }
+}
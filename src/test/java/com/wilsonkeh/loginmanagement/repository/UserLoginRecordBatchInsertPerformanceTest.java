@@ -0,0 +1,168 @@
+package com.wilsonkeh.loginmanagement.repository;
+
+import com.wilsonkeh.loginmanagement.entity.UserLoginRecord;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 登录记录批量插入性能测试
+ * 使用池化主键序列、有序JDBC批次和驱动的多行INSERT改写，比较不同JDBC批大小下每秒插入的行数，
+ * 以及二进制COPY写入的吞吐量和重复traceId的跳过
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class UserLoginRecordBatchInsertPerformanceTest {
+
+    private static final int ROWS_PER_RUN = 10_000;
+    private static final int[] BATCH_SIZES = {20, 50, 500};
+
+    @Autowired
+    private UserLoginRecordRepository loginRecordRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Every row of this run shares the prefix so that it can be removed afterwards
+    private final String traceIdPrefix = "batch-insert-benchmark-" + UUID.randomUUID() + "-";
+
+    @AfterEach
+    void tearDown() {
+        transactionTemplate.executeWithoutResult(status -> entityManager
+                .createQuery("DELETE FROM UserLoginRecord l WHERE l.traceId LIKE :prefix")
+                .setParameter("prefix", traceIdPrefix + "%")
+                .executeUpdate());
+    }
+
+    @Test
+    void testBatchInsertThroughput() {
+        System.out.println("=== 登录记录批量插入性能测试 ===");
+        System.out.println("每轮插入行数: " + ROWS_PER_RUN);
+
+        // Warm up the connection pool, the statement cache and the JIT
+        insert("warmup", 2_000, 50);
+
+        for (int batchSize : BATCH_SIZES) {
+            long startTime = System.nanoTime();
+            int inserted = insert("size" + batchSize, ROWS_PER_RUN, batchSize);
+            double seconds = (System.nanoTime() - startTime) / 1_000_000_000.0;
+
+            System.out.printf("JDBC批大小: %d, 插入行数: %d, 耗时: %.2fs, 吞吐量: %.0f 行/秒%n",
+                    batchSize, inserted, seconds, inserted / seconds);
+            assert inserted == ROWS_PER_RUN;
+        }
+    }
+
+    @Test
+    void testCopyThroughput() {
+        System.out.println("=== 登录记录COPY写入性能测试 ===");
+        copy("warmup", 2_000);
+
+        long startTime = System.nanoTime();
+        List<UserLoginRecord> copied = copy("copy", ROWS_PER_RUN);
+        double seconds = (System.nanoTime() - startTime) / 1_000_000_000.0;
+        System.out.printf("COPY写入行数: %d, 耗时: %.2fs, 吞吐量: %.0f 行/秒%n",
+                copied.size(), seconds, copied.size() / seconds);
+
+        // Rows written by COPY read back the same as rows written through JPA
+        UserLoginRecord expected = copied.get(ROWS_PER_RUN - 1);
+        UserLoginRecord actual = loginRecordRepository.findById(expected.getId()).orElseThrow();
+        assert actual.getTraceId().equals(expected.getTraceId());
+        assert actual.getLoginTime().equals(expected.getLoginTime());
+        assert actual.getLoginMethod() == expected.getLoginMethod();
+        assert actual.getCreatedAt().equals(expected.getCreatedAt());
+        assert actual.getIsSuspicious() == Boolean.FALSE && actual.getRiskScore() == 0;
+        assert actual.getFingerprint() == null;
+
+        // Ids reserved by COPY do not collide with ids allocated by Hibernate afterwards
+        insert("after-copy", 100, 50);
+    }
+
+    @Test
+    void testDuplicatesAreSkipped() {
+        System.out.println("=== 登录记录冲突容忍写入测试 ===");
+        List<UserLoginRecord> first = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            first.add(createRecord(traceIdPrefix + "dup-" + i, i));
+        }
+        Set<String> inserted = transactionTemplate.execute(status -> loginRecordRepository.copyIgnoringDuplicates(first));
+        assert inserted.size() == 1_000;
+
+        // Half of each following batch already exists, whichever path wrote it
+        List<UserLoginRecord> copied = new ArrayList<>();
+        List<UserLoginRecord> valued = new ArrayList<>();
+        for (int i = 500; i < 1_500; i++) {
+            copied.add(createRecord(traceIdPrefix + "dup-" + i, i));
+            valued.add(createRecord(traceIdPrefix + "dup-" + (i + 500), i));
+        }
+        Set<String> copiedInserted = transactionTemplate.execute(status -> loginRecordRepository.copyIgnoringDuplicates(copied));
+        Set<String> valuedInserted = transactionTemplate.execute(status -> loginRecordRepository.insertIgnoringDuplicates(valued));
+        System.out.println("COPY新增: " + copiedInserted.size() + ", INSERT新增: " + valuedInserted.size());
+
+        assert copiedInserted.size() == 500 && !copiedInserted.contains(traceIdPrefix + "dup-500");
+        assert valuedInserted.size() == 500 && valuedInserted.contains(traceIdPrefix + "dup-1999");
+        // Skipped records do not carry an id that was never written
+        assert copied.get(0).getId() == null && copied.get(999).getId() != null;
+        assert valued.get(0).getId() == null && valued.get(999).getId() != null;
+    }
+
+    private List<UserLoginRecord> copy(String run, int rows) {
+        List<UserLoginRecord> records = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            UserLoginRecord record = createRecord(traceIdPrefix + run + "-" + i, i);
+            record.setLoginTime(record.getLoginTime().truncatedTo(ChronoUnit.MICROS));
+            records.add(record);
+        }
+        List<UserLoginRecord> copied = transactionTemplate.execute(status -> loginRecordRepository.copyAll(records));
+        assert copied.size() == rows;
+        assert copied.stream().map(UserLoginRecord::getId).distinct().count() == rows;
+        return copied;
+    }
+
+    /**
+     * 在一个事务中以指定的JDBC批大小插入记录
+     */
+    private int insert(String run, int rows, int batchSize) {
+        List<UserLoginRecord> records = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            records.add(createRecord(traceIdPrefix + run + "-" + i, i));
+        }
+        List<UserLoginRecord> inserted = transactionTemplate.execute(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            return loginRecordRepository.insertAll(records);
+        });
+        for (UserLoginRecord record : inserted) {
+            assert record.getId() != null;
+        }
+        return inserted.size();
+    }
+
+    private UserLoginRecord createRecord(String traceId, int index) {
+        UserLoginRecord record = new UserLoginRecord();
+        record.setUid("benchmark-user-" + (index % 100));
+        record.setUsername("benchmark-user-" + (index % 100));
+        record.setIpAddress("192.168." + (index / 256 % 256) + "." + (index % 256));
+        record.setLoginTime(LocalDateTime.now().minusSeconds(index));
+        record.setLoginMethod(UserLoginRecord.LoginMethod.PASSWORD);
+        record.setTraceId(traceId);
+        record.setUserAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64)");
+        record.setDeviceType("DESKTOP");
+        return record;
+    }
+}
@@ -0,0 +1,79 @@
+package com.wilsonkeh.loginmanagement.service.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dirty Uid Tracker Test
+ * Verify that a burst of logins for one user results in a single recomputation after the debounce window,
+ * that a user who keeps logging in is still recomputed once the maximum delay has passed,
+ * and that a login skipped by the incremental update keeps the user marked for a rebuild
+ */
+class DirtyUidTrackerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void testBurstIsCoalescedIntoOneRecomputation() {
+        DirtyUidTracker tracker = new DirtyUidTracker(2_000, 10_000);
+        long start = 0;
+        // A batch and a credential-stuffing run: 1000 logins for one user within one second
+        for (int i = 0; i < 1_000; i++) {
+            tracker.markDirty("stuffed-user", 1, start + i * MS);
+        }
+        tracker.markDirty("other-user", 3, start);
+
+        // Nothing is due while the burst is still within the debounce window
+        List<DirtyUidTracker.DirtyUid> due = tracker.drainDue(start + 1_500 * MS);
+        assert due.isEmpty();
+        due = tracker.drainDue(start + 2_100 * MS);
+        assert due.size() == 1 && due.get(0).uid().equals("other-user");
+
+        due = tracker.drainDue(start + 3_000 * MS);
+        System.out.println("=== Debounce Test ===");
+        System.out.println("Logins: 1000, recomputations: " + due.size() + ", coalesced logins: " + due.get(0).logins());
+        assert due.size() == 1 && due.get(0).logins() == 1_000;
+        assert due.get(0).firstMarkedNanos() == start;
+        assert tracker.size() == 0;
+    }
+
+    @Test
+    void testContinuousLoginsAreRecomputedAfterMaxDelay() {
+        DirtyUidTracker tracker = new DirtyUidTracker(2_000, 10_000);
+        int recomputations = 0;
+        int logins = 0;
+        // One login every second for a minute never leaves a quiet debounce window
+        for (long second = 0; second < 60; second++) {
+            tracker.markDirty("busy-user", 1, second * 1_000 * MS);
+            logins++;
+            recomputations += tracker.drainDue(second * 1_000 * MS + 500 * MS).size();
+        }
+
+        System.out.println("=== Max Delay Test ===");
+        System.out.println("Logins: " + logins + ", recomputations: " + recomputations);
+        // Recomputed at 10s, 21s, 32s, 43s and 54s; the logins since then are still pending
+        assert recomputations == 5;
+        assert tracker.size() == 1;
+    }
+
+    @Test
+    void testSkippedUpdateIsRebuiltAfterMerge() {
+        DirtyUidTracker tracker = new DirtyUidTracker(2_000, 10_000);
+        // The first login found no aggregate while it was being seeded, later logins were applied
+        tracker.markDirty("seeded-user", 1, 0, true);
+        for (int i = 1; i <= 5; i++) {
+            tracker.markDirty("seeded-user", 1, i * MS);
+        }
+        tracker.markDirty("applied-user", 2, 0);
+
+        List<DirtyUidTracker.DirtyUid> due = tracker.drainDue(3_000 * MS);
+        System.out.println("=== Reseed Test ===");
+        due.forEach(dirtyUid -> System.out.println(dirtyUid.uid() + ": logins " + dirtyUid.logins() + ", reseed " + dirtyUid.reseed()));
+        assert due.size() == 2;
+        for (DirtyUidTracker.DirtyUid dirtyUid : due) {
+            assert dirtyUid.reseed() == dirtyUid.uid().equals("seeded-user");
+        }
+    }
+}
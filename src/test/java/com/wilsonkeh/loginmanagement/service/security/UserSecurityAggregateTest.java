@@ -0,0 +1,168 @@
+package com.wilsonkeh.loginmanagement.service.security;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.wilsonkeh.loginmanagement.entity.UserSecurityAnalysis;
+import com.wilsonkeh.loginmanagement.queue.serialization.LoginRecordDataSerializableFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User Security Aggregate Test
+ * Verify that the incrementally maintained day buckets give the same 30-day totals as a full scan,
+ * that old days slide out of the window, and that a stale rebuild does not overwrite newer logins
+ */
+class UserSecurityAggregateTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 30);
+
+    @AfterEach
+    void tearDown() {
+        Hazelcast.shutdownAll();
+    }
+
+    @Test
+    void testIncrementalTotalsMatchFullScan() {
+        Random random = new Random(42);
+        List<UserSecurityAggregate.LoginSample> logins = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            // Logins spread over 45 days, older ones are outside the window
+            LocalDateTime loginTime = TODAY.minusDays(random.nextInt(45)).atTime(random.nextInt(24), random.nextInt(60));
+            int riskScore = random.nextInt(101);
+            logins.add(new UserSecurityAggregate.LoginSample(loginTime, "10.0." + random.nextInt(40) + "." + random.nextInt(250),
+                random.nextInt(10) == 0 ? null : "device-" + random.nextInt(20_000), riskScore, riskScore > 70));
+        }
+
+        long start = System.nanoTime();
+        UserSecurityAggregate aggregate = new UserSecurityAggregate();
+        for (UserSecurityAggregate.LoginSample login : logins) {
+            aggregate.add(login);
+        }
+        long incrementalMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        UserSecurityAnalysis incremental = aggregate.toAnalysis("user", TODAY);
+        UserSecurityAnalysis scanned = fullScan(logins);
+
+        System.out.println("=== Incremental Aggregate Test ===");
+        System.out.println("Logins: " + logins.size() + ", incremental updates took " + incrementalMicros + "us");
+        System.out.println("Incremental: " + incremental.getTotalLogins() + " logins, " + incremental.getUniqueIpAddresses()
+                + " ips, " + incremental.getUniqueDevices() + " devices; full scan: " + scanned.getTotalLogins()
+                + " logins, " + scanned.getUniqueIpAddresses() + " ips, " + scanned.getUniqueDevices() + " devices");
+
+        assert incremental.getTotalLogins().equals(scanned.getTotalLogins());
+        assert incremental.getUniqueIpAddresses().equals(scanned.getUniqueIpAddresses());
+        assert incremental.getUniqueDevices().equals(scanned.getUniqueDevices());
+        assert incremental.getSuspiciousActivities().equals(scanned.getSuspiciousActivities());
+        assert incremental.getMaxRiskScore().equals(scanned.getMaxRiskScore());
+        assert Math.abs(incremental.getAvgRiskScore() - scanned.getAvgRiskScore()) < 1e-9;
+        assert incremental.getFirstLoginTime().equals(scanned.getFirstLoginTime());
+        assert incremental.getLastLoginTime().equals(scanned.getLastLoginTime());
+    }
+
+    @Test
+    void testOldDaysSlideOutOfWindow() {
+        UserSecurityAggregate aggregate = new UserSecurityAggregate();
+        aggregate.add(login(TODAY.minusDays(29), "1.1.1.1", 90));
+        aggregate.add(login(TODAY, "2.2.2.2", 10));
+
+        UserSecurityAnalysis today = aggregate.toAnalysis("user", TODAY);
+        assert today.getTotalLogins() == 2 && today.getUniqueIpAddresses() == 2;
+        assert today.getRiskLevel() == UserSecurityAnalysis.RiskLevel.CRITICAL;
+
+        // A day later the oldest login and its ip have left the window without any new login
+        UserSecurityAnalysis tomorrow = aggregate.toAnalysis("user", TODAY.plusDays(1));
+        assert tomorrow.getTotalLogins() == 1 && tomorrow.getUniqueIpAddresses() == 1;
+        assert tomorrow.getMaxRiskScore() == 10 && tomorrow.getRiskLevel() == UserSecurityAnalysis.RiskLevel.LOW;
+
+        // An ip seen again today moves to today's bucket instead of being counted twice
+        aggregate.add(login(TODAY, "1.1.1.1", 10));
+        assert aggregate.toAnalysis("user", TODAY.plusDays(1)).getUniqueIpAddresses() == 2;
+
+        // The bucket of a day 30 days later is reused for the new day
+        aggregate.add(login(TODAY.plusDays(30), "3.3.3.3", 20));
+        UserSecurityAnalysis later = aggregate.toAnalysis("user", TODAY.plusDays(30));
+        System.out.println("=== Sliding Window Test ===");
+        System.out.println("Logins 30 days later: " + later.getTotalLogins() + ", ips: " + later.getUniqueIpAddresses());
+        assert later.getTotalLogins() == 1 && later.getUniqueIpAddresses() == 1;
+        assert aggregate.isEmpty(TODAY.plusDays(60));
+        assert later.getFirstLoginTime().equals(TODAY.minusDays(29).atTime(12, 0));
+    }
+
+    @Test
+    void testStaleRebuildDoesNotOverwriteNewerLogins() {
+        HazelcastInstance instance = Hazelcast.newHazelcastInstance(createConfig());
+        IMap<String, UserSecurityAggregate> map = instance.getMap("user-security-aggregate-test");
+
+        // Aggregates are never created by an update, only seeded from the database
+        boolean updatedAbsent = map.executeOnKey("user",
+            new UserSecurityAggregateUpdateProcessor(List.of(login(TODAY, "1.1.1.1", 10))));
+        assert !updatedAbsent;
+        UserSecurityAggregate seeded = new UserSecurityAggregate();
+        seeded.add(login(TODAY, "1.1.1.1", 10));
+        boolean seededReplaced = map.executeOnKey("user",
+            new UserSecurityAggregateReplaceProcessor(UserSecurityAggregateReplaceProcessor.ABSENT, seeded));
+        assert seededReplaced;
+
+        // A reconciliation reads the version, a login is applied while it scans the database
+        long readVersion = map.get("user").getVersion();
+        boolean updated = map.executeOnKey("user",
+            new UserSecurityAggregateUpdateProcessor(List.of(login(TODAY, "2.2.2.2", 95))));
+        assert updated;
+        UserSecurityAggregate staleRebuild = new UserSecurityAggregate();
+        staleRebuild.add(login(TODAY, "1.1.1.1", 10));
+        boolean replaced = map.executeOnKey("user", new UserSecurityAggregateReplaceProcessor(readVersion, staleRebuild));
+
+        UserSecurityAnalysis analysis = map.get("user").toAnalysis("user", TODAY);
+        System.out.println("=== Stale Rebuild Test ===");
+        System.out.println("Stale rebuild replaced: " + replaced + ", logins kept: " + analysis.getTotalLogins());
+        assert !replaced;
+        assert analysis.getTotalLogins() == 2 && analysis.getMaxRiskScore() == 95;
+
+        // Up to date rebuilds replace the aggregate; an empty one removes it
+        long currentVersion = map.get("user").getVersion();
+        boolean removed = map.executeOnKey("user", new UserSecurityAggregateReplaceProcessor(currentVersion, null));
+        assert removed;
+        assert !map.containsKey("user");
+    }
+
+    private static UserSecurityAggregate.LoginSample login(LocalDate day, String ipAddress, int riskScore) {
+        return new UserSecurityAggregate.LoginSample(day.atTime(12, 0), ipAddress, null, riskScore, riskScore > 70);
+    }
+
+    /**
+     * Recompute the totals by scanning every login of the window
+     */
+    private static UserSecurityAnalysis fullScan(List<UserSecurityAggregate.LoginSample> logins) {
+        LocalDateTime windowStart = TODAY.minusDays(UserSecurityAggregate.WINDOW_DAYS - 1).atStartOfDay();
+        List<UserSecurityAggregate.LoginSample> recent = logins.stream()
+            .filter(login -> !login.loginTime().isBefore(windowStart))
+            .toList();
+        UserSecurityAnalysis analysis = new UserSecurityAnalysis();
+        analysis.setTotalLogins(recent.size());
+        analysis.setUniqueIpAddresses((int) recent.stream().map(UserSecurityAggregate.LoginSample::ipAddress).distinct().count());
+        analysis.setUniqueDevices((int) recent.stream().map(UserSecurityAggregate.LoginSample::fingerprint)
+            .filter(fingerprint -> fingerprint != null).distinct().count());
+        analysis.setSuspiciousActivities((int) recent.stream().filter(UserSecurityAggregate.LoginSample::suspicious).count());
+        analysis.setMaxRiskScore(recent.stream().mapToInt(UserSecurityAggregate.LoginSample::riskScore).max().orElse(0));
+        analysis.setAvgRiskScore(recent.stream().mapToInt(UserSecurityAggregate.LoginSample::riskScore).average().orElse(0));
+        analysis.setFirstLoginTime(logins.stream().map(UserSecurityAggregate.LoginSample::loginTime).min(LocalDateTime::compareTo).orElseThrow());
+        analysis.setLastLoginTime(logins.stream().map(UserSecurityAggregate.LoginSample::loginTime).max(LocalDateTime::compareTo).orElseThrow());
+        return analysis;
+    }
+
+    private Config createConfig() {
+        Config config = new Config();
+        config.setClusterName("user-security-aggregate-test");
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        LoginRecordDataSerializableFactory.register(config.getSerializationConfig());
+        return config;
+    }
+}